@@ -1,6 +1,9 @@
 package algorithms;
 
-import algorithms.priorityqueue.IndirectHeap;
+import java.util.Arrays;
+
+import algorithms.datatypes.SearchBuffers;
+import algorithms.priorityqueue.FloatIndirectHeap;
 import grid.GridGraph;
 
 
@@ -11,10 +14,10 @@ public class AStar extends PathFindingAlgorithm {
     protected boolean repeatedPostSmooth = true;
     protected float heuristicWeight = 1f;
 
-    protected Float[] distance;
+    protected float[] distance;
     protected boolean[] visited;
     
-    protected IndirectHeap<Float> pq; 
+    protected FloatIndirectHeap pq; 
 
     protected int finish;
 
@@ -42,13 +45,9 @@ public class AStar extends PathFindingAlgorithm {
         int start = toOneDimIndex(sx, sy);
         finish = toOneDimIndex(ex, ey);
         
-        distance = new Float[totalSize];
-        parent = new int[totalSize];
-        
-        initialise(start);
-        visited = new boolean[totalSize];
+        initialiseMemory(totalSize, start);
         
-        pq = new IndirectHeap<Float>(distance, true);
+        pq = FloatIndirectHeap.forCurrentThread(distance, totalSize);
         pq.heapify();
         
         //float lastDist = -1;
@@ -113,7 +112,7 @@ public class AStar extends PathFindingAlgorithm {
     }
     
 
-    public Float[] getDistance(){return distance;}
+    public float[] getDistance(){return distance;}
     public int[] getParent(){return parent;}
     
     protected boolean relax(int u, int v, float weightUV) {
@@ -130,11 +129,21 @@ public class AStar extends PathFindingAlgorithm {
     }
     
     
+    /**
+     * Takes distance, parent and visited from the calling thread's SearchBuffers and initialises them.
+     */
+    protected final void initialiseMemory(int size, int s) {
+        SearchBuffers buffers = SearchBuffers.forCurrentThread();
+        distance = buffers.distance(size);
+        parent = buffers.parent(size);
+        visited = buffers.visited(size);
+        Arrays.fill(visited, false);
+        initialise(s);
+    }
+    
     protected final void initialise(int s) {
-        for (int i=0; i<distance.length; i++) {
-            distance[i] = Float.POSITIVE_INFINITY;
-            parent[i] = -1;
-        }
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+        Arrays.fill(parent, -1);
         distance[s] = 0f;
     }
     
@@ -1,8 +1,8 @@
 package algorithms;
 
 import grid.GridGraph;
-import algorithms.datatypes.Memory;
-import algorithms.priorityqueue.ReusableIndirectHeap;
+import algorithms.priorityqueue.PriorityQueueType;
+import algorithms.priorityqueue.ReusablePriorityQueue;
 
 
 
@@ -12,7 +12,8 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
     protected boolean repeatedPostSmooth = false;
     protected float heuristicWeight = 1f;
 
-    protected ReusableIndirectHeap pq; 
+    protected PriorityQueueType priorityQueueType = PriorityQueueType.BINARY_HEAP;
+    protected ReusablePriorityQueue pq; 
 
     protected int finish;
 
@@ -40,6 +41,13 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
         aStar.heuristicWeight = 0;
         return aStar;
     }
+
+    /**
+     * Selects the open list used by computePath. The default is PriorityQueueType.BINARY_HEAP.
+     */
+    public void setPriorityQueueType(PriorityQueueType priorityQueueType) {
+        this.priorityQueueType = priorityQueueType;
+    }
     
     @Override
     public void computePath() {
@@ -48,7 +56,7 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
         int start = toOneDimIndex(sx, sy);
         finish = toOneDimIndex(ex, ey);
 
-        pq = new ReusableIndirectHeap(totalSize);
+        pq = priorityQueueType.forCurrentThread(totalSize);
         this.initialiseMemory(totalSize, Float.POSITIVE_INFINITY, -1, false);
         
         initialise(start);
@@ -130,7 +138,7 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
     
     protected final void initialise(int s) {
         pq.decreaseKey(s, 0f);
-        Memory.setDistance(s, 0f);
+        memory.setDistance(s, 0f);
     }
     
     
@@ -255,26 +263,26 @@ public class AStarStaticMemory extends PathFindingAlgorithm {
 
     
     protected final int parent(int index) {
-        return Memory.parent(index);
+        return memory.parent(index);
     }
     
     protected final void setParent(int index, int value) {
-        Memory.setParent(index, value);
+        memory.setParent(index, value);
     }
     
     protected final float distance(int index) {
-        return Memory.distance(index);
+        return memory.distance(index);
     }
     
     protected final void setDistance(int index, float value) {
-        Memory.setDistance(index, value);
+        memory.setDistance(index, value);
     }
     
     protected final boolean visited(int index) {
-        return Memory.visited(index);
+        return memory.visited(index);
     }
     
     protected final void setVisited(int index, boolean value) {
-        Memory.setVisited(index, value);
+        memory.setVisited(index, value);
     }
 }
\ No newline at end of file
@@ -2,13 +2,15 @@ package algorithms;
 
 import grid.GridGraph;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import algorithms.priorityqueue.IndirectHeap;
+import algorithms.datatypes.PreprocessedGraphRegistry;
+import algorithms.datatypes.SearchBuffers;
+import algorithms.priorityqueue.FloatIndirectHeap;
 
 public class AcceleratedAStar extends AStar {
-    private List<Integer> closed;
+    private static final String REGISTRY_KIND = "MaxDownLeftRanges";
+
+    private int[] closed;
+    private int nClosed;
     private int[][] maxRanges;
     
     public AcceleratedAStar(GridGraph graph, int sx, int sy, int ex, int ey) {
@@ -23,16 +25,15 @@ public class AcceleratedAStar extends AStar {
         int start = toOneDimIndex(sx, sy);
         finish = toOneDimIndex(ex, ey);
         
-        distance = new Float[totalSize];
-        parent = new int[totalSize];
-        maxRanges = graph.computeMaxDownLeftRanges(); // O(size of gridGraph) computation. See actual method.
+        // O(size of gridGraph) computation, done once per grid. See actual method.
+        maxRanges = PreprocessedGraphRegistry.get(REGISTRY_KIND, graph, GridGraph::computeMaxDownLeftRanges, PreprocessedGraphRegistry::sizeOf);
         
-        initialise(start);
-        visited = new boolean[totalSize];
+        initialiseMemory(totalSize, start);
         
-        closed = new ArrayList<Integer>();
+        closed = SearchBuffers.forCurrentThread().indexList(totalSize);
+        nClosed = 0;
         
-        pq = new IndirectHeap<Float>(distance, true);
+        pq = FloatIndirectHeap.forCurrentThread(distance, totalSize);
         pq.heapify();
         
         while (!pq.isEmpty()) {
@@ -42,7 +43,7 @@ public class AcceleratedAStar extends AStar {
                 break;
             }
             visited[current] = true;
-            closed.add(current);
+            closed[nClosed++] = current;
 
             int x = toTwoDimX(current);
             int y = toTwoDimY(current);
@@ -62,30 +63,17 @@ public class AcceleratedAStar extends AStar {
     }
 
     private void relaxSuccessorsSizeZero(int current, int x, int y) {
-        boolean[] udlr = new boolean[4];
-        if (!graph.isBlocked(x-1, y-1)) { // bottom left
-            udlr[2] = true;
-            udlr[1] = true;
-        }
-        if (!graph.isBlocked(x, y-1)) { // bottom right
-            udlr[3] = true;
-            udlr[1] = true;
-        }
-        if (!graph.isBlocked(x-1, y)) { // top left
-            udlr[2] = true;
-            udlr[0] = true;
-        }
-        if (!graph.isBlocked(x, y)) { // top right
-            udlr[3] = true;
-            udlr[0] = true;
-        }
-        if (udlr[0])
+        boolean bottomLeft = !graph.isBlocked(x-1, y-1);
+        boolean bottomRight = !graph.isBlocked(x, y-1);
+        boolean topLeft = !graph.isBlocked(x-1, y);
+        boolean topRight = !graph.isBlocked(x, y);
+        if (topLeft || topRight) // up
             generateVertex(current, x, y, x, y+1);
-        if (udlr[1])
+        if (bottomLeft || bottomRight) // down
             generateVertex(current, x, y, x, y-1);
-        if (udlr[2])
+        if (bottomLeft || topLeft) // left
             generateVertex(current, x, y, x-1, y);
-        if (udlr[3])
+        if (bottomRight || topRight) // right
             generateVertex(current, x, y, x+1, y);
     }
 
@@ -120,7 +108,8 @@ public class AcceleratedAStar extends AStar {
     
     private boolean processNode(int current, int destination, int destX, int destY) {
         boolean changed = false;
-        for (int fromNode : closed) {
+        for (int i=0; i<nClosed; ++i) {
+            int fromNode = closed[i];
             int fromX = toTwoDimX(fromNode);
             int fromY = toTwoDimY(fromNode);
             float newFValue = distance[fromNode] + weight(fromX, fromY, destX, destY);
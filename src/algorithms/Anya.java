@@ -4,20 +4,24 @@ import grid.GridGraph;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 
-import algorithms.anya.Fraction;
+import algorithms.anya.PackedFraction;
+import algorithms.anya.StateTable;
 import algorithms.datatypes.Point;
 import algorithms.datatypes.SnapshotItem;
 import algorithms.priorityqueue.FastVariableSizeIndirectHeap;
 
 public class Anya extends PathFindingAlgorithm {
 
+    private static final ThreadLocal<StateStore> threadStore = ThreadLocal.withInitial(StateStore::new);
+
     private AnyaState goalState;
     private AnyaState[] states;
+    private int nStates;
     private FastVariableSizeIndirectHeap pq;
-    private HashMap<AnyaState, Integer> existingStates;
+    private StateTable existingStates;
+    private int[][] path;
 
     private static int[][] rightDownExtents;
     private static int[][] leftDownExtents;
@@ -40,10 +44,15 @@ public class Anya extends PathFindingAlgorithm {
 
     @Override
     public void computePath() {
-        existingStates = new HashMap<>();
-        pq = new FastVariableSizeIndirectHeap();
-        states = new AnyaState[11];
+        StateStore store = threadStore.get();
+        existingStates = store.existingStates;
+        existingStates.clear();
+        pq = store.pq;
+        pq.clear();
+        states = store.states;
+        nStates = 0;
         goalState = null;
+        path = null;
         
         computeExtents();
         generateStartingStates();
@@ -56,13 +65,17 @@ public class Anya extends PathFindingAlgorithm {
             
             //System.out.println("Explore " + currState + " :: " + currState.fValue);
             // Check if goal state.
-            if (currState.y == ey && currState.xL.isLessThanOrEqual(ex) && !currState.xR.isLessThan(ex)) {
+            if (currState.y == ey && PackedFraction.isLessThanOrEqualInt(currState.xL, ex) && !PackedFraction.isLessThanInt(currState.xR, ex)) {
                 goalState = currState;
                 break;
             }
 
             generateSuccessors(currState);
         }
+        
+        // The states are reused by the next search on this thread, so the path is extracted now.
+        store.states = states;
+        if (goalState != null) path = extractPath();
     }
     
     private void generateStartingStates() {
@@ -75,20 +88,20 @@ public class Anya extends PathFindingAlgorithm {
         
         // Generate up
         if (!bottomLeftOfBlocked || !bottomRightOfBlocked) {
-            Fraction leftExtent, rightExtent;
+            long leftExtent, rightExtent;
             
             if (bottomLeftOfBlocked) {
                 // Explore up-left
-                leftExtent = new Fraction(leftUpExtent(sx, sy));
-                rightExtent = new Fraction(sx);
+                leftExtent = PackedFraction.of(leftUpExtent(sx, sy));
+                rightExtent = PackedFraction.of(sx);
             } else if (bottomRightOfBlocked) {
                 // Explore up-right
-                leftExtent = new Fraction(sx);
-                rightExtent = new Fraction(rightUpExtent(sx, sy));
+                leftExtent = PackedFraction.of(sx);
+                rightExtent = PackedFraction.of(rightUpExtent(sx, sy));
             } else {
                 // Explore up-left-right
-                leftExtent = new Fraction(leftUpExtent(sx, sy));
-                rightExtent = new Fraction(rightUpExtent(sx, sy));
+                leftExtent = PackedFraction.of(leftUpExtent(sx, sy));
+                rightExtent = PackedFraction.of(rightUpExtent(sx, sy));
             }
 
             this.generateUpwardsStart(leftExtent, rightExtent, start);
@@ -96,20 +109,20 @@ public class Anya extends PathFindingAlgorithm {
 
         // Generate down
         if (!topLeftOfBlocked || !topRightOfBlocked) {
-            Fraction leftExtent, rightExtent;
+            long leftExtent, rightExtent;
             
             if (topLeftOfBlocked) {
                 // Explore down-left
-                leftExtent = new Fraction(leftDownExtent(sx, sy));
-                rightExtent = new Fraction(sx);
+                leftExtent = PackedFraction.of(leftDownExtent(sx, sy));
+                rightExtent = PackedFraction.of(sx);
             } else if (topRightOfBlocked) {
                 // Explore down-right
-                leftExtent = new Fraction(sx);
-                rightExtent = new Fraction(rightDownExtent(sx, sy));
+                leftExtent = PackedFraction.of(sx);
+                rightExtent = PackedFraction.of(rightDownExtent(sx, sy));
             } else {
                 // Explore down-left-right
-                leftExtent = new Fraction(leftDownExtent(sx, sy));
-                rightExtent = new Fraction(rightDownExtent(sx, sy));
+                leftExtent = PackedFraction.of(leftDownExtent(sx, sy));
+                rightExtent = PackedFraction.of(rightDownExtent(sx, sy));
             }
 
             this.generateDownwardsStart(leftExtent, rightExtent, start);
@@ -126,32 +139,56 @@ public class Anya extends PathFindingAlgorithm {
         }
     }
 
-    private void addSuccessor(AnyaState source, AnyaState successor) {
-        Integer existingHandle = existingStates.get(successor);
-        if (existingHandle == null) {
-            addToOpen(successor);
+    private void addStartSuccessor(long xL, long xR, int y, Point start) {
+        addSuccessor(null, xL, xR, y, start, 0f, null);
+    }
+    
+    private void addObservableSuccessor(long xL, long xR, int y, AnyaState source) {
+        addSuccessor(source, xL, xR, y, source.basePoint, source.gValue, source.parent);
+    }
+    
+    private void addUnobservableSuccessor(long xL, long xR, int y, Point basePoint, AnyaState source) {
+        int dx = basePoint.x - source.basePoint.x;
+        int dy = basePoint.y - source.basePoint.y;
+        addSuccessor(source, xL, xR, y, basePoint, source.gValue + (float)Math.sqrt(dx*dx+dy*dy), source);
+    }
+
+    /**
+     * A state is only taken from the store if it is not already in existingStates.
+     */
+    private void addSuccessor(AnyaState source, long xL, long xR, int y, Point basePoint, float gValue, AnyaState parent) {
+        int existingHandle = existingStates.get(xL, xR, y, basePoint.x, basePoint.y);
+        if (existingHandle == -1) {
+            addToOpen(xL, xR, y, basePoint, gValue, parent);
         } else {
-            relaxExisting(source, successor, existingHandle);
+            relaxExisting(source, parent, existingHandle);
         }
         //maybeSaveSearchSnapshot();
     }
     
-    private void addToOpen(AnyaState successor) {
+    private void addToOpen(long xL, long xR, int y, Point basePoint, float gValue, AnyaState parent) {
+        if (nStates >= states.length) {
+            states = Arrays.copyOf(states, states.length*2);
+        }
+        AnyaState successor = states[nStates];
+        if (successor == null) {
+            successor = states[nStates] = new AnyaState();
+        }
+        successor.initialise(xL, xR, y, basePoint, gValue, parent);
+        
         // set heuristic and f-value
         successor.hValue = heuristic(successor);
         successor.fValue = successor.gValue + successor.hValue;
         
         int handle = pq.insert(successor.fValue);
-        if (handle >= states.length) {
-            states = Arrays.copyOf(states, states.length*2);
-        }
-        states[handle] = successor;
-        existingStates.put(successor, handle);
+        assert handle == nStates;
+        nStates++;
+        existingStates.put(xL, xR, y, basePoint.x, basePoint.y, handle);
 
         //System.out.println("Generate " + successor + " -> " + handle);
     }
     
-    private void relaxExisting(AnyaState source, AnyaState successorCopy, int existingHandle) {
+    private void relaxExisting(AnyaState source, AnyaState newParent, int existingHandle) {
         AnyaState successor = states[existingHandle];
         if (successor.visited) return;
         
@@ -162,7 +199,7 @@ public class Anya extends PathFindingAlgorithm {
         if (newgValue < successor.gValue) {
             successor.gValue = newgValue;
             successor.fValue = newgValue + successor.hValue;
-            successor.parent = successorCopy.parent;
+            successor.parent = newParent;
             pq.decreaseKey(existingHandle, successor.fValue);
             
             //System.out.println("Relax " + successor + " : " + successor.fValue);
@@ -220,20 +257,20 @@ public class Anya extends PathFindingAlgorithm {
         // Property 2: the endpoints of the interval are integers. 
 
         assert basePoint.y == currState.y;
-        assert currState.xL.isWholeNumber();
-        assert currState.xR.isWholeNumber();
+        assert PackedFraction.isWholeNumber(currState.xL);
+        assert PackedFraction.isWholeNumber(currState.xR);
         
         int y = basePoint.y;
         
-        if (currState.xR.n <= basePoint.x) { // currState.xR <= point.x  (explore left)
-            int xL = currState.xL.n;
+        if (PackedFraction.n(currState.xR) <= basePoint.x) { // currState.xR <= point.x  (explore left)
+            int xL = PackedFraction.n(currState.xL);
             if (graph.bottomLeftOfBlockedTile(xL, y)) {
                 if (!graph.bottomRightOfBlockedTile(xL, y)) {
                     /* ----- |XXXXXXXX|
                      *       |XXXXXXXX|
                      * ----- P========B
                      */
-                    Fraction leftBound = new Fraction(leftUpExtent(xL, y)); 
+                    long leftBound = PackedFraction.of(leftUpExtent(xL, y)); 
                     generateUpwardsUnobservable(new Point(xL,y), leftBound, currState.xL, currState);
                 }
             } else if (graph.topLeftOfBlockedTile(xL, y)) {
@@ -242,7 +279,7 @@ public class Anya extends PathFindingAlgorithm {
                      *       |XXXXXXXX|
                      * ----- |XXXXXXXX|
                      */
-                    Fraction leftBound = new Fraction(leftDownExtent(xL, y)); 
+                    long leftBound = PackedFraction.of(leftDownExtent(xL, y)); 
                     generateDownwardsUnobservable(new Point(xL,y), leftBound, currState.xL, currState);
                 }
             }
@@ -253,16 +290,16 @@ public class Anya extends PathFindingAlgorithm {
             }
             
         } else { // point.x <= currState.xL  (explore right)
-            assert basePoint.x <= currState.xL.n;
+            assert basePoint.x <= PackedFraction.n(currState.xL);
 
-            int xR = currState.xR.n;
+            int xR = PackedFraction.n(currState.xR);
             if (graph.bottomRightOfBlockedTile(xR, y)) {
                 if (!graph.bottomLeftOfBlockedTile(xR, y)) {
                     /*  |XXXXXXXX| -----
                      *  |XXXXXXXX|
                      *  B========P -----
                      */
-                    Fraction rightBound = new Fraction(rightUpExtent(xR, y)); 
+                    long rightBound = PackedFraction.of(rightUpExtent(xR, y)); 
                     generateUpwardsUnobservable(new Point(xR,y), currState.xR, rightBound, currState);
                 }
             } else if (graph.topRightOfBlockedTile(xR, y)) {
@@ -271,7 +308,7 @@ public class Anya extends PathFindingAlgorithm {
                      *  |XXXXXXXX|
                      *  |XXXXXXXX| -----
                      */
-                    Fraction rightBound = new Fraction(rightDownExtent(xR, y)); 
+                    long rightBound = PackedFraction.of(rightDownExtent(xR, y)); 
                     generateDownwardsUnobservable(new Point(xR,y), currState.xR, rightBound, currState);
                 }
             }
@@ -292,10 +329,10 @@ public class Anya extends PathFindingAlgorithm {
 
         assert basePoint.y < currState.y;
         
-        if (graph.bottomLeftOfBlockedTile(currState.xL.floor(), currState.y)) {
+        if (graph.bottomLeftOfBlockedTile(PackedFraction.floor(currState.xL), currState.y)) {
             // Is Blocked Above
-            if (currState.xL.isWholeNumber()) {
-                int xL = currState.xL.n;
+            if (PackedFraction.isWholeNumber(currState.xL)) {
+                int xL = PackedFraction.n(currState.xL);
                 if (xL < basePoint.x && !graph.bottomRightOfBlockedTile(xL, currState.y)) {
                     /* 
                      * .-----|XXXXXXX
@@ -309,19 +346,19 @@ public class Anya extends PathFindingAlgorithm {
                     
                     // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
                     int dy = currState.y - basePoint.y; 
-                    Fraction leftProjection = new Fraction((xL-basePoint.x)*(dy+1), dy).plus(basePoint.x);
+                    long leftProjection = PackedFraction.plusInt(PackedFraction.of((xL-basePoint.x)*(dy+1), dy), basePoint.x);
 
                     int leftBound = leftUpExtent(xL, currState.y);
-                    if (leftProjection.isLessThan(leftBound)) { // leftProjection < leftBound
-                        leftProjection = new Fraction(leftBound);
+                    if (PackedFraction.isLessThanInt(leftProjection, leftBound)) { // leftProjection < leftBound
+                        leftProjection = PackedFraction.of(leftBound);
                     }
                     
                     generateUpwardsUnobservable(new Point(xL,currState.y), leftProjection, currState.xL, currState);
                 }
             }
 
-            if (currState.xR.isWholeNumber()) {
-                int xR = currState.xR.n;
+            if (PackedFraction.isWholeNumber(currState.xR)) {
+                int xR = PackedFraction.n(currState.xR);
                 if (basePoint.x < xR && !graph.bottomLeftOfBlockedTile(xR, currState.y)) {
                     /* 
                      *  XXXXXXX|-----.
@@ -335,11 +372,11 @@ public class Anya extends PathFindingAlgorithm {
 
                     // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
                     int dy = currState.y - basePoint.y; 
-                    Fraction rightProjection = new Fraction((xR-basePoint.x)*(dy+1), dy).plus(basePoint.x);
+                    long rightProjection = PackedFraction.plusInt(PackedFraction.of((xR-basePoint.x)*(dy+1), dy), basePoint.x);
 
                     int rightBound = rightUpExtent(xR, currState.y);
-                    if (!rightProjection.isLessThanOrEqual(rightBound)) { // rightBound < rightProjection
-                        rightProjection = new Fraction(rightBound);
+                    if (!PackedFraction.isLessThanOrEqualInt(rightProjection, rightBound)) { // rightBound < rightProjection
+                        rightProjection = PackedFraction.of(rightBound);
                     }
                     
                     generateUpwardsUnobservable(new Point(xR,currState.y), currState.xR, rightProjection, currState);
@@ -358,29 +395,29 @@ public class Anya extends PathFindingAlgorithm {
 
             // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
             int dy = currState.y - basePoint.y; 
-            Fraction leftProjection = currState.xL.minus(basePoint.x).multiplyDivide(dy+1, dy).plus(basePoint.x);
+            long leftProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xL, basePoint.x), dy+1, dy), basePoint.x);
             
-            int leftBound = leftUpExtent(currState.xL.floor()+1, currState.y);
-            if (leftProjection.isLessThan(leftBound)) { // leftProjection < leftBound
-                leftProjection = new Fraction(leftBound);
+            int leftBound = leftUpExtent(PackedFraction.floor(currState.xL)+1, currState.y);
+            if (PackedFraction.isLessThanInt(leftProjection, leftBound)) { // leftProjection < leftBound
+                leftProjection = PackedFraction.of(leftBound);
             }
 
             // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
-            Fraction rightProjection = currState.xR.minus(basePoint.x).multiplyDivide(dy+1, dy).plus(basePoint.x);
+            long rightProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xR, basePoint.x), dy+1, dy), basePoint.x);
             
-            int rightBound = rightUpExtent(currState.xR.ceil()-1, currState.y);
-            if (!rightProjection.isLessThanOrEqual(rightBound)) { // rightBound < rightProjection
-                rightProjection = new Fraction(rightBound);
+            int rightBound = rightUpExtent(PackedFraction.ceil(currState.xR)-1, currState.y);
+            if (!PackedFraction.isLessThanOrEqualInt(rightProjection, rightBound)) { // rightBound < rightProjection
+                rightProjection = PackedFraction.of(rightBound);
             }
 
-            if (leftProjection.isLessThan(rightProjection)) {
+            if (PackedFraction.isLessThan(leftProjection, rightProjection)) {
                 generateUpwardsObservable(leftProjection, rightProjection, currState);
             }
         }
         
 
-        if (currState.xL.isWholeNumber()) {
-            int xL = currState.xL.n;
+        if (PackedFraction.isWholeNumber(currState.xL)) {
+            int xL = PackedFraction.n(currState.xL);
             if (graph.topRightOfBlockedTile(xL, currState.y) && !graph.bottomRightOfBlockedTile(xL, currState.y)) {
                 /*
                  * .------P======
@@ -397,18 +434,18 @@ public class Anya extends PathFindingAlgorithm {
 
                 {
                     int dy = currState.y - basePoint.y; 
-                    Fraction leftProjection = new Fraction((xL-basePoint.x)*(dy+1), dy).plus(basePoint.x);
+                    long leftProjection = PackedFraction.plusInt(PackedFraction.of((xL-basePoint.x)*(dy+1), dy), basePoint.x);
                     
                     int leftBound = leftUpExtent(xL, currState.y);
-                    if (!leftProjection.isLessThanOrEqual(leftBound)) { // leftBound < leftProjection
-                        this.generateUpwardsUnobservable(pivot, new Fraction(leftBound), leftProjection, currState);
+                    if (!PackedFraction.isLessThanOrEqualInt(leftProjection, leftBound)) { // leftBound < leftProjection
+                        this.generateUpwardsUnobservable(pivot, PackedFraction.of(leftBound), leftProjection, currState);
                     }
                 }
             }
         }
 
-        if (currState.xR.isWholeNumber()) {
-            int xR = currState.xR.n;
+        if (PackedFraction.isWholeNumber(currState.xR)) {
+            int xR = PackedFraction.n(currState.xR);
             if (graph.topLeftOfBlockedTile(xR, currState.y) && !graph.bottomLeftOfBlockedTile(xR, currState.y)) {
                 /*
                  * ======P------.
@@ -425,10 +462,10 @@ public class Anya extends PathFindingAlgorithm {
 
                 {
                     int dy = currState.y - basePoint.y; 
-                    Fraction rightProjection = new Fraction((xR-basePoint.x)*(dy+1), dy).plus(basePoint.x);
+                    long rightProjection = PackedFraction.plusInt(PackedFraction.of((xR-basePoint.x)*(dy+1), dy), basePoint.x);
                     int rightBound = rightUpExtent(xR, currState.y);
-                    if (rightProjection.isLessThan(rightBound)) { // rightProjection < rightBound
-                        this.generateUpwardsUnobservable(pivot, rightProjection, new Fraction(rightBound), currState);
+                    if (PackedFraction.isLessThanInt(rightProjection, rightBound)) { // rightProjection < rightBound
+                        this.generateUpwardsUnobservable(pivot, rightProjection, PackedFraction.of(rightBound), currState);
                     }
                 }
             }
@@ -441,10 +478,10 @@ public class Anya extends PathFindingAlgorithm {
 
         assert basePoint.y > currState.y;
 
-        if (graph.topLeftOfBlockedTile(currState.xL.floor(), currState.y)) {
+        if (graph.topLeftOfBlockedTile(PackedFraction.floor(currState.xL), currState.y)) {
             // Is Blocked Below
-            if (currState.xL.isWholeNumber()) {
-                int xL = currState.xL.n;
+            if (PackedFraction.isWholeNumber(currState.xL)) {
+                int xL = PackedFraction.n(currState.xL);
                 if (xL < basePoint.x && !graph.topRightOfBlockedTile(xL, currState.y)) {
                     /* 
                      *            B  
@@ -458,19 +495,19 @@ public class Anya extends PathFindingAlgorithm {
                     
                     // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
                     int dy = basePoint.y - currState.y; 
-                    Fraction leftProjection = new Fraction((xL-basePoint.x)*(dy+1), dy).plus(basePoint.x);
+                    long leftProjection = PackedFraction.plusInt(PackedFraction.of((xL-basePoint.x)*(dy+1), dy), basePoint.x);
 
                     int leftBound = leftDownExtent(xL, currState.y);
-                    if (leftProjection.isLessThan(leftBound)) { // leftProjection < leftBound
-                        leftProjection = new Fraction(leftBound);
+                    if (PackedFraction.isLessThanInt(leftProjection, leftBound)) { // leftProjection < leftBound
+                        leftProjection = PackedFraction.of(leftBound);
                     }
 
                     generateDownwardsUnobservable(new Point(xL,currState.y), leftProjection, currState.xL, currState);
                 }
             }
 
-            if (currState.xR.isWholeNumber()) {
-                int xR = currState.xR.n;
+            if (PackedFraction.isWholeNumber(currState.xR)) {
+                int xR = PackedFraction.n(currState.xR);
                 if (basePoint.x < xR && !graph.topLeftOfBlockedTile(xR, currState.y)) {
                     /* 
                      *    B
@@ -484,11 +521,11 @@ public class Anya extends PathFindingAlgorithm {
 
                     // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
                     int dy = basePoint.y - currState.y; 
-                    Fraction rightProjection = new Fraction((xR-basePoint.x)*(dy+1), dy).plus(basePoint.x);
+                    long rightProjection = PackedFraction.plusInt(PackedFraction.of((xR-basePoint.x)*(dy+1), dy), basePoint.x);
 
                     int rightBound = rightDownExtent(xR, currState.y);
-                    if (!rightProjection.isLessThanOrEqual(rightBound)) { // rightBound < rightProjection
-                        rightProjection = new Fraction(rightBound);
+                    if (!PackedFraction.isLessThanOrEqualInt(rightProjection, rightBound)) { // rightBound < rightProjection
+                        rightProjection = PackedFraction.of(rightBound);
                     }
                     
                     generateDownwardsUnobservable(new Point(xR,currState.y), currState.xR, rightProjection, currState);
@@ -506,29 +543,29 @@ public class Anya extends PathFindingAlgorithm {
 
             // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
             int dy = basePoint.y - currState.y; 
-            Fraction leftProjection = currState.xL.minus(basePoint.x).multiplyDivide(dy+1, dy).plus(basePoint.x);
+            long leftProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xL, basePoint.x), dy+1, dy), basePoint.x);
             
-            int leftBound = leftDownExtent(currState.xL.floor()+1, currState.y);
-            if (leftProjection.isLessThan(leftBound)) { // leftProjection < leftBound
-                leftProjection = new Fraction(leftBound);
+            int leftBound = leftDownExtent(PackedFraction.floor(currState.xL)+1, currState.y);
+            if (PackedFraction.isLessThanInt(leftProjection, leftBound)) { // leftProjection < leftBound
+                leftProjection = PackedFraction.of(leftBound);
             }
 
             // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
-            Fraction rightProjection = currState.xR.minus(basePoint.x).multiplyDivide(dy+1, dy).plus(basePoint.x);
+            long rightProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xR, basePoint.x), dy+1, dy), basePoint.x);
             
-            int rightBound = rightDownExtent(currState.xR.ceil()-1, currState.y);
-            if (!rightProjection.isLessThanOrEqual(rightBound)) { // rightBound < rightProjection
-                rightProjection = new Fraction(rightBound);
+            int rightBound = rightDownExtent(PackedFraction.ceil(currState.xR)-1, currState.y);
+            if (!PackedFraction.isLessThanOrEqualInt(rightProjection, rightBound)) { // rightBound < rightProjection
+                rightProjection = PackedFraction.of(rightBound);
             }
             
-            if (leftProjection.isLessThan(rightProjection)) {
+            if (PackedFraction.isLessThan(leftProjection, rightProjection)) {
                 generateDownwardsObservable(leftProjection, rightProjection, currState);
             }
         }
         
 
-        if (currState.xL.isWholeNumber()) {
-            int xL = currState.xL.n;
+        if (PackedFraction.isWholeNumber(currState.xL)) {
+            int xL = PackedFraction.n(currState.xL);
             if (graph.bottomRightOfBlockedTile(xL, currState.y) && !graph.topRightOfBlockedTile(xL, currState.y)) {
                 /*
                  *           B
@@ -545,18 +582,18 @@ public class Anya extends PathFindingAlgorithm {
 
                 {
                     int dy = basePoint.y - currState.y; 
-                    Fraction leftProjection = new Fraction((xL-basePoint.x)*(dy+1), dy).plus(basePoint.x);
+                    long leftProjection = PackedFraction.plusInt(PackedFraction.of((xL-basePoint.x)*(dy+1), dy), basePoint.x);
                     
                     int leftBound = leftDownExtent(xL, currState.y);
-                    if (!leftProjection.isLessThanOrEqual(leftBound)) { // leftBound < leftProjection
-                        this.generateDownwardsUnobservable(pivot, new Fraction(leftBound), leftProjection, currState);
+                    if (!PackedFraction.isLessThanOrEqualInt(leftProjection, leftBound)) { // leftBound < leftProjection
+                        this.generateDownwardsUnobservable(pivot, PackedFraction.of(leftBound), leftProjection, currState);
                     }
                 }
             }
         }
 
-        if (currState.xR.isWholeNumber()) {
-            int xR = currState.xR.n;
+        if (PackedFraction.isWholeNumber(currState.xR)) {
+            int xR = PackedFraction.n(currState.xR);
             if (graph.bottomLeftOfBlockedTile(xR, currState.y) && !graph.topLeftOfBlockedTile(xR, currState.y)) {
                 /*
                  *    B
@@ -573,10 +610,10 @@ public class Anya extends PathFindingAlgorithm {
 
                 {
                     int dy = basePoint.y - currState.y; 
-                    Fraction rightProjection = new Fraction((xR-basePoint.x)*(dy+1), dy).plus(basePoint.x);
+                    long rightProjection = PackedFraction.plusInt(PackedFraction.of((xR-basePoint.x)*(dy+1), dy), basePoint.x);
                     int rightBound = rightDownExtent(xR, currState.y);
-                    if (rightProjection.isLessThan(rightBound)) { // rightProjection < rightBound
-                        this.generateDownwardsUnobservable(pivot, rightProjection, new Fraction(rightBound), currState);
+                    if (PackedFraction.isLessThanInt(rightProjection, rightBound)) { // rightProjection < rightBound
+                        this.generateDownwardsUnobservable(pivot, rightProjection, PackedFraction.of(rightBound), currState);
                     }
                 }
             }
@@ -616,8 +653,7 @@ public class Anya extends PathFindingAlgorithm {
      * This function will not split intervals.
      */
     private void generateSameLevelObservable(int leftBound, int rightBound, AnyaState source) {
-        addSuccessor(source,
-                AnyaState.createObservableSuccessor(new Fraction(leftBound), new Fraction(rightBound), source.y, source));
+        addObservableSuccessor(PackedFraction.of(leftBound), PackedFraction.of(rightBound), source.y, source);
     }
 
     /**
@@ -625,8 +661,7 @@ public class Anya extends PathFindingAlgorithm {
      * This function will not split intervals.
      */
     private void generateSameLevelUnobservable(Point basePoint, int leftBound, int rightBound, AnyaState source) {
-        addSuccessor(source,
-                AnyaState.createUnobservableSuccessor(new Fraction(leftBound), new Fraction(rightBound), source.y, basePoint, source));
+        addUnobservableSuccessor(PackedFraction.of(leftBound), PackedFraction.of(rightBound), source.y, basePoint, source);
     }
 
     /**
@@ -634,11 +669,10 @@ public class Anya extends PathFindingAlgorithm {
      * This function will not split intervals.
      */
     private void generateSameLevelStart(Point start, int leftBound, int rightBound) {
-        addSuccessor(null,
-                AnyaState.createStartState(new Fraction(leftBound), new Fraction(rightBound), start.y, start));
+        addStartSuccessor(PackedFraction.of(leftBound), PackedFraction.of(rightBound), start.y, start);
     }
 
-    private void generateUpwardsUnobservable(Point basePoint, Fraction leftBound, Fraction rightBound, AnyaState source) {
+    private void generateUpwardsUnobservable(Point basePoint, long leftBound, long rightBound, AnyaState source) {
         generateAndSplitIntervals(
                 source.y + 2, source.y + 1,
                 basePoint,
@@ -646,7 +680,7 @@ public class Anya extends PathFindingAlgorithm {
                 source);
     }
     
-    private void generateUpwardsObservable(Fraction leftBound, Fraction rightBound, AnyaState source) {
+    private void generateUpwardsObservable(long leftBound, long rightBound, AnyaState source) {
         generateAndSplitIntervals(
                 source.y + 2, source.y + 1,
                 null,
@@ -654,7 +688,7 @@ public class Anya extends PathFindingAlgorithm {
                 source);
     }
     
-    private void generateUpwardsStart(Fraction leftBound, Fraction rightBound, Point start) {
+    private void generateUpwardsStart(long leftBound, long rightBound, Point start) {
         generateAndSplitIntervals(
                 start.y + 2, start.y + 1,
                 start,
@@ -662,7 +696,7 @@ public class Anya extends PathFindingAlgorithm {
                 null);
     }
 
-    private void generateDownwardsUnobservable(Point basePoint, Fraction leftBound, Fraction rightBound, AnyaState source) {
+    private void generateDownwardsUnobservable(Point basePoint, long leftBound, long rightBound, AnyaState source) {
         generateAndSplitIntervals(
                 source.y - 1, source.y - 1,
                 basePoint,
@@ -670,7 +704,7 @@ public class Anya extends PathFindingAlgorithm {
                 source);
     }
     
-    private void generateDownwardsObservable(Fraction leftBound, Fraction rightBound, AnyaState source) {
+    private void generateDownwardsObservable(long leftBound, long rightBound, AnyaState source) {
         generateAndSplitIntervals(
                 source.y - 1, source.y - 1,
                 null,
@@ -678,7 +712,7 @@ public class Anya extends PathFindingAlgorithm {
                 source);
     }
     
-    private void generateDownwardsStart(Fraction leftBound, Fraction rightBound, Point start) {
+    private void generateDownwardsStart(long leftBound, long rightBound, Point start) {
         generateAndSplitIntervals(
                 start.y - 1, start.y - 1,
                 start,
@@ -694,36 +728,36 @@ public class Anya extends PathFindingAlgorithm {
      * This is used to avoid repeated code in generateUpwardsUnobservable, generateUpwardsObservable,
      * // generateDownwardsUnobservable, generateDownwardsObservable, generateDownwardsStart, generateDownwardsStart.
      */
-    private void generateAndSplitIntervals(int checkY, int newY, Point basePoint, Fraction leftBound, Fraction rightBound, AnyaState source) {
-        Fraction left = leftBound;
-        int leftFloor = left.floor();
+    private void generateAndSplitIntervals(int checkY, int newY, Point basePoint, long leftBound, long rightBound, AnyaState source) {
+        long left = leftBound;
+        int leftFloor = PackedFraction.floor(left);
 
         // Divide up the intervals.
         while(true) {
             int right = rightDownExtents[checkY][leftFloor]; // it's actually rightDownExtents for exploreDownwards. (thus we use checkY = currY - 2)
-            if (rightBound.isLessThanOrEqual(right)) break; // right < rightBound            
+            if (PackedFraction.isLessThanOrEqualInt(rightBound, right)) break; // right < rightBound            
             
             if (basePoint == null) {
-                addSuccessor(source, AnyaState.createObservableSuccessor(left, new Fraction(right), newY, source));
+                addObservableSuccessor(left, PackedFraction.of(right), newY, source);
             } else {
                 if (source == null) {
-                    addSuccessor(null, AnyaState.createStartState(left, new Fraction(right), newY, basePoint));
+                    addStartSuccessor(left, PackedFraction.of(right), newY, basePoint);
                 } else {
-                    addSuccessor(source, AnyaState.createUnobservableSuccessor(left, new Fraction(right), newY, basePoint, source));
+                    addUnobservableSuccessor(left, PackedFraction.of(right), newY, basePoint, source);
                 }
             }
             
             leftFloor = right;
-            left = new Fraction(leftFloor);
+            left = PackedFraction.of(leftFloor);
         }
         
         if (basePoint == null) {
-            addSuccessor(source, AnyaState.createObservableSuccessor(left, rightBound, newY, source));
+            addObservableSuccessor(left, rightBound, newY, source);
         } else {
             if (source == null) {
-                addSuccessor(null, AnyaState.createStartState(left, rightBound, newY, basePoint));
+                addStartSuccessor(left, rightBound, newY, basePoint);
             } else {
-                addSuccessor(source, AnyaState.createUnobservableSuccessor(left, rightBound, newY, basePoint, source));
+                addUnobservableSuccessor(left, rightBound, newY, basePoint, source);
             }
         }
     }
@@ -735,22 +769,22 @@ public class Anya extends PathFindingAlgorithm {
     private float heuristic(AnyaState currState) {
         int baseX = currState.basePoint.x;
         int baseY = currState.basePoint.y;
-        Fraction xL = currState.xL;
-        Fraction xR = currState.xR;
+        long xL = currState.xL;
+        long xR = currState.xR;
 
         // Special case: base, goal, interval all on same row.
         if (currState.y == baseY && currState.y == ey) {
 
             // Case 1: base and goal on left of interval.
             // baseX < xL && ex < xL
-            if (!xL.isLessThanOrEqual(baseX) && !xL.isLessThanOrEqual(ex)) {
-                return 2*xL.toFloat() - baseX - ex; // (xL-baseX) + (xL-ex);
+            if (!PackedFraction.isLessThanOrEqualInt(xL, baseX) && !PackedFraction.isLessThanOrEqualInt(xL, ex)) {
+                return 2*PackedFraction.toFloat(xL) - baseX - ex; // (xL-baseX) + (xL-ex);
             }
             
             // Case 2: base and goal on right of interval.
             // xR < baseX && xR < ex
-            else if (xR.isLessThan(baseX) && xR.isLessThan(ex)) {
-                return baseX + ex - 2*xL.toFloat(); // (baseX-xL) + (ex-xL)
+            else if (PackedFraction.isLessThanInt(xR, baseX) && PackedFraction.isLessThanInt(xR, ex)) {
+                return baseX + ex - 2*PackedFraction.toFloat(xL); // (baseX-xL) + (ex-xL)
             }
             
             // Case 3: Otherwise, the direct path from base to goal will pass through the interval.
@@ -778,8 +812,8 @@ public class Anya extends PathFindingAlgorithm {
         
         // Find the pivot point on the interval for shortest path from base to goal.
         float intersectX = baseX + (float)(currState.y - baseY)*(ex - baseX)/(ey2-baseY);
-        float xlf = xL.toFloat();
-        float xrf = xR.toFloat();
+        float xlf = PackedFraction.toFloat(xL);
+        float xrf = PackedFraction.toFloat(xR);
         
         // Snap to endpoints of interval if intersectX it lies outside interval.
         if (intersectX < xlf) intersectX = xlf;
@@ -807,8 +841,11 @@ public class Anya extends PathFindingAlgorithm {
     
     @Override
     public int[][] getPath() {
-        if (goalState == null) return new int[0][]; // Fail
+        if (path == null) return new int[0][]; // Fail
+        return path;
+    }
 
+    private int[][] extractPath() {
         // Start from goalState and traverse backwards.
         int length = pathLength();
         int[][] path = new int[length][];
@@ -833,20 +870,18 @@ public class Anya extends PathFindingAlgorithm {
 
     @Override
     public float getPathLength() {
-        if (goalState == null) return -1; // Fail
+        if (path == null) return -1; // Fail
 
-        // Start from goalState and traverse backwards.
+        // Start from the goal and traverse backwards.
         double pathLength = 0;
         int currX = ex;
         int currY = ey;
-        AnyaState current = goalState;
 
-        while (current != null) {
-            int nextX = current.basePoint.x;
-            int nextY = current.basePoint.y;
+        for (int i=path.length-2; i>=0; --i) {
+            int nextX = path[i][0];
+            int nextY = path[i][1];
             
             pathLength += graph.distance_double(currX,currY,nextX,nextY);
-            current = current.parent;
             currX = nextX;
             currY = nextY;
         }
@@ -857,21 +892,21 @@ public class Anya extends PathFindingAlgorithm {
 
     @Override
     protected List<SnapshotItem> computeSearchSnapshot() {
-        ArrayList<SnapshotItem> list = new ArrayList<>(states.length);
+        ArrayList<SnapshotItem> list = new ArrayList<>(nStates);
 
-        for (AnyaState in : states) {
+        for (int i=0; i<nStates; ++i) {
             // y, xLn, xLd, xRn, xRd, px, py
-            if (in == null) continue;
+            AnyaState in = states[i];
             
             Integer[] line = new Integer[7];
             line[0] = in.y;
-            line[1] = in.xL.n;
-            line[2] = in.xL.d;
-            line[3] = in.xR.n;
-            line[4] = in.xR.d;
+            line[1] = PackedFraction.n(in.xL);
+            line[2] = PackedFraction.d(in.xL);
+            line[3] = PackedFraction.n(in.xR);
+            line[4] = PackedFraction.d(in.xR);
             line[5] = in.basePoint.x;
             line[6] = in.basePoint.y;
-            list.add(SnapshotItem.generate(line));
+            list.add(snapshotItem(line, null));
         }
         
         if (!pq.isEmpty()) {
@@ -880,19 +915,29 @@ public class Anya extends PathFindingAlgorithm {
 
             Integer[] line = new Integer[5];
             line[0] = in.y;
-            line[1] = in.xL.n;
-            line[2] = in.xL.d;
-            line[3] = in.xR.n;
-            line[4] = in.xR.d;
-            list.add(SnapshotItem.generate(line));
+            line[1] = PackedFraction.n(in.xL);
+            line[2] = PackedFraction.d(in.xL);
+            line[3] = PackedFraction.n(in.xR);
+            line[4] = PackedFraction.d(in.xR);
+            list.add(snapshotItem(line, null));
         }
         
         return list;
     }
 
+    /**
+     * The state objects, dedup table and open list of one thread, kept between searches.
+     */
+    private static final class StateStore {
+        AnyaState[] states = new AnyaState[11];
+        final FastVariableSizeIndirectHeap pq = new FastVariableSizeIndirectHeap();
+        final StateTable existingStates = new StateTable();
+    }
+
     public static void clearMemory() {
         leftDownExtents = null;
         rightDownExtents = null;
+        threadStore.remove();
         System.gc();
     }
 
@@ -900,10 +945,10 @@ public class Anya extends PathFindingAlgorithm {
 
 
 class AnyaState {
-    public final Fraction xL;
-    public final Fraction xR;
-    public final int y;
-    public final Point basePoint;
+    public long xL;
+    public long xR;
+    public int y;
+    public Point basePoint;
     
     public float hValue;
     public float fValue;
@@ -911,7 +956,10 @@ class AnyaState {
     public AnyaState parent;
     public boolean visited;
 
-    private AnyaState(Fraction xL, Fraction xR, int y, Point basePoint, float gValue, AnyaState parent) {
+    /**
+     * States are kept by the StateStore of a thread and reinitialised for each search.
+     */
+    public void initialise(long xL, long xR, int y, Point basePoint, float gValue, AnyaState parent) {
         this.xL = xL;
         this.xR = xR;
         this.y = y;
@@ -921,55 +969,9 @@ class AnyaState {
         this.parent = parent;
         this.visited = false;
     }
-
-    public static AnyaState createStartState(Fraction xL, Fraction xR, int y, Point start) {
-        return new AnyaState(xL,xR,y,
-                start,
-                0f,
-                null);
-    }
-    
-    public static AnyaState createObservableSuccessor(Fraction xL, Fraction xR, int y, AnyaState sourceInterval) {
-        return new AnyaState(xL,xR,y,
-                sourceInterval.basePoint,
-                sourceInterval.gValue,
-                sourceInterval.parent);
-    }
-
-    public static AnyaState createUnobservableSuccessor(Fraction xL, Fraction xR, int y, Point basePoint, AnyaState sourceInterval) {
-        int dx = basePoint.x - sourceInterval.basePoint.x;
-        int dy = basePoint.y - sourceInterval.basePoint.y;
-        return new AnyaState(xL,xR,y,
-                basePoint,
-                sourceInterval.gValue + (float)Math.sqrt(dx*dx+dy*dy),
-                sourceInterval);
-    }
-
-    @Override
-    public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        // Removed null checks.
-        result = prime * result + basePoint.hashCode();
-        result = prime * result + xL.hashCode();
-        result = prime * result + xR.hashCode();
-        result = prime * result + y;
-        return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-        // Removed type checks. Removed null checks.
-        AnyaState other = (AnyaState) obj;
-        if (!xL.equals(other.xL)) return false;
-        if (!xR.equals(other.xR)) return false;
-        if (y != other.y) return false;
-        if (!basePoint.equals(other.basePoint)) return false;
-        return true;
-    }
     
     @Override
     public String toString() {
-        return "(" + xL + " " + xR + ") - " + y;   
+        return "(" + PackedFraction.toString(xL) + " " + PackedFraction.toString(xR) + ") - " + y;   
     }
 }
\ No newline at end of file
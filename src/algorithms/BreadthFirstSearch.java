@@ -2,12 +2,16 @@ package algorithms;
 
 import grid.GridGraph;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.Arrays;
+
+import algorithms.datatypes.SearchBuffers;
 
 public class BreadthFirstSearch extends AStar {
 
-    private Queue<Integer> queue;
+    // Every node is enqueued at most once, so a plain array of size totalSize is enough.
+    private int[] queue;
+    private int queueHead;
+    private int queueTail;
     
     public BreadthFirstSearch(GridGraph graph, int sx, int sy, int ex, int ey) {
         super(graph, sx, sy, ex, ey);
@@ -27,18 +31,20 @@ public class BreadthFirstSearch extends AStar {
         int start = toOneDimIndex(sx, sy);
         finish = toOneDimIndex(ex, ey);
 
-        visited = new boolean[totalSize];
-        parent = new int[totalSize];
-        for (int i=0; i<parent.length; i++) {
-            parent[i] = -1;
-        }
+        SearchBuffers buffers = SearchBuffers.forCurrentThread();
+        visited = buffers.visited(totalSize);
+        parent = buffers.parent(totalSize);
+        Arrays.fill(visited, false);
+        Arrays.fill(parent, -1);
 
-        queue = new LinkedList<>();
-        queue.offer(start);
+        queue = buffers.indexList(totalSize);
+        queueHead = 0;
+        queueTail = 0;
+        queue[queueTail++] = start;
         visited[start] = true;
         
-        while (!queue.isEmpty()) {
-            int current = queue.poll();
+        while (queueHead < queueTail) {
+            int current = queue[queueHead++];
             int currX = toTwoDimX(current);
             int currY = toTwoDimY(current);
             
@@ -82,7 +88,7 @@ public class BreadthFirstSearch extends AStar {
      */
     private boolean addToQueue(int current, int index) {
         parent[index] = current;
-        queue.offer(index);
+        queue[queueTail++] = index;
         visited[index] = true;
         if (index == finish) {
             return true;
@@ -0,0 +1,278 @@
+package algorithms;
+
+import grid.GridGraph;
+
+import algorithms.datatypes.PreprocessedGraphRegistry;
+
+/**
+ * Precomputed jump distances for JumpPointSearchPlus.<br>
+ * For every grid point and each of the 8 directions, the table holds the jump made by JumpPointSearch.jump from that
+ * point when the goal is not on the way:<br>
+ * distance > 0: the next jump point is distance steps away.<br>
+ * distance <= 0: there is no jump point. The walk is blocked after -distance steps.<br>
+ * <br>
+ * The distances are stored as shorts, 16 bytes per grid point. A distance longer than MAX_STORED_DISTANCE is stored
+ * as OVERFLOW, and is read by continuing from the point MAX_STORED_DISTANCE steps further on.<br>
+ * <br>
+ * The table is built in one sweep of the grid per direction, as the jump from a point follows from the jump from
+ * the next point in the same direction. The straight directions are built first, as a diagonal jump stops where a
+ * straight jump finds a jump point.<br>
+ * A changed tile changes the horizontal jumps of the two rows of points around it, and the vertical jumps of the
+ * two columns of points around it. The diagonal jumps change along the diagonals leading into those points.
+ * See updateTiles.
+ */
+public final class JumpDistanceTable {
+    private static final String REGISTRY_KIND = "JumpDistanceTable";
+    private static final int MAX_STORED_DISTANCE = Short.MAX_VALUE;
+    private static final short OVERFLOW = Short.MIN_VALUE;
+
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
+    private static final int DOWN = 2;
+    private static final int UP = 3;
+    private static final int DOWN_LEFT = 4; // DOWN_LEFT + 1 is DOWN_RIGHT, DOWN_LEFT + 2 is UP_LEFT.
+    private static final int UP_RIGHT = 7;
+
+    private final GridGraph graph;
+    private final int sizeXPlusOne;
+    private final short[] distances; // Flattened. The 8 directions of point (x, y) start at 8*(y*sizeXPlusOne + x).
+
+    JumpDistanceTable(GridGraph graph) {
+        this.graph = graph;
+        this.sizeXPlusOne = graph.sizeX+1;
+        this.distances = new short[8*sizeXPlusOne*(graph.sizeY+1)];
+
+        for (int y=0;y<=graph.sizeY;++y) {
+            computeRow(y);
+        }
+        for (int x=0;x<=graph.sizeX;++x) {
+            computeColumn(x);
+        }
+        computeDiagonalDistances(-1, -1);
+        computeDiagonalDistances(1, -1);
+        computeDiagonalDistances(-1, 1);
+        computeDiagonalDistances(1, 1);
+    }
+
+    /**
+     * @return the table for the graph from the PreprocessedGraphRegistry, building it if needed.
+     */
+    public static final JumpDistanceTable initialiseNew(GridGraph graph) {
+        return PreprocessedGraphRegistry.get(REGISTRY_KIND, graph, JumpDistanceTable::build,
+                JumpDistanceTable::estimatedFootprintBytes);
+    }
+
+    private static final JumpDistanceTable build(GridGraph graph) {
+        long _st = System.nanoTime();
+        JumpDistanceTable table = new JumpDistanceTable(graph);
+        long _ed = System.nanoTime();
+        System.out.println("Construction Time: " + (_ed-_st)/1000000.);
+        return table;
+    }
+
+    /**
+     * Call this after setting tiles of the graph blocked or unblocked, instead of rebuilding the table.
+     * If the registry has the table from before the change, only the jumps that can depend on the changed tiles are
+     * recomputed, else the table is built when next needed. Queries must not run on the table during the update.<br>
+     * Other preprocessed structures of the graph are removed from the registry.
+     * @param changedX, changedY the tiles that have changed since the table was built.
+     */
+    public static final void updateTiles(GridGraph graph, int[] changedX, int[] changedY) {
+        PreprocessedGraphRegistry.update(REGISTRY_KIND, 0, graph,
+                (JumpDistanceTable table) -> table.update(changedX, changedY), JumpDistanceTable::estimatedFootprintBytes);
+    }
+
+    /**
+     * Recomputes the jumps that can depend on the given tiles.
+     * @param changedX, changedY the tiles that have changed since this table was built or last updated.
+     */
+    public final void update(int[] changedX, int[] changedY) {
+        boolean[] rowDone = new boolean[graph.sizeY+1];
+        boolean[] columnDone = new boolean[sizeXPlusOne];
+        int[] rows = new int[2*changedX.length];
+        int[] columns = new int[2*changedX.length];
+        int nRows = 0;
+        int nColumns = 0;
+        for (int i=0;i<changedX.length;++i) {
+            int x = changedX[i];
+            int y = changedY[i];
+            // Tile (x, y) is between the points (x, y) and (x+1, y+1).
+            for (int py=y;py<=y+1;++py) {
+                if (!rowDone[py]) {
+                    rowDone[py] = true;
+                    rows[nRows++] = py;
+                    computeRow(py);
+                }
+            }
+            for (int px=x;px<=x+1;++px) {
+                if (!columnDone[px]) {
+                    columnDone[px] = true;
+                    columns[nColumns++] = px;
+                    computeColumn(px);
+                }
+            }
+        }
+
+        // A diagonal jump from a point depends on the tile crossed by its first move, and on the straight jumps and
+        // the diagonal jump from the next point. The tiles crossed are between the points of the recomputed rows,
+        // so the diagonal jumps are recomputed back along each diagonal from every point of those rows and columns.
+        for (int direction=DOWN_LEFT;direction<=UP_RIGHT;++direction) {
+            int dx = (direction-DOWN_LEFT)%2 == 0 ? -1 : 1;
+            int dy = direction < DOWN_LEFT+2 ? -1 : 1;
+            for (int i=0;i<nRows;++i) {
+                for (int px=0;px<=graph.sizeX;++px) {
+                    updateDiagonalBefore(px, rows[i], dx, dy);
+                }
+            }
+            for (int i=0;i<nColumns;++i) {
+                for (int py=0;py<=graph.sizeY;++py) {
+                    updateDiagonalBefore(columns[i], py, dx, dy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the diagonal jumps in direction (dx, dy) of the points before (x, y) on its diagonal, nearest first.
+     * A point further back only depends on the points after it through the jump of the point after it, so this stops
+     * at the first unchanged jump. A point further back whose crossed tile or next point has changed is reached
+     * again from that next point, which is in a recomputed row or column.
+     */
+    private final void updateDiagonalBefore(int x, int y, int dx, int dy) {
+        int direction = direction(dx, dy);
+        while (true) {
+            x -= dx;
+            y -= dy;
+            if (x < 0 || x > graph.sizeX || y < 0 || y > graph.sizeY) return;
+            short distance = diagonalDistance(x, y, dx, dy, direction);
+            int index = 8*(y*sizeXPlusOne + x) + direction;
+            if (distances[index] == distance) return;
+            distances[index] = distance;
+        }
+    }
+
+    /**
+     * @return the jump distance from (x, y) in direction (dx, dy). See the class description.
+     */
+    public final int distance(int x, int y, int dx, int dy) {
+        int direction = direction(dx, dy);
+        int skipped = 0;
+        int distance;
+        while ((distance = distances[8*(y*sizeXPlusOne + x) + direction]) == OVERFLOW) {
+            x += dx*MAX_STORED_DISTANCE;
+            y += dy*MAX_STORED_DISTANCE;
+            skipped += MAX_STORED_DISTANCE;
+        }
+        return distance > 0 ? distance+skipped : distance-skipped;
+    }
+
+    private static final int direction(int dx, int dy) {
+        if (dy == 0) return dx < 0 ? LEFT : RIGHT;
+        if (dx == 0) return dy < 0 ? DOWN : UP;
+        return DOWN_LEFT + (dy < 0 ? 0 : 2) + (dx < 0 ? 0 : 1);
+    }
+
+    private final void computeRow(int y) {
+        computeStraightDistances(y, -1, 0);
+        computeStraightDistances(y, 1, 0);
+    }
+
+    private final void computeColumn(int x) {
+        computeStraightDistances(x, 0, -1);
+        computeStraightDistances(x, 0, 1);
+    }
+
+    /**
+     * Computes the jumps in direction (dx, dy) of the points on one line: row line if dx != 0, column line if dy != 0.
+     * Points are visited so that the next point (x+dx, y+dy) is done before (x, y).
+     * Blocked moves include moves off the grid, as tiles outside the grid are blocked.
+     */
+    private final void computeStraightDistances(int line, int dx, int dy) {
+        int direction = direction(dx, dy);
+        int length = dx != 0 ? graph.sizeX : graph.sizeY;
+        for (int i=0;i<=length;++i) {
+            int x, y;
+            if (dx != 0) {
+                x = dx > 0 ? length-i : i;
+                y = line;
+            } else {
+                x = line;
+                y = dy > 0 ? length-i : i;
+            }
+            int nx = x+dx;
+            int ny = y+dy;
+
+            // The conditions of JumpPointSearch.jumpL, jumpR, jumpD and jumpU at the next point.
+            boolean canMove, isJumpPoint;
+            if (dx != 0) {
+                int side = dx < 0 ? nx : nx-1;
+                int ahead = dx < 0 ? nx-1 : nx;
+                boolean blockedAbove = graph.isBlocked(side, ny);
+                boolean blockedBelow = graph.isBlocked(side, ny-1);
+                canMove = !(blockedAbove && blockedBelow);
+                isJumpPoint = (blockedAbove && !graph.isBlocked(ahead, ny)) ||
+                              (blockedBelow && !graph.isBlocked(ahead, ny-1));
+            } else {
+                int side = dy < 0 ? ny : ny-1;
+                int ahead = dy < 0 ? ny-1 : ny;
+                boolean blockedRight = graph.isBlocked(nx, side);
+                boolean blockedLeft = graph.isBlocked(nx-1, side);
+                canMove = !(blockedRight && blockedLeft);
+                isJumpPoint = (blockedRight && !graph.isBlocked(nx, ahead)) ||
+                              (blockedLeft && !graph.isBlocked(nx-1, ahead));
+            }
+
+            distances[8*(y*sizeXPlusOne + x) + direction] = nextDistance(canMove, isJumpPoint, nx, ny, direction);
+        }
+    }
+
+    /**
+     * Points are visited so that the next point (x+dx, y+dy) is done before (x, y).
+     */
+    private final void computeDiagonalDistances(int dx, int dy) {
+        int direction = direction(dx, dy);
+        int sizeX = graph.sizeX;
+        int sizeY = graph.sizeY;
+        for (int i=0;i<=sizeY;++i) {
+            int y = dy > 0 ? sizeY-i : i;
+            for (int j=0;j<=sizeX;++j) {
+                int x = dx > 0 ? sizeX-j : j;
+                distances[8*(y*sizeXPlusOne + x) + direction] = diagonalDistance(x, y, dx, dy, direction);
+            }
+        }
+    }
+
+    /**
+     * The diagonal jump from (x, y), from the straight jumps and the diagonal jump of the next point.
+     */
+    private final short diagonalDistance(int x, int y, int dx, int dy, int direction) {
+        int nx = x+dx;
+        int ny = y+dy;
+
+        // The tile crossed by the move. A diagonal move stops where a straight jump finds a jump point.
+        boolean canMove = !graph.isBlocked(dx < 0 ? nx : nx-1, dy < 0 ? ny : ny-1);
+        boolean isJumpPoint = canMove && (distance(nx, ny, dx, 0) > 0 || distance(nx, ny, 0, dy) > 0);
+
+        return nextDistance(canMove, isJumpPoint, nx, ny, direction);
+    }
+
+    private final short nextDistance(boolean canMove, boolean isJumpPoint, int nx, int ny, int direction) {
+        if (!canMove) return 0;
+        if (isJumpPoint) return 1;
+        int next = distances[8*(ny*sizeXPlusOne + nx) + direction];
+        if (next == OVERFLOW || next == MAX_STORED_DISTANCE || next == -MAX_STORED_DISTANCE) return OVERFLOW;
+        return (short)(next > 0 ? next+1 : next-1);
+    }
+
+    /**
+     * Estimated size in bytes of the table.
+     */
+    public final long estimatedFootprintBytes() {
+        return PreprocessedGraphRegistry.OBJECT_HEADER + PreprocessedGraphRegistry.sizeOf(distances);
+    }
+
+    public static void clearMemory() {
+        PreprocessedGraphRegistry.remove(REGISTRY_KIND);
+        System.gc();
+    }
+}
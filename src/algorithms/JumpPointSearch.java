@@ -1,8 +1,11 @@
 package algorithms;
 import grid.GridGraph;
-import algorithms.priorityqueue.ReusableIndirectHeap;
 
-public final class JumpPointSearch extends AStarStaticMemory {
+/**
+ * Jump points are found by scanning the grid point by point in each query.
+ * JumpPointSearchPlus reads them from a precomputed table instead, by overriding jump.
+ */
+public class JumpPointSearch extends AStarStaticMemory {
     private final int[] neighboursdX;
     private final int[] neighboursdY;
     private int neighbourCount;
@@ -13,14 +16,14 @@ public final class JumpPointSearch extends AStarStaticMemory {
         neighboursdY = new int[8];
     }
     
-    public static final JumpPointSearch postSmooth(GridGraph graph, int sx, int sy, int ex, int ey) {
+    public static JumpPointSearch postSmooth(GridGraph graph, int sx, int sy, int ex, int ey) {
         JumpPointSearch algo = new JumpPointSearch(graph, sx, sy, ex, ey);
         algo.postSmoothingOn = true;
         algo.repeatedPostSmooth = false;
         return algo;
     }
     
-    public static final JumpPointSearch repeatedPostSmooth(GridGraph graph, int sx, int sy, int ex, int ey) {
+    public static JumpPointSearch repeatedPostSmooth(GridGraph graph, int sx, int sy, int ex, int ey) {
         JumpPointSearch algo = new JumpPointSearch(graph, sx, sy, ex, ey);
         algo.postSmoothingOn = true;
         algo.repeatedPostSmooth = true;
@@ -36,7 +39,7 @@ public final class JumpPointSearch extends AStarStaticMemory {
         int start = graph.toOneDimIndex(sx, sy);
         finish = graph.toOneDimIndex(ex, ey);
         
-        pq = new ReusableIndirectHeap(totalSize);
+        pq = priorityQueueType.forCurrentThread(totalSize);
         this.initialiseMemory(totalSize, Float.POSITIVE_INFINITY, -1, false);
         
         initialise(start);
@@ -70,7 +73,10 @@ public final class JumpPointSearch extends AStarStaticMemory {
         maybePostSmooth();
     }
     
-    private final int jump(int x, int y, int dx, int dy) {
+    /**
+     * @return the index of the next jump point from (x, y) in direction (dx, dy), or -1 if there is none.
+     */
+    protected int jump(int x, int y, int dx, int dy) {
         if (dx < 0) {
             if (dy < 0) {
                 return jumpDL(x,y);
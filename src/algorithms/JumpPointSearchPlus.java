@@ -0,0 +1,78 @@
+package algorithms;
+import grid.GridGraph;
+
+/**
+ * JPS+: Jump Point Search with the jumps read from a JumpDistanceTable, built once per GridGraph,
+ * instead of scanning the grid in every query.<br>
+ * The jumps, and so the paths, are the same as those of JumpPointSearch.
+ */
+public final class JumpPointSearchPlus extends JumpPointSearch {
+    private final JumpDistanceTable table;
+
+    public JumpPointSearchPlus(GridGraph graph, int sx, int sy, int ex, int ey) {
+        super(graph, sx, sy, ex, ey);
+        table = JumpDistanceTable.initialiseNew(graph);
+    }
+    
+    public static JumpPointSearchPlus postSmooth(GridGraph graph, int sx, int sy, int ex, int ey) {
+        JumpPointSearchPlus algo = new JumpPointSearchPlus(graph, sx, sy, ex, ey);
+        algo.postSmoothingOn = true;
+        algo.repeatedPostSmooth = false;
+        return algo;
+    }
+    
+    public static JumpPointSearchPlus repeatedPostSmooth(GridGraph graph, int sx, int sy, int ex, int ey) {
+        JumpPointSearchPlus algo = new JumpPointSearchPlus(graph, sx, sy, ex, ey);
+        algo.postSmoothingOn = true;
+        algo.repeatedPostSmooth = true;
+        return algo;
+    }
+
+    /**
+     * The table ignores the goal. A straight jump stops at the goal if the goal is on its way.
+     * A diagonal jump stops where a straight jump would reach the goal, which can only happen
+     * in the goal's row or column.
+     */
+    @Override
+    protected final int jump(int x, int y, int dx, int dy) {
+        if (dx == 0 || dy == 0) {
+            if (reachesGoal(x, y, dx, dy)) return toOneDimIndex(ex, ey);
+            int distance = table.distance(x, y, dx, dy);
+            return distance > 0 ? toOneDimIndex(x + dx*distance, y + dy*distance) : -1;
+        }
+        
+        int distance = table.distance(x, y, dx, dy);
+        int maxSteps = Math.abs(distance);
+        int steps = distance > 0 ? distance : Integer.MAX_VALUE;
+        
+        int stepsToGoalRow = (ey - y)*dy;
+        if (stepsToGoalRow > 0 && stepsToGoalRow <= maxSteps && stepsToGoalRow < steps &&
+                reachesGoal(x + dx*stepsToGoalRow, ey, dx, 0)) {
+            steps = stepsToGoalRow;
+        }
+        int stepsToGoalColumn = (ex - x)*dx;
+        if (stepsToGoalColumn > 0 && stepsToGoalColumn <= maxSteps && stepsToGoalColumn < steps &&
+                reachesGoal(ex, y + dy*stepsToGoalColumn, 0, dy)) {
+            steps = stepsToGoalColumn;
+        }
+        
+        if (steps == Integer.MAX_VALUE) return -1;
+        return toOneDimIndex(x + dx*steps, y + dy*steps);
+    }
+    
+    /**
+     * @return true iff (x, y) is the goal, or a straight walk from (x, y) in direction (dx, dy) reaches the goal.
+     */
+    private final boolean reachesGoal(int x, int y, int dx, int dy) {
+        int stepsToGoal;
+        if (dx == 0) {
+            if (x != ex) return false;
+            stepsToGoal = (ey - y)*dy;
+        } else {
+            if (y != ey) return false;
+            stepsToGoal = (ex - x)*dx;
+        }
+        if (stepsToGoal == 0) return true;
+        return stepsToGoal > 0 && stepsToGoal <= Math.abs(table.distance(x, y, dx, dy));
+    }
+}
@@ -0,0 +1,120 @@
+package algorithms;
+
+import static org.junit.Assert.*;
+
+import grid.GridGraph;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import algorithms.datatypes.PreprocessedGraphRegistry;
+import main.graphgeneration.DefaultGenerator;
+
+public class JumpPointSearchPlusTest {
+
+    @Test
+    public void testSamePathsAsJumpPointSearch() {
+        Random rand = new Random(4);
+        try {
+            PreprocessedGraphRegistry.clear();
+            for (int m=0;m<6;++m) {
+                GridGraph graph = DefaultGenerator.generateSeededGraphOnly(m+1, 40 + rand.nextInt(80), 40 + rand.nextInt(80), 5 + 5*m);
+                for (int i=0;i<100;++i) {
+                    int sx = rand.nextInt(graph.sizeX+1);
+                    int sy = rand.nextInt(graph.sizeY+1);
+                    // Some goals share the start's row or column, where the jumps stop for the goal.
+                    int ex = rand.nextInt(4) == 0 ? sx : rand.nextInt(graph.sizeX+1);
+                    int ey = rand.nextInt(4) == 0 ? sy : rand.nextInt(graph.sizeY+1);
+
+                    JumpPointSearch expected = new JumpPointSearch(graph, sx, sy, ex, ey);
+                    expected.computePath();
+                    JumpPointSearchPlus actual = new JumpPointSearchPlus(graph, sx, sy, ex, ey);
+                    actual.computePath();
+                    assertArrayEquals(flatten(expected.getPath()), flatten(actual.getPath()));
+
+                    JumpPointSearch smoothed = JumpPointSearch.repeatedPostSmooth(graph, sx, sy, ex, ey);
+                    smoothed.computePath();
+                    JumpPointSearchPlus smoothedPlus = JumpPointSearchPlus.repeatedPostSmooth(graph, sx, sy, ex, ey);
+                    smoothedPlus.computePath();
+                    assertArrayEquals(flatten(smoothed.getPath()), flatten(smoothedPlus.getPath()));
+                }
+            }
+        } finally {
+            PreprocessedGraphRegistry.clear();
+        }
+    }
+
+    @Test
+    public void testUpdateTilesMatchesRebuild() {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(3, 70, 60, 15);
+        Random rand = new Random(6);
+        try {
+            PreprocessedGraphRegistry.clear();
+            JumpDistanceTable table = JumpDistanceTable.initialiseNew(graph);
+
+            for (int round=0;round<30;++round) {
+                int n = 1 + rand.nextInt(5);
+                int[] changedX = new int[n];
+                int[] changedY = new int[n];
+                for (int i=0;i<n;++i) {
+                    // Some changes are on the edges of the grid.
+                    changedX[i] = rand.nextInt(5) == 0 ? graph.sizeX-1 : rand.nextInt(graph.sizeX);
+                    changedY[i] = rand.nextInt(5) == 0 ? 0 : rand.nextInt(graph.sizeY);
+                    graph.setBlocked(changedX[i], changedY[i], !graph.isBlocked(changedX[i], changedY[i]));
+                }
+                JumpDistanceTable.updateTiles(graph, changedX, changedY);
+                assertSame(table, JumpDistanceTable.initialiseNew(graph));
+                assertSameDistances(new JumpDistanceTable(graph), table, graph);
+            }
+        } finally {
+            PreprocessedGraphRegistry.clear();
+        }
+    }
+
+    @Test
+    public void testJumpsLongerThanStoredDistances() {
+        // Rows longer than a short, with a few obstacles so that some jumps are long and some are not.
+        GridGraph graph = new GridGraph(80000, 3);
+        graph.setBlocked(100, 1, true);
+        graph.setBlocked(40000, 0, true);
+        graph.setBlocked(75000, 2, true);
+        int[][] queries = {{0, 1, 79990, 2}, {79999, 2, 3, 0}, {50, 3, 80000, 1}, {80000, 0, 0, 3}, {39000, 1, 41000, 2}};
+        try {
+            PreprocessedGraphRegistry.clear();
+            // The jump point after the tile (40000, 0), found from beside the tile (100, 1).
+            assertEquals(39900, JumpDistanceTable.initialiseNew(graph).distance(101, 1, 1, 0));
+            assertEquals(-40000, JumpDistanceTable.initialiseNew(graph).distance(40000, 3, -1, 0));
+            for (int[] q : queries) {
+                JumpPointSearch expected = new JumpPointSearch(graph, q[0], q[1], q[2], q[3]);
+                expected.computePath();
+                JumpPointSearchPlus actual = new JumpPointSearchPlus(graph, q[0], q[1], q[2], q[3]);
+                actual.computePath();
+                assertArrayEquals(flatten(expected.getPath()), flatten(actual.getPath()));
+            }
+        } finally {
+            PreprocessedGraphRegistry.clear();
+        }
+    }
+
+    private static void assertSameDistances(JumpDistanceTable expected, JumpDistanceTable actual, GridGraph graph) {
+        int[][] directions = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, -1}, {1, -1}, {-1, 1}, {1, 1}};
+        for (int y=0;y<=graph.sizeY;++y) {
+            for (int x=0;x<=graph.sizeX;++x) {
+                for (int[] d : directions) {
+                    assertEquals(x + "," + y + " " + d[0] + "," + d[1],
+                            expected.distance(x, y, d[0], d[1]), actual.distance(x, y, d[0], d[1]));
+                }
+            }
+        }
+    }
+
+    private static int[] flatten(int[][] path) {
+        int[] values = new int[path.length*2];
+        for (int i=0;i<path.length;++i) {
+            values[2*i] = path[i][0];
+            values[2*i+1] = path[i][1];
+        }
+        return values;
+    }
+}
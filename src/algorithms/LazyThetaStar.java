@@ -1,7 +1,6 @@
 package algorithms;
 
 import grid.GridGraph;
-import algorithms.priorityqueue.ReusableIndirectHeap;
 
 public class LazyThetaStar extends BasicThetaStar {
 
@@ -16,7 +15,7 @@ public class LazyThetaStar extends BasicThetaStar {
         int start = toOneDimIndex(sx, sy);
         finish = toOneDimIndex(ex, ey);
 
-        pq = new ReusableIndirectHeap(totalSize);
+        pq = priorityQueueType.forCurrentThread(totalSize);
         this.initialiseMemory(totalSize, Float.POSITIVE_INFINITY, -1, false);
         
         initialise(start);
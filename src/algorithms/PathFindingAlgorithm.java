@@ -8,8 +8,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import algorithms.datatypes.Memory;
+import algorithms.datatypes.SearchContext;
 import algorithms.datatypes.SnapshotItem;
+import algorithms.datatypes.SnapshotTraceWriter;
 
 /**
  * ABSTRACT<br>
@@ -20,6 +21,7 @@ public abstract class PathFindingAlgorithm {
     private int snapshotCountdown = 0;
     
     private ArrayList<List<SnapshotItem>> snapshotList;
+    private SnapshotTraceWriter traceWriter;
     protected GridGraph graph;
 
     protected int parent[];
@@ -33,6 +35,7 @@ public abstract class PathFindingAlgorithm {
     protected final int ey;
     
     private int ticketNumber = -1;
+    protected SearchContext memory;
     
     private boolean recordingMode;
     private boolean usingStaticMemory = false;
@@ -50,9 +53,18 @@ public abstract class PathFindingAlgorithm {
         snapshotList = new ArrayList<>();
     }
     
+    /**
+     * Use the given search context instead of the calling thread's context.
+     * The context must not be shared with a search running on another thread.
+     */
+    public final void setSearchContext(SearchContext memory) {
+        this.memory = memory;
+    }
+    
     protected void initialiseMemory(int size, float defaultDistance, int defaultParent, boolean defaultVisited) {
         usingStaticMemory = true;
-        ticketNumber = Memory.initialise(size, defaultDistance, defaultParent, defaultVisited);
+        if (memory == null) memory = SearchContext.forCurrentThread();
+        ticketNumber = memory.initialise(size, defaultDistance, defaultParent, defaultVisited);
     }
     
     /**
@@ -62,11 +74,21 @@ public abstract class PathFindingAlgorithm {
         recordingMode = true;
     }
     
+    /**
+     * Call to start tracing the algorithm's operation into a trace file instead of the snapshot list.
+     * The snapshots are not kept in memory. The caller closes the writer after stopRecording().
+     */
+    public void startRecording(SnapshotTraceWriter traceWriter) {
+        this.traceWriter = traceWriter;
+        recordingMode = true;
+    }
+    
     /**
      * Call to stop tracing the algorithm's operation.
      */
     public void stopRecording() {
         recordingMode = false;
+        traceWriter = null;
     }
     
     /**
@@ -112,7 +134,7 @@ public abstract class PathFindingAlgorithm {
     
     protected final void maybeSaveSearchSnapshot() {
         if (recordingMode) {
-            if (usingStaticMemory && ticketNumber != Memory.currentTicket())
+            if (usingStaticMemory && ticketNumber != memory.currentTicket())
                 throw new UnsupportedOperationException("Ticket does not match!");
             
             saveSearchSnapshot();
@@ -135,11 +157,26 @@ public abstract class PathFindingAlgorithm {
         }
         snapshotCountdown = SNAPSHOT_INTERVAL;
         
-        snapshotList.add(computeSearchSnapshot());
+        addSnapshot(computeSearchSnapshot());
     }
 
     protected final void addSnapshot(List<SnapshotItem> snapshotItemList) {
-        snapshotList.add(snapshotItemList);
+        if (traceWriter != null) traceWriter.write(snapshotItemList);
+        else snapshotList.add(snapshotItemList);
+    }
+    
+    /**
+     * Items of snapshots streamed to a trace file are discarded once written, so they are not interned.
+     */
+    protected final SnapshotItem snapshotItem(Integer[] path, Color color) {
+        return SnapshotItem.generate(path, color, cacheSnapshotItems());
+    }
+    
+    /**
+     * @return false while streaming to a trace file. Pass it to helpers that build snapshot items for this search.
+     */
+    protected final boolean cacheSnapshotItems() {
+        return traceWriter == null;
     }
     
     protected int goalParentIndex() {
@@ -147,17 +184,17 @@ public abstract class PathFindingAlgorithm {
     }
     
     private int getParent(int index) {
-        if (usingStaticMemory) return Memory.parent(index);
+        if (usingStaticMemory) return memory.parent(index);
         else return parent[index];
     }
     
     private void setParent(int index, int value) {
-        if (usingStaticMemory) Memory.setParent(index, value);
+        if (usingStaticMemory) memory.setParent(index, value);
         else parent[index] = value;
     }
     
     protected int getSize() {
-        if (usingStaticMemory) return Memory.size();
+        if (usingStaticMemory) return memory.size();
         else return parent.length;
     }
     
@@ -177,14 +214,14 @@ public abstract class PathFindingAlgorithm {
         for (int i=0; i<size; i++) {
             if (getParent(i) != -1) {
                 if (finalPathSet != null && finalPathSet.contains(i)) {
-                    list.add(SnapshotItem.generate(snapshotEdge(i), Color.BLUE));
+                    list.add(snapshotItem(snapshotEdge(i), Color.BLUE));
                 } else {
-                    list.add(SnapshotItem.generate(snapshotEdge(i)));
+                    list.add(snapshotItem(snapshotEdge(i), null));
                 }
             }
             Integer[] vertexSnapshot = snapshotVertex(i);
             if (vertexSnapshot != null) {
-                list.add(SnapshotItem.generate(vertexSnapshot));
+                list.add(snapshotItem(vertexSnapshot, null));
             }
         }
 
@@ -223,5 +260,6 @@ public abstract class PathFindingAlgorithm {
     
     protected void inheritSnapshotListFrom(PathFindingAlgorithm algo) {
         this.snapshotList = algo.snapshotList;
+        this.traceWriter = algo.traceWriter;
     }
 }
@@ -4,13 +4,11 @@ import grid.GridGraph;
 
 import java.awt.Color;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import algorithms.datatypes.Point;
 import algorithms.datatypes.SnapshotItem;
-import algorithms.priorityqueue.IndirectHeap;
-import algorithms.visibilitygraph.Edge;
+import algorithms.priorityqueue.FloatIndirectHeap;
 import algorithms.visibilitygraph.VisibilityGraph;
 
 public class VisibilityGraphAlgorithm extends AStar {
@@ -56,11 +54,7 @@ public class VisibilityGraphAlgorithm extends AStar {
     public void computePath() {
         setupVisibilityGraph();
         
-        distance = new Float[visibilityGraph.size()];
-        parent = new int[visibilityGraph.size()];
-
-        initialise(visibilityGraph.startNode());
-        visited = new boolean[visibilityGraph.size()];
+        initialiseMemory(visibilityGraph.size(), visibilityGraph.startNode());
         
         if (slowDijkstra) {
             slowDijkstra();
@@ -98,11 +92,11 @@ public class VisibilityGraphAlgorithm extends AStar {
                 break;
             }
             
-            Iterator<Edge> itr = visibilityGraph.edgeIterator(current);
-            while (itr.hasNext()) {
-                Edge edge = itr.next();
-                if (!visited[edge.dest]) {
-                    relax(edge);
+            int nEdges = visibilityGraph.nOutgoingEdges(current);
+            for (int k=0; k<nEdges; k++) {
+                int dest = visibilityGraph.outgoingEdge(current, k);
+                if (!visited[dest]) {
+                    relax(current, dest, visibilityGraph.outgoingEdgeWeight(current, k));
                 }
             }
             
@@ -123,7 +117,7 @@ public class VisibilityGraphAlgorithm extends AStar {
     }
 
     protected void pqDijkstra() {
-        pq = new IndirectHeap<Float>(distance, true);
+        pq = FloatIndirectHeap.forCurrentThread(distance, distance.length);
         pq.heapify();
         
         int finish = visibilityGraph.endNode();
@@ -135,13 +129,12 @@ public class VisibilityGraphAlgorithm extends AStar {
                 break;
             }
             
-            Iterator<Edge> itr = visibilityGraph.edgeIterator(current);
-            while (itr.hasNext()) {
-                Edge edge = itr.next();
-                if (!visited[edge.dest] && relax(edge)) {
+            int nEdges = visibilityGraph.nOutgoingEdges(current);
+            for (int k=0; k<nEdges; k++) {
+                int dest = visibilityGraph.outgoingEdge(current, k);
+                if (!visited[dest] && relax(current, dest, visibilityGraph.outgoingEdgeWeight(current, k))) {
                     // If relaxation is done.
-                    Point dest = visibilityGraph.coordinateOf(edge.dest);
-                    pq.decreaseKey(edge.dest, distance[edge.dest] + heuristic(dest.x, dest.y));
+                    pq.decreaseKey(dest, distance[dest] + heuristic(visibilityGraph.xCoordinateOf(dest), visibilityGraph.yCoordinateOf(dest)));
                 }
             }
             
@@ -149,11 +142,6 @@ public class VisibilityGraphAlgorithm extends AStar {
         }
     }
     
-    protected final boolean relax(Edge edge) {
-        // return true iff relaxation is done.
-        return relax(edge.source, edge.dest, edge.weight);
-    }
-
     protected final boolean relax(int u, int v, float weightUV) {
         // return true iff relaxation is done.
         float newWeight = distance[u] + weightUV;
@@ -184,9 +172,8 @@ public class VisibilityGraphAlgorithm extends AStar {
         
         int index = length-1;
         while (current != -1) {
-            Point point = visibilityGraph.coordinateOf(current);
-            int x = point.x;
-            int y = point.y;
+            int x = visibilityGraph.xCoordinateOf(current);
+            int y = visibilityGraph.yCoordinateOf(current);
             
             path[index] = new int[2];
             path[index][0] = x;
@@ -238,20 +225,17 @@ public class VisibilityGraphAlgorithm extends AStar {
         List<SnapshotItem> snapshotItemList = new ArrayList<>(size);
 
         for (int i=0;i<size;i++) {
-            Iterator<Edge> iterator = visibilityGraph.edgeIterator(i);
-            while (iterator.hasNext()) {
-                Edge edge = iterator.next();
-                if (edge.source < edge.dest) {
-                    Point start = visibilityGraph.coordinateOf(edge.source);
-                    Point end = visibilityGraph.coordinateOf(edge.dest);
-                    
+            int nEdges = visibilityGraph.nOutgoingEdges(i);
+            for (int k=0; k<nEdges; k++) {
+                int dest = visibilityGraph.outgoingEdge(i, k);
+                if (i < dest) {
                     Integer[] path = new Integer[4];
-                    path[0] = start.x;
-                    path[1] = start.y;
-                    path[2] = end.x;
-                    path[3] = end.y;
+                    path[0] = visibilityGraph.xCoordinateOf(i);
+                    path[1] = visibilityGraph.yCoordinateOf(i);
+                    path[2] = visibilityGraph.xCoordinateOf(dest);
+                    path[3] = visibilityGraph.yCoordinateOf(dest);
                     
-                    SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.GREEN);
+                    SnapshotItem snapshotItem = snapshotItem(path, Color.GREEN);
                     snapshotItemList.add(snapshotItem);
                 }
             }
@@ -2,6 +2,8 @@ package algorithms.anya;
 
 import static org.junit.Assert.*;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 public class FractionTest {
@@ -91,4 +93,54 @@ public class FractionTest {
         System.out.println(a);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testPackedFractionMatchesFraction() {
+        for (int n=-6;n<=6;++n) {
+            assertEquals(new Fraction(n,3).floor(), PackedFraction.floor(PackedFraction.of(n,3)));
+            assertEquals(new Fraction(n,3).ceil(), PackedFraction.ceil(PackedFraction.of(n,3)));
+        }
+
+        Random random = new Random(3);
+        for (int i=0;i<100000;++i) {
+            int n1 = random.nextInt(2001)-1000, d1 = random.nextInt(200)+1;
+            int n2 = random.nextInt(2001)-1000, d2 = random.nextInt(200)+1;
+            if (random.nextBoolean()) d1 = -d1;
+            int k = random.nextInt(201)-100;
+            int m = random.nextInt(50)+1;
+
+            Fraction a = new Fraction(n1,d1);
+            Fraction b = new Fraction(n2,d2);
+            long pa = PackedFraction.of(n1,d1);
+            long pb = PackedFraction.of(n2,d2);
+
+            assertPacked(a, pa);
+            assertEquals(a, PackedFraction.toFraction(pa));
+            assertEquals(pa, PackedFraction.fromFraction(a));
+            assertPacked(new Fraction(k), PackedFraction.of(k));
+            assertPacked(a.plus(k), PackedFraction.plusInt(pa, k));
+            assertPacked(a.minus(k), PackedFraction.minusInt(pa, k));
+            assertPacked(a.multiplyDivide(m, k==0 ? 1 : k), PackedFraction.multiplyDivide(pa, m, k==0 ? 1 : k));
+            assertPacked(a.minus(k).multiplyDivide(m+1, m).plus(k),
+                    PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(pa, k), m+1, m), k));
+
+            assertEquals(a.isWholeNumber(), PackedFraction.isWholeNumber(pa));
+            assertEquals(a.isLessThan(b), PackedFraction.isLessThan(pa, pb));
+            assertEquals(a.isLessThanOrEqual(b), PackedFraction.isLessThanOrEqual(pa, pb));
+            assertEquals(a.isLessThan(k), PackedFraction.isLessThanInt(pa, k));
+            assertEquals(a.isLessThanOrEqual(k), PackedFraction.isLessThanOrEqualInt(pa, k));
+            assertEquals(a.isEqualTo(b), PackedFraction.isEqualTo(pa, pb));
+            assertEquals(a.isEqualTo(k), PackedFraction.isEqualToInt(pa, k));
+            assertEquals(a.floor(), PackedFraction.floor(pa));
+            assertEquals(a.ceil(), PackedFraction.ceil(pa));
+            assertEquals(a.toFloat(), PackedFraction.toFloat(pa), 0f);
+            assertEquals(a.hashCode(), PackedFraction.hashCode(pa));
+            assertEquals(a.toString(), PackedFraction.toString(pa));
+        }
+    }
+
+    private static void assertPacked(Fraction expected, long packed) {
+        assertEquals(expected.n, PackedFraction.n(packed));
+        assertEquals(expected.d, PackedFraction.d(packed));
+    }
+
+}
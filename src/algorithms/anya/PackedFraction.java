@@ -0,0 +1,154 @@
+package algorithms.anya;
+
+
+/**
+ * Static helpers for fractions packed into a long: numerator in the high 32 bits, denominator in the low 32 bits.
+ * Every helper gives exactly the same result as the Fraction method of the same name (including int overflow),
+ * but nothing is allocated. Fractions are kept in lowest terms with a positive denominator, as in Fraction.<br>
+ * Helpers that take an int operand instead of a fraction have the suffix "Int".
+ */
+public final class PackedFraction {
+
+    private PackedFraction() {
+    }
+
+    private static final long pack(int n, int d) {
+        return ((long)n << 32) | (d & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the numerator. Can be negative.
+     */
+    public static final int n(long f) {
+        return (int)(f >> 32);
+    }
+
+    /**
+     * @return the denominator. Cannot be negative.
+     */
+    public static final int d(long f) {
+        return (int)f;
+    }
+
+    /**
+     * Same as new Fraction(n).
+     */
+    public static final long of(int n) {
+        return pack(n, 1);
+    }
+
+    /**
+     * Same as new Fraction(n, d).
+     */
+    public static final long of(int n, int d) {
+        if (d < 0) {
+            n = -n;
+            d = -d;
+        }
+        int gcd = Fraction.gcd(n,d);
+        return pack(n/gcd, d/gcd);
+    }
+
+    private static final long of(long n, long d) {
+        if (d < 0) {
+            n = -n;
+            d = -d;
+        }
+        long gcd = Fraction.gcd(n,d);
+        return pack((int)(n/gcd), (int)(d/gcd));
+    }
+
+    public static final long fromFraction(Fraction f) {
+        return pack(f.n, f.d);
+    }
+
+    public static final Fraction toFraction(long f) {
+        return new Fraction(n(f), d(f));
+    }
+
+    public static final boolean isWholeNumber(long f) {
+        return d(f) == 1;
+    }
+
+    public static final boolean isLessThanOrEqual(long a, long b) {
+        return (long)n(a)*d(b) - (long)n(b)*d(a) <= 0;
+    }
+
+    public static final boolean isLessThan(long a, long b) {
+        return (long)n(a)*d(b) - (long)n(b)*d(a) < 0;
+    }
+
+    public static final boolean isLessThanOrEqualInt(long f, int x) {
+        return n(f) <= d(f)*x;
+    }
+
+    public static final boolean isLessThanInt(long f, int x) {
+        return n(f) < d(f)*x;
+    }
+
+    public static final boolean isEqualTo(long a, long b) {
+        return n(a)*d(b) == n(b)*d(a);
+    }
+
+    public static final boolean isEqualToInt(long f, int k) {
+        return n(f) == k*d(f);
+    }
+
+    public static final long multiplyDivide(long f, int multiply, int divide) {
+        return of((long)n(f)*multiply, (long)d(f)*divide);
+    }
+
+    public static final long minusInt(long f, int value) {
+        int n = n(f), d = d(f);
+        return of(n - value*d, d);
+    }
+
+    public static final long plusInt(long f, int value) {
+        int n = n(f), d = d(f);
+        return of(n + value*d, d);
+    }
+
+    /**
+     * @return largest integer leq to f.
+     */
+    public static final int floor(long f) {
+        int n = n(f), d = d(f);
+        if (d == 1) return n;
+        if (n > 0) {
+            return n/d;
+        } else {
+            return (n+1)/d - 1;
+        }
+    }
+
+    /**
+     * @return smallest integer geq to f.
+     */
+    public static final int ceil(long f) {
+        int n = n(f), d = d(f);
+        if (d == 1) return n;
+        if (n > 0) {
+            return (n-1)/d + 1;
+        } else {
+            return n/d;
+        }
+    }
+
+    public static final float toFloat(long f) {
+        return (float)n(f)/d(f);
+    }
+
+    /**
+     * Same as Fraction.hashCode().
+     */
+    public static final int hashCode(long f) {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + (60*n(f)/d(f));
+        return result;
+    }
+
+    public static final String toString(long f) {
+        return n(f)+"/"+d(f);
+    }
+}
@@ -0,0 +1,127 @@
+package algorithms.anya;
+
+import java.util.Arrays;
+
+
+/**
+ * Map from an Anya search state (row, left endpoint, right endpoint, root) to the handle of that state.
+ * The endpoints are packed fractions (see PackedFraction). They are always in lowest terms, so two endpoints
+ * are equal exactly when their packed values are equal.<br>
+ * <br>
+ * Open addressing with linear probing over primitive arrays. Entries are tagged with a generation number,
+ * so clear() is O(1): it just starts a new generation. The arrays are kept between searches and only grow.
+ */
+public final class StateTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] keyLeft;
+    private long[] keyRight;
+    private int[] keyRow;
+    private int[] keyRootX;
+    private int[] keyRootY;
+    private int[] values;
+    private int[] generations;
+    private int mask;
+    private int shift;
+    private int size;
+    private int generation;
+
+    public StateTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private final void allocate(int capacity) {
+        keyLeft = new long[capacity];
+        keyRight = new long[capacity];
+        keyRow = new int[capacity];
+        keyRootX = new int[capacity];
+        keyRootY = new int[capacity];
+        values = new int[capacity];
+        generations = new int[capacity];
+        mask = capacity - 1;
+        shift = Long.numberOfLeadingZeros(capacity) + 1;
+        size = 0;
+        generation = 1;
+    }
+
+    /**
+     * Runtime: O(1). Removes all entries.
+     */
+    public final void clear() {
+        size = 0;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(generations, 0);
+            generation = 1;
+        } else {
+            generation++;
+        }
+    }
+
+    public final int size() {
+        return size;
+    }
+
+    private final int slotOf(long left, long right, int row, int rootX, int rootY) {
+        long h = left * 0x9E3779B97F4A7C15L;
+        h = (h ^ right) * 0x9E3779B97F4A7C15L;
+        h = (h ^ (((long)row << 32) | (rootX & 0xFFFFFFFFL))) * 0x9E3779B97F4A7C15L;
+        h = (h ^ rootY) * 0x9E3779B97F4A7C15L;
+        return (int)(h >>> shift);
+    }
+
+    private final boolean matches(int slot, long left, long right, int row, int rootX, int rootY) {
+        return keyLeft[slot] == left && keyRight[slot] == right && keyRow[slot] == row &&
+                keyRootX[slot] == rootX && keyRootY[slot] == rootY;
+    }
+
+    /**
+     * @return the handle stored for the state, or -1 if there is none.
+     */
+    public final int get(long left, long right, int row, int rootX, int rootY) {
+        int slot = slotOf(left, right, row, rootX, rootY);
+        while (generations[slot] == generation) {
+            if (matches(slot, left, right, row, rootX, rootY)) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public final void put(long left, long right, int row, int rootX, int rootY, int handle) {
+        int slot = slotOf(left, right, row, rootX, rootY);
+        while (generations[slot] == generation) {
+            if (matches(slot, left, right, row, rootX, rootY)) {
+                values[slot] = handle;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keyLeft[slot] = left;
+        keyRight[slot] = right;
+        keyRow[slot] = row;
+        keyRootX[slot] = rootX;
+        keyRootY[slot] = rootY;
+        values[slot] = handle;
+        generations[slot] = generation;
+        size++;
+        if (size * 2 > values.length) grow();
+    }
+
+    private final void grow() {
+        long[] oldLeft = keyLeft;
+        long[] oldRight = keyRight;
+        int[] oldRow = keyRow;
+        int[] oldRootX = keyRootX;
+        int[] oldRootY = keyRootY;
+        int[] oldValues = values;
+        int[] oldGenerations = generations;
+        int oldGeneration = generation;
+
+        allocate(oldValues.length * 2);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldGenerations[i] == oldGeneration) {
+                put(oldLeft[i], oldRight[i], oldRow[i], oldRootX[i], oldRootY[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.util.List;
 import java.awt.geom.Point2D;
 
 import grid.GridGraph;
+import algorithms.datatypes.PreprocessedGraphRegistry;
 import algorithms.datatypes.SnapshotItem;
 import algorithms.PathFindingAlgorithm;
 
@@ -15,37 +16,68 @@ public class Anya16 extends PathFindingAlgorithm {
     private static final int RES = 10000;
     public ArrayList<SnapshotItem> currSnapshot = new ArrayList<>();
     
-    private static AnyaSearch anya = null;
-    private static GridGraph storedGraph = null;
+    // The BitpackedGrid is built once per GridGraph, kept in the PreprocessedGraphRegistry and shared
+    // by all threads. Each thread runs its own AnyaSearch (and AnyaExpansionPolicy) over it.
+    // It is only modified by updateTiles, which searches detect through the grid's version stamp.
+    // A thread's AnyaSearch is only bound to a grid while it runs, so it does not keep the grid alive after the
+    // registry drops it.
+    private static final String REGISTRY_KIND = "Anya16";
+    private static final ThreadLocal<AnyaSearch> threadSearch = new ThreadLocal<>();
+
+    private final BitpackedGrid grid;
+    private final AnyaNode start;
+    private final AnyaNode target;
+    private double pathLength;
 
     private Path<AnyaNode> pathStartNode = null;
 
-    private static void initialise(GridGraph graph) {
-        if (graph == storedGraph) return;
+    private static BitpackedGrid initialise(GridGraph graph) {
+        return PreprocessedGraphRegistry.get(REGISTRY_KIND, graph, Anya16::buildGrid, BitpackedGrid::get_footprint_bytes);
+    }
+
+    private static BitpackedGrid buildGrid(GridGraph graph) {
         try {
-            BitpackedGrid grid = new BitpackedGrid(graph);
-            Anya16.anya = new AnyaSearch(new AnyaExpansionPolicy(grid));
-            Anya16.storedGraph = graph;
-            
+            return new BitpackedGrid(graph);
         } catch (Exception e) {
             e.printStackTrace();
+            return null;
         }
+    }
 
-        anya.isRecording = false;
+    /**
+     * Call this after setting tiles of the graph blocked or unblocked, instead of rebuilding the BitpackedGrid.
+     * The graph's BitpackedGrid in the PreprocessedGraphRegistry is updated in place, only around the changed tiles.
+     * New searches wait in the registry until the update is done. Searches already running on the grid stop at
+     * their next node expansion, and are run again on the updated grid.<br>
+     * Other preprocessed structures of the graph are removed from the registry. With KeyMode.CONTENT_HASH, the
+     * BitpackedGrid can be shared with other GridGraphs of the same map, so it is removed too, and rebuilt when needed.
+     * @param changedX, changedY the tiles that have changed.
+     */
+    public static void updateTiles(GridGraph graph, int[] changedX, int[] changedY) {
+        PreprocessedGraphRegistry.update(REGISTRY_KIND, 0, graph,
+                (BitpackedGrid grid) -> grid.update_cells(graph, changedX, changedY), BitpackedGrid::get_footprint_bytes);
+    }
+
+    private static AnyaSearch searchForCurrentThread(BitpackedGrid grid) {
+        AnyaSearch anya = threadSearch.get();
+        if (anya == null) {
+            try {
+                anya = new AnyaSearch(new AnyaExpansionPolicy(grid));
+            } catch (Exception e) {
+                throw new UnsupportedOperationException(e);
+            }
+            threadSearch.set(anya);
+        }
+        anya.getExpansionPolicy().setGrid(grid);
+        return anya;
     }
 
     public Anya16(GridGraph graph, int sx, int sy, int ex, int ey) {
         super(graph, graph.sizeX, graph.sizeY, sx, sy, ex, ey);
-        initialise(graph);
-
-        anya.snapshotExpand = (a) -> snapshotExpand(a);
-        anya.snapshotInsert = (a) -> snapshotInsert(a);
-        anya.isRecording = false;
+        grid = initialise(graph);
 
-        AnyaNode start = new AnyaNode(null, new AnyaInterval(0, 0, 0), 0, 0);
-        AnyaNode target = new AnyaNode(null, new AnyaInterval(0, 0, 0), 0, 0);
-        anya.mb_start_ = start;
-        anya.mb_target_ = target;
+        start = new AnyaNode(null, new AnyaInterval(0, 0, 0), 0, 0);
+        target = new AnyaNode(null, new AnyaInterval(0, 0, 0), 0, 0);
 
         start.root.setLocation(sx, sy);
         start.interval.init(sx, sx, sy);
@@ -57,8 +89,28 @@ public class Anya16 extends PathFindingAlgorithm {
      * Call this to compute the path.
      */
     public void computePath() {
-        pathStartNode = anya.search(anya.mb_start_, anya.mb_target_);
-        //pathLength = anya.mb_cost_;
+        AnyaSearch anya = searchForCurrentThread(grid);
+        anya.snapshotExpand = (a) -> snapshotExpand(a);
+        anya.snapshotInsert = (a) -> snapshotInsert(a);
+        anya.isRecording = isRecording();
+        anya.mb_start_ = start;
+        anya.mb_target_ = target;
+
+        try {
+            grid.read_consistently(stamp -> {
+                anya.grid_stamp_ = stamp;
+                pathStartNode = anya.search(start, target);
+                pathLength = pathStartNode == null ? 0 : anya.mb_cost_; // mb_cost_ is -1 if there is no path.
+            });
+        } finally {
+            anya.getExpansionPolicy().setGrid(null);
+            anya.grid_stamp_ = 0;
+            anya.snapshotExpand = null;
+            anya.snapshotInsert = null;
+            anya.isRecording = false;
+            anya.mb_start_ = null;
+            anya.mb_target_ = null;
+        }
     }
 
     /**
@@ -90,19 +142,7 @@ public class Anya16 extends PathFindingAlgorithm {
      * Has to run fast, unlike getPath.
      */
     public float getPathLength() {
-        return (float)anya.mb_cost_;
-    }
-
-    @Override
-    public void startRecording() {
-        super.startRecording();
-        anya.isRecording = true;
-    }
-    
-    @Override
-    public void stopRecording() {
-        super.stopRecording();
-        anya.isRecording = false;
+        return (float)pathLength;
     }
     
     
@@ -117,7 +157,7 @@ public class Anya16 extends PathFindingAlgorithm {
         line[4] = RES;
         line[5] = (int)anyaNode.root.getX();
         line[6] = (int)anyaNode.root.getY();
-        currSnapshot.add(SnapshotItem.generate(line));
+        currSnapshot.add(snapshotItem(line, null));
 
         maybeSaveSearchSnapshot();
     }
@@ -131,7 +171,7 @@ public class Anya16 extends PathFindingAlgorithm {
         line[2] = RES;
         line[3] = (int)(in.getRight()*RES);
         line[4] = RES;
-        currSnapshot.add(SnapshotItem.generate(line));
+        currSnapshot.add(snapshotItem(line, null));
 
         maybeSaveSearchSnapshot();
     }
@@ -142,8 +182,8 @@ public class Anya16 extends PathFindingAlgorithm {
     }
 
     public static void clearMemory() {
-        anya = null;
-        storedGraph = null;
+        PreprocessedGraphRegistry.remove(REGISTRY_KIND);
+        threadSearch.remove();
         System.gc();
     }
 }
\ No newline at end of file
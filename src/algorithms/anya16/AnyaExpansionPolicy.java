@@ -1,7 +1,7 @@
 package algorithms.anya16;
 
 import java.awt.geom.Point2D;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 
@@ -14,7 +14,24 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 	private AnyaNode target;
 	private AnyaNode cnode_;
 	private AnyaNode csucc_;
-	private ArrayList<AnyaNode> successors_;
+
+	// successors of the current node, as a struct of arrays. next() 
+	// copies one successor into succ_node_ and returns it, so the 
+	// node returned by next() is only valid until the next call. 
+	private int[] succ_rootx_ = new int[32];
+	private int[] succ_rooty_ = new int[32];
+	private double[] succ_left_ = new double[32];
+	private double[] succ_right_ = new double[32];
+	private int[] succ_row_ = new int[32];
+	private int num_succ_;
+	private final AnyaNode succ_node_ = 
+			new AnyaNode(null, new AnyaInterval(0, 0, 0), 0, 0);
+	private final AnyaInterval tmp_interval_ = new AnyaInterval(0, 0, 0);
+
+	// projections, reused across expansions
+	private final IntervalProjection projection_ = new IntervalProjection();
+	private final IntervalProjection flat_projection_ = new IntervalProjection();
+	private final IntervalProjection cone_projection_ = new IntervalProjection();
 				
 	// reduces branching by eliminating nodes that cannot have successors
 	private boolean prune_ = true;
@@ -32,7 +49,6 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 		this.grid_ = grid;
 		
 		this.prune_ = prune;
-		successors_ = new ArrayList<AnyaNode>(32);
 		heuristic_ = new AnyaHeuristic();
 		euclidean_ = new EuclideanDistanceHeuristic();
 	}
@@ -44,15 +60,15 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 		this.cnode_ = vertex;
 		this.csucc_ = null;
 		this.idx_succ_ = 0;
-		successors_.clear();
+		this.num_succ_ = 0;
 		
 		if(vertex.equals(start))
 		{
-			generate_start_successors(cnode_, successors_);
+			generate_start_successors(cnode_);
 		}
 		else
 		{
-			generate_successors(cnode_, successors_);
+			generate_successors(cnode_);
 		}
     }
 
@@ -60,9 +76,10 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 	public AnyaNode next() 
 	{
 		csucc_ = null;
-		if(idx_succ_ < successors_.size())
+		if(idx_succ_ < num_succ_)
 		{
-			csucc_ = successors_.get(idx_succ_++);
+			load_successor(idx_succ_++, succ_node_);
+			csucc_ = succ_node_;
 		}
 		return csucc_;
 	}
@@ -70,7 +87,34 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 	@Override
 	public boolean hasNext() 
 	{
-		return idx_succ_ < successors_.size();
+		return idx_succ_ < num_succ_;
+	}
+
+	private void add_successor(double left, double right, int row, 
+			int rootx, int rooty)
+	{
+		if(num_succ_ == succ_row_.length)
+		{
+			int capacity = num_succ_ * 2;
+			succ_rootx_ = Arrays.copyOf(succ_rootx_, capacity);
+			succ_rooty_ = Arrays.copyOf(succ_rooty_, capacity);
+			succ_left_ = Arrays.copyOf(succ_left_, capacity);
+			succ_right_ = Arrays.copyOf(succ_right_, capacity);
+			succ_row_ = Arrays.copyOf(succ_row_, capacity);
+		}
+		succ_rootx_[num_succ_] = rootx;
+		succ_rooty_[num_succ_] = rooty;
+		succ_left_[num_succ_] = left;
+		succ_right_[num_succ_] = right;
+		succ_row_[num_succ_] = row;
+		num_succ_++;
+	}
+
+	private void load_successor(int index, AnyaNode node)
+	{
+		node.root.setLocation(succ_rootx_[index], succ_rooty_[index]);
+		node.interval.init(succ_left_[index], succ_right_[index], 
+				succ_row_[index]);
 	}
 		
 	@Override
@@ -138,29 +182,31 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
     }
 	
 	public BitpackedGrid getGrid() { return grid_; }
+
+	// Lets one policy search many grids. Nothing in the policy depends on
+	// the grid between searches.
+	void setGrid(BitpackedGrid grid) { this.grid_ = grid; }
 		
-    protected void generate_successors(
-    		AnyaNode node, ArrayList<AnyaNode> retval)
+    protected void generate_successors(AnyaNode node)
     {
-    	IntervalProjection projection = new IntervalProjection();
+    	IntervalProjection projection = projection_;
     	
     	if(node.root.y == node.interval.getRow())
     	{
         	projection.project(node, grid_);
-	    	flat_node_obs(node, retval, projection);	    	
+	    	flat_node_obs(node, projection);	    	
 	    	projection.project_f2c(node, grid_);
-	    	flat_node_nobs(node, retval, projection);
+	    	flat_node_nobs(node, projection);
     	}
     	else
     	{
         	projection.project(node, grid_);
-        	cone_node_obs(node, retval, projection);
-        	cone_node_nobs(node, retval, projection);
+        	cone_node_obs(node, projection);
+        	cone_node_nobs(node, projection);
     	}
     }
     
-    protected void generate_start_successors(AnyaNode node, 
-    		ArrayList<AnyaNode> retval)
+    protected void generate_start_successors(AnyaNode node)
     {
     	assert(node.interval.getLeft() == node.interval.getRight() &&
     			node.interval.getLeft() == node.root.x &&
@@ -181,13 +227,13 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
     		
     	// generate flat observable successors left of the start point
     	// NB: hacky implementation; we use a fake root for the projection
-    	IntervalProjection projection = new IntervalProjection();
+    	IntervalProjection projection = projection_;
     	if(!start_dc)
     	{
 	    	projection.project(rootx, rootx, rooty, 
 	    			rootx+1, rooty, grid_);
 	    	this.generate_observable_flat__(projection, 
-	    			rootx, rooty, node, retval);
+	    			rootx, rooty, node);
     	}
 
     	// generate flat observable successors right of the start point
@@ -195,7 +241,7 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
     	projection.project(rootx, rootx, rooty, 
     			rootx-1, rooty, grid_);
     	this.generate_observable_flat__(projection, 
-    			rootx, rooty, node, retval);
+    			rootx, rooty, node);
     	
     	// generate conical observable successors below the start point 
         int max_left = grid_.scan_cells_left(rootx-1, rooty)+1;
@@ -203,12 +249,12 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
     	if(max_left != rootx && !start_dc)
     	{
     		split_interval_make_successors(max_left, rootx, rooty+1, 
-    				rootx, rooty, rooty+1, node, retval);
+    				rootx, rooty, rooty+1, node);
     	}    	
     	if(max_right  != rootx)
     	{
     		split_interval_make_successors(rootx, max_right, rooty+1, 
-    				rootx, rooty, rooty+1, node, retval);
+    				rootx, rooty, rooty+1, node);
     	}
 
     	// generate conical observable successors above the start point
@@ -217,30 +263,29 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
     	if(max_left != rootx && !start_dc)
     	{
     		split_interval_make_successors(max_left, rootx, rooty-1, 
-    				rootx, rooty, rooty-2, node, retval);
+    				rootx, rooty, rooty-2, node);
     	}    	
         
     	if(max_right != rootx)
     	{
     		split_interval_make_successors(rootx, max_right, rooty-1, 
-    				rootx, rooty, rooty-2, node, retval);
+    				rootx, rooty, rooty-2, node);
     	}
     }
     
     private void split_interval_make_successors(
     		double max_left, double max_right, int irow,
     		int rootx, int rooty, int sterile_check_row, 
-    		AnyaNode parent, ArrayList<AnyaNode> retval)
+    		AnyaNode parent)
     {
     	if(max_left == max_right) { return; }
     	
     	double succ_left = max_right;
     	double succ_right;
-    	int num_successors = retval.size();
+    	int num_successors = num_succ_;
     	boolean target_node = contains_target(max_left, max_right, irow);
     	boolean forced_succ = !prune_ || target_node;
     	
-    	AnyaNode successor = null;
     	do
     	{
     		succ_right = succ_left;
@@ -248,33 +293,32 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
     		if(forced_succ || 
     		   !sterile(succ_left, succ_right, sterile_check_row))
     		{
-    			successor = new AnyaNode(parent, 
-    					new AnyaInterval(succ_left, succ_right, irow), 
-    					rootx, rooty);
-    			successor.interval.setLeft(
-    					succ_left < max_left ? max_left : succ_left);
-    			retval.add(successor);
+    			add_successor(succ_left < max_left ? max_left : succ_left,
+    					succ_right, irow, rootx, rooty);
     		}
     	}while((succ_left != succ_right) && (succ_left > max_left));
     	
     	
     	// TODO: recurse over every node (NB: intermediate check includes goal check) 
     	// TODO: recurse until we start heading e.g. up instead of down (flat is ok)
-    	if(!forced_succ && retval.size() == (num_successors+1) && 
-    			intermediate(successor.interval, rootx, rooty))
+    	if(!forced_succ && num_succ_ == (num_successors+1))
     	{
-    		retval.remove(retval.size()-1);
-    		// TODO: optimise this new call out?
-    		IntervalProjection proj = new IntervalProjection();
+    		AnyaInterval successor = tmp_interval_;
+    		successor.init(succ_left_[num_successors], 
+    				succ_right_[num_successors], irow);
+    		if(!intermediate(successor, rootx, rooty)) { return; }
+
+    		num_succ_--;
+    		IntervalProjection proj = cone_projection_;
     		proj.project_cone(
-    				successor.interval.getLeft(), 
-    				successor.interval.getRight(), 
-    				successor.interval.getRow(),
+    				successor.getLeft(), 
+    				successor.getRight(), 
+    				successor.getRow(),
     				rootx, rooty, grid_);
     		if(proj.valid && proj.observable)
     		{
     			split_interval_make_successors(proj.left, proj.right, proj.row, 
-    					rootx, rooty, proj.sterile_check_row, parent, retval);
+    					rootx, rooty, proj.sterile_check_row, parent);
     		}
     	}
     }
@@ -359,22 +403,22 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
     // there is an inductive argument here: if the move is not valid
     // the node should have been pruned. check this is always true.
     protected void cone_node_obs(AnyaNode node, 
-    		ArrayList<AnyaNode> retval, IntervalProjection projection)
+    		IntervalProjection projection)
     {    	
     	assert(node.root.y != node.interval.getRow());
 
     	Point2D.Double root = node.root;
     	generate_observable_cone__(projection, (int)root.x, (int)root.y,
-			node, retval);
+			node);
     }
     
     private void generate_observable_cone__(IntervalProjection projection,
-		int rootx, int rooty, AnyaNode parent, ArrayList<AnyaNode> retval)
+		int rootx, int rooty, AnyaNode parent)
 	{
     	if(!(projection.valid && projection.observable)) { return; }
     	split_interval_make_successors(projection.left, projection.right, 
     			(int)projection.row, rootx, rooty, 
-    			projection.sterile_check_row, parent, retval);
+    			projection.sterile_check_row, parent);
     }
 
     // there are two kinds of non-observable successors
@@ -385,7 +429,7 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
     // to the interval is too low to observe any point from the next row)
     // TODO: seems like too many branching statements in this function. consolidate?
     protected void cone_node_nobs(AnyaNode node, 
-    		ArrayList<AnyaNode> retval, IntervalProjection projection)
+    		IntervalProjection projection)
     {
     	if(!projection.valid) { return; }
     	
@@ -401,14 +445,14 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 			{
 				split_interval_make_successors(
 		    			projection.max_left, iright, projection.row,
-		    			(int)iright, irow, projection.sterile_check_row, node, retval);
+		    			(int)iright, irow, projection.sterile_check_row, node);
 			}
 			else if(node.root.x < ileft && node.interval.discrete_left &&
 					grid_.get_point_is_corner((int)ileft, irow))
 			{
 				split_interval_make_successors(
 		    			ileft, projection.max_right, projection.row,
-		    			(int)ileft, irow, projection.sterile_check_row, node, retval);
+		    			(int)ileft, irow, projection.sterile_check_row, node);
 			}
 			// non-observable successors to the left of the current interval
 			if( node.interval.discrete_left &&
@@ -420,7 +464,7 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 		    	projection.project_flat(ileft-grid_.smallest_step_div2, ileft,
 		    			(int)ileft, (int)irow, grid_); 
 		    	generate_observable_flat__(projection, (int)ileft, irow, 
-		    			node, retval);	 	    	
+		    			node);	 	    	
 			}
 			// non-observable successors to the right of the current interval
 			if( node.interval.discrete_right &&
@@ -432,13 +476,13 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 		    	projection.project_flat(iright, iright+grid_.smallest_step_div2, 
 		    			(int)iright, (int)irow, grid_); // NB: dummy root
 		    	generate_observable_flat__(projection, (int)iright, irow, 
-		    			node, retval);	 	    	
+		    			node);	 	    	
 			}			
 			return;
 		}
 		
 		// non-observable successors type (i) and (ii)
-    	IntervalProjection flatprj = new IntervalProjection();    	
+    	IntervalProjection flatprj = flat_projection_;
     	int corner_row = irow - (((int)node.root.y - irow) >>> 31);
 		
 		// non-observable successors to the left of the current interval
@@ -451,13 +495,13 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 		    	flatprj.project(ileft-BitpackedGrid.epsilon, iright, (int)irow, 
 		    			(int)ileft, (int)irow, grid_);
 		    	generate_observable_flat__(flatprj, (int)ileft, irow, 
-		    			node, retval);	 	    	
+		    			node);	 	    	
 			}				
 
 			// conical successors from the projected row
 			split_interval_make_successors(
 	    			projection.max_left, projection.left, projection.row,
-	    			(int)ileft, irow, projection.sterile_check_row, node, retval);
+	    			(int)ileft, irow, projection.sterile_check_row, node);
 		}
 		
 		// non-observable successors to the right of the current interval
@@ -470,26 +514,26 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 		    	flatprj.project(ileft, iright+BitpackedGrid.epsilon, (int)irow, 
 		    			(int)ileft, (int)irow, grid_);
 		    	generate_observable_flat__(flatprj, (int)iright, irow, 
-		    			node, retval);	 	    	
+		    			node);	 	    	
 			}
 			
 			// conical successors from the projected row
 			split_interval_make_successors(
 	    			projection.right, projection.max_right, projection.row,
-	    			(int)iright, irow, projection.sterile_check_row, node, retval);
+	    			(int)iright, irow, projection.sterile_check_row, node);
 		}
     }
     
     protected void flat_node_obs(AnyaNode node, 
-    		ArrayList<AnyaNode> retval, IntervalProjection projection)
+    		IntervalProjection projection)
     {
     	Point2D.Double root = node.root;
     	generate_observable_flat__(projection, (int)root.x, (int)root.y,
-			node, retval);
+			node);
     }
     
     private void generate_observable_flat__(IntervalProjection projection,
-		int rootx, int rooty, AnyaNode parent, ArrayList<AnyaNode> retval)
+		int rootx, int rooty, AnyaNode parent)
 	{
 		assert(projection.row == rooty);
 		if(!projection.valid) { return; }
@@ -509,15 +553,13 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
 		
 		if(!projection.deadend || !prune_ || goal_interval)
 		{
-			retval.add(
-				new AnyaNode(parent,
-					new AnyaInterval(projection.left, projection.right, 
-							projection.row), rootx, rooty));
+			add_successor(projection.left, projection.right, 
+					projection.row, rootx, rooty);
 		}
     }
     
     protected void flat_node_nobs(AnyaNode node, 
-    		ArrayList<AnyaNode> retval, IntervalProjection projection)
+    		IntervalProjection projection)
     {
     	if(!projection.valid) { return; }
 		// conical successors from the projected row
@@ -535,7 +577,7 @@ public class AnyaExpansionPolicy implements ExpansionPolicy<AnyaNode> {
     	
 		split_interval_make_successors(
     			projection.left, projection.right, projection.row,
-    			new_rootx, new_rooty, projection.sterile_check_row, node, retval);
+    			new_rootx, new_rooty, projection.sterile_check_row, node);
     }
         
     public int hash(AnyaNode n)
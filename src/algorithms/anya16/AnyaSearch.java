@@ -1,11 +1,7 @@
 package algorithms.anya16;
 
-import java.util.Hashtable;
 import java.util.function.Consumer;
 
-import algorithms.jgrapht.FibonacciHeap;
-import algorithms.jgrapht.FibonacciHeapNode;
-
 import java.awt.geom.Point2D;
 
 // An implementation of the Anya search algorithm. 
@@ -16,13 +12,12 @@ import java.awt.geom.Point2D;
 
 public class AnyaSearch implements MBRunnable {
 
-	private static int search_id_counter = 0;
 	private AnyaExpansionPolicy expander;
 	private Heuristic<AnyaNode> heuristic;
-//	private Object[] pool;
-//	private double[] roots;
-	Hashtable<Integer, SearchNode> roots_;
-	private SearchNode lastNodeParent;
+	// root hash -> index (in nodes) of the node with the best g-value
+	// to that root
+	RootTable roots_;
+	private int lastNodeParent;
 	
 	public boolean verbose = false;
 	public boolean isRecording = false;
@@ -31,7 +26,11 @@ public class AnyaSearch implements MBRunnable {
 	public int insertions;
 	public int generated;
 	public int heap_ops;
-	FibonacciHeap<AnyaNode> open;
+	// all search nodes of the current search, and the open list over them
+	SearchNodePool nodes;
+	// the node being expanded, loaded from nodes
+	private final AnyaNode current_data = 
+			new AnyaNode(null, new AnyaInterval(0, 0, 0), 0, 0);
 	
 	// these can be set apriori; only used in conjunction with the
 	// run method.
@@ -39,72 +38,43 @@ public class AnyaSearch implements MBRunnable {
 	public AnyaNode mb_target_;
 	public double mb_cost_;
 	
+	// the stamp of the optimistic read of the grid this search runs under
+	// (see BitpackedGrid.read_consistently). the search stops early once the
+	// grid has changed, as its result is then discarded. 0: never stops.
+	public long grid_stamp_;
+	
 	public Consumer<AnyaNode> snapshotInsert;
 	public Consumer<AnyaNode> snapshotExpand;
 		
-	// This class holds various bits of data needed to 
-	// drive the search
-    class SearchNode extends FibonacciHeapNode<AnyaNode>
-    {
-    	// parent node
-    	private SearchNode parent;
-
-    	// tracks if the node has been added to open
-        public int search_id;
-    	
-        // tracks if the node has been expanded
-        public boolean closed;
-                
-        SearchNode(AnyaNode vertex) 
-        { 
-        	super(vertex);
-        	search_id = -1;
-        }
-        
-        public void reset()
-        {
-        	parent = null;
-        	search_id = search_id_counter;
-        	closed = false;
-        	super.reset();
-        }
-                
-        public String toString()
-        {
-        	return "searchnode "+this.getData().hashCode() + ";" + this.getData().toString();
-        }
-    }
-	
 	public AnyaSearch(AnyaExpansionPolicy expander)
 	{
-//		this.pool = new Object[search_space_size];
-//		this.roots = new double[search_space_size];
-		this.roots_ = new Hashtable<Integer, SearchNode>(65535);
-		this.open = new FibonacciHeap<AnyaNode>();
+		this.roots_ = new RootTable();
+		this.nodes = new SearchNodePool();
 		this.heuristic = expander.heuristic();
 		this.expander = expander;
 	}
 	
 	private void init()
 	{
-		search_id_counter++;
 		expanded = 0;
 		insertions = 0;
 		generated = 0;
 		heap_ops = 0;
-		open.clear();
+		nodes.reset();
 		roots_.clear();
 	}
 	
-    private void print_path(SearchNode current, java.io.PrintStream stream)
+    private void print_path(int current, java.io.PrintStream stream)
     {
-    	if(current.parent != null)
+    	if(nodes.parent[current] != -1)
     	{
-    		print_path(current.parent, stream);
+    		print_path(nodes.parent[current], stream);
     	}
-    	stream.println(current.getData().hashCode() + "; " 
-    			+ current.getData().root.toString() 
-    			+ "; g=" + current.getSecondaryKey());
+    	AnyaNode node = new AnyaNode(null, new AnyaInterval(0, 0, 0), 0, 0);
+    	nodes.load(current, node);
+    	stream.println(node.hashCode() + "; " 
+    			+ node.root.toString() 
+    			+ "; g=" + nodes.g[current]);
     }
 
     private boolean pointsEqual(Point2D.Double p1, Point2D.Double p2) {
@@ -114,20 +84,26 @@ public class AnyaSearch implements MBRunnable {
 	public Path<AnyaNode> search(AnyaNode start, AnyaNode target)
 	{
 		double cost = this.search_costonly(start, target);
+		mb_cost_ = cost;
 		// generate the path
 		Path<AnyaNode> path = null; 
 		if(cost != -1)
 		{
 			//SearchNode node = generate(target);
 			path = new Path<AnyaNode>(target, path, 0);
-			SearchNode node = lastNodeParent;
+			int node = lastNodeParent;
 
-			while (node != null)
+			while (node != -1)
 			{
-				if (!pointsEqual(path.getVertex().root, node.getData().root)) {
-					path = new Path<AnyaNode>(node.getData(), path, node.getSecondaryKey());
+				Point2D.Double root = new Point2D.Double(
+						nodes.root_x[node], nodes.root_y[node]);
+				if (!pointsEqual(path.getVertex().root, root)) {
+					AnyaNode vertex = new AnyaNode(null, 
+							new AnyaInterval(0, 0, 0), root);
+					nodes.load(node, vertex);
+					path = new Path<AnyaNode>(vertex, path, nodes.g[node]);
 				}
-				node = node.parent;
+				node = nodes.parent[node];
 				
 			}//while(!(node.parent == null));
 		}
@@ -143,46 +119,50 @@ public class AnyaSearch implements MBRunnable {
 			return cost;
 		}
 
-		SearchNode startNode = generate(start);
-		startNode.reset();
-		open.insert(startNode, heuristic.getValue(start, target), 0);
+		generated++;
+		nodes.push(nodes.add(start, expander.hash(start), -1, 0, 
+				heuristic.getValue(start, target)));
 		
-		while(!open.isEmpty())
+		BitpackedGrid grid = expander.getGrid();
+		while(!nodes.open_is_empty())
 		{
-			SearchNode current = (SearchNode)open.removeMin();
-			//if(verbose) { System.out.println("expanding (f="+current.getKey()+") "+current.toString()); }
-			if (isRecording) snapshotExpand.accept(current.getData());
+			if(grid.has_changed_since(grid_stamp_)) { break; }
+			int current = nodes.pop_min();
+			nodes.load(current, current_data);
+			//if(verbose) { System.out.println("expanding (f="+nodes.f[current]+") "+current_data.toString()); }
+			if (isRecording) snapshotExpand.accept(current_data);
 
-			expander.expand(current.getData());
+			expander.expand(current_data);
 			expanded++;
 			heap_ops++;
-			if(current.getData().interval.contains(target.root))
+			if(current_data.interval.contains(target.root))
 			{
 				// found the goal
-				cost = current.getKey();
+				cost = nodes.f[current];
 				lastNodeParent = current;
 				
 				if(verbose)
 				{
 					print_path(current, System.err);
-					System.err.println(target.toString() + "; f=" + current.getKey());
+					System.err.println(target.toString() + "; f=" + nodes.f[current]);
 				}
 				break;
 			}
 
 			// unique id for the root of the parent node
-			int p_hash = expander.hash(current.getData());
+			int p_hash = nodes.root_hash[current];
+			double current_g = nodes.g[current];
 			
 			// iterate over all neighbours			
 			while(expander.hasNext())
 			{
 				AnyaNode succ = expander.next();
-				SearchNode neighbour = generate(succ);
+				generated++;
 
 				boolean insert = true;
 				int root_hash = expander.hash(succ);
-				SearchNode root_rep = roots_.get(root_hash);
-				double new_g_value = current.getSecondaryKey() + 
+				int root_rep = roots_.get(root_hash);
+				double new_g_value = current_g + 
 						expander.step_cost();
 
 
@@ -192,34 +172,30 @@ public class AnyaSearch implements MBRunnable {
 				// is equal to the best known distance, we prune only if the
 				// node isn't a sibling of the node with the best distance or
 				// if the node with the best distance isn't the immediate parent
-				if(root_rep != null)
+				if(root_rep != -1)
 				{
-					double root_best_g = root_rep.getSecondaryKey();
+					double root_best_g = nodes.g[root_rep];
 					insert = (new_g_value - root_best_g) 
 					   			<= BitpackedGrid.epsilon;
 					boolean eq = (new_g_value - root_best_g) 
 							>= -BitpackedGrid.epsilon;
 					if(insert && eq)
 					{
-						int p_rep_hash = expander.hash(root_rep.parent.getData());
+						int p_rep_hash = nodes.root_hash[nodes.parent[root_rep]];
 						insert = (root_hash == p_hash) || (p_rep_hash == p_hash);
 					}
 				}
 					
 				if(insert)
 				{
-					neighbour.reset();
-					neighbour.parent = current;
-
-			
-					open.insert(neighbour, 
+					int neighbour = nodes.add(succ, root_hash, current, new_g_value,
 							new_g_value +
-							heuristic.getValue(neighbour.getData(), target),
-							new_g_value);
+							heuristic.getValue(succ, target));
+					nodes.push(neighbour);
 					roots_.put(root_hash, neighbour);
 
-					//if(verbose) {System.out.println("\tinserting with f=" + neighbour.getKey() +" (g= "+new_g_value+");" + neighbour.toString());}
-					if (isRecording) snapshotInsert.accept(neighbour.getData());
+					//if(verbose) {System.out.println("\tinserting with f=" + nodes.f[neighbour] +" (g= "+new_g_value+");" + succ.toString());}
+					if (isRecording) snapshotInsert.accept(succ);
 							
 					heap_ops++;
 					insertions++;
@@ -228,8 +204,8 @@ public class AnyaSearch implements MBRunnable {
 				{
 					if(verbose)
 					{
-						System.out.println("\told rootg: "+root_rep.getSecondaryKey());
-						System.out.println("\tNOT inserting with f=" + neighbour.getKey() +" (g= "+new_g_value+");" + neighbour.toString());
+						System.out.println("\told rootg: "+nodes.g[root_rep]);
+						System.out.println("\tNOT inserting with g= "+new_g_value+";" + succ.toString());
 					}
 					
 				}
@@ -243,14 +219,10 @@ public class AnyaSearch implements MBRunnable {
 
 	}
 	
-	private SearchNode 
-	generate(AnyaNode v)
-	{
-		SearchNode retval = new SearchNode(v);
-		generated++;
-		return retval;
+	AnyaExpansionPolicy getExpansionPolicy() {
+		return expander;
 	}
-		
+
 	public int getExpanded() {
 		return expanded;
 	}
@@ -6,6 +6,10 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+
+import algorithms.datatypes.PreprocessedGraphRegistry;
 
 // A simple uniform-cost lattice / cell grid.
 // This implementation uses a bitpacked representation
@@ -60,6 +64,12 @@ public class BitpackedGrid
 	public double smallest_step;
 	public double smallest_step_div2;
 	
+	// cells can be changed while searches run on the grid (see update_cells).
+	// every change takes the write lock, so each change gets a new stamp. 
+	// searches read the grid optimistically and check the stamp afterwards 
+	// (see read_consistently).
+	private final StampedLock lock_ = new StampedLock();
+	
     public BitpackedGrid(String mapfile) throws Exception
     {
         this.load(mapfile);
@@ -161,6 +171,71 @@ public class BitpackedGrid
 		update_point(cx+1, cy+1);		
 	}
 	
+	// sets the traversability of the cells (@param xs[i], @param ys[i]) to
+	// match @param gridGraph, after the cells have been changed there.
+	// only the bits of the cells and of the four points around each cell 
+	// are updated, so the cost does not depend on the size of the map.
+	// searches that overlap the update are run again by read_consistently.
+	public void update_cells(GridGraph gridGraph, int[] xs, int[] ys)
+	{
+		long stamp = lock_.writeLock();
+		try
+		{
+			for(int i = 0; i < xs.length; i++)
+			{
+				this.set_cell_is_traversable(xs[i], ys[i], !gridGraph.isBlocked(xs[i], ys[i]));
+			}
+		}
+		finally
+		{
+			lock_.unlockWrite(stamp);
+		}
+	}
+	
+	// runs @param search, which reads the grid, against a single version
+	// of the grid. the search first runs without locking. if the cells 
+	// were updated meanwhile, its result is discarded and it is run again 
+	// under a read lock, which holds back updates until it is done.
+	// the search is given the stamp of its optimistic read (0 under the 
+	// read lock), so it can stop as soon as has_changed_since(stamp) 
+	// instead of running to the end for a result that is discarded.
+	public void read_consistently(LongConsumer search)
+	{
+		long stamp = lock_.tryOptimisticRead();
+		if(stamp != 0)
+		{
+			try
+			{
+				search.accept(stamp);
+			}
+			catch(RuntimeException e)
+			{
+				// an update in the middle of the search can leave it in
+				// a state it cannot handle. only report errors of searches
+				// that saw a consistent grid.
+				if(lock_.validate(stamp)) { throw e; }
+			}
+			if(lock_.validate(stamp)) { return; }
+		}
+		
+		stamp = lock_.readLock();
+		try
+		{
+			search.accept(0);
+		}
+		finally
+		{
+			lock_.unlockRead(stamp);
+		}
+	}
+	
+	// @return true if the cells may have been updated since the optimistic
+	// read of @param stamp began. never true for stamp 0.
+	public boolean has_changed_since(long stamp)
+	{
+		return stamp != 0 && !lock_.validate(stamp);
+	}
+	
 	private void update_point(int px, int py)
 	{
 		boolean cellNW = get_cell_is_traversable(px-1, py-1);
@@ -653,6 +728,14 @@ public class BitpackedGrid
 		return this.map_height_ * map_width_;
 	}
 	
+	// estimated size in bytes of the grid (four packed arrays)
+	public long get_footprint_bytes()
+	{
+		return PreprocessedGraphRegistry.OBJECT_HEADER + 64 +
+				PreprocessedGraphRegistry.sizeOf(map_cells_) + PreprocessedGraphRegistry.sizeOf(visible_) +
+				PreprocessedGraphRegistry.sizeOf(corner_) + PreprocessedGraphRegistry.sizeOf(double_corner_);
+	}
+	
 	// print a portion of the grid cells around location (x, y)
 	// @param offset specifies how many cells around (x, y) to print
 	// i.e. an offset of 10 prints 21x21 cells with (x,y) in the middle
@@ -685,11 +768,35 @@ public class BitpackedGrid
         int width = gridGraph.sizeX;
 
         this.init(width, height);
+
+        // copy the cells straight from the bit-packed rows of the GridGraph.
+        // word k of a row holds cells (32k - padding_) to (32k - padding_ + 31);
+        // cells outside the grid read as blocked, i.e. not traversable.
         for (int y = 0; y < height; y++)
         {
-            for (int x = 0 ; x < width; x++)
+            int row_start = ((y+padding_)*map_width_) >> LOG2_BITS_PER_WORD;
+            for (int k = 0; k < map_width_in_words_; k++)
+            {
+                long blocked = gridGraph.getBlockedBits((k << LOG2_BITS_PER_WORD) - padding_, y);
+                this.map_cells_[row_start + k] = ~(int)blocked;
+            }
+        }
+        // the last cells of a row may not fit in its words and spill over into 
+        // the padding of the next row; set those one by one, as before.
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = map_width_ - padding_; x < width; x++)
+            {
+                this.set_bit_value(x, y, !gridGraph.isBlocked(x, y), map_cells_);
+            }
+        }
+
+        // each point depends only on its four cells, so update every point once.
+        for (int y = 0; y <= height; y++)
+        {
+            for (int x = 0 ; x <= width; x++)
             {
-                this.set_cell_is_traversable(x, y, !gridGraph.isBlocked(x, y));
+                this.update_point(x, y);
             }
         }
     }
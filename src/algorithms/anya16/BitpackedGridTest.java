@@ -0,0 +1,121 @@
+package algorithms.anya16;
+
+import static org.junit.Assert.*;
+
+import grid.GridGraph;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import algorithms.datatypes.PreprocessedGraphRegistry;
+import main.graphgeneration.DefaultGenerator;
+import main.utility.Utility;
+
+public class BitpackedGridTest {
+
+    private static void assertSameGrid(BitpackedGrid expected, BitpackedGrid actual, GridGraph graph) {
+        for (int y=-1;y<=graph.sizeY+1;++y) {
+            for (int x=-1;x<=graph.sizeX+1;++x) {
+                assertEquals(expected.get_cell_is_traversable(x, y), actual.get_cell_is_traversable(x, y));
+                assertEquals(expected.get_point_is_visible(x, y), actual.get_point_is_visible(x, y));
+                assertEquals(expected.get_point_is_corner(x, y), actual.get_point_is_corner(x, y));
+                assertEquals(expected.get_point_is_double_corner(x, y), actual.get_point_is_double_corner(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateCellsMatchesRebuild() throws Exception {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(4, 90, 70, 15);
+        BitpackedGrid grid = new BitpackedGrid(graph);
+        Random rand = new Random(2);
+
+        for (int round=0;round<50;++round) {
+            int n = 1 + rand.nextInt(5);
+            int[] changedX = new int[n];
+            int[] changedY = new int[n];
+            for (int i=0;i<n;++i) {
+                changedX[i] = rand.nextInt(graph.sizeX);
+                changedY[i] = rand.nextInt(graph.sizeY);
+                graph.setBlocked(changedX[i], changedY[i], rand.nextBoolean());
+            }
+            grid.update_cells(graph, changedX, changedY);
+            assertSameGrid(new BitpackedGrid(graph), grid, graph);
+        }
+    }
+
+    @Test
+    public void testReadConsistentlyRetriesAfterUpdate() throws Exception {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(4, 40, 40, 15);
+        BitpackedGrid grid = new BitpackedGrid(graph);
+        long[] stamps = new long[2];
+        int[] nRuns = new int[1];
+
+        grid.read_consistently(stamp -> {
+            stamps[nRuns[0]++] = stamp;
+            if (nRuns[0] > 1) return;
+            assertFalse(grid.has_changed_since(stamp));
+            // An update from another thread, in the middle of the optimistic read.
+            Thread updater = new Thread(() -> grid.update_cells(graph, new int[] {3}, new int[] {4}));
+            updater.start();
+            try {
+                updater.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            assertTrue(grid.has_changed_since(stamp));
+        });
+
+        // The search is run again under the read lock, where it never sees a change.
+        assertEquals(2, nRuns[0]);
+        assertTrue(stamps[0] != 0);
+        assertEquals(0, stamps[1]);
+        assertFalse(grid.has_changed_since(0));
+    }
+
+    @Test
+    public void testUpdateTilesInRegistry() {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(6, 80, 80, 12);
+        try {
+            PreprocessedGraphRegistry.clear();
+            solveQueries(graph);
+            BitpackedGrid before = PreprocessedGraphRegistry.peek("Anya16", 0, graph);
+
+            Random rand = new Random(8);
+            int[] changedX = new int[30];
+            int[] changedY = new int[30];
+            for (int i=0;i<changedX.length;++i) {
+                changedX[i] = rand.nextInt(graph.sizeX);
+                changedY[i] = rand.nextInt(graph.sizeY);
+                graph.setBlocked(changedX[i], changedY[i], !graph.isBlocked(changedX[i], changedY[i]));
+            }
+            Anya16.updateTiles(graph, changedX, changedY);
+            assertSame(before, PreprocessedGraphRegistry.peek("Anya16", 0, graph));
+            float[] updatedLengths = solveQueries(graph);
+            assertTrue(updatedLengths[0] > 0);
+
+            PreprocessedGraphRegistry.clear();
+            assertArrayEquals(solveQueries(graph), updatedLengths, 0f);
+            assertNotSame(before, PreprocessedGraphRegistry.peek("Anya16", 0, graph));
+        } finally {
+            PreprocessedGraphRegistry.clear();
+        }
+    }
+
+    private static float[] solveQueries(GridGraph graph) {
+        Random rand = new Random(1);
+        float[] lengths = new float[50];
+        for (int i=0;i<lengths.length;++i) {
+            int sx = rand.nextInt(graph.sizeX+1);
+            int sy = rand.nextInt(graph.sizeY+1);
+            int ex = rand.nextInt(graph.sizeX+1);
+            int ey = rand.nextInt(graph.sizeY+1);
+            Anya16 algo = new Anya16(graph, sx, sy, ex, ey);
+            algo.computePath();
+            lengths[i] = algo.getPathLength();
+            assertEquals(Utility.computePathLength(graph, algo.getPath()), lengths[i], 1e-3);
+        }
+        return lengths;
+    }
+}
@@ -0,0 +1,104 @@
+package algorithms.anya16;
+
+// Map from the hash of a root point (AnyaExpansionPolicy.hash) to the
+// index of the search node with the best g-value to that root.
+//
+// Open addressing with linear probing over primitive arrays. Entries are
+// tagged with a generation number, so clear() is O(1): it just starts a
+// new generation. No locks, no boxing.
+//
+final class RootTable {
+
+	private static final int INITIAL_CAPACITY = 65536;
+
+	private int[] keys;
+	private int[] values;
+	private int[] generations;
+	private int mask;
+	private int shift;
+	private int size;
+	private int generation;
+
+	RootTable()
+	{
+		allocate(INITIAL_CAPACITY);
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new int[capacity];
+		values = new int[capacity];
+		generations = new int[capacity];
+		mask = capacity - 1;
+		shift = Integer.numberOfLeadingZeros(capacity) + 1;
+		size = 0;
+		generation = 1;
+	}
+
+	void clear()
+	{
+		size = 0;
+		if(generation == Integer.MAX_VALUE)
+		{
+			allocate(keys.length);
+		}
+		else
+		{
+			generation++;
+		}
+	}
+
+	// Fibonacci hashing: the top bits of key * 2^32/phi.
+	private int slot_of(int key)
+	{
+		return (key * 0x9E3779B9) >>> shift;
+	}
+
+	// @return the value stored for key, or -1 if there is none.
+	int get(int key)
+	{
+		int slot = slot_of(key);
+		while(generations[slot] == generation)
+		{
+			if(keys[slot] == key) { return values[slot]; }
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	void put(int key, int value)
+	{
+		int slot = slot_of(key);
+		while(generations[slot] == generation)
+		{
+			if(keys[slot] == key)
+			{
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		generations[slot] = generation;
+		size++;
+		if(size * 2 > keys.length) { grow(); }
+	}
+
+	private void grow()
+	{
+		int[] old_keys = keys;
+		int[] old_values = values;
+		int[] old_generations = generations;
+		int old_generation = generation;
+
+		allocate(old_keys.length * 2);
+		for(int i = 0; i < old_keys.length; i++)
+		{
+			if(old_generations[i] == old_generation)
+			{
+				put(old_keys[i], old_values[i]);
+			}
+		}
+	}
+}
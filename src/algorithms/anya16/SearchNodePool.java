@@ -0,0 +1,145 @@
+package algorithms.anya16;
+
+import java.util.Arrays;
+
+// The search nodes of one AnyaSearch, stored by index in parallel arrays
+// (root, interval, parent, g, f), together with the open list: a 4-ary 
+// heap of node indices. No AnyaNode objects are kept; add() copies the 
+// fields of a node in and load() copies them back out.
+// Both are emptied by reset() at the start of each search; the arrays
+// are kept and only grow.
+//
+// The open list orders nodes exactly as FibonacciHeapNode.lessThan does:
+// by f-value rounded to 1/KEY_SCALE, then in favour of the higher g-value.
+//
+final class SearchNodePool {
+
+	private static final long KEY_SCALE = 100000;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// node store
+	double[] root_x = new double[INITIAL_CAPACITY];
+	double[] root_y = new double[INITIAL_CAPACITY];
+	int[] root_hash = new int[INITIAL_CAPACITY];
+	double[] left = new double[INITIAL_CAPACITY];
+	double[] right = new double[INITIAL_CAPACITY];
+	int[] row = new int[INITIAL_CAPACITY];
+	int[] parent = new int[INITIAL_CAPACITY];
+	double[] g = new double[INITIAL_CAPACITY];
+	double[] f = new double[INITIAL_CAPACITY];
+	private long[] primary_key = new long[INITIAL_CAPACITY];
+	private long[] secondary_key = new long[INITIAL_CAPACITY];
+	private int size = 0;
+
+	// open list
+	private int[] heap = new int[INITIAL_CAPACITY];
+	private int heap_size = 0;
+
+	void reset()
+	{
+		size = 0;
+		heap_size = 0;
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	// @return the index of a new node, a copy of v.
+	int add(AnyaNode v, int hash, int parent_index, 
+			double g_value, double f_value)
+	{
+		if(size == row.length) { grow_nodes(); }
+		int index = size++;
+		root_x[index] = v.root.x;
+		root_y[index] = v.root.y;
+		root_hash[index] = hash;
+		left[index] = v.interval.getLeft();
+		right[index] = v.interval.getRight();
+		row[index] = v.interval.getRow();
+		parent[index] = parent_index;
+		g[index] = g_value;
+		f[index] = f_value;
+		primary_key[index] = (long)(f_value * KEY_SCALE + 0.5);
+		secondary_key[index] = (long)(g_value * KEY_SCALE + 0.5);
+		return index;
+	}
+
+	// copies the root and interval of a node into v.
+	void load(int index, AnyaNode v)
+	{
+		v.root.setLocation(root_x[index], root_y[index]);
+		v.interval.init(left[index], right[index], row[index]);
+	}
+
+	private void grow_nodes()
+	{
+		int capacity = row.length * 2;
+		root_x = Arrays.copyOf(root_x, capacity);
+		root_y = Arrays.copyOf(root_y, capacity);
+		root_hash = Arrays.copyOf(root_hash, capacity);
+		left = Arrays.copyOf(left, capacity);
+		right = Arrays.copyOf(right, capacity);
+		row = Arrays.copyOf(row, capacity);
+		parent = Arrays.copyOf(parent, capacity);
+		g = Arrays.copyOf(g, capacity);
+		f = Arrays.copyOf(f, capacity);
+		primary_key = Arrays.copyOf(primary_key, capacity);
+		secondary_key = Arrays.copyOf(secondary_key, capacity);
+	}
+
+	// true iff node a should be expanded before node b
+	private boolean less_than(int a, int b)
+	{
+		long pa = primary_key[a];
+		long pb = primary_key[b];
+		return pa < pb || (pa == pb && secondary_key[a] > secondary_key[b]);
+	}
+
+	boolean open_is_empty()
+	{
+		return heap_size == 0;
+	}
+
+	void push(int node)
+	{
+		if(heap_size == heap.length)
+		{
+			heap = Arrays.copyOf(heap, heap.length * 2);
+		}
+		int index = heap_size++;
+		while(index > 0)
+		{
+			int up = (index - 1) >> 2;
+			int up_node = heap[up];
+			if(!less_than(node, up_node)) { break; }
+			heap[index] = up_node;
+			index = up;
+		}
+		heap[index] = node;
+	}
+
+	int pop_min()
+	{
+		int min = heap[0];
+		int node = heap[--heap_size];
+		int index = 0;
+		while(true)
+		{
+			int first = 4 * index + 1;
+			if(first >= heap_size) { break; }
+			int last = Math.min(first + 3, heap_size - 1);
+			int best = first;
+			for(int child = first + 1; child <= last; child++)
+			{
+				if(less_than(heap[child], heap[best])) { best = child; }
+			}
+			if(!less_than(heap[best], node)) { break; }
+			heap[index] = heap[best];
+			index = best;
+		}
+		heap[index] = node;
+		return min;
+	}
+}
@@ -0,0 +1,522 @@
+package algorithms.datatypes;
+
+import grid.GridGraph;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Holds the preprocessed structures (ENLSVG, SVG, visibility graphs, Anya16 grids...) of many maps at once.<br>
+ * <br>
+ * Entries are keyed by (kind, map). The map is identified either by the GridGraph object (KeyMode.IDENTITY)
+ * or by a hash of its contents (KeyMode.CONTENT_HASH), so that two GridGraphs loaded from the same map share
+ * one preprocessed structure.<br>
+ * Each entry records an estimate of its footprint. When the total goes over the heap budget,
+ * the least recently used entries are evicted. Hits, misses, evictions and build times are counted.<br>
+ * <br>
+ * A structure is built at most once per key, on the first thread that asks for it. Other threads asking for
+ * the same key wait for it. Structures for other keys can be built at the same time.<br>
+ * GridGraphs must not be modified while they have entries in the registry. Call invalidate(graph) after
+ * modifying a GridGraph, or update() to update a structure in place.
+ */
+public final class PreprocessedGraphRegistry {
+    public enum KeyMode {IDENTITY, CONTENT_HASH}
+
+    // Rough object sizes in bytes, used by the footprint estimates.
+    public static final long OBJECT_HEADER = 16;
+    public static final long ARRAY_HEADER = 16;
+    public static final long REFERENCE = 8;
+
+    private static final Object lock = new Object();
+    private static final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // access order
+    private static final Map<GridGraph, ContentKey> contentKeys = new WeakHashMap<>();
+
+    private static KeyMode keyMode = KeyMode.IDENTITY;
+    private static long heapBudget = Runtime.getRuntime().maxMemory() / 2;
+    private static long totalFootprint = 0;
+
+    private static long hits = 0;
+    private static long misses = 0;
+    private static long evictions = 0;
+    private static long totalBuildTimeNanos = 0;
+    private static long lastBuildTimeNanos = 0;
+
+    private PreprocessedGraphRegistry() {
+    }
+
+    /**
+     * Returns the structure of the given kind for the graph, building it with builder if it is not in the registry.
+     * @param kind identifies the type of structure.
+     * @param footprint estimates the size of a built structure in bytes.
+     */
+    public static <T> T get(String kind, GridGraph graph, Function<GridGraph, T> builder, ToLongFunction<T> footprint) {
+        return get(kind, 0, graph, builder, footprint);
+    }
+
+    /**
+     * @param variant distinguishes structures of the same kind built with different parameters (e.g. a level limit).
+     */
+    public static <T> T get(String kind, int variant, GridGraph graph, Function<GridGraph, T> builder, ToLongFunction<T> footprint) {
+        Key key = new Key(kind, variant, mapKey(graph));
+
+        while (true) {
+            Entry entry;
+            synchronized (lock) {
+                entry = entries.get(key);
+                if (entry == null) {
+                    entry = new Entry(key);
+                    entries.put(key, entry);
+                    ++misses;
+                } else {
+                    ++hits;
+                    if (entry.isBuilt()) return cast(entry.value);
+                    entry = entry.waitUntilDone();
+                    if (entry != null) return cast(entry.value);
+                    continue; // The build failed on another thread. Try again.
+                }
+            }
+            return build(entry, graph, builder, footprint);
+        }
+    }
+
+    private static <T> T build(Entry entry, GridGraph graph, Function<GridGraph, T> builder, ToLongFunction<T> footprint) {
+        T value = null;
+        long buildTime = 0;
+        long size = 0;
+        try {
+            long start = System.nanoTime();
+            value = builder.apply(graph);
+            buildTime = System.nanoTime() - start;
+            size = footprint.applyAsLong(value);
+        } finally {
+            synchronized (lock) {
+                if (value == null) {
+                    entries.remove(entry.key);
+                    entry.fail();
+                } else {
+                    totalBuildTimeNanos += buildTime;
+                    lastBuildTimeNanos = buildTime;
+                    if (entries.get(entry.key) == entry) {
+                        totalFootprint += size;
+                        entry.footprint = size;
+                    }
+                    entry.complete(value);
+                    evictOverBudget(entry);
+                }
+                lock.notifyAll();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return the built structure of the given kind and variant for the graph, or null if it is not in the registry.
+     *  Does not build it or count a hit or miss.
+     */
+    public static <T> T peek(String kind, int variant, GridGraph graph) {
+        Key key = new Key(kind, variant, mapKey(graph));
+        synchronized (lock) {
+            Entry entry = entries.get(key);
+            if (entry == null || !entry.isBuilt()) return null;
+            return cast(entry.value);
+        }
+    }
+
+    /**
+     * Updates the built structure of the given kind and variant in place, after the graph has been modified.
+     * Other entries for the graph are removed. While updater runs, the entry counts as being built, so get() waits
+     * for the update instead of returning the structure half-updated. Queries already running on the structure are
+     * not waited for.<br>
+     * Only in KeyMode.IDENTITY. With content hashes, the structure can be shared with unmodified GridGraphs.
+     * Otherwise, or if there is no built structure, all entries for the graph are removed and null is returned.
+     * @param updater modifies the structure in place.
+     * @return the updated structure, or null if there was none to update.
+     */
+    public static <T> T update(String kind, int variant, GridGraph graph, Consumer<T> updater, ToLongFunction<T> footprint) {
+        Entry entry;
+        T value;
+        synchronized (lock) {
+            Entry previous = keyMode == KeyMode.IDENTITY ? entries.get(new Key(kind, variant, graph)) : null;
+            invalidate(graph);
+            if (previous == null || !previous.isBuilt()) return null;
+            value = cast(previous.value);
+            entry = new Entry(previous.key);
+            entries.put(entry.key, entry);
+        }
+
+        boolean updated = false;
+        long size = 0;
+        try {
+            updater.accept(value);
+            size = footprint.applyAsLong(value);
+            updated = true;
+        } finally {
+            synchronized (lock) {
+                if (!updated) {
+                    if (entries.get(entry.key) == entry) entries.remove(entry.key);
+                    entry.fail();
+                } else {
+                    if (entries.get(entry.key) == entry) {
+                        totalFootprint += size;
+                        entry.footprint = size;
+                    }
+                    entry.complete(value);
+                    evictOverBudget(entry);
+                }
+                lock.notifyAll();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Replaces the stored structure for (kind, graph). Used by structures that are copied on every query.
+     * Does nothing if there is no entry, or it is still being built.
+     */
+    public static void replace(String kind, GridGraph graph, Object value) {
+        Key key = new Key(kind, 0, mapKey(graph));
+        synchronized (lock) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isBuilt()) entry.value = value;
+        }
+    }
+
+    /**
+     * Removes all entries of the given kind, of every variant.
+     */
+    public static void remove(String kind) {
+        synchronized (lock) {
+            Iterator<Entry> itr = entries.values().iterator();
+            while (itr.hasNext()) {
+                Entry entry = itr.next();
+                if (entry.key.kind.equals(kind)) {
+                    totalFootprint -= entry.footprint;
+                    itr.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all entries for the graph. Call this after modifying the graph.
+     */
+    public static void invalidate(GridGraph graph) {
+        synchronized (lock) {
+            Object mapKey = keyMode == KeyMode.CONTENT_HASH ? contentKeys.remove(graph) : graph;
+            if (mapKey == null) return;
+            Iterator<Entry> itr = entries.values().iterator();
+            while (itr.hasNext()) {
+                Entry entry = itr.next();
+                if (entry.key.mapKey.equals(mapKey)) {
+                    totalFootprint -= entry.footprint;
+                    itr.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all entries. Statistics are kept.
+     */
+    public static void clear() {
+        synchronized (lock) {
+            entries.clear();
+            contentKeys.clear();
+            totalFootprint = 0;
+        }
+    }
+
+    /**
+     * Switching the key mode clears the registry.
+     */
+    public static void setKeyMode(KeyMode mode) {
+        synchronized (lock) {
+            if (keyMode == mode) return;
+            keyMode = mode;
+            clear();
+        }
+    }
+
+    public static KeyMode getKeyMode() {
+        synchronized (lock) {
+            return keyMode;
+        }
+    }
+
+    /**
+     * Sets the maximum total estimated footprint (in bytes) of the stored structures.
+     * An entry that has just been built is kept, even if it alone is larger than the budget.
+     */
+    public static void setHeapBudget(long bytes) {
+        synchronized (lock) {
+            heapBudget = bytes;
+            evictOverBudget(null);
+        }
+    }
+
+    public static long getHeapBudget() {
+        synchronized (lock) {
+            return heapBudget;
+        }
+    }
+
+    private static void evictOverBudget(Entry keep) {
+        if (totalFootprint <= heapBudget) return;
+        ArrayList<Key> evicted = new ArrayList<>();
+        long footprint = totalFootprint;
+        for (Entry entry : entries.values()) { // least recently used first.
+            if (footprint <= heapBudget) break;
+            if (entry == keep || !entry.isBuilt()) continue;
+            footprint -= entry.footprint;
+            evicted.add(entry.key);
+        }
+        for (Key key : evicted) {
+            entries.remove(key);
+        }
+        evictions += evicted.size();
+        totalFootprint = footprint;
+    }
+
+    private static Object mapKey(GridGraph graph) {
+        synchronized (lock) {
+            if (keyMode == KeyMode.IDENTITY) return graph;
+            ContentKey contentKey = contentKeys.get(graph);
+            if (contentKey != null) return contentKey;
+        }
+        // Hash outside the lock. It is computed once per GridGraph.
+        ContentKey contentKey = new ContentKey(graph);
+        synchronized (lock) {
+            ContentKey existing = contentKeys.get(graph);
+            if (existing != null) return existing;
+            contentKeys.put(graph, contentKey);
+            return contentKey;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T)value;
+    }
+
+
+    /// \\\ /// \\\ /// \\\ /// \\\ /// \\\ ///
+    ///             STATISTICS              ///
+    /// \\\ /// \\\ /// \\\ /// \\\ /// \\\ ///
+
+    public static Statistics getStatistics() {
+        synchronized (lock) {
+            return new Statistics();
+        }
+    }
+
+    public static void resetStatistics() {
+        synchronized (lock) {
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+            totalBuildTimeNanos = 0;
+            lastBuildTimeNanos = 0;
+        }
+    }
+
+    public static final class Statistics {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final long totalBuildTimeNanos;
+        public final long lastBuildTimeNanos;
+        public final int nEntries;
+        public final long footprintBytes;
+        public final long heapBudgetBytes;
+
+        private Statistics() {
+            this.hits = PreprocessedGraphRegistry.hits;
+            this.misses = PreprocessedGraphRegistry.misses;
+            this.evictions = PreprocessedGraphRegistry.evictions;
+            this.totalBuildTimeNanos = PreprocessedGraphRegistry.totalBuildTimeNanos;
+            this.lastBuildTimeNanos = PreprocessedGraphRegistry.lastBuildTimeNanos;
+            this.nEntries = PreprocessedGraphRegistry.entries.size();
+            this.footprintBytes = PreprocessedGraphRegistry.totalFootprint;
+            this.heapBudgetBytes = PreprocessedGraphRegistry.heapBudget;
+        }
+
+        public final double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double)hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "Hits: " + hits + ", Misses: " + misses + ", Evictions: " + evictions +
+                    ", Build Time: " + totalBuildTimeNanos/1000000. + "ms (last " + lastBuildTimeNanos/1000000. + "ms)" +
+                    ", Entries: " + nEntries + ", Footprint: " + footprintBytes/1024 + "KB / " + heapBudgetBytes/1024 + "KB";
+        }
+    }
+
+
+    /// \\\ /// \\\ /// \\\ /// \\\ /// \\\ ///
+    ///         FOOTPRINT ESTIMATES         ///
+    /// \\\ /// \\\ /// \\\ /// \\\ /// \\\ ///
+
+    public static long sizeOf(short[] array) {
+        return array == null ? 0 : ARRAY_HEADER + 2L*array.length;
+    }
+
+    public static long sizeOf(int[] array) {
+        return array == null ? 0 : ARRAY_HEADER + 4L*array.length;
+    }
+
+    public static long sizeOf(float[] array) {
+        return array == null ? 0 : ARRAY_HEADER + 4L*array.length;
+    }
+
+    public static long sizeOf(long[] array) {
+        return array == null ? 0 : ARRAY_HEADER + 8L*array.length;
+    }
+
+    /**
+     * A buffer that does not wrap an array, e.g. one mapped from a file, is not on the heap. Only its object is counted.
+     */
+    public static long sizeOf(IntBuffer buffer) {
+        if (buffer == null) return 0;
+        return OBJECT_HEADER + (buffer.hasArray() ? sizeOf(buffer.array()) : 0);
+    }
+
+    public static long sizeOf(FloatBuffer buffer) {
+        if (buffer == null) return 0;
+        return OBJECT_HEADER + (buffer.hasArray() ? sizeOf(buffer.array()) : 0);
+    }
+
+    public static long sizeOf(int[][] array) {
+        if (array == null) return 0;
+        long size = ARRAY_HEADER + REFERENCE*array.length;
+        for (int[] row : array) size += sizeOf(row);
+        return size;
+    }
+
+    public static long sizeOf(float[][] array) {
+        if (array == null) return 0;
+        long size = ARRAY_HEADER + REFERENCE*array.length;
+        for (float[] row : array) size += sizeOf(row);
+        return size;
+    }
+
+
+    private static final class Key {
+        final String kind;
+        final int variant;
+        final Object mapKey; // GridGraph (compared by identity) or ContentKey
+        private final int hash;
+
+        Key(String kind, int variant, Object mapKey) {
+            this.kind = kind;
+            this.variant = variant;
+            this.mapKey = mapKey;
+            this.hash = 31*(31*kind.hashCode() + variant) + mapKey.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key)obj;
+            return variant == other.variant && kind.equals(other.kind) && mapKey.equals(other.mapKey);
+        }
+    }
+
+    private static final class ContentKey {
+        final int sizeX;
+        final int sizeY;
+        final long contentHash;
+
+        ContentKey(GridGraph graph) {
+            this.sizeX = graph.sizeX;
+            this.sizeY = graph.sizeY;
+            this.contentHash = computeContentHash(graph);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int)(contentHash ^ (contentHash >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ContentKey)) return false;
+            ContentKey other = (ContentKey)obj;
+            return sizeX == other.sizeX && sizeY == other.sizeY && contentHash == other.contentHash;
+        }
+    }
+
+    /**
+     * 64-bit hash of the blocked tiles of the graph, computed from its bit-packed rows.
+     */
+    public static long computeContentHash(GridGraph graph) {
+        long hash = mix(((long)graph.sizeX << 32) | graph.sizeY);
+        for (int y=0;y<graph.sizeY;++y) {
+            for (int w=0;w<graph.wordsPerRow;++w) {
+                hash = mix(hash ^ graph.getRowWord(w, y)) + y;
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    private static final class Entry {
+        final Key key;
+        Object value;
+        long footprint;
+        private int state = 0; // 0: building, 1: built, -1: failed.
+
+        Entry(Key key) {
+            this.key = key;
+        }
+
+        boolean isBuilt() {
+            return state == 1;
+        }
+
+        void complete(Object value) {
+            this.value = value;
+            state = 1;
+        }
+
+        void fail() {
+            state = -1;
+        }
+
+        /**
+         * Must hold the registry lock.
+         * @return this if it has been built, or null if the build failed.
+         */
+        Entry waitUntilDone() {
+            boolean interrupted = false;
+            while (state == 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            return state == 1 ? this : null;
+        }
+    }
+}
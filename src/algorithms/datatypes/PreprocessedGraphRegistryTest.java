@@ -0,0 +1,129 @@
+package algorithms.datatypes;
+
+import static org.junit.Assert.*;
+
+import grid.GridGraph;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import main.graphgeneration.DefaultGenerator;
+
+import org.junit.Test;
+
+import algorithms.anya16.Anya16;
+import algorithms.datatypes.PreprocessedGraphRegistry.KeyMode;
+import algorithms.datatypes.PreprocessedGraphRegistry.Statistics;
+import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraph;
+import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithm;
+
+public class PreprocessedGraphRegistryTest {
+
+    private static GridGraph makeGraph(int seed) {
+        GridGraph graph = new GridGraph(20, 20);
+        for (int i=0;i<40;++i) {
+            graph.setBlocked((i*7+seed)%20, (i*13+seed*3)%20, true);
+        }
+        return graph;
+    }
+
+    private static int[] build(GridGraph graph) {
+        return new int[graph.sizeX];
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        PreprocessedGraphRegistry.clear();
+        PreprocessedGraphRegistry.setKeyMode(KeyMode.IDENTITY);
+        long oldBudget = PreprocessedGraphRegistry.getHeapBudget();
+        PreprocessedGraphRegistry.resetStatistics();
+        try {
+            PreprocessedGraphRegistry.setHeapBudget(250);
+            GridGraph a = makeGraph(1);
+            GridGraph b = makeGraph(2);
+            GridGraph c = makeGraph(3);
+
+            int[] aValue = PreprocessedGraphRegistry.get("test", a, PreprocessedGraphRegistryTest::build, v -> 100);
+            int[] bValue = PreprocessedGraphRegistry.get("test", b, PreprocessedGraphRegistryTest::build, v -> 100);
+            assertTrue(aValue == PreprocessedGraphRegistry.get("test", a, PreprocessedGraphRegistryTest::build, v -> 100));
+
+            // b is now the least recently used, and is evicted when c is added.
+            PreprocessedGraphRegistry.get("test", c, PreprocessedGraphRegistryTest::build, v -> 100);
+            assertTrue(aValue == PreprocessedGraphRegistry.get("test", a, PreprocessedGraphRegistryTest::build, v -> 100));
+            assertTrue(bValue != PreprocessedGraphRegistry.get("test", b, PreprocessedGraphRegistryTest::build, v -> 100));
+
+            Statistics statistics = PreprocessedGraphRegistry.getStatistics();
+            assertEquals(2, statistics.hits);
+            assertEquals(4, statistics.misses);
+            assertEquals(2, statistics.evictions);
+            assertEquals(2, statistics.nEntries);
+            assertEquals(200, statistics.footprintBytes);
+        } finally {
+            PreprocessedGraphRegistry.setHeapBudget(oldBudget);
+            PreprocessedGraphRegistry.clear();
+        }
+    }
+
+    @Test
+    public void testContentHashSharesEqualMaps() {
+        PreprocessedGraphRegistry.clear();
+        try {
+            PreprocessedGraphRegistry.setKeyMode(KeyMode.CONTENT_HASH);
+            GridGraph a = makeGraph(1);
+            GridGraph sameAsA = makeGraph(1);
+            GridGraph b = makeGraph(2);
+            assertEquals(PreprocessedGraphRegistry.computeContentHash(a), PreprocessedGraphRegistry.computeContentHash(sameAsA));
+
+            int[] aValue = PreprocessedGraphRegistry.get("test", a, PreprocessedGraphRegistryTest::build, v -> 100);
+            assertTrue(aValue == PreprocessedGraphRegistry.get("test", sameAsA, PreprocessedGraphRegistryTest::build, v -> 100));
+            assertTrue(aValue != PreprocessedGraphRegistry.get("test", b, PreprocessedGraphRegistryTest::build, v -> 100));
+            assertTrue(aValue != PreprocessedGraphRegistry.get("other", a, PreprocessedGraphRegistryTest::build, v -> 100));
+
+            PreprocessedGraphRegistry.invalidate(a);
+            assertTrue(aValue != PreprocessedGraphRegistry.get("test", a, PreprocessedGraphRegistryTest::build, v -> 100));
+        } finally {
+            PreprocessedGraphRegistry.setKeyMode(KeyMode.IDENTITY);
+            PreprocessedGraphRegistry.clear();
+        }
+    }
+
+    @Test
+    public void testEvictedStructuresAreCollected() throws Exception {
+        PreprocessedGraphRegistry.clear();
+        PreprocessedGraphRegistry.setKeyMode(KeyMode.IDENTITY);
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(3, 60, 60, 15);
+        // The worker threads stay alive while the structures are checked, as in a server's thread pool.
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> queries = new ArrayList<>();
+            for (int i=0;i<16;++i) {
+                int sx = i*3, sy = i, ex = 60-i*2, ey = 60-i;
+                queries.add(pool.submit(() -> {
+                    EdgeNLevelSparseVisibilityGraphAlgorithm.graphReuse(graph, sx, sy, ex, ey).computePath();
+                    new Anya16(graph, sx, sy, ex, ey).computePath();
+                }));
+            }
+            for (Future<?> query : queries) query.get();
+
+            WeakReference<Object> vGraph = new WeakReference<>(EdgeNLevelSparseVisibilityGraph.initialiseNew(graph, Integer.MAX_VALUE));
+            WeakReference<Object> anyaGrid = new WeakReference<>(PreprocessedGraphRegistry.peek("Anya16", 0, graph));
+            assertNotNull(vGraph.get());
+            assertNotNull(anyaGrid.get());
+
+            PreprocessedGraphRegistry.invalidate(graph);
+            for (int i=0;i<20 && (vGraph.get() != null || anyaGrid.get() != null);++i) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertNull(vGraph.get());
+            assertNull(anyaGrid.get());
+        } finally {
+            pool.shutdown();
+            PreprocessedGraphRegistry.clear();
+        }
+    }
+}
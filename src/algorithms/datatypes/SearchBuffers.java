@@ -0,0 +1,60 @@
+package algorithms.datatypes;
+
+/**
+ * Plain search arrays (distance, parent, visited and an int work list) for one worker.<br>
+ * The arrays are reused across queries of the same size. Unlike SearchContext, they are handed out
+ * directly and are NOT reset: the search initialises whatever it reads.<br>
+ * <br>
+ * The arrays returned stay valid until the next search on the same thread asks for them,
+ * so a path must be read out (getPath) before another search runs on that thread.
+ */
+public final class SearchBuffers {
+    private static final ThreadLocal<SearchBuffers> threadBuffers = ThreadLocal.withInitial(SearchBuffers::new);
+
+    private float[] distance;
+    private int[] parent;
+    private boolean[] visited;
+    private int[] indexList;
+
+    private SearchBuffers() {
+    }
+
+    /**
+     * @return the buffers owned by the calling thread.
+     */
+    public static final SearchBuffers forCurrentThread() {
+        return threadBuffers.get();
+    }
+
+    /**
+     * @return a float array of length exactly size. Contents are unspecified.
+     */
+    public final float[] distance(int size) {
+        if (distance == null || distance.length != size) distance = new float[size];
+        return distance;
+    }
+
+    /**
+     * @return an int array of length exactly size. Contents are unspecified.
+     */
+    public final int[] parent(int size) {
+        if (parent == null || parent.length != size) parent = new int[size];
+        return parent;
+    }
+
+    /**
+     * @return a boolean array of length exactly size. Contents are unspecified.
+     */
+    public final boolean[] visited(int size) {
+        if (visited == null || visited.length != size) visited = new boolean[size];
+        return visited;
+    }
+
+    /**
+     * @return an int array of length at least capacity, e.g. for a queue or closed list. Contents are unspecified.
+     */
+    public final int[] indexList(int capacity) {
+        if (indexList == null || indexList.length < capacity) indexList = new int[capacity];
+        return indexList;
+    }
+}
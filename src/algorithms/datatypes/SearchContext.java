@@ -0,0 +1,130 @@
+package algorithms.datatypes;
+
+/**
+ * Search memory (distance, parent, visited) for one worker.<br>
+ * The arrays are reused across queries. A ticket number is used to lazily reset them in O(1).<br>
+ * <br>
+ * A SearchContext must only be used by one search at a time.
+ * Use forCurrentThread() to get the context owned by the calling thread,
+ * or create one per worker and pass it to PathFindingAlgorithm.setSearchContext.
+ */
+public final class SearchContext {
+    private static final ThreadLocal<SearchContext> threadContext = ThreadLocal.withInitial(SearchContext::new);
+
+    private float[] distance;
+    private int[] parent;
+    private boolean[] visited;
+
+    private float defaultDistance = 0;
+    private int defaultParent = -1;
+    private boolean defaultVisited = false;
+
+    private int[] ticketCheck;
+    private int ticketNumber = 0;
+
+    private int size = 0;
+
+    public SearchContext() {
+    }
+
+    /**
+     * @return the context owned by the calling thread.
+     */
+    public static final SearchContext forCurrentThread() {
+        return threadContext.get();
+    }
+
+    public final int initialise(int size, float defaultDistance, int defaultParent, boolean defaultVisited) {
+        this.defaultDistance = defaultDistance;
+        this.defaultParent = defaultParent;
+        this.defaultVisited = defaultVisited;
+        this.size = size;
+
+        if (ticketCheck == null || ticketCheck.length != size) {
+            //System.out.println("REINITIALISE MEMORY " + size);
+            distance = new float[size];
+            parent = new int[size];
+            visited = new boolean[size];
+            ticketCheck = new int[size];
+            ticketNumber = 1;
+        } else if (ticketNumber == -1) {
+            ticketCheck = new int[size];
+            ticketNumber = 1;
+        } else {
+            ticketNumber++;
+        }
+
+        return ticketNumber;
+    }
+
+    public final int currentTicket() {
+        return ticketNumber;
+    }
+
+    public final int size() {
+        return size;
+    }
+
+    public final float distance(int index) {
+        if (ticketCheck[index] != ticketNumber) return defaultDistance;
+        return distance[index];
+    }
+
+    public final int parent(int index) {
+        if (ticketCheck[index] != ticketNumber) return defaultParent;
+        return parent[index];
+    }
+
+    public final boolean visited(int index) {
+        if (ticketCheck[index] != ticketNumber) return defaultVisited;
+        return visited[index];
+    }
+
+    public final void setDistance(int index, float value) {
+        if (ticketCheck[index] != ticketNumber) {
+            distance[index] = value;
+            parent[index] = defaultParent;
+            visited[index] = defaultVisited;
+            ticketCheck[index] = ticketNumber;
+        } else {
+            distance[index] = value;
+        }
+    }
+
+    public final void setParent(int index, int value) {
+        if (ticketCheck[index] != ticketNumber) {
+            distance[index] = defaultDistance;
+            parent[index] = value;
+            visited[index] = defaultVisited;
+            ticketCheck[index] = ticketNumber;
+        } else {
+            parent[index] = value;
+        }
+    }
+
+    public final void setVisited(int index, boolean value) {
+        if (ticketCheck[index] != ticketNumber) {
+            distance[index] = defaultDistance;
+            parent[index] = defaultParent;
+            visited[index] = value;
+            ticketCheck[index] = ticketNumber;
+        } else {
+            visited[index] = value;
+        }
+    }
+
+    public final void clear() {
+        distance = null;
+        parent = null;
+        visited = null;
+        ticketCheck = null;
+    }
+
+    /**
+     * Releases the arrays held by the calling thread's context.
+     */
+    public static void clearMemory() {
+        forCurrentThread().clear();
+        System.gc();
+    }
+}
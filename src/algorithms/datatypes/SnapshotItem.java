@@ -26,12 +26,33 @@ public class SnapshotItem {
         return getCached(new SnapshotItem(path, null));
     }
     
+    /**
+     * Creates an item without interning it. Use when the item is not kept, e.g. when it is written to a trace file.
+     */
+    public static SnapshotItem generateUncached(Integer[] path, Color color) {
+        return new SnapshotItem(path, color);
+    }
+    
+    /**
+     * @param cached false to create the item without interning it. See generateUncached.
+     */
+    public static SnapshotItem generate(Integer[] path, Color color, boolean cached) {
+        return cached ? generate(path, color) : generateUncached(path, color);
+    }
+    
     public static void clearCached() {
         if (cached == null) return;
         cached.clear();
         cached = null;
     }
     
+    /**
+     * @return the number of interned items.
+     */
+    static int cachedCount() {
+        return cached == null ? 0 : cached.size();
+    }
+    
     private static SnapshotItem getCached(SnapshotItem item) {
         if (cached == null) {
             cached = new HashMap<>();
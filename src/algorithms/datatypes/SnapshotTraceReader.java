@@ -0,0 +1,225 @@
+package algorithms.datatypes;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Replays a trace written by SnapshotTraceWriter.<br>
+ * Opening the trace only reads the snapshot headers. The records of a snapshot are read, into one buffer reused
+ * for every snapshot, when seek() reaches it, starting from the nearest keyframe, or from the current snapshot if
+ * it lies in between.<br>
+ * <br>
+ * After seek(index), the items of that snapshot are read with itemCount(), itemLength(i), itemColor(i) and
+ * itemValue(i, j).
+ */
+public class SnapshotTraceReader implements Closeable {
+    private static final int FRAME_HEADER_BYTES = 16;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    private long[] frameOffsets;
+    private int[] keyframeOf;
+    private int nFrames;
+
+    // The replayed snapshot.
+    private int current = -1;
+    private int[] data = new int[256];
+    private int dataSize;
+    private int[] offsets = new int[64];
+    private int nRecords;
+
+    private int[] nextData = new int[256];
+    private int[] nextOffsets = new int[64];
+
+    // The frame being applied.
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+    private int[] payload = new int[256];
+
+    public SnapshotTraceReader(File traceFile) throws IOException {
+        file = new RandomAccessFile(traceFile, "r");
+        channel = file.getChannel();
+        try {
+            readIndex();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private final void readIndex() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+        if (channel.read(header, 0) < 8 || header.getInt(0) != SnapshotTraceWriter.MAGIC) {
+            throw new IOException("Not a snapshot trace file");
+        }
+        if (header.getInt(4) != SnapshotTraceWriter.VERSION) {
+            throw new IOException("Unsupported snapshot trace version: " + header.getInt(4));
+        }
+
+        frameOffsets = new long[64];
+        keyframeOf = new int[64];
+        long fileSize = channel.size();
+        long position = 8;
+        int lastKeyframe = 0;
+        while (position + FRAME_HEADER_BYTES <= fileSize) {
+            header.clear();
+            channel.read(header, position);
+            if (nFrames >= frameOffsets.length) {
+                frameOffsets = Arrays.copyOf(frameOffsets, nFrames*2);
+                keyframeOf = Arrays.copyOf(keyframeOf, nFrames*2);
+            }
+            if (header.getInt(0) == SnapshotTraceWriter.KIND_KEYFRAME) lastKeyframe = nFrames;
+            frameOffsets[nFrames] = position;
+            keyframeOf[nFrames] = lastKeyframe;
+            nFrames++;
+            position += FRAME_HEADER_BYTES + 4L*header.getInt(12);
+        }
+    }
+
+    /**
+     * @return the number of snapshots in the trace.
+     */
+    public int size() {
+        return nFrames;
+    }
+
+    /**
+     * Replays the trace up to the snapshot with the given index.
+     */
+    public void seek(int index) {
+        if (index < 0 || index >= nFrames) throw new IndexOutOfBoundsException("Snapshot " + index + " of " + nFrames);
+        if (index == current) return;
+
+        int from = keyframeOf[index];
+        if (current >= from && current < index) from = current + 1;
+        try {
+            for (int i=from; i<=index; ++i) {
+                applyFrame(i);
+            }
+        } catch (IOException e) {
+            current = -1;
+            throw new UncheckedIOException(e);
+        }
+        current = index;
+    }
+
+    private final void applyFrame(int index) throws IOException {
+        long position = frameOffsets[index];
+        ByteBuffer header = read(position, FRAME_HEADER_BYTES);
+        int kind = header.getInt(0);
+        int nRuns = header.getInt(4);
+        int nAdded = header.getInt(8);
+        int payloadInts = header.getInt(12);
+        if (payload.length < payloadInts) payload = new int[Math.max(payloadInts, payload.length*2)];
+        read(position + FRAME_HEADER_BYTES, 4*payloadInts).asIntBuffer().get(payload, 0, payloadInts);
+
+        if (kind == SnapshotTraceWriter.KIND_KEYFRAME) {
+            if (data.length < payloadInts) data = new int[Math.max(payloadInts, data.length*2)];
+            if (offsets.length < nAdded) offsets = new int[Math.max(nAdded, offsets.length*2)];
+            System.arraycopy(payload, 0, data, 0, payloadInts);
+            dataSize = payloadInts;
+            nRecords = 0;
+            for (int offset=0; offset<dataSize; offset+=SnapshotTraceWriter.recordSize(data, offset)) {
+                offsets[nRecords++] = offset;
+            }
+            return;
+        }
+
+        // Build the snapshot in nextData from the runs, in the order it was written.
+        int needed = dataSize + payloadInts;
+        if (nextData.length < needed) nextData = new int[Math.max(needed, nextData.length*2)];
+        int nNextRecords = 0;
+        for (int i=0; i<nRuns; ++i) nNextRecords += payload[2*i+1];
+        if (nextOffsets.length < nNextRecords) nextOffsets = new int[Math.max(nNextRecords, nextOffsets.length*2)];
+        int nextDataSize = 0;
+        int record = 0;
+        int addedOffset = 2*nRuns;
+        for (int i=0; i<nRuns; ++i) {
+            int start = payload[2*i];
+            int count = payload[2*i+1];
+            for (int j=0; j<count; ++j) {
+                int[] source;
+                int offset;
+                if (start == SnapshotTraceWriter.ADD_RUN) {
+                    source = payload;
+                    offset = addedOffset;
+                    addedOffset += SnapshotTraceWriter.recordSize(payload, offset);
+                } else {
+                    source = data;
+                    offset = offsets[start+j];
+                }
+                int size = SnapshotTraceWriter.recordSize(source, offset);
+                System.arraycopy(source, offset, nextData, nextDataSize, size);
+                nextOffsets[record++] = nextDataSize;
+                nextDataSize += size;
+            }
+        }
+
+        int[] tempData = data;
+        data = nextData;
+        nextData = tempData;
+        int[] tempOffsets = offsets;
+        offsets = nextOffsets;
+        nextOffsets = tempOffsets;
+        dataSize = nextDataSize;
+        nRecords = nNextRecords;
+    }
+
+    /**
+     * Reads the given bytes of the file into the reused buffer.
+     */
+    private final ByteBuffer read(long position, int bytes) throws IOException {
+        if (buffer.capacity() < bytes) buffer = ByteBuffer.allocate(Math.max(bytes, buffer.capacity()*2));
+        buffer.clear();
+        buffer.limit(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Snapshot trace ends in the middle of a snapshot");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return the number of items in the current snapshot.
+     */
+    public int itemCount() {
+        return nRecords;
+    }
+
+    /**
+     * @return the number of values of the item, e.g. 2 for a point and 4 for a line.
+     */
+    public int itemLength(int item) {
+        return data[offsets[item]] & SnapshotTraceWriter.LENGTH_MASK;
+    }
+
+    /**
+     * @return the colour of the item, or null if it has none.
+     */
+    public Color itemColor(int item) {
+        int offset = offsets[item];
+        if ((data[offset] & SnapshotTraceWriter.HAS_COLOR) == 0) return null;
+        return new Color(data[offset+1], true);
+    }
+
+    public int itemValue(int item, int index) {
+        int offset = offsets[item];
+        int valuesStart = offset + ((data[offset] & SnapshotTraceWriter.HAS_COLOR) == 0 ? 1 : 2);
+        return data[valuesStart + index];
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
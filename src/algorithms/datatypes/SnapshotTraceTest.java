@@ -0,0 +1,141 @@
+package algorithms.datatypes;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import algorithms.PathFindingAlgorithm;
+import algorithms.sg16.SG16Algorithm;
+import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithm;
+import grid.GridGraph;
+import main.graphgeneration.DefaultGenerator;
+
+public class SnapshotTraceTest {
+
+    private static String describe(Integer[] path, Color color) {
+        return Arrays.toString(path) + color;
+    }
+
+    private static List<String> describe(List<Integer[]> paths, List<Color> colors) {
+        List<String> items = new ArrayList<>();
+        for (int i=0;i<paths.size();++i) {
+            items.add(describe(paths.get(i), colors.get(i)));
+        }
+        return items;
+    }
+
+    private static List<String> describe(SnapshotTraceReader reader) {
+        List<String> items = new ArrayList<>();
+        for (int i=0;i<reader.itemCount();++i) {
+            Integer[] path = new Integer[reader.itemLength(i)];
+            for (int j=0;j<path.length;++j) {
+                path[j] = reader.itemValue(i, j);
+            }
+            items.add(describe(path, reader.itemColor(i)));
+        }
+        return items;
+    }
+
+    @Test
+    public void testReplayMatchesWrittenSnapshots() throws IOException {
+        File file = File.createTempFile("trace", ".aapt");
+        file.deleteOnExit();
+        Random rand = new Random(7);
+
+        // Each snapshot changes a few items of the previous one, so most snapshots are written as deltas.
+        // Items are added anywhere in the list, and must be replayed in the order they were written.
+        List<List<String>> expected = new ArrayList<>();
+        List<Integer[]> paths = new ArrayList<>();
+        List<Color> colors = new ArrayList<>();
+        try (SnapshotTraceWriter writer = new SnapshotTraceWriter(file)) {
+            for (int s=0;s<300;++s) {
+                for (int k=0;k<5;++k) {
+                    if (!paths.isEmpty() && rand.nextInt(3) == 0) {
+                        int index = rand.nextInt(paths.size());
+                        paths.remove(index);
+                        colors.remove(index);
+                    }
+                    int length = rand.nextBoolean() ? 2 : 4;
+                    Integer[] path = new Integer[length];
+                    for (int j=0;j<length;++j) path[j] = rand.nextInt(10);
+                    int index = rand.nextBoolean() ? paths.size() : rand.nextInt(paths.size()+1);
+                    paths.add(index, path);
+                    colors.add(index, rand.nextBoolean() ? null : Color.BLUE);
+                }
+
+                writer.beginSnapshot();
+                for (int i=0;i<paths.size();++i) writer.add(paths.get(i), colors.get(i));
+                writer.endSnapshot();
+                expected.add(describe(paths, colors));
+            }
+            assertEquals(300, writer.size());
+        }
+
+        try (SnapshotTraceReader reader = new SnapshotTraceReader(file)) {
+            assertEquals(300, reader.size());
+            for (int i=0;i<300;++i) {
+                reader.seek(i);
+                assertEquals(expected.get(i), describe(reader));
+            }
+            for (int t=0;t<100;++t) {
+                int i = rand.nextInt(300);
+                reader.seek(i);
+                assertEquals(expected.get(i), describe(reader));
+            }
+        }
+    }
+
+    @Test
+    public void testRepeatedItems() throws IOException {
+        File file = File.createTempFile("trace", ".aapt");
+        file.deleteOnExit();
+
+        try (SnapshotTraceWriter writer = new SnapshotTraceWriter(file)) {
+            writer.beginSnapshot();
+            writer.addPoint(1, 2, null);
+            writer.addPoint(1, 2, null);
+            writer.endSnapshot();
+            writer.beginSnapshot();
+            writer.addPoint(1, 2, null);
+            writer.addLine(0, 0, 1, 2, Color.RED);
+            writer.endSnapshot();
+        }
+
+        try (SnapshotTraceReader reader = new SnapshotTraceReader(file)) {
+            reader.seek(0);
+            assertEquals(2, reader.itemCount());
+            reader.seek(1);
+            assertEquals(2, reader.itemCount());
+            assertEquals(Arrays.asList("[1, 2]null", "[0, 0, 1, 2]" + Color.RED), describe(reader));
+        }
+    }
+
+    @Test
+    public void testStreamingDoesNotInternItems() throws IOException {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(5, 40, 40, 20);
+        PathFindingAlgorithm[] algos = new PathFindingAlgorithm[] {
+            EdgeNLevelSparseVisibilityGraphAlgorithm.graphReuse(graph, 0, 0, 40, 40),
+            new SG16Algorithm(graph, 0, 0, 40, 40),
+        };
+        for (PathFindingAlgorithm algo : algos) {
+            File file = File.createTempFile("trace", ".aapt");
+            file.deleteOnExit();
+            SnapshotItem.clearCached();
+            try (SnapshotTraceWriter writer = new SnapshotTraceWriter(file)) {
+                algo.startRecording(writer);
+                algo.computePath();
+                algo.stopRecording();
+                assertTrue(writer.size() > 0);
+            }
+            assertEquals(algo.getClass().getSimpleName(), 0, SnapshotItem.cachedCount());
+        }
+    }
+}
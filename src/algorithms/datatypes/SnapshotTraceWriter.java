@@ -0,0 +1,288 @@
+package algorithms.datatypes;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams a trace of an algorithm to a file, one snapshot at a time, so the trace does not have to fit in memory.
+ * Read it back with SnapshotTraceReader.<br>
+ * <br>
+ * Each snapshot item is packed as int records: [header, (colour), values...], where the header holds the number of
+ * values in the low 8 bits and whether a colour follows in bit 8.<br>
+ * A snapshot is written as a delta against the one before it: a list of runs, each either a run of consecutive records
+ * of the previous snapshot to keep (start index, count) or a number of added records to insert (ADD_RUN, count),
+ * followed by the added records. The records not kept are removed. The replayed snapshot has the records in the order
+ * they were written, which is the order they are drawn in. Every KEYFRAME_INTERVAL snapshots (or when a delta would
+ * be larger) the full snapshot is written instead, so a reader can seek without replaying from the start.<br>
+ * <br>
+ * File layout (big-endian ints): MAGIC, VERSION, then per snapshot: kind, nRuns, nAdded, nPayloadInts, payload.
+ */
+public class SnapshotTraceWriter implements Closeable {
+    static final int MAGIC = 0x41415054; // "AAPT"
+    static final int VERSION = 2;
+    static final int KIND_KEYFRAME = 0;
+    static final int KIND_DELTA = 1;
+    static final int ADD_RUN = -1;
+    static final int HAS_COLOR = 1 << 8;
+    static final int LENGTH_MASK = 0xFF;
+
+    private static final int KEYFRAME_INTERVAL = 64;
+
+    private final DataOutputStream out;
+    private int nSnapshots;
+
+    // Records of the snapshot being written.
+    private int[] currData = new int[256];
+    private int currDataSize;
+    private int[] currOffsets = new int[64];
+    private int nCurr;
+
+    // Records of the last snapshot written.
+    private int[] prevData = new int[256];
+    private int[] prevOffsets = new int[64];
+    private int nPrev;
+
+    // Scratch space for the diff.
+    private int[] table = new int[128];
+    private boolean[] matched = new boolean[64];
+    private int[] runs = new int[128];
+    private int[] added = new int[64];
+
+    public SnapshotTraceWriter(File file) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * @return the number of snapshots written so far.
+     */
+    public int size() {
+        return nSnapshots;
+    }
+
+    /**
+     * Writes a snapshot given as a list of snapshot items.
+     */
+    public void write(List<SnapshotItem> snapshot) {
+        beginSnapshot();
+        for (SnapshotItem item : snapshot) {
+            add(item.path, item.color);
+        }
+        endSnapshot();
+    }
+
+    public void beginSnapshot() {
+        currDataSize = 0;
+        nCurr = 0;
+    }
+
+    public void add(Integer[] path, Color color) {
+        int start = beginRecord(path.length, color);
+        for (int i=0; i<path.length; ++i) {
+            currData[start+i] = path[i];
+        }
+    }
+
+    public void addPoint(int x, int y, Color color) {
+        int start = beginRecord(2, color);
+        currData[start] = x;
+        currData[start+1] = y;
+    }
+
+    public void addLine(int x1, int y1, int x2, int y2, Color color) {
+        int start = beginRecord(4, color);
+        currData[start] = x1;
+        currData[start+1] = y1;
+        currData[start+2] = x2;
+        currData[start+3] = y2;
+    }
+
+    /**
+     * Appends the header (and colour) of a record with the given number of values.
+     * @return the index in currData to write the values to.
+     */
+    private final int beginRecord(int length, Color color) {
+        if (length > LENGTH_MASK) throw new IllegalArgumentException("Snapshot item too long: " + length);
+        if (nCurr >= currOffsets.length) currOffsets = Arrays.copyOf(currOffsets, currOffsets.length*2);
+        int needed = currDataSize + length + 2;
+        if (needed > currData.length) currData = Arrays.copyOf(currData, Math.max(needed, currData.length*2));
+
+        currOffsets[nCurr++] = currDataSize;
+        if (color == null) {
+            currData[currDataSize++] = length;
+        } else {
+            currData[currDataSize++] = length | HAS_COLOR;
+            currData[currDataSize++] = color.getRGB();
+        }
+        int start = currDataSize;
+        currDataSize += length;
+        return start;
+    }
+
+    public void endSnapshot() {
+        try {
+            if (nSnapshots % KEYFRAME_INTERVAL == 0 || !writeDelta()) {
+                writeKeyframe();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nSnapshots++;
+    }
+
+    private final void writeKeyframe() throws IOException {
+        out.writeInt(KIND_KEYFRAME);
+        out.writeInt(0);
+        out.writeInt(nCurr);
+        out.writeInt(currDataSize);
+        for (int i=0; i<currDataSize; ++i) {
+            out.writeInt(currData[i]);
+        }
+        keepCurrent();
+    }
+
+    /**
+     * Writes the current snapshot as a delta against the previous one.
+     * @return false (writing nothing) if the delta is not smaller than a keyframe.
+     */
+    private final boolean writeDelta() throws IOException {
+        buildPrevTable();
+
+        if (runs.length < 2*nCurr) runs = new int[Math.max(2*nCurr, runs.length*2)];
+        if (added.length < nCurr) added = new int[Math.max(nCurr, added.length*2)];
+        int nRuns = 0;
+        int nAdded = 0;
+        int addedInts = 0;
+        for (int i=0; i<nCurr; ++i) {
+            int prevIndex = matchPrev(i);
+            int lastStart = nRuns > 0 ? runs[2*nRuns-2] : ADD_RUN - 1;
+            if (prevIndex == -1) {
+                added[nAdded++] = i;
+                addedInts += recordSize(currData, currOffsets[i]);
+                if (lastStart == ADD_RUN) {
+                    runs[2*nRuns-1]++;
+                    continue;
+                }
+                runs[2*nRuns] = ADD_RUN;
+            } else {
+                if (lastStart >= 0 && lastStart + runs[2*nRuns-1] == prevIndex) {
+                    runs[2*nRuns-1]++;
+                    continue;
+                }
+                runs[2*nRuns] = prevIndex;
+            }
+            runs[2*nRuns+1] = 1;
+            nRuns++;
+        }
+
+        int payloadInts = 2*nRuns + addedInts;
+        if (payloadInts >= currDataSize) return false;
+
+        out.writeInt(KIND_DELTA);
+        out.writeInt(nRuns);
+        out.writeInt(nAdded);
+        out.writeInt(payloadInts);
+        for (int i=0; i<2*nRuns; ++i) {
+            out.writeInt(runs[i]);
+        }
+        for (int i=0; i<nAdded; ++i) {
+            int offset = currOffsets[added[i]];
+            int end = offset + recordSize(currData, offset);
+            for (int j=offset; j<end; ++j) {
+                out.writeInt(currData[j]);
+            }
+        }
+        keepCurrent();
+        return true;
+    }
+
+    /**
+     * The replayed snapshot is the current one, in the same order. It becomes the previous snapshot.
+     */
+    private final void keepCurrent() {
+        int[] tempData = prevData;
+        prevData = currData;
+        currData = tempData;
+        int[] tempOffsets = prevOffsets;
+        prevOffsets = currOffsets;
+        currOffsets = tempOffsets;
+        nPrev = nCurr;
+    }
+
+    private final void buildPrevTable() {
+        int capacity = Integer.highestOneBit(Math.max(nPrev, 32) * 2) * 2;
+        if (table.length < capacity) {
+            table = new int[capacity];
+        } else {
+            Arrays.fill(table, 0);
+        }
+        if (matched.length < nPrev) {
+            matched = new boolean[Math.max(nPrev, matched.length*2)];
+        } else {
+            Arrays.fill(matched, 0, nPrev, false);
+        }
+
+        int mask = table.length - 1;
+        for (int i=0; i<nPrev; ++i) {
+            int slot = hash(prevData, prevOffsets[i]) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Marks an unmatched record of the previous snapshot equal to the current record as matched.
+     * @return the index of that record in the previous snapshot, or -1 if there is none.
+     */
+    private final int matchPrev(int currIndex) {
+        int offset = currOffsets[currIndex];
+        int mask = table.length - 1;
+        int slot = hash(currData, offset) & mask;
+        while (table[slot] != 0) {
+            int prevIndex = table[slot] - 1;
+            if (!matched[prevIndex] && recordEquals(prevData, prevOffsets[prevIndex], currData, offset)) {
+                matched[prevIndex] = true;
+                return prevIndex;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    static final int recordSize(int[] data, int offset) {
+        int header = data[offset];
+        return 1 + (header & LENGTH_MASK) + ((header & HAS_COLOR) != 0 ? 1 : 0);
+    }
+
+    private static final int hash(int[] data, int offset) {
+        int end = offset + recordSize(data, offset);
+        int h = 1;
+        for (int i=offset; i<end; ++i) {
+            h = h*31 + data[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static final boolean recordEquals(int[] a, int aOffset, int[] b, int bOffset) {
+        int size = recordSize(a, aOffset);
+        if (a[aOffset] != b[bOffset]) return false;
+        for (int i=1; i<size; ++i) {
+            if (a[aOffset+i] != b[bOffset+i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -52,6 +52,14 @@ public class FastVariableSizeIndirectHeap {
         }
     }
     
+    /**
+     * Runtime: O(1). Empties the heap, keeping its capacity. Handles start again from 0.
+     */
+    public void clear() {
+        heapSize = 0;
+        nextIndex = 0;
+    }
+    
     /**
      * Returns the handle to the value.
      */
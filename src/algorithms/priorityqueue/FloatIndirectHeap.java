@@ -0,0 +1,147 @@
+package algorithms.priorityqueue;
+
+
+/**
+ * Indirect binary min-heap on primitive float keys. Used for O(lgn) deleteMin and O(lgn) decreaseKey.<br>
+ * <br>
+ * Behaves exactly like an IndirectHeap&lt;Float&gt; min-heap built from the same key array
+ * (same swaps, same tie-breaking), so searches ported to it expand nodes in the same order.
+ * The arrays are kept between queries and only reallocated when they are too small.
+ */
+public final class FloatIndirectHeap {
+    private static final ThreadLocal<FloatIndirectHeap> threadHeap = ThreadLocal.withInitial(FloatIndirectHeap::new);
+
+    private float[] keyList = new float[0];
+    private int[] inList = new int[0];
+    private int[] outList = new int[0];
+    private int heapSize;
+
+    /**
+     * Runtime: O(n)
+     * Returns the heap owned by the calling thread, holding handles 0..size-1 with keys[0..size-1].
+     * Call heapify() before use. The heap returned must not be handed to another thread while in use.
+     */
+    public static final FloatIndirectHeap forCurrentThread(float[] keys, int size) {
+        FloatIndirectHeap heap = threadHeap.get();
+        heap.initialise(keys, size);
+        return heap;
+    }
+
+    /**
+     * Runtime: O(n)
+     */
+    public final void initialise(float[] keys, int size) {
+        if (keyList.length < size) {
+            keyList = new float[size];
+            inList = new int[size];
+            outList = new int[size];
+        }
+        System.arraycopy(keys, 0, keyList, 0, size);
+        for (int i=0; i<size; ++i) {
+            inList[i] = i;
+            outList[i] = i;
+        }
+        heapSize = size;
+    }
+
+    /**
+     * Runtime: O(n)
+     */
+    public final void heapify() {
+        for (int i=heapSize/2-1; i>=0; i--) {
+            bubbleDown(i);
+        }
+    }
+
+    private final void bubbleUp(int index) {
+        float key = keyList[index];
+        int handle = outList[index];
+        while (index > 0) {
+            int parent = (index-1)/2;
+            float parentKey = keyList[parent];
+            if (!(key < parentKey)) break;
+
+            int parentHandle = outList[parent];
+            keyList[index] = parentKey;
+            outList[index] = parentHandle;
+            inList[parentHandle] = index;
+            index = parent;
+        }
+        keyList[index] = key;
+        outList[index] = handle;
+        inList[handle] = index;
+    }
+
+    private final void bubbleDown(int index) {
+        float key = keyList[index];
+        int handle = outList[index];
+        while (true) {
+            int leftChild = 2*index+1;
+            if (leftChild >= heapSize) break;
+            int rightChild = leftChild+1;
+
+            int smallerChild;
+            if (rightChild >= heapSize || keyList[leftChild] < keyList[rightChild]) {
+                smallerChild = leftChild;
+            } else {
+                smallerChild = rightChild;
+            }
+
+            float childKey = keyList[smallerChild];
+            if (!(key > childKey)) break;
+
+            int childHandle = outList[smallerChild];
+            keyList[index] = childKey;
+            outList[index] = childHandle;
+            inList[childHandle] = index;
+            index = smallerChild;
+        }
+        keyList[index] = key;
+        outList[index] = handle;
+        inList[handle] = index;
+    }
+
+    /**
+     * Runtime: O(lgn)
+     */
+    public final void decreaseKey(int outIndex, float newKey) {
+        // Assume newKey < old key
+        int inIndex = inList[outIndex];
+        keyList[inIndex] = newKey;
+        bubbleUp(inIndex);
+    }
+
+    public final float getMinValue() {
+        return keyList[0];
+    }
+
+    /**
+     * Runtime: O(lgn)
+     * @return index of min element
+     */
+    public final int popMinIndex() {
+        if (heapSize == 0)
+            throw new NullPointerException("Indirect Heap is empty!");
+
+        int s = outList[0];
+        inList[s] = -1;
+        heapSize--;
+        if (heapSize == 0) return s;
+
+        int t = outList[heapSize];
+        keyList[0] = keyList[heapSize];
+        outList[0] = t;
+        inList[t] = 0;
+
+        bubbleDown(0);
+        return s;
+    }
+
+    public final int size() {
+        return heapSize;
+    }
+
+    public final boolean isEmpty() {
+        return heapSize == 0;
+    }
+}
@@ -0,0 +1,51 @@
+package algorithms.priorityqueue;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FloatIndirectHeapTest {
+
+    @Test
+    public void testMatchesIndirectHeap() {
+        Random random = new Random(17);
+        for (int trial=0;trial<50;++trial) {
+            int size = 1 + random.nextInt(300);
+            float[] keys = new float[size];
+            Float[] boxedKeys = new Float[size];
+            for (int i=0;i<size;++i) {
+                // Few distinct values, so that ties are common.
+                keys[i] = random.nextInt(4) == 0 ? random.nextInt(10) : Float.POSITIVE_INFINITY;
+                boxedKeys[i] = keys[i];
+            }
+
+            IndirectHeap<Float> expected = new IndirectHeap<>(boxedKeys, true);
+            FloatIndirectHeap actual = FloatIndirectHeap.forCurrentThread(keys, size);
+            expected.heapify();
+            actual.heapify();
+
+            boolean[] popped = new boolean[size];
+            while (!expected.isEmpty()) {
+                assertFalse(actual.isEmpty());
+                assertEquals(expected.getMinValue(), actual.getMinValue(), 0f);
+                int index = expected.popMinIndex();
+                assertEquals(index, actual.popMinIndex());
+                popped[index] = true;
+
+                for (int j=0;j<3;++j) {
+                    int handle = random.nextInt(size);
+                    if (popped[handle]) continue;
+                    float newKey = random.nextInt(10);
+                    if (newKey < keys[handle]) {
+                        keys[handle] = newKey;
+                        expected.decreaseKey(handle, newKey);
+                        actual.decreaseKey(handle, newKey);
+                    }
+                }
+            }
+            assertTrue(actual.isEmpty());
+        }
+    }
+}
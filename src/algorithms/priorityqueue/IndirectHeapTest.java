@@ -84,6 +84,48 @@ public class IndirectHeapTest {
         assertEquals(0, pq.size());
     }
     
+    @Test
+    public void testReusableHeapInstancesAreIndependent() {
+        ReusableIndirectHeap pq1 = new ReusableIndirectHeap(50);
+        ReusableIndirectHeap pq2 = new ReusableIndirectHeap(50);
+
+        for (int i=0;i<50;++i) {
+            pq1.decreaseKey(i, (i*17)%50);
+            pq2.decreaseKey(i, 49-i);
+        }
+        assertEquals(50, pq1.size());
+        assertEquals(50, pq2.size());
+
+        for (int i=0;i<50;++i) {
+            assertEquals(i, (pq1.popMinIndex()*17)%50);
+            assertEquals(49-i, pq2.popMinIndex());
+        }
+        assertTrue(pq1.isEmpty());
+        assertTrue(pq2.isEmpty());
+    }
+
+    @Test
+    public void testReusableHeapReset() {
+        ReusableIndirectHeap pq = ReusableIndirectHeap.forCurrentThread(30);
+        for (int i=0;i<30;++i) {
+            pq.decreaseKey(i, 30-i);
+        }
+        pq.popMinIndex();
+
+        // Reusing the thread's heap must give back an empty heap with the same arrays.
+        ReusableIndirectHeap reused = ReusableIndirectHeap.forCurrentThread(30);
+        assertTrue(pq == reused);
+        assertEquals(0, reused.size());
+
+        reused.decreaseKey(7, 3f);
+        reused.decreaseKey(4, 1f);
+        reused.decreaseKey(7, 0.5f);
+        assertFloatEquals(0.5f, reused.getMinValue());
+        assertEquals(7, reused.popMinIndex());
+        assertEquals(4, reused.popMinIndex());
+        assertTrue(reused.isEmpty());
+    }
+
     public static void assertFloatEquals(float expected, float actual) {
         assertTrue(Math.abs(expected-actual) < 0.001f);
     }
@@ -0,0 +1,59 @@
+package algorithms.priorityqueue;
+
+/**
+ * The open list implementations an algorithm can be configured with.<br>
+ * BINARY_HEAP is the default and gives the same expansion order as before the open list was made pluggable.
+ * The others can break ties between equal keys differently, so they can return a different path of the same length.
+ */
+public enum PriorityQueueType {
+    BINARY_HEAP("BinaryHeap"),
+    QUATERNARY_HEAP("4aryHeap"),
+    PAIRING_HEAP("PairingHeap"),
+    /**
+     * Only for non-negative keys that never go below the last key popped (e.g. A* with a consistent heuristic).
+     * Throws an UnsupportedOperationException during a search whose keys do (e.g. the Theta* variants).
+     */
+    RADIX_HEAP("RadixHeap"),
+    /**
+     * Bucket queue with an exact heap for the lowest bucket. Meant for searches on 8-connected grids.
+     */
+    BUCKET_QUEUE("BucketQueue");
+
+    public final String label;
+
+    private PriorityQueueType(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Runtime: O(1), unless the memory size has changed.
+     * Returns the queue of this type owned by the calling thread, emptied and ready for reuse.
+     */
+    public final ReusablePriorityQueue forCurrentThread(int memorySize) {
+        switch (this) {
+            case QUATERNARY_HEAP: return ReusableQuaternaryHeap.forCurrentThread(memorySize);
+            case PAIRING_HEAP: return ReusablePairingHeap.forCurrentThread(memorySize);
+            case RADIX_HEAP: return ReusableRadixHeap.forCurrentThread(memorySize);
+            case BUCKET_QUEUE: return ReusableBucketQueue.forCurrentThread(memorySize);
+            default: return ReusableIndirectHeap.forCurrentThread(memorySize);
+        }
+    }
+
+    public static PriorityQueueType fromLabel(String label) {
+        for (PriorityQueueType type : values()) {
+            if (type.label.equals(label)) return type;
+        }
+        throw new UnsupportedOperationException("Invalid Priority Queue! " + label);
+    }
+
+    /**
+     * Releases the arrays held by the calling thread's queues of every type.
+     */
+    public static void clearMemory() {
+        ReusableIndirectHeap.clearMemory();
+        ReusableQuaternaryHeap.clearMemory();
+        ReusablePairingHeap.clearMemory();
+        ReusableRadixHeap.clearMemory();
+        ReusableBucketQueue.clearMemory();
+    }
+}
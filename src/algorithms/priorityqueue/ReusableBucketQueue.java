@@ -0,0 +1,234 @@
+package algorithms.priorityqueue;
+
+
+/**
+ * Two-level bucket queue for grid searches. O(1) insert and decreaseKey, amortised O(1) deleteMin
+ * when few keys share a bucket.<br>
+ * <br>
+ * Keys are first placed in unsorted buckets of width bucketWidth (the approximate level). When the lowest bucket
+ * is reached, its contents are moved into a small exact heap, which is what deleteMin pops from (the exact level).
+ * Keys that fall in or below the current bucket go straight into the exact heap, so the queue always pops
+ * the true minimum, for any non-negative keys.<br>
+ * <br>
+ * On 8-connected grids the edge weights are 1 and sqrt(2), so the f-values of the open list lie in a band of width
+ * about sqrt(2) above the current minimum (much less with a good heuristic). The default bucket width of 1/16
+ * splits that band into enough buckets to keep the exact heap small. A power of two keeps the bucket index exact.
+ * Keys beyond MAX_BUCKETS buckets all share the last bucket.
+ */
+public final class ReusableBucketQueue implements ReusablePriorityQueue {
+    private static final ThreadLocal<ReusableBucketQueue> threadQueue = ThreadLocal.withInitial(ReusableBucketQueue::new);
+
+    public static final float DEFAULT_BUCKET_WIDTH = 1f/16;
+    private static final int MAX_BUCKETS = 1 << 20;
+    private static final int INITIAL_BUCKET_CAPACITY = 8;
+    private static final int IN_HEAP = -1;
+    private static final int NOT_IN_QUEUE = -2;
+
+    private float inverseBucketWidth = 1f/DEFAULT_BUCKET_WIDTH;
+    private int[][] buckets = new int[64][];
+    private int[] bucketSizes = new int[64];
+    private int currentBucket; // buckets up to and including this one are in the exact heap.
+    private int maxBucket;     // buckets above this one are empty.
+    private ReusableQuaternaryHeap exactHeap;
+    private int queueSize;
+
+    private float[] keys;
+    private int[] bucketOf; // bucket index, IN_HEAP or NOT_IN_QUEUE.
+    private int[] indexInBucket;
+
+    private int[] ticketCheck;
+    private int ticketNumber = 0;
+
+    /**
+     * Runtime: O(1) plus the number of buckets used by the last search, unless the memory size has changed.
+     * Returns the queue owned by the calling thread, emptied and ready for reuse.
+     */
+    public static final ReusableBucketQueue forCurrentThread(int memorySize) {
+        ReusableBucketQueue queue = threadQueue.get();
+        queue.initialise(memorySize, DEFAULT_BUCKET_WIDTH);
+        return queue;
+    }
+
+    private ReusableBucketQueue() {
+    }
+
+    /**
+     * Runtime: O(memorySize). Allocates a new queue not shared with any thread.
+     */
+    public ReusableBucketQueue(int memorySize, float bucketWidth) {
+        initialise(memorySize, bucketWidth);
+    }
+
+    public final void initialise(int size, float bucketWidth) {
+        this.inverseBucketWidth = 1f/bucketWidth;
+        for (int i=0; i<=maxBucket && i<bucketSizes.length; ++i) {
+            bucketSizes[i] = 0;
+        }
+        currentBucket = -1;
+        maxBucket = -1;
+        queueSize = 0;
+
+        if (ticketCheck == null || ticketCheck.length != size) {
+            keys = new float[size];
+            bucketOf = new int[size];
+            indexInBucket = new int[size];
+            ticketCheck = new int[size];
+            ticketNumber = 1;
+            exactHeap = new ReusableQuaternaryHeap(size);
+        } else {
+            if (ticketNumber == -1) {
+                ticketCheck = new int[size];
+                ticketNumber = 1;
+            } else {
+                ticketNumber++;
+            }
+            exactHeap.initialise(size);
+        }
+    }
+
+    private final int bucketIndex(float key) {
+        float scaled = key * inverseBucketWidth;
+        return scaled < MAX_BUCKETS-1 ? (int)scaled : MAX_BUCKETS-1;
+    }
+
+    private final void addToBucket(int handle, int bucket) {
+        if (bucket >= buckets.length) {
+            int newLength = Math.min(Math.max(buckets.length*2, bucket+1), MAX_BUCKETS);
+            int[][] newBuckets = new int[newLength][];
+            System.arraycopy(buckets, 0, newBuckets, 0, buckets.length);
+            int[] newBucketSizes = new int[newLength];
+            System.arraycopy(bucketSizes, 0, newBucketSizes, 0, bucketSizes.length);
+            buckets = newBuckets;
+            bucketSizes = newBucketSizes;
+        }
+        int[] list = buckets[bucket];
+        if (list == null) {
+            buckets[bucket] = list = new int[INITIAL_BUCKET_CAPACITY];
+        }
+        int index = bucketSizes[bucket]++;
+        if (index == list.length) {
+            int[] newList = new int[list.length*2];
+            System.arraycopy(list, 0, newList, 0, list.length);
+            buckets[bucket] = list = newList;
+        }
+        list[index] = handle;
+        bucketOf[handle] = bucket;
+        indexInBucket[handle] = index;
+        if (bucket > maxBucket) maxBucket = bucket;
+    }
+
+    private final void removeFromBucket(int handle) {
+        int bucket = bucketOf[handle];
+        int[] list = buckets[bucket];
+        int index = indexInBucket[handle];
+        int moved = list[--bucketSizes[bucket]];
+        list[index] = moved;
+        indexInBucket[moved] = index;
+    }
+
+    /**
+     * Runtime: O(1) if the key is above the current bucket, O(lg(size of current bucket)) otherwise.
+     */
+    @Override
+    public final void decreaseKey(int handle, float newKey) {
+        if (ticketCheck[handle] != ticketNumber) {
+            ticketCheck[handle] = ticketNumber;
+            bucketOf[handle] = NOT_IN_QUEUE;
+        }
+
+        int state = bucketOf[handle];
+        if (state == IN_HEAP) {
+            exactHeap.decreaseKey(handle, newKey);
+            return;
+        }
+        if (state == NOT_IN_QUEUE) {
+            ++queueSize;
+        } else {
+            removeFromBucket(handle);
+        }
+
+        keys[handle] = newKey;
+        int bucket = bucketIndex(newKey);
+        if (bucket <= currentBucket) {
+            bucketOf[handle] = IN_HEAP;
+            exactHeap.decreaseKey(handle, newKey);
+        } else {
+            addToBucket(handle, bucket);
+        }
+    }
+
+    /**
+     * Moves the lowest non-empty bucket into the exact heap, if the exact heap is empty.
+     */
+    private final void refill() {
+        if (!exactHeap.isEmpty()) return;
+
+        int bucket = currentBucket+1;
+        while (bucketSizes[bucket] == 0) ++bucket;
+        currentBucket = bucket;
+
+        int[] list = buckets[bucket];
+        int size = bucketSizes[bucket];
+        bucketSizes[bucket] = 0;
+        for (int i=0; i<size; ++i) {
+            int handle = list[i];
+            bucketOf[handle] = IN_HEAP;
+            exactHeap.decreaseKey(handle, keys[handle]);
+        }
+    }
+
+    @Override
+    public final float getMinValue() {
+        if (queueSize == 0)
+            throw new NullPointerException("Bucket Queue is empty!");
+        refill();
+        return exactHeap.getMinValue();
+    }
+
+    /**
+     * Runtime: amortised O(1) plus O(lg(size of current bucket))
+     * @return index of min element
+     */
+    @Override
+    public final int popMinIndex() {
+        if (queueSize == 0)
+            throw new NullPointerException("Bucket Queue is empty!");
+        refill();
+
+        int s = exactHeap.popMinIndex();
+        bucketOf[s] = NOT_IN_QUEUE;
+        --queueSize;
+        return s;
+    }
+
+    @Override
+    public final int size() {
+        return queueSize;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return queueSize <= 0;
+    }
+
+    @Override
+    public final void clear() {
+        buckets = new int[64][];
+        bucketSizes = new int[64];
+        bucketOf = null;
+        indexInBucket = null;
+        ticketCheck = null;
+        exactHeap = null;
+        keys = null;
+        currentBucket = -1;
+        maxBucket = -1;
+        queueSize = 0;
+    }
+
+    /**
+     * Releases the arrays held by the calling thread's queue.
+     */
+    public static void clearMemory() {
+        threadQueue.get().clear();
+    }
+}
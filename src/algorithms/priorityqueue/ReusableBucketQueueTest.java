@@ -0,0 +1,117 @@
+package algorithms.priorityqueue;
+
+import static org.junit.Assert.*;
+
+import grid.GridGraph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import algorithms.AStarOctileHeuristic;
+import algorithms.AStarStaticMemory;
+import algorithms.JumpPointSearch;
+import main.graphgeneration.DefaultGenerator;
+
+public class ReusableBucketQueueTest {
+
+    /**
+     * Runs random decreaseKeys and pops, and checks every pop against the smallest key in the queue.
+     * @param nextKey the key of a decreaseKey, given the last key popped.
+     */
+    private static void checkPopsInKeyOrder(ReusableBucketQueue pq, int size, Random random, KeyGenerator nextKey) {
+        float[] keys = new float[size];
+        Arrays.fill(keys, Float.NaN); // NaN: not in the queue.
+        float lastPopped = 0;
+        int nInQueue = 0;
+        for (int i=0;i<size*20;++i) {
+            if (nInQueue > 0 && random.nextInt(3) == 0) {
+                float expected = Float.POSITIVE_INFINITY;
+                for (float key : keys) {
+                    if (key < expected) expected = key;
+                }
+                assertEquals(expected, pq.getMinValue(), 0f);
+                int handle = pq.popMinIndex();
+                assertEquals(expected, keys[handle], 0f);
+                lastPopped = expected;
+                keys[handle] = Float.NaN;
+                --nInQueue;
+            } else {
+                int handle = random.nextInt(size);
+                float key = nextKey.next(lastPopped);
+                if (Float.isNaN(keys[handle])) {
+                    ++nInQueue;
+                } else if (key >= keys[handle]) {
+                    continue;
+                }
+                keys[handle] = key;
+                pq.decreaseKey(handle, key);
+            }
+            assertEquals(nInQueue, pq.size());
+        }
+    }
+
+    private interface KeyGenerator {
+        float next(float lastPopped);
+    }
+
+    @Test
+    public void testKeysPastLastBucket() {
+        // With the default bucket width of 1/16, keys from 65536 on all share the last bucket.
+        Random random = new Random(3);
+        ReusableBucketQueue pq = new ReusableBucketQueue(300, ReusableBucketQueue.DEFAULT_BUCKET_WIDTH);
+        for (int trial=0;trial<10;++trial) {
+            pq.initialise(300, ReusableBucketQueue.DEFAULT_BUCKET_WIDTH);
+            checkPopsInKeyOrder(pq, 300, random, lastPopped -> {
+                switch (random.nextInt(3)) {
+                    case 0: return 65536f + random.nextInt(100000) / 4f;
+                    case 1: return 65535f + random.nextInt(16) / 8f; // around the start of the last bucket.
+                    default: return lastPopped + random.nextInt(64) / 8f;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testKeysAtOrBelowCurrentBucket() {
+        // Keys equal to, in the same bucket as, or below the last key popped, as in searches with non-monotone keys.
+        Random random = new Random(9);
+        ReusableBucketQueue pq = new ReusableBucketQueue(200, ReusableBucketQueue.DEFAULT_BUCKET_WIDTH);
+        for (int trial=0;trial<20;++trial) {
+            pq.initialise(200, ReusableBucketQueue.DEFAULT_BUCKET_WIDTH);
+            checkPopsInKeyOrder(pq, 200, random, lastPopped -> {
+                switch (random.nextInt(4)) {
+                    case 0: return lastPopped;
+                    case 1: return lastPopped + random.nextInt(4) / 128f; // same bucket of width 1/16.
+                    case 2: return Math.max(0, lastPopped - random.nextInt(8) / 4f);
+                    default: return lastPopped + random.nextInt(100) / 8f;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testSamePathLengthsAsBinaryHeapOnLargeMap() {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(12, 1000, 1000, 15);
+        Random random = new Random(4);
+        for (int i=0;i<6;++i) {
+            int sx = random.nextInt(graph.sizeX+1);
+            int sy = random.nextInt(graph.sizeY+1);
+            int ex = random.nextInt(graph.sizeX+1);
+            int ey = random.nextInt(graph.sizeY+1);
+
+            AStarStaticMemory[][] algos = new AStarStaticMemory[][] {
+                {new AStarStaticMemory(graph, sx, sy, ex, ey), new AStarStaticMemory(graph, sx, sy, ex, ey)},
+                {new AStarOctileHeuristic(graph, sx, sy, ex, ey), new AStarOctileHeuristic(graph, sx, sy, ex, ey)},
+                {new JumpPointSearch(graph, sx, sy, ex, ey), new JumpPointSearch(graph, sx, sy, ex, ey)},
+            };
+            for (AStarStaticMemory[] pair : algos) {
+                pair[1].setPriorityQueueType(PriorityQueueType.BUCKET_QUEUE);
+                pair[0].computePath();
+                pair[1].computePath();
+                assertEquals(pair[0].getClass().getSimpleName(), pair[0].getPathLength(), pair[1].getPathLength(), 1e-3f);
+            }
+        }
+    }
+}
@@ -4,46 +4,33 @@ package algorithms.priorityqueue;
 /**
  * Indirect binary heap. Used for O(lgn) deleteMin and O(lgn) decreaseKey.
  */
-public class ReusableIndirectHeap {
+public class ReusableIndirectHeap implements ReusablePriorityQueue {
+    private static final ThreadLocal<ReusableIndirectHeap> threadHeap = ThreadLocal.withInitial(ReusableIndirectHeap::new);
 
-    private static float[] keyList;
-    private static int[] inList;
-    private static int[] outList;
+    private float[] keyList;
+    private int[] inList;
+    private int[] outList;
     private int heapSize;
         
-    private static float defaultKey = Float.POSITIVE_INFINITY;
+    private float defaultKey = Float.POSITIVE_INFINITY;
 
-    private static int[] ticketCheck;
-    private static int ticketNumber = 0;
-    
-    public static final class Context {
-        private float[] keyList;
-        private int[] inList;
-        private int[] outList;
-        private int[] ticketCheck;
-        private int ticketNumber;
-        
-        public Context(){};
-    }
-    
-    public static final void loadContext(Context context) {
-        ReusableIndirectHeap.keyList = context.keyList;
-        ReusableIndirectHeap.inList = context.inList;
-        ReusableIndirectHeap.outList = context.outList;
-        ReusableIndirectHeap.ticketCheck = context.ticketCheck;
-        ReusableIndirectHeap.ticketNumber = context.ticketNumber;
-    }
-    
-    public static final void saveContext(Context context) {
-        context.keyList = ReusableIndirectHeap.keyList;
-        context.inList = ReusableIndirectHeap.inList;
-        context.outList = ReusableIndirectHeap.outList;
-        context.ticketCheck = ReusableIndirectHeap.ticketCheck;
-        context.ticketNumber = ReusableIndirectHeap.ticketNumber;
+    private int[] ticketCheck;
+    private int ticketNumber = 0;
+
+    /**
+     * Runtime: O(1), unless the memory size has changed.
+     * Returns the heap owned by the calling thread, emptied and ready for reuse.
+     * The heap returned must not be handed to another thread while in use.
+     */
+    public static final ReusableIndirectHeap forCurrentThread(int memorySize) {
+        ReusableIndirectHeap heap = threadHeap.get();
+        heap.initialise(memorySize, Float.POSITIVE_INFINITY);
+        return heap;
     }
 
-    public static void initialise(int size, float defaultKey) {
-        ReusableIndirectHeap.defaultKey = defaultKey;
+    public final void initialise(int size, float defaultKey) {
+        this.defaultKey = defaultKey;
+        heapSize = 0;
         
         if (ticketCheck == null || ticketCheck.length != size) {
             //System.out.println("REINITIALISE HEAP " + size);
@@ -60,19 +47,19 @@ public class ReusableIndirectHeap {
         }
     }
     
-    public static final float getKey(int index) {
+    private final float getKey(int index) {
         return ticketCheck[index] == ticketNumber ? keyList[index] : defaultKey;
     }
     
-    public static final int getIn(int index) {
+    private final int getIn(int index) {
         return ticketCheck[index] == ticketNumber ? inList[index] : index;
     }
     
-    public static final int getOut(int index) {
+    private final int getOut(int index) {
         return ticketCheck[index] == ticketNumber ? outList[index] : index;
     }
     
-    public static final void setKey(int index, float value) {
+    private final void setKey(int index, float value) {
         if (ticketCheck[index] != ticketNumber) {
             keyList[index] = value;
             inList[index] = index;
@@ -83,7 +70,7 @@ public class ReusableIndirectHeap {
         }
     }
     
-    public static final void setIn(int index, int value) {
+    private final void setIn(int index, int value) {
         if (ticketCheck[index] != ticketNumber) {
             keyList[index] = defaultKey;
             inList[index] = value;
@@ -94,7 +81,7 @@ public class ReusableIndirectHeap {
         }
     }
     
-    public static final void setOut(int index, int value) {
+    private final void setOut(int index, int value) {
         if (ticketCheck[index] != ticketNumber) {
             keyList[index] = defaultKey;
             inList[index] = index;
@@ -105,21 +92,21 @@ public class ReusableIndirectHeap {
         }
     }
 
+    private ReusableIndirectHeap() {
+    }
     
     /**
-     * Runtime: O(1)
+     * Runtime: O(size). Allocates a new heap not shared with any thread.
      */
     public ReusableIndirectHeap(int size) {
         initialise(size, Float.POSITIVE_INFINITY);
-        heapSize = 0;
     }
     
     /**
-     * Runtime: O(1)
+     * Runtime: O(memorySize). Allocates a new heap not shared with any thread.
      */
     public ReusableIndirectHeap(int size, int memorySize) {
         initialise(memorySize, Float.POSITIVE_INFINITY);
-        heapSize = 0;
     }
 
     /**
@@ -305,11 +292,19 @@ public class ReusableIndirectHeap {
         return heapSize <= 0;
     }
 
-    public static void clearMemory() {
+    public final void clear() {
         keyList = null;
         inList = null;
         outList = null;
         ticketCheck = null;
+        heapSize = 0;
+    }
+
+    /**
+     * Releases the arrays held by the calling thread's heap.
+     */
+    public static void clearMemory() {
+        threadHeap.get().clear();
         System.gc();
     }
 }
\ No newline at end of file
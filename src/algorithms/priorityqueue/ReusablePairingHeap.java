@@ -0,0 +1,191 @@
+package algorithms.priorityqueue;
+
+
+/**
+ * Indirect pairing heap. O(1) insert and decreaseKey, amortised O(lgn) deleteMin.<br>
+ * Each handle is a node of the heap, linked by the child, sibling and prev arrays
+ * (prev is the parent for a leftmost child, and the left sibling otherwise).<br>
+ * Nodes are reset lazily between searches, using a ticket number.
+ */
+public final class ReusablePairingHeap implements ReusablePriorityQueue {
+    private static final ThreadLocal<ReusablePairingHeap> threadHeap = ThreadLocal.withInitial(ReusablePairingHeap::new);
+
+    private static final int POPPED = -2;
+
+    private float[] keys;
+    private int[] child;
+    private int[] sibling;
+    private int[] prev;
+    private int[] pairs; // scratch space for deleteMin.
+    private int root = -1;
+    private int heapSize;
+
+    private int[] ticketCheck;
+    private int ticketNumber = 0;
+
+    /**
+     * Runtime: O(1), unless the memory size has changed.
+     * Returns the heap owned by the calling thread, emptied and ready for reuse.
+     */
+    public static final ReusablePairingHeap forCurrentThread(int memorySize) {
+        ReusablePairingHeap heap = threadHeap.get();
+        heap.initialise(memorySize);
+        return heap;
+    }
+
+    private ReusablePairingHeap() {
+    }
+
+    /**
+     * Runtime: O(memorySize). Allocates a new heap not shared with any thread.
+     */
+    public ReusablePairingHeap(int memorySize) {
+        initialise(memorySize);
+    }
+
+    public final void initialise(int size) {
+        heapSize = 0;
+        root = -1;
+
+        if (ticketCheck == null || ticketCheck.length != size) {
+            keys = new float[size];
+            child = new int[size];
+            sibling = new int[size];
+            prev = new int[size];
+            pairs = new int[size];
+            ticketCheck = new int[size];
+            ticketNumber = 1;
+        } else if (ticketNumber == -1) {
+            ticketCheck = new int[size];
+            ticketNumber = 1;
+        } else {
+            ticketNumber++;
+        }
+    }
+
+    /**
+     * Links two roots, and returns the new root.
+     */
+    private final int link(int a, int b) {
+        if (keys[b] < keys[a]) {
+            int temp = a; a = b; b = temp;
+        }
+        // b becomes the leftmost child of a.
+        int firstChild = child[a];
+        sibling[b] = firstChild;
+        if (firstChild != -1) prev[firstChild] = b;
+        child[a] = b;
+        prev[b] = a;
+        return a;
+    }
+
+    /**
+     * Runtime: O(1)
+     */
+    @Override
+    public final void decreaseKey(int handle, float newKey) {
+        keys[handle] = newKey;
+        if (ticketCheck[handle] != ticketNumber || prev[handle] == POPPED) {
+            ticketCheck[handle] = ticketNumber;
+            child[handle] = -1;
+            sibling[handle] = -1;
+            prev[handle] = -1;
+            root = (root == -1) ? handle : link(root, handle);
+            ++heapSize;
+            return;
+        }
+        if (handle == root) return;
+
+        // Cut the subtree rooted at handle, and meld it with the root.
+        int p = prev[handle];
+        int next = sibling[handle];
+        if (child[p] == handle) {
+            child[p] = next;
+        } else {
+            sibling[p] = next;
+        }
+        if (next != -1) prev[next] = p;
+        sibling[handle] = -1;
+        prev[handle] = -1;
+        root = link(root, handle);
+    }
+
+    @Override
+    public final float getMinValue() {
+        return keys[root];
+    }
+
+    /**
+     * Runtime: O(lgn) amortised
+     * @return index of min element
+     */
+    @Override
+    public final int popMinIndex() {
+        if (heapSize == 0)
+            throw new NullPointerException("Indirect Heap is empty!");
+
+        int s = root;
+        prev[s] = POPPED;
+        --heapSize;
+
+        // First pass: link the children in pairs, from left to right.
+        int nPairs = 0;
+        int current = child[s];
+        while (current != -1) {
+            int second = sibling[current];
+            if (second == -1) {
+                prev[current] = -1;
+                pairs[nPairs++] = current;
+                break;
+            }
+            int next = sibling[second];
+            sibling[current] = -1;
+            sibling[second] = -1;
+            prev[current] = -1;
+            prev[second] = -1;
+            pairs[nPairs++] = link(current, second);
+            current = next;
+        }
+
+        // Second pass: meld the pairs from right to left.
+        if (nPairs == 0) {
+            root = -1;
+        } else {
+            int newRoot = pairs[--nPairs];
+            while (nPairs > 0) {
+                newRoot = link(pairs[--nPairs], newRoot);
+            }
+            root = newRoot;
+        }
+        return s;
+    }
+
+    @Override
+    public final int size() {
+        return heapSize;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return heapSize <= 0;
+    }
+
+    @Override
+    public final void clear() {
+        keys = null;
+        child = null;
+        sibling = null;
+        prev = null;
+        pairs = null;
+        ticketCheck = null;
+        root = -1;
+        heapSize = 0;
+    }
+
+    /**
+     * Releases the arrays held by the calling thread's heap.
+     */
+    public static void clearMemory() {
+        threadHeap.get().clear();
+    }
+}
@@ -0,0 +1,32 @@
+package algorithms.priorityqueue;
+
+/**
+ * Open list with integer handles 0..memorySize-1 and float keys, reused across searches.<br>
+ * <br>
+ * Every handle starts outside the queue. decreaseKey inserts the handle if it is not in the queue,
+ * and lowers its key otherwise. Implementations are obtained per thread with PriorityQueueType.forCurrentThread,
+ * and must not be handed to another thread while in use.
+ */
+public interface ReusablePriorityQueue {
+
+    /**
+     * Inserts the handle with the given key, or lowers its key if it is already in the queue.
+     */
+    public void decreaseKey(int handle, float newKey);
+
+    public float getMinValue();
+
+    /**
+     * @return the handle of the min element, which is removed from the queue.
+     */
+    public int popMinIndex();
+
+    public int size();
+
+    public boolean isEmpty();
+
+    /**
+     * Releases the arrays held by this queue.
+     */
+    public void clear();
+}
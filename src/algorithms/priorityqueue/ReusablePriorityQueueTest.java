@@ -0,0 +1,120 @@
+package algorithms.priorityqueue;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ReusablePriorityQueueTest {
+
+    @Test
+    public void testPopsInKeyOrder() {
+        Random random = new Random(5);
+        for (PriorityQueueType type : PriorityQueueType.values()) {
+            for (int trial=0;trial<20;++trial) {
+                int size = 1 + random.nextInt(200);
+                ReusablePriorityQueue pq = type.forCurrentThread(size);
+                assertTrue(pq.isEmpty());
+
+                float[] keys = new float[size];
+                Arrays.fill(keys, Float.POSITIVE_INFINITY);
+                for (int i=0;i<size*2;++i) {
+                    int handle = random.nextInt(size);
+                    float key = random.nextInt(1000) / 8f;
+                    if (key < keys[handle]) {
+                        keys[handle] = key;
+                        pq.decreaseKey(handle, key);
+                    }
+                }
+
+                float[] expected = keys.clone();
+                Arrays.sort(expected);
+                int index = 0;
+                while (!pq.isEmpty()) {
+                    float min = pq.getMinValue();
+                    assertEquals(type.label, expected[index], min, 0f);
+                    int handle = pq.popMinIndex();
+                    assertEquals(type.label, min, keys[handle], 0f);
+                    keys[handle] = Float.NaN;
+                    ++index;
+                }
+                assertTrue(index == size || expected[index] == Float.POSITIVE_INFINITY);
+            }
+        }
+    }
+
+    @Test
+    public void testDijkstraDistancesMatch() {
+        Random random = new Random(11);
+        for (int trial=0;trial<20;++trial) {
+            int nNodes = 2 + random.nextInt(300);
+            int degree = 1 + random.nextInt(6);
+            int[][] edges = new int[nNodes][degree];
+            float[][] weights = new float[nNodes][degree];
+            for (int u=0;u<nNodes;++u) {
+                for (int j=0;j<degree;++j) {
+                    edges[u][j] = random.nextInt(nNodes);
+                    weights[u][j] = random.nextFloat() * 10;
+                }
+            }
+
+            float[] expected = dijkstra(PriorityQueueType.BINARY_HEAP, edges, weights);
+            for (PriorityQueueType type : PriorityQueueType.values()) {
+                assertArrayEquals(type.label, expected, dijkstra(type, edges, weights), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void testRadixHeapRejectsKeysBelowLastPopped() {
+        ReusablePriorityQueue pq = PriorityQueueType.RADIX_HEAP.forCurrentThread(10);
+        pq.decreaseKey(0, 100f);
+        pq.decreaseKey(1, 200f);
+        assertEquals(0, pq.popMinIndex());
+
+        // A float rounding error below the last key popped is popped as if equal to it.
+        pq.decreaseKey(2, Math.nextDown(100f));
+        assertEquals(2, pq.popMinIndex());
+
+        try {
+            pq.decreaseKey(3, 99f);
+            fail("A key below the last key popped must be rejected");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            pq.decreaseKey(4, -1f);
+            fail("A negative key must be rejected");
+        } catch (UnsupportedOperationException expected) {
+        }
+        // The rejected keys leave the heap as it was.
+        assertEquals(1, pq.size());
+        assertEquals(1, pq.popMinIndex());
+        assertTrue(pq.isEmpty());
+    }
+
+    private static float[] dijkstra(PriorityQueueType type, int[][] edges, float[][] weights) {
+        int nNodes = edges.length;
+        float[] distance = new float[nNodes];
+        boolean[] visited = new boolean[nNodes];
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+
+        ReusablePriorityQueue pq = type.forCurrentThread(nNodes);
+        distance[0] = 0;
+        pq.decreaseKey(0, 0);
+        while (!pq.isEmpty()) {
+            int u = pq.popMinIndex();
+            visited[u] = true;
+            for (int j=0;j<edges[u].length;++j) {
+                int v = edges[u][j];
+                float newDistance = distance[u] + weights[u][j];
+                if (!visited[v] && newDistance < distance[v]) {
+                    distance[v] = newDistance;
+                    pq.decreaseKey(v, newDistance);
+                }
+            }
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,208 @@
+package algorithms.priorityqueue;
+
+
+/**
+ * Indirect radix heap for monotone, non-negative float keys. O(1) insert and decreaseKey,
+ * amortised O(32) deleteMin.<br>
+ * <br>
+ * For non-negative floats, the order of the keys is the order of their raw int bits. A key is kept in the bucket
+ * of the highest bit in which it differs from the last key popped (bucket 0 if equal). deleteMin empties the
+ * first non-empty bucket into the lower buckets, around its smallest key.<br>
+ * <br>
+ * Keys must not go below the last key popped, so searches whose keys are not monotone (e.g. Theta*, where a node can
+ * get a smaller key than its parent's) cannot use it. A key below the last key popped by no more than a float
+ * rounding error is treated as equal to it. A key further below throws an UnsupportedOperationException, as it
+ * would otherwise be popped out of order.
+ */
+public final class ReusableRadixHeap implements ReusablePriorityQueue {
+    private static final ThreadLocal<ReusableRadixHeap> threadHeap = ThreadLocal.withInitial(ReusableRadixHeap::new);
+
+    private static final int N_BUCKETS = 32;
+    private static final int INITIAL_BUCKET_CAPACITY = 16;
+    private static final float ROUNDING_TOLERANCE = 1e-5f; // Relative to the last key popped.
+
+    private final int[][] buckets = new int[N_BUCKETS][];
+    private final int[] bucketSizes = new int[N_BUCKETS];
+    private int lastBits;
+    private int heapSize;
+
+    private float[] keys;
+    private int[] bucketOf; // -1 if not in the heap.
+    private int[] indexInBucket;
+
+    private int[] ticketCheck;
+    private int ticketNumber = 0;
+
+    /**
+     * Runtime: O(1), unless the memory size has changed.
+     * Returns the heap owned by the calling thread, emptied and ready for reuse.
+     */
+    public static final ReusableRadixHeap forCurrentThread(int memorySize) {
+        ReusableRadixHeap heap = threadHeap.get();
+        heap.initialise(memorySize);
+        return heap;
+    }
+
+    private ReusableRadixHeap() {
+    }
+
+    /**
+     * Runtime: O(memorySize). Allocates a new heap not shared with any thread.
+     */
+    public ReusableRadixHeap(int memorySize) {
+        initialise(memorySize);
+    }
+
+    public final void initialise(int size) {
+        heapSize = 0;
+        lastBits = 0;
+        for (int i=0; i<N_BUCKETS; ++i) {
+            bucketSizes[i] = 0;
+            if (buckets[i] == null) buckets[i] = new int[INITIAL_BUCKET_CAPACITY];
+        }
+
+        if (ticketCheck == null || ticketCheck.length != size) {
+            keys = new float[size];
+            bucketOf = new int[size];
+            indexInBucket = new int[size];
+            ticketCheck = new int[size];
+            ticketNumber = 1;
+        } else if (ticketNumber == -1) {
+            ticketCheck = new int[size];
+            ticketNumber = 1;
+        } else {
+            ticketNumber++;
+        }
+    }
+
+    private final int bucketIndex(float key) {
+        int bits = Float.floatToRawIntBits(key);
+        if (bits <= lastBits) {
+            float lastKey = Float.intBitsToFloat(lastBits);
+            if (key < lastKey - lastKey*ROUNDING_TOLERANCE) {
+                throw new UnsupportedOperationException("Radix Heap key " + key + " is below the last key popped " +
+                        lastKey + ". The keys of the search are not monotone.");
+            }
+            return 0;
+        }
+        return N_BUCKETS - Integer.numberOfLeadingZeros(bits ^ lastBits);
+    }
+
+    private final void addToBucket(int handle, int bucket) {
+        int[] list = buckets[bucket];
+        int index = bucketSizes[bucket]++;
+        if (index == list.length) {
+            int[] newList = new int[list.length*2];
+            System.arraycopy(list, 0, newList, 0, list.length);
+            buckets[bucket] = list = newList;
+        }
+        list[index] = handle;
+        bucketOf[handle] = bucket;
+        indexInBucket[handle] = index;
+    }
+
+    private final void removeFromBucket(int handle) {
+        int bucket = bucketOf[handle];
+        int[] list = buckets[bucket];
+        int index = indexInBucket[handle];
+        int lastIndex = --bucketSizes[bucket];
+        int moved = list[lastIndex];
+        list[index] = moved;
+        indexInBucket[moved] = index;
+    }
+
+    /**
+     * Runtime: O(1)
+     */
+    @Override
+    public final void decreaseKey(int handle, float newKey) {
+        int bucket = bucketIndex(newKey);
+        if (ticketCheck[handle] != ticketNumber || bucketOf[handle] == -1) {
+            ticketCheck[handle] = ticketNumber;
+            ++heapSize;
+        } else {
+            removeFromBucket(handle);
+        }
+        keys[handle] = newKey;
+        addToBucket(handle, bucket);
+    }
+
+    /**
+     * Ensures bucket 0 is non-empty, by emptying the first non-empty bucket into the lower buckets.
+     */
+    private final void refill() {
+        if (bucketSizes[0] > 0) return;
+
+        int bucket = 1;
+        while (bucketSizes[bucket] == 0) ++bucket;
+
+        int[] list = buckets[bucket];
+        int size = bucketSizes[bucket];
+        float minKey = keys[list[0]];
+        for (int i=1; i<size; ++i) {
+            float key = keys[list[i]];
+            if (key < minKey) minKey = key;
+        }
+        lastBits = Float.floatToRawIntBits(minKey);
+
+        bucketSizes[bucket] = 0;
+        for (int i=0; i<size; ++i) {
+            int handle = list[i];
+            addToBucket(handle, bucketIndex(keys[handle]));
+        }
+    }
+
+    @Override
+    public final float getMinValue() {
+        if (heapSize == 0)
+            throw new NullPointerException("Radix Heap is empty!");
+        refill();
+        return keys[buckets[0][bucketSizes[0]-1]];
+    }
+
+    /**
+     * Runtime: O(32) amortised
+     * @return index of min element
+     */
+    @Override
+    public final int popMinIndex() {
+        if (heapSize == 0)
+            throw new NullPointerException("Radix Heap is empty!");
+        refill();
+
+        int s = buckets[0][--bucketSizes[0]];
+        bucketOf[s] = -1;
+        --heapSize;
+        return s;
+    }
+
+    @Override
+    public final int size() {
+        return heapSize;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        return heapSize <= 0;
+    }
+
+    @Override
+    public final void clear() {
+        keys = null;
+        bucketOf = null;
+        indexInBucket = null;
+        ticketCheck = null;
+        for (int i=0; i<N_BUCKETS; ++i) {
+            buckets[i] = null;
+            bucketSizes[i] = 0;
+        }
+        heapSize = 0;
+    }
+
+    /**
+     * Releases the arrays held by the calling thread's heap.
+     */
+    public static void clearMemory() {
+        threadHeap.get().clear();
+    }
+}
@@ -20,7 +20,7 @@ public class ConvexHullRPSScanner {
     private final void saveSnapshot(int sx, int sy, RPSScanner.Vertex v) {
         ArrayList<SnapshotItem> snapshot = new ArrayList<>();
 
-        snapshot.add(SnapshotItem.generate(new Integer[]{sx, sy, v.x, v.y}, Color.RED));
+        snapshot.add(SnapshotItem.generateUncached(new Integer[]{sx, sy, v.x, v.y}, Color.RED));
 
         // Snapshot current state of heap
         int heapSize = edgeHeap.size();
@@ -28,7 +28,7 @@ public class ConvexHullRPSScanner {
         for (int k=0; k<heapSize; ++k) {
             Color colour = (k == 0) ? Color.CYAN : Color.GREEN;
             RPSScanner.Edge e = edges[k];
-            snapshot.add(SnapshotItem.generate(new Integer[]{e.u.x, e.u.y, e.v.x, e.v.y}, colour));
+            snapshot.add(SnapshotItem.generateUncached(new Integer[]{e.u.x, e.u.y, e.v.x, e.v.y}, colour));
         }
 
         snapshotList.add(new ArrayList<SnapshotItem>(snapshot));
@@ -546,22 +546,25 @@ public class ConvexHullRPSScanner {
         }
     }
 
-    public final ArrayList<SnapshotItem> snapshotLines() {
+    /**
+     * @param cached false to create the items without interning them, e.g. when they are written to a trace file.
+     */
+    public final ArrayList<SnapshotItem> snapshotLines(boolean cached) {
         ArrayList<SnapshotItem> snapshotItemList = new ArrayList<>();
 
         for (int i=0; i<nVertices; i+=2) {
             RPSScanner.Edge e = verticesUnsorted[i].edge1;
             Integer[] path = new Integer[] {e.u.x, e.u.y, e.v.x, e.v.y};
 
-            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.CYAN);
+            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.CYAN, cached);
             snapshotItemList.add(snapshotItem);
         }
 
         return snapshotItemList;
     }
 
-    public final ArrayList<SnapshotItem> snapshotLinesAndSuccessors(int currX, int currY) {
-        ArrayList<SnapshotItem> snapshotItemList = snapshotLines();
+    public final ArrayList<SnapshotItem> snapshotLinesAndSuccessors(int currX, int currY, boolean cached) {
+        ArrayList<SnapshotItem> snapshotItemList = snapshotLines(cached);
         
         for (int i=0; i<nSuccessors; ++i) {
             int succX = successorsX[i];
@@ -569,7 +572,7 @@ public class ConvexHullRPSScanner {
             if (!graph.lineOfSight(currX, currY, succX, succY)) continue;
             Integer[] path = new Integer[] {currX, currY, succX, succY};
 
-            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.MAGENTA);
+            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.MAGENTA, cached);
             snapshotItemList.add(snapshotItem);
         }
 
@@ -19,7 +19,7 @@ public class RPSScanner {
     private final void saveSnapshot(int sx, int sy, Vertex v) {
         ArrayList<SnapshotItem> snapshot = new ArrayList<>();
 
-        snapshot.add(SnapshotItem.generate(new Integer[]{sx, sy, v.x, v.y}, Color.RED));
+        snapshot.add(SnapshotItem.generateUncached(new Integer[]{sx, sy, v.x, v.y}, Color.RED));
 
         // Snapshot current state of heap
         int heapSize = edgeHeap.size();
@@ -27,7 +27,7 @@ public class RPSScanner {
         for (int k=0; k<heapSize; ++k) {
             Color colour = (k == 0) ? Color.CYAN : Color.GREEN;
             Edge e = edges[k];
-            snapshot.add(SnapshotItem.generate(new Integer[]{e.u.x, e.u.y, e.v.x, e.v.y}, colour));
+            snapshot.add(SnapshotItem.generateUncached(new Integer[]{e.u.x, e.u.y, e.v.x, e.v.y}, colour));
         }
 
         snapshotList.add(new ArrayList<SnapshotItem>(snapshot));
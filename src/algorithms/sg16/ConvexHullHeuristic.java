@@ -218,13 +218,16 @@ public class ConvexHullHeuristic {
     }
 
 
-    public final ArrayList<SnapshotItem> snapshotLines(int px, int py) {
+    /**
+     * @param cached false to create the items without interning them, e.g. when they are written to a trace file.
+     */
+    public final ArrayList<SnapshotItem> snapshotLines(int px, int py, boolean cached) {
         ArrayList<SnapshotItem> snapshotItemList = new ArrayList<>();
         
         {
             Integer[] path = new Integer[] {ex,ey,px,py};
 
-            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.ORANGE);
+            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.ORANGE, cached);
             snapshotItemList.add(snapshotItem);
         }
 
@@ -245,7 +248,7 @@ public class ConvexHullHeuristic {
             Color colour = intersects ? Color.BLUE : Color.CYAN;
             Integer[] path = new Integer[] {ex+edgex1[i], ey+edgey1[i], ex+edgex2[i], ey+edgey2[i]};
 
-            SnapshotItem snapshotItem = SnapshotItem.generate(path, colour);
+            SnapshotItem snapshotItem = SnapshotItem.generate(path, colour, cached);
             snapshotItemList.add(snapshotItem);
 
             if (intersects) {
@@ -271,22 +274,22 @@ public class ConvexHullHeuristic {
 
         {
             Integer[] path = new Integer[] {ex,ey,closestLeftX+ex,closestLeftY+ey};
-            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.ORANGE);
+            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.ORANGE, cached);
             snapshotItemList.add(snapshotItem);
         }
         {
             Integer[] path = new Integer[] {ex,ey,closestRightX+ex,closestRightY+ey};
-            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.ORANGE);
+            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.ORANGE, cached);
             snapshotItemList.add(snapshotItem);
         }
         {
             Integer[] path = new Integer[] {px+ex,py+ey,closestLeftX+ex,closestLeftY+ey};
-            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.ORANGE);
+            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.ORANGE, cached);
             snapshotItemList.add(snapshotItem);
         }
         {
             Integer[] path = new Integer[] {px+ex,py+ey,closestRightX+ex,closestRightY+ey};
-            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.ORANGE);
+            SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.ORANGE, cached);
             snapshotItemList.add(snapshotItem);
         }
 
@@ -7,9 +7,9 @@ import java.util.List;
 import grid.GridGraph;
 
 import algorithms.PathFindingAlgorithm;
-import algorithms.datatypes.Memory;
 import algorithms.rotationalplanesweep.ConvexHullRPSScanner;
-import algorithms.priorityqueue.ReusableIndirectHeap;
+import algorithms.priorityqueue.PriorityQueueType;
+import algorithms.priorityqueue.ReusablePriorityQueue;
 
 import algorithms.datatypes.SnapshotItem;
 
@@ -17,7 +17,8 @@ public class SG16Algorithm extends PathFindingAlgorithm {
 
     private ConvexHullHeuristic convexHullHeuristic;
     private SG16VisibilityGraph convexHullGraph;
-    private ReusableIndirectHeap pq; 
+    private PriorityQueueType priorityQueueType = PriorityQueueType.BINARY_HEAP;
+    private ReusablePriorityQueue pq; 
     private int start;
     private int finish;
 
@@ -25,6 +26,13 @@ public class SG16Algorithm extends PathFindingAlgorithm {
         super(graph, graph.sizeX, graph.sizeY, sx, sy, ex, ey);
     }
 
+    /**
+     * Selects the open list used by computePath. The default is PriorityQueueType.BINARY_HEAP.
+     */
+    public void setPriorityQueueType(PriorityQueueType priorityQueueType) {
+        this.priorityQueueType = priorityQueueType;
+    }
+
     @Override
     public void computePath() {
 
@@ -39,7 +47,7 @@ public class SG16Algorithm extends PathFindingAlgorithm {
         start = size;
         finish = size+1;
 
-        pq = new ReusableIndirectHeap(size, memorySize);
+        pq = priorityQueueType.forCurrentThread(memorySize);
         this.initialiseMemory(memorySize, Float.POSITIVE_INFINITY, -1, false);
         
         // 2. Search
@@ -126,8 +134,8 @@ public class SG16Algorithm extends PathFindingAlgorithm {
         // Convex hull heuristic
         //if (isRecording() && (nx!=ex||ny!=ey)) {
             //List<SnapshotItem> snapshot = computeSearchSnapshot();
-            //snapshot.add(SnapshotItem.generate(new Integer[]{nx, ny}, Color.ORANGE));
-            //snapshot.addAll(convexHullHeuristic.snapshotLines(nx, ny));
+            //snapshot.add(snapshotItem(new Integer[]{nx, ny}, Color.ORANGE));
+            //snapshot.addAll(convexHullHeuristic.snapshotLines(nx, ny, cacheSnapshotItems()));
             //addSnapshot(snapshot);
         //}
         //return (float)convexHullHeuristic.heuristic(nx, ny);
@@ -180,31 +188,31 @@ public class SG16Algorithm extends PathFindingAlgorithm {
     }
 
     private final int parent(int index) {
-        return Memory.parent(index);
+        return memory.parent(index);
     }
     
     private final void setParent(int index, int value) {
-        Memory.setParent(index, value);
+        memory.setParent(index, value);
     }
     
     private final float distance(int index) {
-        return Memory.distance(index);
+        return memory.distance(index);
     }
     
     private final void setDistance(int index, float value) {
-        Memory.setDistance(index, value);
+        memory.setDistance(index, value);
     }
     
     private final boolean visited(int index) {
-        return Memory.visited(index);
+        return memory.visited(index);
     }
     
     private final void setVisited(int index, boolean value) {
-        Memory.setVisited(index, value);
+        memory.setVisited(index, value);
     }
 
     private final void generateConvexHullSnapshot() {
-        addSnapshot(convexHullGraph.generateConvexHullSnapshot());
+        addSnapshot(convexHullGraph.generateConvexHullSnapshot(cacheSnapshotItems()));
     }
 
     @Override
@@ -248,7 +256,7 @@ public class SG16Algorithm extends PathFindingAlgorithm {
 
     @Override
     protected List<SnapshotItem> computeSearchSnapshot() {
-        List<SnapshotItem> snapshot = convexHullGraph.generateConvexHullSnapshot();
+        List<SnapshotItem> snapshot = convexHullGraph.generateConvexHullSnapshot(cacheSnapshotItems());
         snapshot.addAll(super.computeSearchSnapshot());
         return snapshot;
     }
@@ -256,16 +264,16 @@ public class SG16Algorithm extends PathFindingAlgorithm {
     private final void maybeSaveSearchSnapshot(ConvexHullRPSScanner scanner, int currX, int currY) {
         if (!isRecording()) return;
         List<SnapshotItem> snapshot = computeSearchSnapshot();
-        snapshot.addAll(scanner.snapshotLines());
-        snapshot.add(SnapshotItem.generate(new Integer[]{currX, currY}, Color.BLUE));
+        snapshot.addAll(scanner.snapshotLines(cacheSnapshotItems()));
+        snapshot.add(snapshotItem(new Integer[]{currX, currY}, Color.BLUE));
         addSnapshot(snapshot);
     }
 
     private final void maybeSaveSearchSnapshotWithSuccessors(ConvexHullRPSScanner scanner, int currX, int currY) {
         if (!isRecording()) return;
         List<SnapshotItem> snapshot = computeSearchSnapshot();
-        snapshot.addAll(scanner.snapshotLinesAndSuccessors(currX, currY));
-        snapshot.add(SnapshotItem.generate(new Integer[]{currX, currY}, Color.BLUE));
+        snapshot.addAll(scanner.snapshotLinesAndSuccessors(currX, currY, cacheSnapshotItems()));
+        snapshot.add(snapshotItem(new Integer[]{currX, currY}, Color.BLUE));
         addSnapshot(snapshot);
     }
 }
@@ -115,7 +115,10 @@ public class SG16VisibilityGraph {
     }
 
 
-    public final List<SnapshotItem> generateConvexHullSnapshot() {
+    /**
+     * @param cached false to create the items without interning them, e.g. when they are written to a trace file.
+     */
+    public final List<SnapshotItem> generateConvexHullSnapshot(boolean cached) {
         List<SnapshotItem> snapshotItemList = new ArrayList<>();
 
         for (int i=0; i<convexHulls.length; ++i) {
@@ -130,7 +133,7 @@ public class SG16VisibilityGraph {
 
                 Integer[] path = new Integer[]{prevX, prevY, currX, currY};
                 
-                SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.GREEN);
+                SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.GREEN, cached);
                 snapshotItemList.add(snapshotItem);
 
                 prevX = currX;
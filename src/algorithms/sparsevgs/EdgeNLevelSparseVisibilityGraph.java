@@ -2,100 +2,366 @@ package algorithms.sparsevgs;
 
 import grid.GridGraph;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import algorithms.datatypes.Memory;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import algorithms.datatypes.PreprocessedGraphRegistry;
+import algorithms.datatypes.SearchContext;
 
 public class EdgeNLevelSparseVisibilityGraph {
 
     public static int LEVEL_W = Integer.MAX_VALUE;
 
-    private static EdgeNLevelSparseVisibilityGraph storedVisibilityGraph;
-    private static GridGraph storedGridGraph;
-    private static int storedLevelLimit;
+    // Number of threads used to construct a graph. With 1, the graph is built on the calling thread only.
+    //  The graph built is the same for any number of threads.
+    public static int CONSTRUCTION_THREADS = Runtime.getRuntime().availableProcessors();
+    
+    // If set, built graphs are saved to this directory, and loaded from it instead of being rebuilt.
+    //  See EdgeNLevelSparseVisibilityGraphFile.
+    public static File GRAPH_FILE_DIRECTORY = null;
+    
+    // If set, the checksum of a graph file is verified when the file is loaded. This reads the whole file,
+    //  instead of only the pages that the queries use.
+    public static boolean VERIFY_GRAPH_FILES = false;
+    
+    private static final int MIN_CHUNK_SIZE = 256;
+    private static final int LEVEL_BLOCK_SIZE = 1 << 16;
+
+    private static final String REGISTRY_KIND = "ENLSVG";
     
-    private final GridGraph graph;
-    private LineOfSightScannerDouble losScanner;
+    final GridGraph graph;
+    final LineOfSightExtents losExtents; // Shared with the line of sight scanners of the overlays.
+    private ForkJoinPool constructionPool; // Only during construction. null if construction is sequential.
     private final int sizeXPlusOne;
     private final int sizeYPlusOne;
 
-    private int[] nodeIndex; // Flattened 2D Array
-    private int startIndex = -1;
-    private int endIndex = -1;
-    
-    private Runnable saveSnapshot;
+    int[] nodeIndex; // Flattened 2D Array
 
-    private int originalSize;
     private int maxSize;
     private int nNodes;
-
-    private int startOriginalSize;
-    private int endOriginalSize;
-
-    private int[] queue;
-    private int queueSize;
-
-    private int originalNEdges;
+    int nRescannedNodes; // Nodes scanned by the last construction or repair.
 
     public int levelLimit;
     
+    // The graph is only modified by repair(), between queries. Per-query data (start, goal, marked edges)
+    // is kept in an EdgeNLevelSparseVisibilityGraphOverlay.
+    
     // Nodes: Indexed by node Index.
     public int[] xPositions;
     public int[] yPositions;
-    public int[] nOutgoingEdgess;          // value: number of outgoingEdges.
-    public int[][] outgoingEdgess;         // value: nodeIndex of destination
-    public int[][] outgoingEdgeIndexess;   // value: edgeIndex of edge to destination.
-    public int[][] outgoingEdgeOppositeIndexess;   // value: index within outgoingEdgess of the opposite edge.
-    public boolean[] hasEdgeToGoal;
-    private boolean[][] outgoingEdgeIsMarkeds;
     
+    // The bounding box of the grid points read by the visibility scan of each node, 4 values per node:
+    //  minX, minY, maxX, maxY. Used by repair() to find the nodes whose edges can change.
+    int[] scanBounds;
+
+    // Adjacency in compressed sparse row form, built at the end of construction.
+    // The edges of node v are at [offsets[v], offsets[v+1]) of the corresponding arrays.
+    // The offset arrays have maxSize+1 entries, so the start and goal slots of a query have no edges here.
+    //  (Their temporary edges are kept by the overlay.)
+    // The arrays indexed by edge are buffers: they wrap arrays for a built graph, and are mapped from the file for a
+    //  loaded graph, so processes loading the same file share them. See EdgeNLevelSparseVisibilityGraphFile.
+    public int[] outgoingEdgeOffsets;
+    public IntBuffer outgoingEdges;            // value: nodeIndex of destination
+    public IntBuffer outgoingEdgeIndexes;      // value: edgeIndex of edge to destination.
+
     // Used to iterate through the Level-W edges quickly
-    public int[] nLevelWNeighbourss;
-    public int[][] levelWEdgeOutgoingIndexess;    // value: index of edge in outgoingEdges array.
-    
-    // Used to iterate through the marked edges quickly
-    public int[] nMarkedEdgess;
-    public int[][] outgoingMarkedEdgeIndexess;   // value: index of edge in outgoingEdges array.
-
-    public int[] nSkipEdgess;                            // value: number of outgoing skip-edges.
-    public int[][] outgoingSkipEdgess;                   // value: nodeIndex of destination
-    public int[][] outgoingSkipEdgeNextNodess;           // value: nodeIndex of the next node in the actual path if the skip edge were to be followed.
-    public int[][] outgoingSkipEdgeNextNodeEdgeIndexess; // value: edgeIndex of edge to next node in the actual path.
-    public float[][] outgoingSkipEdgeWeightss;           // value: weight of edge to destination.
+    public int[] levelWEdgeOffsets;
+    public IntBuffer levelWEdgeOutgoingIndexes;       // value: index of edge in outgoingEdges array.
+
+    public int[] skipEdgeOffsets;
+    public IntBuffer outgoingSkipEdges;                      // value: nodeIndex of destination
+    public IntBuffer outgoingSkipEdgeNextNodes;              // value: nodeIndex of the next node in the actual path if the skip edge were to be followed.
+    public IntBuffer outgoingSkipEdgeNextNodeEdgeIndexes;    // value: edgeIndex of edge to next node in the actual path.
+    public FloatBuffer outgoingSkipEdgeWeights;              // value: weight of edge to destination.
+
+    // Adjacency during construction. Each node's arrays grow separately.
+    //  Compressed into the arrays above, then released, by compressAdjacency().
+    private int[] nOutgoingEdgess;          // value: number of outgoingEdges.
+    private int[][] outgoingEdgess;         // value: nodeIndex of destination
+    private int[][] outgoingEdgeIndexess;   // value: edgeIndex of edge to destination.
+    private int[][] outgoingEdgeOppositeIndexess;   // value: index within outgoingEdgess of the opposite edge.
+    private int[] nLevelWNeighbourss;
+    private int[][] levelWEdgeOutgoingIndexess;    // value: index of edge in outgoingEdges array.
+    private int[] nSkipEdgess;                            // value: number of outgoing skip-edges.
+    private int[][] outgoingSkipEdgess;
+    private int[][] outgoingSkipEdgeNextNodess;
+    private int[][] outgoingSkipEdgeNextNodeEdgeIndexess;
+    private float[][] outgoingSkipEdgeWeightss;
+    private int[] constructionEdgeLevels;       // Wrapped into edgeLevels by compressAdjacency().
+    private float[] constructionEdgeWeights;    // Wrapped into edgeWeights by compressAdjacency().
     
     
     // Edges: Indexed by edge Index (only for non-skip-edges)
     public int nEdges;
-    public int[] edgeLevels;
-    public float[] edgeWeights;
-    public boolean[] isMarked;
+    public IntBuffer edgeLevels;
+    public FloatBuffer edgeWeights;
+
+    // Slots of the nodes and edges removed by repair(), reused for the ones it adds.
+    //  null if not known yet (for a loaded graph). See EdgeNLevelSparseVisibilityGraphRepair.
+    int[] freeNodes;
+    int nFreeNodes;
+    int[] freeEdges;
+    int nFreeEdges;
     
-    private EdgeNLevelSparseVisibilityGraph(GridGraph graph) {
+    EdgeNLevelSparseVisibilityGraph(GridGraph graph) {
         this.graph = graph;
+        this.losExtents = new LineOfSightExtents(graph);
         this.sizeXPlusOne = graph.sizeX+1;
         this.sizeYPlusOne = graph.sizeY+1;
     }
 
-    public final void setSaveSnapshotFunction(Runnable saveSnapshot) {
-        this.saveSnapshot = saveSnapshot;
+    /**
+     * @return the graph for this GridGraph and level limit from the PreprocessedGraphRegistry, building it if needed.
+     */
+    public static final EdgeNLevelSparseVisibilityGraph initialiseNew(GridGraph graph, int levelLimit) {
+        return PreprocessedGraphRegistry.get(REGISTRY_KIND, levelLimit, graph,
+                g -> build(g, levelLimit), EdgeNLevelSparseVisibilityGraph::estimatedFootprintBytes);
     }
 
-    public static final EdgeNLevelSparseVisibilityGraph initialiseNew(GridGraph graph, int levelLimit) {
-        if (EdgeNLevelSparseVisibilityGraph.storedGridGraph == graph && levelLimit == storedLevelLimit) {
-            storedVisibilityGraph.restoreOriginalGraph();
-            return storedVisibilityGraph;
+    private static final EdgeNLevelSparseVisibilityGraph build(GridGraph graph, int levelLimit) {
+        File graphFile = null;
+        if (GRAPH_FILE_DIRECTORY != null) {
+            graphFile = new File(GRAPH_FILE_DIRECTORY, EdgeNLevelSparseVisibilityGraphFile.fileName(graph, levelLimit));
+            EdgeNLevelSparseVisibilityGraph vGraph = load(graph, levelLimit, graphFile);
+            if (vGraph != null) return vGraph;
         }
+        
         long _st = System.nanoTime();
         
-        EdgeNLevelSparseVisibilityGraph.storedGridGraph = graph;
-        EdgeNLevelSparseVisibilityGraph vGraph = EdgeNLevelSparseVisibilityGraph.storedVisibilityGraph = new EdgeNLevelSparseVisibilityGraph(graph);
-        EdgeNLevelSparseVisibilityGraph.storedLevelLimit = levelLimit;
+        EdgeNLevelSparseVisibilityGraph vGraph = new EdgeNLevelSparseVisibilityGraph(graph);
         vGraph.levelLimit = levelLimit;
         vGraph.constructGraph();
         
         long _ed = System.nanoTime();
         System.out.println("Construction Time: " + (_ed-_st)/1000000.);
+        
+        if (graphFile != null) {
+            try {
+                GRAPH_FILE_DIRECTORY.mkdirs();
+                EdgeNLevelSparseVisibilityGraphFile.write(vGraph, graphFile);
+            } catch (IOException e) {
+                System.out.println("Unable to save graph to " + graphFile + ": " + e.getMessage());
+            }
+        }
+        return vGraph;
+    }
+
+    /**
+     * @return the graph in the file, or null if there is no usable graph in it.
+     */
+    private static final EdgeNLevelSparseVisibilityGraph load(GridGraph graph, int levelLimit, File graphFile) {
+        if (!graphFile.isFile()) return null;
+        long _st = System.nanoTime();
+        try {
+            EdgeNLevelSparseVisibilityGraph vGraph = EdgeNLevelSparseVisibilityGraphFile.read(graph, levelLimit, graphFile, VERIFY_GRAPH_FILES);
+            if (vGraph == null) return null;
+            
+            long _ed = System.nanoTime();
+            System.out.println("Load Time: " + (_ed-_st)/1000000.);
+            return vGraph;
+        } catch (IOException e) {
+            System.out.println("Unable to load graph from " + graphFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Updates the graph in the PreprocessedGraphRegistry after tiles of the GridGraph have been set blocked or
+     * unblocked. If the registry has the graph from before the change, it is repaired in place, else the graph is
+     * built. Queries must not run on the graph during the repair.<br>
+     * Other preprocessed structures of the GridGraph are removed from the registry.
+     * @param changedX, changedY the tiles that have changed since the graph was built.
+     */
+    public static final EdgeNLevelSparseVisibilityGraph updateTiles(GridGraph graph, int levelLimit, int[] changedX, int[] changedY) {
+        EdgeNLevelSparseVisibilityGraph vGraph = PreprocessedGraphRegistry.update(REGISTRY_KIND, levelLimit, graph,
+                (EdgeNLevelSparseVisibilityGraph g) -> g.repair(changedX, changedY), EdgeNLevelSparseVisibilityGraph::estimatedFootprintBytes);
+        if (vGraph == null) return initialiseNew(graph, levelLimit);
         return vGraph;
     }
+
+    /**
+     * Repairs this graph in place after the given tiles have been set blocked or unblocked.
+     * Queries must not run on the graph during the repair.<br>
+     * <br>
+     * Only the nodes that are new, or whose visibility scan read a point near a changed tile, are scanned again, and
+     * only the edge levels and skip-edges that can depend on the changed edges are recomputed.
+     * See EdgeNLevelSparseVisibilityGraphRepair.<br>
+     * The result is the same as a full rebuild, up to the numbering of nodes and edges. See findDifferenceFromRebuild().
+     * @param changedX, changedY the tiles that have changed since this graph was built or last repaired.
+     */
+    public final void repair(int[] changedX, int[] changedY) {
+        copyEdgeArraysToHeap();
+        new EdgeNLevelSparseVisibilityGraphRepair(this).repair(changedX, changedY);
+    }
+
+    /**
+     * Replaces the edge arrays mapped from a graph file, which are read-only, with copies on the heap.
+     * After this, array() can be used on every edge array.
+     */
+    private final void copyEdgeArraysToHeap() {
+        outgoingEdges = copyToHeap(outgoingEdges);
+        outgoingEdgeIndexes = copyToHeap(outgoingEdgeIndexes);
+        levelWEdgeOutgoingIndexes = copyToHeap(levelWEdgeOutgoingIndexes);
+        outgoingSkipEdges = copyToHeap(outgoingSkipEdges);
+        outgoingSkipEdgeNextNodes = copyToHeap(outgoingSkipEdgeNextNodes);
+        outgoingSkipEdgeNextNodeEdgeIndexes = copyToHeap(outgoingSkipEdgeNextNodeEdgeIndexes);
+        outgoingSkipEdgeWeights = copyToHeap(outgoingSkipEdgeWeights);
+        edgeLevels = copyToHeap(edgeLevels);
+        edgeWeights = copyToHeap(edgeWeights);
+    }
+
+    private static final IntBuffer copyToHeap(IntBuffer buffer) {
+        if (buffer.hasArray()) return buffer;
+        int[] array = new int[buffer.capacity()];
+        buffer.duplicate().get(array);
+        return IntBuffer.wrap(array);
+    }
+
+    private static final FloatBuffer copyToHeap(FloatBuffer buffer) {
+        if (buffer.hasArray()) return buffer;
+        float[] array = new float[buffer.capacity()];
+        buffer.duplicate().get(array);
+        return FloatBuffer.wrap(array);
+    }
+
+    /**
+     * Consistency check for repair(). Rebuilds the graph from the current state of the GridGraph.
+     * The nodes are matched by position, as a repaired graph numbers its nodes and edges differently.
+     * @return null if this graph is the same as the rebuilt graph, else the first difference.
+     */
+    public final String findDifferenceFromRebuild() {
+        EdgeNLevelSparseVisibilityGraph rebuilt = new EdgeNLevelSparseVisibilityGraph(graph);
+        rebuilt.levelLimit = levelLimit;
+        rebuilt.constructGraph();
+
+        for (int p=0;p<nodeIndex.length;++p) {
+            int v = nodeIndex[p];
+            if ((rebuilt.nodeIndex[p] == -1) != (v == -1)) return "node at point " + p + ": expected " + rebuilt.nodeIndex[p] + ", was " + v;
+            if (v != -1 && yPositions[v]*sizeXPlusOne + xPositions[v] != p) return "node " + v + " at point " + p + " is at " + vertexToStr(v);
+        }
+        if (outgoingEdgeOffsets[maxSize] != 2*rebuilt.nEdges) return "edges: expected " + rebuilt.nEdges + ", was " + outgoingEdgeOffsets[maxSize]/2;
+
+        int[] firstEnd = new int[nEdges];
+        Arrays.fill(firstEnd, -1);
+        for (int v=0;v<maxSize;++v) {
+            boolean isNode = v < nNodes && nodeIndex[yPositions[v]*sizeXPlusOne + xPositions[v]] == v;
+            if (!isNode) {
+                if (outgoingEdgeOffsets[v] != outgoingEdgeOffsets[v+1] || levelWEdgeOffsets[v] != levelWEdgeOffsets[v+1] ||
+                        skipEdgeOffsets[v] != skipEdgeOffsets[v+1]) return "free slot " + v + " has edges";
+                continue;
+            }
+            int u = rebuilt.nodeIndex[yPositions[v]*sizeXPlusOne + xPositions[v]];
+            String name = "node (" + vertexToStr(v) + ")";
+            for (int i=0;i<4;++i) {
+                if (scanBounds[v*4+i] != rebuilt.scanBounds[u*4+i]) return name + " scanBounds[" + i + "]: expected " + rebuilt.scanBounds[u*4+i] + ", was " + scanBounds[v*4+i];
+            }
+            for (int k=outgoingEdgeOffsets[v];k<outgoingEdgeOffsets[v+1];++k) {
+                int e = outgoingEdgeIndexes.get(k);
+                if (firstEnd[e] == -1) firstEnd[e] = v;
+                else if (firstEnd[e] != outgoingEdges.get(k)) return name + " edge " + e + " is also at node (" + vertexToStr(firstEnd[e]) + ")";
+            }
+
+            String difference = findDifference(name + " edges", rebuilt.describeEdges(u), describeEdges(v));
+            if (difference == null) difference = findDifference(name + " level-W edges", rebuilt.describeLevelWEdges(u), describeLevelWEdges(v));
+            if (difference == null) difference = findDifference(name + " skip-edges", rebuilt.describeSkipEdges(u), describeSkipEdges(v));
+            if (difference != null) return difference;
+            for (int k=skipEdgeOffsets[v];k<skipEdgeOffsets[v+1];++k) {
+                int next = outgoingSkipEdgeNextNodes.get(k);
+                boolean found = false;
+                for (int j=levelWEdgeOffsets[v];j<levelWEdgeOffsets[v+1];++j) {
+                    int index = levelWEdgeOutgoingIndexes.get(j);
+                    found |= outgoingEdges.get(index) == next && outgoingEdgeIndexes.get(index) == outgoingSkipEdgeNextNodeEdgeIndexes.get(k);
+                }
+                if (!found) return name + " skip-edge " + k + " does not start with a level-W edge";
+            }
+        }
+        return null;
+    }
+
+    // The edges of a node as sorted strings, independent of the numbering of the nodes and edges.
+
+    private final ArrayList<String> describeEdges(int v) {
+        ArrayList<String> edges = new ArrayList<>();
+        for (int k=outgoingEdgeOffsets[v];k<outgoingEdgeOffsets[v+1];++k) {
+            int e = outgoingEdgeIndexes.get(k);
+            edges.add("(" + vertexToStr(outgoingEdges.get(k)) + ") weight " + edgeWeights.get(e) + " level " + edgeLevels.get(e));
+        }
+        edges.sort(null);
+        return edges;
+    }
+
+    private final ArrayList<String> describeLevelWEdges(int v) {
+        ArrayList<String> edges = new ArrayList<>();
+        for (int k=levelWEdgeOffsets[v];k<levelWEdgeOffsets[v+1];++k) {
+            int index = levelWEdgeOutgoingIndexes.get(k);
+            if (index < outgoingEdgeOffsets[v] || index >= outgoingEdgeOffsets[v+1]) return null;
+            edges.add("(" + vertexToStr(outgoingEdges.get(index)) + ") level " + edgeLevels.get(outgoingEdgeIndexes.get(index)));
+        }
+        edges.sort(null);
+        return edges;
+    }
+
+    private final ArrayList<String> describeSkipEdges(int v) {
+        ArrayList<String> edges = new ArrayList<>();
+        for (int k=skipEdgeOffsets[v];k<skipEdgeOffsets[v+1];++k) {
+            edges.add("(" + vertexToStr(outgoingSkipEdges.get(k)) + ") weight " + outgoingSkipEdgeWeights.get(k));
+        }
+        edges.sort(null);
+        return edges;
+    }
+
+    private static final String findDifference(String name, ArrayList<String> expected, ArrayList<String> actual) {
+        if (actual == null) return name + ": invalid index";
+        if (!expected.equals(actual)) return name + ": expected " + expected + ", was " + actual;
+        return null;
+    }
+
+    /**
+     * Used by EdgeNLevelSparseVisibilityGraphFile once the arrays of a loaded graph are set,
+     * and by EdgeNLevelSparseVisibilityGraphRepair when it adds node slots.
+     */
+    final void setSizes(int nNodes, int maxSize) {
+        this.nNodes = nNodes;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Estimated size in bytes of the graph on the heap, not counting the per-thread overlays.
+     * Edge arrays mapped from a graph file are not on the heap, and are not counted.
+     */
+    public final long estimatedFootprintBytes() {
+        long size = PreprocessedGraphRegistry.OBJECT_HEADER;
+        size += PreprocessedGraphRegistry.sizeOf(nodeIndex);
+        size += PreprocessedGraphRegistry.sizeOf(xPositions);
+        size += PreprocessedGraphRegistry.sizeOf(yPositions);
+        size += PreprocessedGraphRegistry.sizeOf(scanBounds);
+        size += PreprocessedGraphRegistry.sizeOf(outgoingEdgeOffsets);
+        size += PreprocessedGraphRegistry.sizeOf(outgoingEdges);
+        size += PreprocessedGraphRegistry.sizeOf(outgoingEdgeIndexes);
+        size += PreprocessedGraphRegistry.sizeOf(levelWEdgeOffsets);
+        size += PreprocessedGraphRegistry.sizeOf(levelWEdgeOutgoingIndexes);
+        size += PreprocessedGraphRegistry.sizeOf(skipEdgeOffsets);
+        size += PreprocessedGraphRegistry.sizeOf(outgoingSkipEdges);
+        size += PreprocessedGraphRegistry.sizeOf(outgoingSkipEdgeNextNodes);
+        size += PreprocessedGraphRegistry.sizeOf(outgoingSkipEdgeNextNodeEdgeIndexes);
+        size += PreprocessedGraphRegistry.sizeOf(outgoingSkipEdgeWeights);
+        size += PreprocessedGraphRegistry.sizeOf(edgeLevels);
+        size += PreprocessedGraphRegistry.sizeOf(edgeWeights);
+        size += PreprocessedGraphRegistry.sizeOf(freeNodes);
+        size += PreprocessedGraphRegistry.sizeOf(freeEdges);
+        size += PreprocessedGraphRegistry.sizeOf(losExtents.leftDownExtents);
+        size += PreprocessedGraphRegistry.sizeOf(losExtents.rightDownExtents);
+        return size;
+    }
     
 
     /// \\\ /// \\\ /// \\\ /// \\\ /// \\\ ///
@@ -103,68 +369,54 @@ public class EdgeNLevelSparseVisibilityGraph {
     /// \\\ /// \\\ /// \\\ /// \\\ /// \\\ ///
 
     private final void constructGraph() {
-        losScanner = new LineOfSightScannerDouble(graph);
-        queue = new int[11];
-
-        queueSize = 0;
+        if (CONSTRUCTION_THREADS > 1) constructionPool = new ForkJoinPool(CONSTRUCTION_THREADS);
+        try {
+            constructGraphSteps();
+        } finally {
+            if (constructionPool != null) constructionPool.shutdown();
+            constructionPool = null;
+        }
+    }
 
+    private final void constructGraphSteps() {
         // STEP 1: Construct SVG (Strict Visibility Graph)
         
         // Initialise SVG Vertices
-        xPositions = new int[11];
-        yPositions = new int[11];
-        nNodes = 0;
         addNodes();
         
         // Now xPositions and yPositions should be correctly initialised.
         //  We then initialise the rest of the node data.
-        originalSize = nNodes;
+        //  Two extra slots are reserved for the start and goal of a query.
         maxSize = nNodes + 2;
-        xPositions = Arrays.copyOf(xPositions, maxSize);
-        yPositions = Arrays.copyOf(yPositions, maxSize);
-        hasEdgeToGoal = new boolean[maxSize];
         nOutgoingEdgess = new int[maxSize];
         outgoingEdgess = new int[maxSize][];
         outgoingEdgeIndexess = new int[maxSize][];
         outgoingEdgeOppositeIndexess = new int[maxSize][];
-        outgoingEdgeIsMarkeds = new boolean[maxSize][];
-        for (int i=0;i<maxSize;++i) {
+        for (int i=0;i<nNodes;++i) {
             nOutgoingEdgess[i] = 0;
             outgoingEdgess[i] = new int[11];
             outgoingEdgeIndexess[i] = new int[11];
             outgoingEdgeOppositeIndexess[i] = new int[11];
-            outgoingEdgeIsMarkeds[i] = new boolean[11];
         }
 
         // Initialise SVG Edges + edgeWeights
-        edgeWeights = new float[11];
+        constructionEdgeWeights = new float[11];
         nEdges = 0;
         addAllEdges();
 
         
         // Now all the edges, indexes and weights should be correctly initialise.
         //  Now we initialise the rest of the edge data.
-        originalNEdges = nEdges;
-        int maxPossibleNEdges = nEdges + nNodes*2;
-        edgeWeights = Arrays.copyOf(edgeWeights, maxPossibleNEdges);
-        edgeLevels = new int[maxPossibleNEdges];
-        Arrays.fill(edgeLevels, LEVEL_W);
-        isMarked = new boolean[maxPossibleNEdges];
-        //Arrays.fill(isMarked, false); // default initialises to false anyway.
+        constructionEdgeWeights = Arrays.copyOf(constructionEdgeWeights, nEdges);
+        constructionEdgeLevels = new int[nEdges];
+        Arrays.fill(constructionEdgeLevels, LEVEL_W);
         
         
-        // Reserve space in level w edge and marked edge arrays.
+        // Reserve space in level w edge array.
         nLevelWNeighbourss = new int[maxSize];
         levelWEdgeOutgoingIndexess = new int[maxSize][];
-        nMarkedEdgess = new int[maxSize];
-        outgoingMarkedEdgeIndexess = new int[maxSize][];
         for (int i=0;i<nNodes;++i) {
             levelWEdgeOutgoingIndexess[i] = new int[nOutgoingEdgess[i]];
-            outgoingMarkedEdgeIndexess[i] = new int[nOutgoingEdgess[i]];
-        }
-        for (int i=nNodes;i<maxSize;++i) {
-            levelWEdgeOutgoingIndexess[i] = new int[11];
-            outgoingMarkedEdgeIndexess[i] = new int[11];
         }
 
         
@@ -182,61 +434,183 @@ public class EdgeNLevelSparseVisibilityGraph {
         setupSkipEdges();
         
         pruneParallelSkipEdges();
+
+        // STEP 4: Freeze the adjacency lists into flat arrays.
+        compressAdjacency();
+        freeNodes = new int[0];
+        freeEdges = new int[0];
    }
 
-    private final void addNodes() {
-        nodeIndex = new int[sizeYPlusOne*sizeXPlusOne];
-        for (int y=0; y<sizeYPlusOne; y++) {
-            for (int x=0; x<sizeXPlusOne; x++) {
-                if (graph.isOuterCorner(x, y)) {
-                    nodeIndex[y*sizeXPlusOne + x] = assignNode(x, y);
-                } else {
-                    nodeIndex[y*sizeXPlusOne + x] = -1;
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    /**
+     * Runs the task over [0, n), split into chunks of at least minChunkSize, on the construction pool.
+     * Runs it on the calling thread if there is no pool or n is small.<br>
+     * Each chunk must only write to data that no other chunk reads or writes.<br>
+     * If a chunk throws, the chunks that have not started are skipped, and its exception is rethrown as it is.
+     */
+    private final void forEachChunk(int n, int minChunkSize, RangeTask task) {
+        if (constructionPool == null || n <= minChunkSize) {
+            task.run(0, n);
+            return;
+        }
+        int nChunks = Math.min((n + minChunkSize - 1) / minChunkSize, CONSTRUCTION_THREADS*8);
+        List<ForkJoinTask<?>> chunks = new ArrayList<>(nChunks);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int c=0;c<nChunks;++c) {
+            int from = (int)((long)n*c/nChunks);
+            int to = (int)((long)n*(c+1)/nChunks);
+            chunks.add(constructionPool.submit(() -> {
+                if (failure.get() != null) return; // Another chunk has failed.
+                try {
+                    task.run(from, to);
+                } catch (RuntimeException | Error e) {
+                    // Kept here, as ForkJoinTask.get() can rethrow a copy of it.
+                    failure.compareAndSet(null, e);
                 }
+            }));
+        }
+        try {
+            for (ForkJoinTask<?> chunk : chunks) {
+                chunk.get();
             }
+        } catch (InterruptedException e) {
+            for (ForkJoinTask<?> chunk : chunks) {
+                chunk.cancel(false);
+            }
+            Thread.currentThread().interrupt();
+            throw new UnsupportedOperationException(e);
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e.getCause());
         }
+        Throwable e = failure.get();
+        if (e instanceof Error) throw (Error)e;
+        if (e instanceof RuntimeException) throw (RuntimeException)e;
+        if (e != null) throw new UnsupportedOperationException(e);
     }
 
-    private final int assignNode(int x, int y) {
-        int index = nNodes;
-        if (index >= xPositions.length) {
-            xPositions = Arrays.copyOf(xPositions, xPositions.length*2);
-            yPositions = Arrays.copyOf(yPositions, yPositions.length*2);
+    /**
+     * Nodes are numbered by row, then by x. Each row is scanned separately: first to count its corners,
+     * then, once the first index of every row is known, to assign the indexes.
+     */
+    private final void addNodes() {
+        nodeIndex = new int[sizeYPlusOne*sizeXPlusOne];
+        int[] rowStarts = new int[sizeYPlusOne+1];
+        forEachChunk(sizeYPlusOne, 16, (fromY, toY) -> {
+            for (int y=fromY; y<toY; y++) {
+                int count = 0;
+                for (int x=0; x<sizeXPlusOne; x++) {
+                    if (graph.isOuterCorner(x, y)) {
+                        nodeIndex[y*sizeXPlusOne + x] = count;
+                        ++count;
+                    } else {
+                        nodeIndex[y*sizeXPlusOne + x] = -1;
+                    }
+                }
+                rowStarts[y+1] = count;
+            }
+        });
+        for (int y=0; y<sizeYPlusOne; y++) {
+            rowStarts[y+1] += rowStarts[y];
         }
-        xPositions[index] = x;
-        yPositions[index] = y;
 
-        nNodes++;
-        return index;
+        nNodes = rowStarts[sizeYPlusOne];
+        xPositions = new int[nNodes];
+        yPositions = new int[nNodes];
+        forEachChunk(sizeYPlusOne, 16, (fromY, toY) -> {
+            for (int y=fromY; y<toY; y++) {
+                int rowStart = rowStarts[y];
+                for (int x=0; x<sizeXPlusOne; x++) {
+                    int index = nodeIndex[y*sizeXPlusOne + x];
+                    if (index == -1) continue;
+                    index += rowStart;
+                    nodeIndex[y*sizeXPlusOne + x] = index;
+                    xPositions[index] = x;
+                    yPositions[index] = y;
+                }
+            }
+        });
     }
 
 
+    /**
+     * The visibility scans of the nodes are split into chunks, each with its own scanner. A chunk buffers the
+     * edges (i, j) with i < j that it finds, in order. The buffers are then merged in node order, so the edges
+     * get the same indexes as when the nodes are scanned one by one.
+     */
     private final void addAllEdges() {
-        int fromX, fromY, toX, toY;
-        for (int i=0;i<nNodes;++i) {
-            fromX = xPositions[i];
-            fromY = yPositions[i];
+        scanBounds = new int[nNodes*4];
+        int[] nNewEdges = new int[nNodes];
+        int nChunks = constructionPool == null ? 1 : Math.min(Math.max(nNodes / 16, 1), CONSTRUCTION_THREADS*8);
+        int[][] chunkTargets = new int[nChunks][];
+        float[][] chunkWeights = new float[nChunks][];
+        
+        forEachChunk(nChunks, 1, (fromChunk, toChunk) -> {
+            LineOfSightScannerDouble losScanner = new LineOfSightScannerDouble(losExtents);
+            for (int c=fromChunk;c<toChunk;++c) {
+                int[] targets = new int[11];
+                float[] weights = new float[11];
+                int nBuffered = 0;
+                
+                int fromNode = (int)((long)nNodes*c/nChunks);
+                int toNode = (int)((long)nNodes*(c+1)/nChunks);
+                for (int i=fromNode;i<toNode;++i) {
+                    int fromX = xPositions[i];
+                    int fromY = yPositions[i];
+
+                    losScanner.computeAllVisibleTwoWayTautSuccessors(fromX, fromY);
+                    scanBounds[i*4] = losScanner.scanMinX;
+                    scanBounds[i*4+1] = losScanner.scanMinY;
+                    scanBounds[i*4+2] = losScanner.scanMaxX;
+                    scanBounds[i*4+3] = losScanner.scanMaxY;
+                    int nSuccessors = losScanner.nSuccessors;
+                    for (int succ=0;succ<nSuccessors;++succ) {
+                        int toX = losScanner.successorsX[succ];
+                        int toY = losScanner.successorsY[succ];
+                        int j = nodeIndex[toY*sizeXPlusOne + toX];
+
+                        // We add both ways at the same time. So we use this to avoid duplicates
+                        if (i >= j) continue;
+
+                        if (nBuffered >= targets.length) {
+                            targets = Arrays.copyOf(targets, targets.length*2);
+                            weights = Arrays.copyOf(weights, weights.length*2);
+                        }
+                        targets[nBuffered] = j;
+                        weights[nBuffered] = graph.distance(fromX, fromY, toX, toY);
+                        ++nBuffered;
+                        ++nNewEdges[i];
+                    }
+                }
+                chunkTargets[c] = targets;
+                chunkWeights[c] = weights;
+            }
+        });
+        
+        int i = 0;
+        for (int c=0;c<nChunks;++c) {
+            int[] targets = chunkTargets[c];
+            float[] weights = chunkWeights[c];
+            chunkTargets[c] = null;
+            chunkWeights[c] = null;
             
-            losScanner.computeAllVisibleTwoWayTautSuccessors(fromX, fromY);
-            int nSuccessors = losScanner.nSuccessors;
-            for (int succ=0;succ<nSuccessors;++succ) {
-                toX = losScanner.successorsX[succ];
-                toY = losScanner.successorsY[succ];
-                int j = nodeIndex[toY*sizeXPlusOne + toX];
-
-                // We add both ways at the same time. So we use this to avoid duplicates
-                if (i >= j) continue;
-
-                float weight = graph.distance(fromX, fromY, toX, toY);
-                addEdge(i, j, weight);
+            int toNode = (int)((long)nNodes*(c+1)/nChunks);
+            int k = 0;
+            for (;i<toNode;++i) {
+                int end = k + nNewEdges[i];
+                for (;k<end;++k) {
+                    addEdge(i, targets[k], weights[k]);
+                }
             }
         }
     }
-    
+
     // Adds an edge from node v1 to node v2, and from node v2 to node v1
     private final void addEdge(int v1, int v2, float weight) {
-        if (nEdges >= edgeWeights.length) {
-            edgeWeights = Arrays.copyOf(edgeWeights, edgeWeights.length*2);
+        if (nEdges >= constructionEdgeWeights.length) {
+            constructionEdgeWeights = Arrays.copyOf(constructionEdgeWeights, constructionEdgeWeights.length*2);
         }
         int edgeIndex = nEdges;
 
@@ -248,7 +622,6 @@ public class EdgeNLevelSparseVisibilityGraph {
                 int newLength = outgoingEdgess[v1].length*2;
                 outgoingEdgess[v1] = Arrays.copyOf(outgoingEdgess[v1], newLength);
                 outgoingEdgeIndexess[v1] = Arrays.copyOf(outgoingEdgeIndexess[v1], newLength);
-                outgoingEdgeIsMarkeds[v1] = Arrays.copyOf(outgoingEdgeIsMarkeds[v1], newLength);
                 outgoingEdgeOppositeIndexess[v1] = Arrays.copyOf(outgoingEdgeOppositeIndexess[v1], newLength);
             }
             outgoingEdgess[v1][v1Index] = v2;
@@ -264,7 +637,6 @@ public class EdgeNLevelSparseVisibilityGraph {
                 int newLength = outgoingEdgess[v2].length*2;
                 outgoingEdgess[v2] = Arrays.copyOf(outgoingEdgess[v2], newLength);
                 outgoingEdgeIndexess[v2] = Arrays.copyOf(outgoingEdgeIndexess[v2], newLength);
-                outgoingEdgeIsMarkeds[v2] = Arrays.copyOf(outgoingEdgeIsMarkeds[v2], newLength);
                 outgoingEdgeOppositeIndexess[v2] = Arrays.copyOf(outgoingEdgeOppositeIndexess[v2], newLength);
             }
             outgoingEdgess[v2][v2Index] = v1;
@@ -275,7 +647,7 @@ public class EdgeNLevelSparseVisibilityGraph {
         outgoingEdgeOppositeIndexess[v1][v1Index] = v2Index;
         outgoingEdgeOppositeIndexess[v2][v2Index] = v1Index;
         
-        edgeWeights[nEdges] = weight;
+        constructionEdgeWeights[nEdges] = weight;
         ++nEdges;
     }
 
@@ -298,7 +670,7 @@ public class EdgeNLevelSparseVisibilityGraph {
 
                 for (int j=0;j<nOutgoingEdges;++j) {
                     int edgeIndex = outgoingEdgeIndexes[j];
-                    if (edgeLevels[edgeIndex] < currentLevel) continue;
+                    if (constructionEdgeLevels[edgeIndex] < currentLevel) continue;
 
                     int v2 = outgoingEdges[j];
                     
@@ -309,7 +681,7 @@ public class EdgeNLevelSparseVisibilityGraph {
 
                     // Note: not be pruned, the edge must have a taut exit on BOTH ends.
                     if (!hasTautExit(v1, v2, currentLevel) || !hasTautExit(v2, v1, currentLevel)) {
-                        edgeLevels[edgeIndex] = currentLevel;
+                        constructionEdgeLevels[edgeIndex] = currentLevel;
                         hasChanged = true;
                     }
                 }
@@ -341,55 +713,72 @@ public class EdgeNLevelSparseVisibilityGraph {
          */
 
 
+        // The counts of the nodes are independent, so they are computed in parallel.
+        //  The first level's list is then filled in node order.
         int[][] nNeighbours = new int[nNodes][];
-        for (int vi=0; vi<nNodes; ++vi) {
-            int currX = xPositions[vi];
-            int currY = yPositions[vi];
-
-            int nOutgoingEdges = nOutgoingEdgess[vi];
-            int[] outgoingEdges = outgoingEdgess[vi];
-            
-            int[] currNodeNNeighbours = new int[nOutgoingEdges];
-            for (int ei=0; ei<nOutgoingEdges; ++ei) {
-                // For each directed edge
-                int ni = outgoingEdges[ei];
-                int nextX = xPositions[ni];
-                int nextY = yPositions[ni];
-
-                // Count taut outgoing edges
-                int count = 0;
-
-                int nNextOutgoingEdges = nOutgoingEdgess[vi];
-                int[] nextOutgoingEdges = outgoingEdgess[vi];
-                for (int j=0; j<nNextOutgoingEdges; ++j) {
-                    int di = nextOutgoingEdges[j];
-                    if (graph.isTaut(nextX, nextY, currX, currY, xPositions[di], yPositions[di])) {
-                        ++count;
+        forEachChunk(nNodes, MIN_CHUNK_SIZE, (fromNode, toNode) -> {
+            for (int vi=fromNode; vi<toNode; ++vi) {
+                int currX = xPositions[vi];
+                int currY = yPositions[vi];
+
+                int nOutgoingEdges = nOutgoingEdgess[vi];
+                int[] outgoingEdges = outgoingEdgess[vi];
+
+                int[] currNodeNNeighbours = new int[nOutgoingEdges];
+                for (int ei=0; ei<nOutgoingEdges; ++ei) {
+                    // For each directed edge
+                    int ni = outgoingEdges[ei];
+                    int nextX = xPositions[ni];
+                    int nextY = yPositions[ni];
+
+                    // Count taut outgoing edges
+                    int count = 0;
+
+                    int nNextOutgoingEdges = nOutgoingEdgess[vi];
+                    int[] nextOutgoingEdges = outgoingEdgess[vi];
+                    for (int j=0; j<nNextOutgoingEdges; ++j) {
+                        int di = nextOutgoingEdges[j];
+                        if (graph.isTaut(nextX, nextY, currX, currY, xPositions[di], yPositions[di])) {
+                            ++count;
+                        }
                     }
-                }
 
-                currNodeNNeighbours[ei] = count;
-                if (count == 0) {
+                    currNodeNNeighbours[ei] = count;
+                }
+                nNeighbours[vi] = currNodeNNeighbours;
+            }
+        });
+        for (int vi=0; vi<nNodes; ++vi) {
+            int[] currNodeNNeighbours = nNeighbours[vi];
+            for (int ei=0; ei<currNodeNNeighbours.length; ++ei) {
+                if (currNodeNNeighbours[ei] == 0) {
                     currentLevelEdgeNodes[nextLevelEnd] = vi;
                     currentLevelEdgeIndexes[nextLevelEnd] = ei;
                     ++nextLevelEnd;
                 }
             }
-            nNeighbours[vi] = currNodeNNeighbours;
         }
 
         
+        // Within a level, which edges are set and which counts are decremented depends on the order of the list.
+        //  So the list is processed in order, a block at a time. Only the taut checks of a block, which do not
+        //  depend on the order, are computed in parallel beforehand.
+        TautBlock tautBlock = new TautBlock();
         int currLevel = 1;
         while (currEdge < nextLevelEnd && currLevel < levelLimit) {
 
             int currentLevelEnd = nextLevelEnd;
             for (; currEdge < currentLevelEnd; ++currEdge) {
+                if (currEdge == tautBlock.end) {
+                    computeTautBlock(tautBlock, currentLevelEdgeNodes, currentLevelEdgeIndexes, currEdge,
+                            Math.min(currentLevelEnd, currEdge + LEVEL_BLOCK_SIZE));
+                }
                 int currNode = currentLevelEdgeNodes[currEdge];
                 int currEdgeIndex = currentLevelEdgeIndexes[currEdge];
 
-                if (edgeLevels[outgoingEdgeIndexess[currNode][currEdgeIndex]] != LEVEL_W) continue;
+                if (constructionEdgeLevels[outgoingEdgeIndexess[currNode][currEdgeIndex]] != LEVEL_W) continue;
                 // Set edge level
-                edgeLevels[outgoingEdgeIndexess[currNode][currEdgeIndex]] = currLevel;
+                constructionEdgeLevels[outgoingEdgeIndexess[currNode][currEdgeIndex]] = currLevel;
 
                 /**
                  * Curr side must have no neighbours.
@@ -408,23 +797,15 @@ public class EdgeNLevelSparseVisibilityGraph {
 
                 int nextNode = outgoingEdgess[currNode][currEdgeIndex];
 
-                int currX = xPositions[currNode];
-                int currY = yPositions[currNode];
-                int nextX = xPositions[nextNode];
-                int nextY = yPositions[nextNode];
-
-                int[] outgoingEdges = outgoingEdgess[nextNode];
                 int nOutgoingEdges = nOutgoingEdgess[nextNode];
 
                 int[] outgoingEdgeIndexes = outgoingEdgeIndexess[nextNode];
 
                 int[] nextNodeNNeighbours = nNeighbours[nextNode];
+                int tautOffset = tautBlock.offsets[currEdge - tautBlock.start];
                 for (int j=0; j<nOutgoingEdges; ++j) {
-                    if (edgeLevels[outgoingEdgeIndexes[j]] != LEVEL_W) continue;
-                    int nextnextNode = outgoingEdges[j];
-                    int nextnextX = xPositions[nextnextNode];
-                    int nextnextY = yPositions[nextnextNode];
-                    if (!graph.isTaut(currX, currY, nextX, nextY, nextnextX, nextnextY)) continue;
+                    if (constructionEdgeLevels[outgoingEdgeIndexes[j]] != LEVEL_W) continue;
+                    if (!tautBlock.isTaut[tautOffset + j]) continue;
 
                     --nextNodeNNeighbours[j];
                     if (nextNodeNNeighbours[j] == 0) {
@@ -442,6 +823,64 @@ public class EdgeNLevelSparseVisibilityGraph {
         }
     }
 
+    /**
+     * isTaut[offsets[k] + j]: whether the k-th directed edge (curr -> next) of the block, followed by the j-th
+     * outgoing edge of next, is taut. Only computed for edges that are still level W.
+     */
+    private static final class TautBlock {
+        int start;
+        int end;
+        int[] offsets = new int[0];
+        boolean[] isTaut = new boolean[0];
+    }
+
+    private final void computeTautBlock(TautBlock block, int[] edgeNodes, int[] edgeIndexes, int start, int end) {
+        int size = end - start;
+        if (block.offsets.length < size+1) block.offsets = new int[size+1];
+        int[] offsets = block.offsets;
+        offsets[0] = 0;
+        for (int k=0; k<size; ++k) {
+            int currNode = edgeNodes[start+k];
+            int currEdgeIndex = edgeIndexes[start+k];
+            int degree = 0;
+            if (constructionEdgeLevels[outgoingEdgeIndexess[currNode][currEdgeIndex]] == LEVEL_W) {
+                degree = nOutgoingEdgess[outgoingEdgess[currNode][currEdgeIndex]];
+            }
+            offsets[k+1] = offsets[k] + degree;
+        }
+        if (block.isTaut.length < offsets[size]) block.isTaut = new boolean[offsets[size]];
+        boolean[] isTaut = block.isTaut;
+
+        forEachChunk(size, MIN_CHUNK_SIZE, (from, to) -> {
+            for (int k=from; k<to; ++k) {
+                int offset = offsets[k];
+                int degree = offsets[k+1] - offset;
+                if (degree == 0) continue;
+
+                int currNode = edgeNodes[start+k];
+                int nextNode = outgoingEdgess[currNode][edgeIndexes[start+k]];
+                int currX = xPositions[currNode];
+                int currY = yPositions[currNode];
+                int nextX = xPositions[nextNode];
+                int nextY = yPositions[nextNode];
+
+                int[] outgoingEdges = outgoingEdgess[nextNode];
+                int[] outgoingEdgeIndexes = outgoingEdgeIndexess[nextNode];
+                for (int j=0; j<degree; ++j) {
+                    if (constructionEdgeLevels[outgoingEdgeIndexes[j]] != LEVEL_W) {
+                        // Levels are only ever set, so this edge is skipped.
+                        isTaut[offset + j] = false;
+                        continue;
+                    }
+                    int nextnextNode = outgoingEdges[j];
+                    isTaut[offset + j] = graph.isTaut(currX, currY, nextX, nextY, xPositions[nextnextNode], yPositions[nextnextNode]);
+                }
+            }
+        });
+        block.start = start;
+        block.end = end;
+    }
+
     // Checks whether there is a taut exist in the graph, considering only unmarked edges.
     // Note: unmarked edges are edges whose level >= currentLevel.
     private final boolean hasTautExit(int vFrom, int vTo, int currentLevel) {
@@ -454,7 +893,7 @@ public class EdgeNLevelSparseVisibilityGraph {
         int[] outgoingEdges = outgoingEdgess[vTo];
         int[] outgoingEdgeIndexes = outgoingEdgeIndexess[vTo];
         for (int j=0;j<nOutgoingEdges;++j) {
-            if (edgeLevels[outgoingEdgeIndexes[j]] < currentLevel) continue;
+            if (constructionEdgeLevels[outgoingEdgeIndexes[j]] < currentLevel) continue;
             int v3 = outgoingEdges[j];
             int x3 = xPositions[v3];
             int y3 = yPositions[v3];
@@ -465,19 +904,21 @@ public class EdgeNLevelSparseVisibilityGraph {
     
     // For each vertex, add all the level-w edges to the level-w edges array for easy access.
     private void addLevelWEdgesToLevelWEdgesArray() {
-        for (int i=0;i<nNodes;++i) {
-            int nOutgoingEdges = nOutgoingEdgess[i];
-            int[] outgoingEdgeIndexes = outgoingEdgeIndexess[i];
-            int[] outgoingLevelWEdgeIndexes = levelWEdgeOutgoingIndexess[i]; 
-            
-            for (int j=0;j<nOutgoingEdges;++j) {
-                int edgeIndex = outgoingEdgeIndexes[j];
-                if (edgeLevels[edgeIndex] == LEVEL_W) {
-                    outgoingLevelWEdgeIndexes[nLevelWNeighbourss[i]] = j;
-                    ++nLevelWNeighbourss[i];
+        forEachChunk(nNodes, MIN_CHUNK_SIZE, (fromNode, toNode) -> {
+            for (int i=fromNode;i<toNode;++i) {
+                int nOutgoingEdges = nOutgoingEdgess[i];
+                int[] outgoingEdgeIndexes = outgoingEdgeIndexess[i];
+                int[] outgoingLevelWEdgeIndexes = levelWEdgeOutgoingIndexess[i]; 
+
+                for (int j=0;j<nOutgoingEdges;++j) {
+                    int edgeIndex = outgoingEdgeIndexes[j];
+                    if (constructionEdgeLevels[edgeIndex] == LEVEL_W) {
+                        outgoingLevelWEdgeIndexes[nLevelWNeighbourss[i]] = j;
+                        ++nLevelWNeighbourss[i];
+                    }
                 }
             }
-        }
+        });
     }
 
     // We start from the graph of all Level-W edges.
@@ -497,37 +938,40 @@ public class EdgeNLevelSparseVisibilityGraph {
      * if v is a skip vertex, then nSkipEdgess[v] >= 3
      */
     private final int markSkipVertices() {
-        int nSkipVertices = 0;
+        forEachChunk(nNodes, MIN_CHUNK_SIZE, (fromNode, toNode) -> {
+            for (int i=fromNode;i<toNode;++i) {
+                int nLevelWNeighbours = nLevelWNeighbourss[i];
+
+                // Skip vertices must have at most 1 or at least 3 level-W neighbours.
+                if (nLevelWNeighbours == 0 || nLevelWNeighbours == 2) continue;
+
+                // Else, i is a skip-vertex.
+                nSkipEdgess[i] = nLevelWNeighbours;
+                int[] nextNodes = new int[nLevelWNeighbours];
+                int[] edgeIndexes = new int[nLevelWNeighbours];
+                float[] weights = new float[nLevelWNeighbours];
+                int[] destinations = new int[nLevelWNeighbours];
+
+                int[] outgoingEdges = outgoingEdgess[i];
+                int[] outgoingEdgeIndexes = outgoingEdgeIndexess[i];
+                int[] levelWEdgeOutgoingIndexes = levelWEdgeOutgoingIndexess[i];
+
+                for (int j=0;j<nLevelWNeighbours;++j) {
+                    int index = levelWEdgeOutgoingIndexes[j];
+                    nextNodes[j] = outgoingEdges[index];
+                    edgeIndexes[j] = outgoingEdgeIndexes[index];
+                }
+
+                outgoingSkipEdgess[i] = destinations;
+                outgoingSkipEdgeNextNodess[i] = nextNodes;
+                outgoingSkipEdgeNextNodeEdgeIndexess[i] = edgeIndexes;
+                outgoingSkipEdgeWeightss[i] = weights;
+            }
+        });
         
+        int nSkipVertices = 0;
         for (int i=0;i<nNodes;++i) {
-            int nLevelWNeighbours = nLevelWNeighbourss[i];
-            
-            // Skip vertices must have at most 1 or at least 3 level-W neighbours.
-            if (nLevelWNeighbours == 0 || nLevelWNeighbours == 2) continue;
-
-            // Else, i is a skip-vertex.
-            nSkipEdgess[i] = nLevelWNeighbours;
-            int[] nextNodes = new int[nLevelWNeighbours];
-            int[] edgeIndexes = new int[nLevelWNeighbours];
-            float[] weights = new float[nLevelWNeighbours];
-            int[] destinations = new int[nLevelWNeighbours];
-
-            int[] outgoingEdges = outgoingEdgess[i];
-            int[] outgoingEdgeIndexes = outgoingEdgeIndexess[i];
-            int[] levelWEdgeOutgoingIndexes = levelWEdgeOutgoingIndexess[i];
-            
-            for (int j=0;j<nLevelWNeighbours;++j) {
-                int index = levelWEdgeOutgoingIndexes[j];
-                nextNodes[j] = outgoingEdges[index];
-                edgeIndexes[j] = outgoingEdgeIndexes[index];
-            }
-
-            outgoingSkipEdgess[i] = destinations;
-            outgoingSkipEdgeNextNodess[i] = nextNodes;
-            outgoingSkipEdgeNextNodeEdgeIndexess[i] = edgeIndexes;
-            outgoingSkipEdgeWeightss[i] = weights;
-            
-            nSkipVertices++;
+            if (nSkipEdgess[i] != 0) nSkipVertices++;
         }
         return nSkipVertices;
     }
@@ -536,55 +980,58 @@ public class EdgeNLevelSparseVisibilityGraph {
      * Connects the previously marked skip vertices to form a graph of skip-edges.
      */
     private final void connectSkipEdgesAndGroupLevelWEdges() {
-        for (int v1=0;v1<nNodes;++v1) {
-            int nSkipEdges = nSkipEdgess[v1];
-            // Loop through only skip vertices.
-            if (nSkipEdges == 0) continue;
-
-            int[] nextNodes = outgoingSkipEdgeNextNodess[v1];
-            int[] nextNodeEdgeIndexes = outgoingSkipEdgeNextNodeEdgeIndexess[v1];
-            int[] outgoingSkipEdges = outgoingSkipEdgess[v1];
-            float[] skipWeights = outgoingSkipEdgeWeightss[v1];
-            for (int j=0;j<nSkipEdges;++j) {
-                // Start from vertex v1, move in direction j.
-                int previous = v1;
-                int current = nextNodes[j];
-                int firstEdgeIndex = nextNodeEdgeIndexes[j];
-                outgoingSkipEdges[j] = current;
-                skipWeights[j] = edgeWeights[firstEdgeIndex];
-
-                // invariants:
-                // 1. outgoingSkipEdges[j] == current.
-                // 2. skipWeights[j] == path length from v1 up to current.
-                // initially, skipWeights[j] = weight(v1, nextNodes[j])
-
-                while (nSkipEdgess[current] == 0) {
-                    int nLevelWNeighbours = nLevelWNeighbourss[current];
-                    int[] levelWEdgeOutgoingIndexes = levelWEdgeOutgoingIndexess[current];
+        // Each skip vertex only writes to its own skip-edges, so the skip vertices are connected in parallel.
+        forEachChunk(nNodes, MIN_CHUNK_SIZE, (fromNode, toNode) -> {
+            for (int v1=fromNode;v1<toNode;++v1) {
+                int nSkipEdges = nSkipEdgess[v1];
+                // Loop through only skip vertices.
+                if (nSkipEdges == 0) continue;
+
+                int[] nextNodes = outgoingSkipEdgeNextNodess[v1];
+                int[] nextNodeEdgeIndexes = outgoingSkipEdgeNextNodeEdgeIndexess[v1];
+                int[] outgoingSkipEdges = outgoingSkipEdgess[v1];
+                float[] skipWeights = outgoingSkipEdgeWeightss[v1];
+                for (int j=0;j<nSkipEdges;++j) {
+                    // Start from vertex v1, move in direction j.
+                    int previous = v1;
+                    int current = nextNodes[j];
+                    int firstEdgeIndex = nextNodeEdgeIndexes[j];
+                    outgoingSkipEdges[j] = current;
+                    skipWeights[j] = constructionEdgeWeights[firstEdgeIndex];
+
+                    // invariants:
+                    // 1. outgoingSkipEdges[j] == current.
+                    // 2. skipWeights[j] == path length from v1 up to current.
+                    // initially, skipWeights[j] = weight(v1, nextNodes[j])
+
+                    while (nSkipEdgess[current] == 0) {
+                        int nLevelWNeighbours = nLevelWNeighbourss[current];
+                        int[] levelWEdgeOutgoingIndexes = levelWEdgeOutgoingIndexess[current];
                     
-                    // While current is still not yet a skip vertex,
-                    // Else continue expanding.
-                    int[] outgoingEdges = outgoingEdgess[current];
-
-                    for (int k=0;k<nLevelWNeighbours; ++k) {
-                        int index = levelWEdgeOutgoingIndexes[k];
-                        int next = outgoingEdges[index];
-                        if (next == previous) continue;
+                        // While current is still not yet a skip vertex,
+                        // Else continue expanding.
+                        int[] outgoingEdges = outgoingEdgess[current];
+
+                        for (int k=0;k<nLevelWNeighbours; ++k) {
+                            int index = levelWEdgeOutgoingIndexes[k];
+                            int next = outgoingEdges[index];
+                            if (next == previous) continue;
                         
-                        int edgeIndex = outgoingEdgeIndexess[current][index];
+                            int edgeIndex = outgoingEdgeIndexess[current][index];
 
-                        // now next == the next node in the list.
-                        previous = current;
-                        current = next;
+                            // now next == the next node in the list.
+                            previous = current;
+                            current = next;
 
-                        outgoingSkipEdges[j] = current;
-                        skipWeights[j] += edgeWeights[edgeIndex];
-                        break;
+                            outgoingSkipEdges[j] = current;
+                            skipWeights[j] += constructionEdgeWeights[edgeIndex];
+                            break;
+                        }
                     }
+                    // now all the edges along that subpath will be of the same index group.
                 }
-                // now all the edges along that subpath will be of the same index group.
             }
-        }
+        });
     }
     
     /**
@@ -594,14 +1041,15 @@ public class EdgeNLevelSparseVisibilityGraph {
      *  Then we can prune e2 from the skip graph.
      *   '-> Note: this also prevents some bookkeeping bugs in the original version.
      *   
-     * Uses Memory.
+     * Uses the thread's SearchContext.
      */
     private final void pruneParallelSkipEdges() {
         // TODO: IF THERE ARE MULTIPLE EDGES WITH THE SAME EDGE WEIGHT, WE ARBITRARILY PICK THE FIRST EDGE TO KEEP
         //       THE ORDERING MAY BE DIFFERENT FROM BOTH SIDES OF THE EDGE, WHICH CAN LEAD TO A NONSYMMETRIC GRAPH
         //       However, no issues have cropped up yet. Perhaps the ordering happens to be the same for both sides,
         //         due to how the graph is constructed. This is not good to rely upon, however.
-        Memory.initialise(maxSize, Float.POSITIVE_INFINITY, -1, false);
+        SearchContext memory = SearchContext.forCurrentThread();
+        memory.initialise(maxSize, Float.POSITIVE_INFINITY, -1, false);
         
         int maxDegree = 0;
         for (int i=0;i<nNodes;++i) {
@@ -623,14 +1071,14 @@ public class EdgeNLevelSparseVisibilityGraph {
                 int dest = sEdges[j];
                 float weight = sWeights[j];
                 
-                int p = Memory.parent(dest);
+                int p = memory.parent(dest);
                 int index = -1;
                 
                 if (p == -1) {
                     index = nUsed;
                     ++nUsed;
                     
-                    Memory.setParent(dest, index);
+                    memory.setParent(dest, index);
                     neighbourIndexes[index] = dest;
                     
                     lowestCostEdgeIndex[index] = j;
@@ -675,7 +1123,7 @@ public class EdgeNLevelSparseVisibilityGraph {
             
             // Cleanup
             for (int j=0;j<nUsed;++j) {
-                Memory.setParent(neighbourIndexes[j], -1); 
+                memory.setParent(neighbourIndexes[j], -1); 
             }
         }
     }
@@ -704,247 +1152,78 @@ public class EdgeNLevelSparseVisibilityGraph {
         }
     }
 
-    /// \\\ /// \\\ /// \\\ /// \\\ /// \\\ ///
-    ///    GRAPH CONSTRUCTION PHASE - END   ///
-    /// \\\ /// \\\ /// \\\ /// \\\ /// \\\ ///
-
-
-    /// \\\ /// \\\ /// \\\ /// \\\ ///
-    ///  REPURPOSING PHASE - START  ///
-    /// \\\ /// \\\ /// \\\ /// \\\ ///
-
-    private final void restoreOriginalGraph() {
-        // Safeguard against multiple restores
-        if (startIndex == -1) return;
-        
-        markEdgesFrom(startIndex, false);
-        markEdgesFrom(endIndex, false);
-        markHasEdgeToGoal(false);
-        nOutgoingEdgess[endIndex] = endOriginalSize;
-        nOutgoingEdgess[startIndex] = startOriginalSize;
-        nEdges = originalNEdges;
-
-        nNodes = originalSize;
-        startIndex = -1;
-        endIndex = -1;
-    }
-
-    // Assumption: No edge between start and end.
-    // Uses Memory
-    public final void addStartAndEnd(int sx, int sy, int ex, int ey) {
-        // START:
-        if (nodeIndex[sy*sizeXPlusOne + sx] == -1) {
-            startIndex = nNodes;
-            nOutgoingEdgess[startIndex] = 0;
-            xPositions[startIndex] = sx;
-            yPositions[startIndex] = sy;
-            //nodeIndex[sy*sizeXPlusOne + sx] = startIndex;
-            ++nNodes;
-        } else {
-            startIndex = nodeIndex[sy*sizeXPlusOne + sx];
-        }
-        startOriginalSize = nOutgoingEdgess[startIndex];
-        addTempEdgesToVisibleNeighbours(startIndex, sx, sy);
-
-        // END:
-        if (nodeIndex[ey*sizeXPlusOne + ex] == -1) {
-            endIndex = nNodes;
-            nOutgoingEdgess[endIndex] = 0;
-            xPositions[endIndex] = ex;
-            yPositions[endIndex] = ey;
-            //nodeIndex[ey*sizeXPlusOne + ex] = endIndex;
-            ++nNodes;
-        } else {
-            endIndex = nodeIndex[ey*sizeXPlusOne + ex];
-        }
-        endOriginalSize = nOutgoingEdgess[endIndex];
-        addTempEdgesToVisibleNeighbours(endIndex, ex, ey);
-        
-        markHasEdgeToGoal(true);
-        
-        markEdgesFrom(startIndex, true);
-        markEdgesFrom(endIndex, true);
-    }
-
-    // Uses Memory
-    private final int addTempEdgesToVisibleNeighbours(int index, int x, int y) {
-        Memory.initialise(maxSize, Float.POSITIVE_INFINITY, -1, false);
-        {
-            int nOutgoingEdges = nOutgoingEdgess[index];
-            int[] outgoingEdges = outgoingEdgess[index];
-            for (int i=0;i<nOutgoingEdges;++i) {
-                Memory.setVisited(outgoingEdges[i], true);
-            }
-        }
-
-
-        losScanner.computeAllVisibleTautSuccessors(x, y);
-        int nSuccessors = losScanner.nSuccessors;
-        for (int i=0;i<nSuccessors;++i) {
-            int toX = losScanner.successorsX[i];
-            int toY = losScanner.successorsY[i];
-            int targetIndex = nodeIndex[toY*sizeXPlusOne + toX];
-            if (Memory.visited(targetIndex)) continue;
-
-            float weight = graph.distance(x, y, toX, toY);
-            addTemporaryEdge(index, targetIndex, weight);
-        }
-        
-        
-        if (nSuccessors > outgoingMarkedEdgeIndexess[index].length) {
-            int newLength = Math.max(outgoingMarkedEdgeIndexess[index].length, 11);
-            while (newLength < nSuccessors) newLength *= 2;
-            outgoingMarkedEdgeIndexess[index] = Arrays.copyOf(outgoingMarkedEdgeIndexess[index], newLength);
+    /**
+     * Copies the per-node adjacency arrays into the compressed sparse row arrays, then releases them.
+     * The order of the edges of each node is kept.
+     */
+    private final void compressAdjacency() {
+        outgoingEdgeOffsets = new int[maxSize+1];
+        levelWEdgeOffsets = new int[maxSize+1];
+        skipEdgeOffsets = new int[maxSize+1];
+        for (int i=0;i<maxSize;++i) {
+            boolean isNode = i < nNodes;
+            outgoingEdgeOffsets[i+1] = outgoingEdgeOffsets[i] + (isNode ? nOutgoingEdgess[i] : 0);
+            levelWEdgeOffsets[i+1] = levelWEdgeOffsets[i] + (isNode ? nLevelWNeighbourss[i] : 0);
+            skipEdgeOffsets[i+1] = skipEdgeOffsets[i] + (isNode ? nSkipEdgess[i] : 0);
         }
-        
-        return index;
-    }
 
+        int[] outgoingEdges = new int[outgoingEdgeOffsets[maxSize]];
+        int[] outgoingEdgeIndexes = new int[outgoingEdgeOffsets[maxSize]];
+        int[] levelWEdgeOutgoingIndexes = new int[levelWEdgeOffsets[maxSize]];
+        int[] outgoingSkipEdges = new int[skipEdgeOffsets[maxSize]];
+        int[] outgoingSkipEdgeNextNodes = new int[skipEdgeOffsets[maxSize]];
+        int[] outgoingSkipEdgeNextNodeEdgeIndexes = new int[skipEdgeOffsets[maxSize]];
+        float[] outgoingSkipEdgeWeights = new float[skipEdgeOffsets[maxSize]];
 
-    // Adds an edge from node v1 to node v2
-    private final void addTemporaryEdge(int v1, int v2, float weight) {
-        // We assume that expansion is never needed.
-        /*if (nEdges >= edgeWeights.length) {
-            edgeWeights = Arrays.copyOf(edgeWeights, edgeWeights.length*2);
-            edgeLevels = Arrays.copyOf(edgeLevels, edgeLevels.length*2);
-            isMarkedIndex = Arrays.copyOf(isMarkedIndex, isMarkedIndex.length*2);
-        }*/
-        int edgeIndex = nEdges;
+        for (int i=0;i<nNodes;++i) {
+            int offset = outgoingEdgeOffsets[i];
+            System.arraycopy(outgoingEdgess[i], 0, outgoingEdges, offset, nOutgoingEdgess[i]);
+            System.arraycopy(outgoingEdgeIndexess[i], 0, outgoingEdgeIndexes, offset, nOutgoingEdgess[i]);
 
-        // add edge to v1
-        {
-            int index = nOutgoingEdgess[v1];
-            if (index >= outgoingEdgess[v1].length) {
-                int newLength = outgoingEdgess[v1].length*2;
-                outgoingEdgess[v1] = Arrays.copyOf(outgoingEdgess[v1], newLength);
-                outgoingEdgeIndexess[v1] = Arrays.copyOf(outgoingEdgeIndexess[v1], newLength);
-                outgoingEdgeIsMarkeds[v1] = Arrays.copyOf(outgoingEdgeIsMarkeds[v1], newLength);
+            int levelWOffset = levelWEdgeOffsets[i];
+            for (int j=0;j<nLevelWNeighbourss[i];++j) {
+                levelWEdgeOutgoingIndexes[levelWOffset+j] = offset + levelWEdgeOutgoingIndexess[i][j];
             }
-            outgoingEdgess[v1][index] = v2;
-            outgoingEdgeIndexess[v1][index] = edgeIndex;
-            nOutgoingEdgess[v1]++;
-        }
-
-        edgeWeights[edgeIndex] = weight;
-        edgeLevels[edgeIndex] = 0;
-        isMarked[edgeIndex] = false;
-        ++nEdges;
-    }
 
-    private final void markHasEdgeToGoal(boolean value) {
-        int[] outgoingEdges = outgoingEdgess[endIndex];
-        int nOutgoingEdges = nOutgoingEdgess[endIndex];
-        for (int i=0;i<nOutgoingEdges;++i) {
-            hasEdgeToGoal[outgoingEdges[i]] = value;
+            int nSkipEdges = nSkipEdgess[i];
+            if (nSkipEdges == 0) continue;
+            int skipOffset = skipEdgeOffsets[i];
+            System.arraycopy(outgoingSkipEdgess[i], 0, outgoingSkipEdges, skipOffset, nSkipEdges);
+            System.arraycopy(outgoingSkipEdgeNextNodess[i], 0, outgoingSkipEdgeNextNodes, skipOffset, nSkipEdges);
+            System.arraycopy(outgoingSkipEdgeNextNodeEdgeIndexess[i], 0, outgoingSkipEdgeNextNodeEdgeIndexes, skipOffset, nSkipEdges);
+            System.arraycopy(outgoingSkipEdgeWeightss[i], 0, outgoingSkipEdgeWeights, skipOffset, nSkipEdges);
         }
-    }
 
-    /**
-     * Mark all edges reachable with a path of edges of increasing level from the source.
-     */
-    private final void markEdgesFrom(int source, boolean value) {
-        queueSize = 0;
-        {
-            int nOutgoingEdges = nOutgoingEdgess[source];
-            int[] outgoingEdgeIndexes = outgoingEdgeIndexess[source];
-            boolean[] outgoingEdgeIsMarked = outgoingEdgeIsMarkeds[source];
-            //int[] outgoingEdgeOppositeIndexes = outgoingEdgeOppositeIndexess[source];
-            //int[] outgoingEdges = outgoingEdgess[source];
-            
-            for (int i=0;i<nOutgoingEdges;++i) {
-                if (outgoingEdgeIsMarked[i] == value) continue;
-                outgoingEdgeIsMarked[i] = value;
-                
-                int edgeIndex = outgoingEdgeIndexes[i];
-                if (isMarked[edgeIndex] != value) {
-                    isMarked[edgeIndex] = value;
-                    if (value) {
-                        addToMarkedEdges(source, i);
-                        //addToMarkedEdges(outgoingEdges[i], outgoingEdgeOppositeIndexes[i]);
-                    }
-                    else {
-                        clearMarkedEdges(source);
-                        //clearMarkedEdges(outgoingEdges[i]);
-                    }
-                }
-                isMarked[outgoingEdgeIndexes[i]] = value;
-                addPairToQueue(source, i);
-            }
-        }
-        
-        
-        int currIndex = 0;
-        while (currIndex < queueSize) {
-            int parent = queue[currIndex];
-            ++currIndex;
-            int parentOutgoingIndex = queue[currIndex];
-            ++currIndex;
-
-            int curr = outgoingEdgess[parent][parentOutgoingIndex];
-            int currLevel = edgeLevels[outgoingEdgeIndexess[parent][parentOutgoingIndex]];
-            
-            int parX = xPositions[parent];
-            int parY = yPositions[parent];
-            int currX = xPositions[curr];
-            int currY = yPositions[curr];
-            int nOutgoingEdges = nOutgoingEdgess[curr];
-            int[] outgoingEdges = outgoingEdgess[curr];
-            int[] outgoingEdgeIndexes = outgoingEdgeIndexess[curr];
-            boolean[] outgoingEdgeIsMarked = outgoingEdgeIsMarkeds[curr];
-            int[] outgoingEdgeOppositeIndexes = outgoingEdgeOppositeIndexess[curr];
-            
-            for (int i=0;i<nOutgoingEdges;++i) {
-                int nextLevel = edgeLevels[outgoingEdgeIndexes[i]];
-                if ((outgoingEdgeIsMarked[i] == value) || (nextLevel != LEVEL_W && nextLevel <= currLevel)) continue;
-                int next = outgoingEdges[i];
-                if (!graph.isTaut(parX, parY, currX, currY, xPositions[next], yPositions[next])) continue;
-                outgoingEdgeIsMarked[i] = value;
-             
-                int edgeIndex = outgoingEdgeIndexes[i];
-                if (isMarked[edgeIndex] != value) {
-                    isMarked[edgeIndex] = value;
-                    if (value) {
-                        addToMarkedEdges(curr, i);
-                        addToMarkedEdges(next, outgoingEdgeOppositeIndexes[i]);
-                    }
-                    else {
-                        clearMarkedEdges(curr);
-                        clearMarkedEdges(next);
-                    }
-                }
-                isMarked[outgoingEdgeIndexes[i]] = value;
-                
-                // Only continue marking forward if not a skip vertex.
-                if (nextLevel != LEVEL_W || nSkipEdgess[next] == 0) {
-                    addPairToQueue(curr, i);
-                }
-            }
-        }
+        this.outgoingEdges = IntBuffer.wrap(outgoingEdges);
+        this.outgoingEdgeIndexes = IntBuffer.wrap(outgoingEdgeIndexes);
+        this.levelWEdgeOutgoingIndexes = IntBuffer.wrap(levelWEdgeOutgoingIndexes);
+        this.outgoingSkipEdges = IntBuffer.wrap(outgoingSkipEdges);
+        this.outgoingSkipEdgeNextNodes = IntBuffer.wrap(outgoingSkipEdgeNextNodes);
+        this.outgoingSkipEdgeNextNodeEdgeIndexes = IntBuffer.wrap(outgoingSkipEdgeNextNodeEdgeIndexes);
+        this.outgoingSkipEdgeWeights = FloatBuffer.wrap(outgoingSkipEdgeWeights);
+        edgeLevels = IntBuffer.wrap(constructionEdgeLevels);
+        edgeWeights = FloatBuffer.wrap(constructionEdgeWeights);
+
+        nOutgoingEdgess = null;
+        outgoingEdgess = null;
+        outgoingEdgeIndexess = null;
+        outgoingEdgeOppositeIndexess = null;
+        nLevelWNeighbourss = null;
+        levelWEdgeOutgoingIndexess = null;
+        nSkipEdgess = null;
+        outgoingSkipEdgess = null;
+        outgoingSkipEdgeNextNodess = null;
+        outgoingSkipEdgeNextNodeEdgeIndexess = null;
+        outgoingSkipEdgeWeightss = null;
+        constructionEdgeLevels = null;
+        constructionEdgeWeights = null;
     }
 
-    private final void addToMarkedEdges(int current, int outgoingIndex) {
-        outgoingMarkedEdgeIndexess[current][nMarkedEdgess[current]] = outgoingIndex;
-        ++nMarkedEdgess[current];
-    }
-    
-    private final void clearMarkedEdges(int current) {
-        nMarkedEdgess[current] = 0;
-    }
-    
-    private final void addPairToQueue(int parent, int parentOutgoingIndex) {
-        if (queueSize+1 >= queue.length) {
-            queue = Arrays.copyOf(queue, queue.length*2);
-        }
-        queue[queueSize] = parent;
-        ++queueSize;
-        queue[queueSize] = parentOutgoingIndex;
-        ++queueSize;
-    }
+    /// \\\ /// \\\ /// \\\ /// \\\ /// \\\ ///
+    ///    GRAPH CONSTRUCTION PHASE - END   ///
+    /// \\\ /// \\\ /// \\\ /// \\\ /// \\\ ///
+
 
-    /// \\\ /// \\\ /// \\\ /// \\\ ///
-    ///   REPURPOSING PHASE - END   ///
-    /// \\\ /// \\\ /// \\\ /// \\\ ///
-    
     public final int size() {
         return nNodes;
     }
@@ -952,30 +1231,24 @@ public class EdgeNLevelSparseVisibilityGraph {
     public final int maxSize() {
         return maxSize;
     }
-    
-    public final int startNode() {
-        return startIndex;
+
+    public final int nOutgoingEdges(int index) {
+        return outgoingEdgeOffsets[index+1] - outgoingEdgeOffsets[index];
     }
 
-    public final int endNode() {
-        return endIndex;
+    /**
+     * @return the number of outgoing skip-edges. Non-zero iff index is a skip vertex.
+     */
+    public final int nSkipEdges(int index) {
+        return skipEdgeOffsets[index+1] - skipEdgeOffsets[index];
     }
     
     public final int computeNumSkipEdges() {
-        int sumdegrees = 0;
-        for (int i=0;i<nNodes;++i) {
-            sumdegrees += nSkipEdgess[i];
-        }
-        return sumdegrees/2;
-    }
-    
-    private final void maybeSaveSnapshot() {
-        if (saveSnapshot != null) saveSnapshot.run();
+        return skipEdgeOffsets[nNodes]/2;
     }
     
     public static void clearMemory() {
-        storedVisibilityGraph = null;
-        storedGridGraph = null;
+        PreprocessedGraphRegistry.remove(REGISTRY_KIND);
         System.gc();
     }
     
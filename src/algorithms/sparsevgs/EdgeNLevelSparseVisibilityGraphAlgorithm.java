@@ -1,20 +1,21 @@
 package algorithms.sparsevgs;
 
 import java.awt.Color;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.TreeMap;
 
 import algorithms.AStarStaticMemory;
-import algorithms.datatypes.Memory;
 import algorithms.datatypes.SnapshotItem;
-import algorithms.priorityqueue.ReusableIndirectHeap;
 import grid.GridGraph;
 import main.AlgoFunction;
 
 
 public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory {
     private EdgeNLevelSparseVisibilityGraph visibilityGraph;
+    private EdgeNLevelSparseVisibilityGraphOverlay overlay;
     private boolean reuseGraph = false;
     private int levelLimit = Integer.MAX_VALUE;
     
@@ -45,18 +46,18 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
     public void computePath() {
         setupVisibilityGraph();
 
-        int size = visibilityGraph.size();
-        int memorySize = visibilityGraph.maxSize();
-        pq = new ReusableIndirectHeap(size, memorySize);
+        int size = overlay.size();
+        int memorySize = overlay.maxSize();
+        pq = priorityQueueType.forCurrentThread(memorySize);
         this.initialiseMemory(memorySize, Float.POSITIVE_INFINITY, -1, false);
         
-        initialise(visibilityGraph.startNode());
-        int finish = visibilityGraph.endNode();
+        initialise(overlay.startNode());
+        int finish = overlay.endNode();
 
         if (graph.lineOfSight(sx, sy, ex, ey)) {
             // There is a direct path from (sx, sy) to (ex, ey).
             if (sx != ex || sy != ey) {
-                setParent(finish, visibilityGraph.startNode());
+                setParent(finish, overlay.startNode());
             }
             return;
         }
@@ -70,47 +71,39 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
                 break;
             }
             
-            int[] outgoingEdges = visibilityGraph.outgoingEdgess[current];
-            int[] outgoingEdgeIndexes = visibilityGraph.outgoingEdgeIndexess[current];
-
             // Scan through marked edges to neighbours
-            int nMarkedEdges = visibilityGraph.nMarkedEdgess[current];
-            int[] outgoingMarkedEdgeIndexes = visibilityGraph.outgoingMarkedEdgeIndexess[current];
-            
-            for (int i=0;i<nMarkedEdges;++i) {
-                int index = outgoingMarkedEdgeIndexes[i];
-                int dest = outgoingEdges[index];
-                int edgeIndex = outgoingEdgeIndexes[index];
-                float weight = visibilityGraph.edgeWeights[edgeIndex];
-                if (!Memory.visited(dest) && relax(current, dest, weight)) {
-                    int destX = visibilityGraph.xPositions[dest];
-                    int destY = visibilityGraph.yPositions[dest];
+            for (int e=overlay.firstMarkedEdge(current); e!=-1; e=overlay.nextMarkedEdge(e)) {
+                int dest = overlay.markedEdgeTarget(e);
+                float weight = overlay.markedEdgeWeight(e);
+                if (!memory.visited(dest) && relax(current, dest, weight)) {
+                    int destX = overlay.xPosition(dest);
+                    int destY = overlay.yPosition(dest);
                     
                     pq.decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey));;
                 }
             }
 
             // Scan through skip edges to neighbours
-            int nSkipEdges = visibilityGraph.nSkipEdgess[current];
-            int[] outgoingSkipEdges = visibilityGraph.outgoingSkipEdgess[current];
-            float[] outgoingSkipEdgeWeights = visibilityGraph.outgoingSkipEdgeWeightss[current];
-            int[] outgoingSkipEdgeNextNodes = visibilityGraph.outgoingSkipEdgeNextNodess[current];
+            int skipEdgesEnd = visibilityGraph.skipEdgeOffsets[current+1];
+            IntBuffer outgoingSkipEdges = visibilityGraph.outgoingSkipEdges;
+            FloatBuffer outgoingSkipEdgeWeights = visibilityGraph.outgoingSkipEdgeWeights;
+            IntBuffer outgoingSkipEdgeNextNodes = visibilityGraph.outgoingSkipEdgeNextNodes;
             
-            for (int i=0;i<nSkipEdges;++i) {
-                int dest = outgoingSkipEdges[i];
-                int nextNode = outgoingSkipEdgeNextNodes[i];
-                float edgeWeight = outgoingSkipEdgeWeights[i];
+            for (int i=visibilityGraph.skipEdgeOffsets[current];i<skipEdgesEnd;++i) {
+                int dest = outgoingSkipEdges.get(i);
+                int nextNode = outgoingSkipEdgeNextNodes.get(i);
+                float edgeWeight = outgoingSkipEdgeWeights.get(i);
                 
-                if (!Memory.visited(dest) && relaxViaSkipEdge(current, dest, nextNode, edgeWeight)) {
-                    int destX = visibilityGraph.xPositions[dest];
-                    int destY = visibilityGraph.yPositions[dest];
+                if (!memory.visited(dest) && relaxViaSkipEdge(current, dest, nextNode, edgeWeight)) {
+                    int destX = overlay.xPosition(dest);
+                    int destY = overlay.yPosition(dest);
                     pq.decreaseKey(dest, distance(dest) + graph.distance(destX, destY, ex, ey));
                 }
             }
 
-            if (visibilityGraph.hasEdgeToGoal[current]) {
-                int currX = visibilityGraph.xPositions[current];
-                int currY = visibilityGraph.yPositions[current];
+            if (overlay.hasEdgeToGoal(current)) {
+                int currX = overlay.xPosition(current);
+                int currY = overlay.yPosition(current);
                 
                 float weight = graph.distance(currX, currY, ex, ey);
                 if (relax(current, finish, weight)) {
@@ -132,14 +125,17 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
             visibilityGraph = EdgeNLevelSparseVisibilityGraph.initialiseNew(graph, levelLimit);
         }
         
+        overlay = new EdgeNLevelSparseVisibilityGraphOverlay(visibilityGraph);
+        
         if (isRecording()) {
-            visibilityGraph.setSaveSnapshotFunction(()->saveVisibilityGraphSnapshot(false));
+            overlay.setSaveSnapshotFunction(()->saveVisibilityGraphSnapshot(false));
             saveVisibilityGraphSnapshot(false);
-            visibilityGraph.addStartAndEnd(sx, sy, ex, ey);
+            overlay.addStartAndEnd(sx, sy, ex, ey);
             saveVisibilityGraphSnapshot(false);
             saveVisibilityGraphSnapshot(true);
         } else {
-            visibilityGraph.addStartAndEnd(sx, sy, ex, ey);
+            overlay.setSaveSnapshotFunction(null);
+            overlay.addStartAndEnd(sx, sy, ex, ey);
         }
     }
 
@@ -150,15 +146,13 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
         if (newWeight < distance(v)) {
             int p = parent(u);
             if (p != -1) {
-                int[] xPositions = visibilityGraph.xPositions;
-                int[] yPositions = visibilityGraph.yPositions;
                 p = getNextNodeIndex(p);
-                int x1 = xPositions[p];
-                int y1 = yPositions[p];
-                int x2 = xPositions[u];
-                int y2 = yPositions[u];
-                int x3 = xPositions[v];
-                int y3 = yPositions[v];
+                int x1 = overlay.xPosition(p);
+                int y1 = overlay.yPosition(p);
+                int x2 = overlay.xPosition(u);
+                int y2 = overlay.yPosition(u);
+                int x3 = overlay.xPosition(v);
+                int y3 = overlay.yPosition(v);
                 
                 if (!graph.isTaut(x1,y1,x2,y2,x3,y3)) return false;
             }
@@ -198,12 +192,12 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
             int p = parent(u);
             if (p != -1) {
                 p = getNextNodeIndex(p);
-                int x1 = visibilityGraph.xPositions[p];
-                int y1 = visibilityGraph.yPositions[p];
-                int x2 = visibilityGraph.xPositions[u];
-                int y2 = visibilityGraph.yPositions[u];
-                int x3 = visibilityGraph.xPositions[nextNode];
-                int y3 = visibilityGraph.yPositions[nextNode];
+                int x1 = overlay.xPosition(p);
+                int y1 = overlay.yPosition(p);
+                int x2 = overlay.xPosition(u);
+                int y2 = overlay.yPosition(u);
+                int x3 = overlay.xPosition(nextNode);
+                int y3 = overlay.yPosition(nextNode);
                 
                 if (!graph.isTaut(x1,y1,x2,y2,x3,y3)) return false;
             }
@@ -215,15 +209,15 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
     }
     
     private final void resolveSkipEdgeNextNode(int v) {
-        int parent = Memory.parent(v);
+        int parent = memory.parent(v);
         if (parent >= -1) return;
         parent -= Integer.MIN_VALUE;
-        int nSkipEdges = visibilityGraph.nSkipEdgess[v];
-        int[] outgoingSkipEdges = visibilityGraph.outgoingSkipEdgess[v];
+        int skipEdgesEnd = visibilityGraph.skipEdgeOffsets[v+1];
+        IntBuffer outgoingSkipEdges = visibilityGraph.outgoingSkipEdges;
 
-        for (int i=0;i<nSkipEdges;++i) {
-            if (outgoingSkipEdges[i] == parent) {
-                Memory.setParent(v, visibilityGraph.outgoingSkipEdgeNextNodess[v][i] + Integer.MIN_VALUE);
+        for (int i=visibilityGraph.skipEdgeOffsets[v];i<skipEdgesEnd;++i) {
+            if (outgoingSkipEdges.get(i) == parent) {
+                memory.setParent(v, visibilityGraph.outgoingSkipEdgeNextNodes.get(i) + Integer.MIN_VALUE);
                 return;
             }
         }
@@ -235,46 +229,44 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
     }
     
     private void resolveFinalPath() {
-        int current = visibilityGraph.endNode();
+        int current = overlay.endNode();
         int previous = -1;
-        int[] edgeLevels = visibilityGraph.edgeLevels;
+        IntBuffer outgoingEdges = visibilityGraph.outgoingEdges;
+        IntBuffer levelWEdgeOutgoingIndexes = visibilityGraph.levelWEdgeOutgoingIndexes;
         
         while (current != -1) {
             if (current < -1) {
                 current -= Integer.MIN_VALUE;
-                Memory.setParent(previous, current);
+                memory.setParent(previous, current);
                 
-                if (visibilityGraph.nSkipEdgess[current] != 0) {
+                if (visibilityGraph.nSkipEdges(current) != 0) {
                     previous = current;
-                    current = Memory.parent(current);
+                    current = memory.parent(current);
                     continue;
                 }
                 
-                int nOutgoingEdges = visibilityGraph.nOutgoingEdgess[current];
-                int[] outgoingEdges = visibilityGraph.outgoingEdgess[current];
-                int[] outgoingEdgeIndexes = visibilityGraph.outgoingEdgeIndexess[current];
+                int levelWEdgesEnd = visibilityGraph.levelWEdgeOffsets[current+1];
                 
                 boolean done = false;
-                for (int i=0;i<nOutgoingEdges;++i) {
-                    if (edgeLevels[outgoingEdgeIndexes[i]] != EdgeNLevelSparseVisibilityGraph.LEVEL_W) continue;
-                    if (outgoingEdges[i] == previous) continue;
+                for (int k=visibilityGraph.levelWEdgeOffsets[current];k<levelWEdgesEnd;++k) {
+                    int next = outgoingEdges.get(levelWEdgeOutgoingIndexes.get(k));
+                    if (next == previous) continue;
                     
-                    int next = outgoingEdges[i];
-                    Memory.setParent(current, next + Integer.MIN_VALUE);
+                    memory.setParent(current, next + Integer.MIN_VALUE);
                     done = true;
                     break;
                 }
                 if (!done) throw new UnsupportedOperationException("SS");
             }
             previous = current;
-            current = Memory.parent(current);
+            current = memory.parent(current);
         }
     }
     
 
     private int pathLength() {
         int length = 0;
-        int current = visibilityGraph.endNode();
+        int current = overlay.endNode();
         while (current != -1) {
             current = parent(current);
             length++;
@@ -286,12 +278,12 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
     public int[][] getPath() {
         int length = pathLength();
         int[][] path = new int[length][];
-        int current = visibilityGraph.endNode();
+        int current = overlay.endNode();
         
         int index = length-1;
         while (current != -1) {
-            int x = visibilityGraph.xPositions[current];
-            int y = visibilityGraph.yPositions[current];
+            int x = overlay.xPosition(current);
+            int y = overlay.yPosition(current);
             
             path[index] = new int[2];
             path[index][0] = x;
@@ -306,7 +298,7 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
 
     @Override
     protected int goalParentIndex() {
-        return visibilityGraph.endNode();
+        return overlay.endNode();
     }
 
     @Override
@@ -316,20 +308,20 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
         //startIndex = getNextNodeIndex(startIndex);
         if (startIndex < -1) {
             startIndex -= Integer.MIN_VALUE;
-            int nSkipEdges = visibilityGraph.nSkipEdgess[endIndex];
-            int[] outgoingSkipEdgeNextNodes = visibilityGraph.outgoingSkipEdgeNextNodess[endIndex];
-            for (int i=0;i<nSkipEdges;++i) {
-                if (outgoingSkipEdgeNextNodes[i] == startIndex) {
-                    startIndex = visibilityGraph.outgoingSkipEdgess[endIndex][i];
+            int skipEdgesEnd = visibilityGraph.skipEdgeOffsets[endIndex+1];
+            IntBuffer outgoingSkipEdgeNextNodes = visibilityGraph.outgoingSkipEdgeNextNodes;
+            for (int i=visibilityGraph.skipEdgeOffsets[endIndex];i<skipEdgesEnd;++i) {
+                if (outgoingSkipEdgeNextNodes.get(i) == startIndex) {
+                    startIndex = visibilityGraph.outgoingSkipEdges.get(i);
                     break;
                 }
             }
         }
         
-        edge[0] = visibilityGraph.xPositions[startIndex];
-        edge[1] = visibilityGraph.yPositions[startIndex];
-        edge[2] = visibilityGraph.xPositions[endIndex];
-        edge[3] = visibilityGraph.yPositions[endIndex];
+        edge[0] = overlay.xPosition(startIndex);
+        edge[1] = overlay.yPosition(startIndex);
+        edge[2] = overlay.xPosition(endIndex);
+        edge[3] = overlay.yPosition(endIndex);
         return edge;
     }
 
@@ -337,34 +329,29 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
     protected Integer[] snapshotVertex(int index) {
         if (selected(index)) {
             Integer[] edge = new Integer[2];
-            edge[0] = visibilityGraph.xPositions[index];
-            edge[1] = visibilityGraph.yPositions[index];
+            edge[0] = overlay.xPosition(index);
+            edge[1] = overlay.yPosition(index);
             return edge;
         }
         return null;
     }
 
     protected void saveVisibilityGraphSnapshot(boolean showMarked) {
-        int size = visibilityGraph.size();
+        int size = overlay.size();
         List<SnapshotItem> snapshotItemList = new ArrayList<>(size);
-
-        int[] xPositions = visibilityGraph.xPositions;
-        int[] yPositions = visibilityGraph.yPositions;
         
         TreeMap<Integer, ArrayList<SnapshotItem>> sortedSnapshots = new TreeMap<>(); 
         for (int i=0;i<size;i++) {
-            int x1 = xPositions[i];
-            int y1 = yPositions[i];
+            int x1 = overlay.xPosition(i);
+            int y1 = overlay.yPosition(i);
 
-            int nOutgoingEdges = visibilityGraph.nOutgoingEdgess[i];
-            int[] outgoingEdges = visibilityGraph.outgoingEdgess[i];
-            int[] outgoingEdgeIndexes = visibilityGraph.outgoingEdgeIndexess[i];
+            int nOutgoingEdges = overlay.degree(i);
             
             for (int j=0;j<nOutgoingEdges;++j) {
-                int neighbour = outgoingEdges[j];
-                int edgeIndex = outgoingEdgeIndexes[j];
-                int x2 = xPositions[neighbour];
-                int y2 = yPositions[neighbour];
+                int neighbour = overlay.target(i, j);
+                int edgeIndex = overlay.edgeIndex(i, j);
+                int x2 = overlay.xPosition(neighbour);
+                int y2 = overlay.yPosition(neighbour);
                 
                 Integer[] path = new Integer[4];
                 path[0] = x1;
@@ -375,19 +362,20 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
                 Color color;
                 int colourIndex;
                 
-                if (showMarked && visibilityGraph.isMarked[edgeIndex]) {
+                int edgeLevel = overlay.edgeLevel(edgeIndex);
+                if (showMarked && overlay.isMarked(edgeIndex)) {
                     colourIndex = 0;
                     color = vertexColours[colourIndex];
-                } else if (visibilityGraph.edgeLevels[edgeIndex] == visibilityGraph.LEVEL_W) {
+                } else if (edgeLevel == EdgeNLevelSparseVisibilityGraph.LEVEL_W) {
                     colourIndex = vertexColours.length;
                     color = levelWColour;
                 } else {
-                    colourIndex = Math.min(visibilityGraph.edgeLevels[edgeIndex], vertexColours.length-1);
+                    colourIndex = Math.min(edgeLevel, vertexColours.length-1);
                     color = vertexColours[colourIndex];
                     //color = Color.GREEN;
                 }
 
-                SnapshotItem snapshotItem = SnapshotItem.generate(path, color);
+                SnapshotItem snapshotItem = snapshotItem(path, color);
                 if (!sortedSnapshots.containsKey(colourIndex)) {
                     sortedSnapshots.put(colourIndex, new ArrayList<>());
                 }
@@ -400,12 +388,12 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
             vert[1] = y1;
 
             SnapshotItem snapshotItem = null;
-            if (visibilityGraph.nSkipEdgess[i] == 0) {
+            if (visibilityGraph.nSkipEdges(i) == 0) {
                 // Regular vertex.
-                snapshotItem = SnapshotItem.generate(vert, Color.BLUE);
+                snapshotItem = snapshotItem(vert, Color.BLUE);
             }
             else {
-                snapshotItem = SnapshotItem.generate(vert, Color.WHITE);
+                snapshotItem = snapshotItem(vert, Color.WHITE);
             }
             snapshotItemList.add(snapshotItem);
         }
@@ -422,16 +410,16 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
         }
 
         for (int i=0;i<size;i++) {
-            int x1 = xPositions[i];
-            int y1 = yPositions[i];
+            int x1 = overlay.xPosition(i);
+            int y1 = overlay.yPosition(i);
 
-            int nSkipEdges = visibilityGraph.nSkipEdgess[i];
-            int[] outgoingSkipEdges = visibilityGraph.outgoingSkipEdgess[i];
+            int skipEdgesEnd = visibilityGraph.skipEdgeOffsets[i+1];
+            IntBuffer outgoingSkipEdges = visibilityGraph.outgoingSkipEdges;
             
-            for (int j=0;j<nSkipEdges;++j) {
-                int neighbour = outgoingSkipEdges[j];
-                int x2 = xPositions[neighbour];
-                int y2 = yPositions[neighbour];
+            for (int j=visibilityGraph.skipEdgeOffsets[i];j<skipEdgesEnd;++j) {
+                int neighbour = outgoingSkipEdges.get(j);
+                int x2 = overlay.xPosition(neighbour);
+                int y2 = overlay.yPosition(neighbour);
                 
                 Integer[] path = new Integer[4];
                 path[0] = x1;
@@ -439,7 +427,7 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
                 path[2] = x2;
                 path[3] = y2;
                 
-                SnapshotItem snapshotItem = SnapshotItem.generate(path, skipEdgeColour);
+                SnapshotItem snapshotItem = snapshotItem(path, skipEdgeColour);
                 snapshotItemList.add(snapshotItem);
             }
         }
@@ -453,18 +441,18 @@ public class EdgeNLevelSparseVisibilityGraphAlgorithm extends AStarStaticMemory
         System.out.println("Edges: " + visibilityGraph.nEdges);
         
         { // Print edge distribution.
-            int[] edgeLevels = visibilityGraph.edgeLevels;
+            IntBuffer edgeLevels = visibilityGraph.edgeLevels;
             
             int maxLevel = 0;
             for (int i=0;i<visibilityGraph.nEdges;++i) {
-                int level = edgeLevels[i];
+                int level = edgeLevels.get(i);
                 if (level != visibilityGraph.LEVEL_W && level > maxLevel) maxLevel = level;
             }
             
             int countLevelW = 0;
             int[] counts = new int[maxLevel+1];
             for (int i=0;i<visibilityGraph.nEdges;++i) {
-                int level = edgeLevels[i];
+                int level = edgeLevels.get(i);
 
                 if (level == visibilityGraph.LEVEL_W) {
                     countLevelW++;
@@ -0,0 +1,504 @@
+package algorithms.sparsevgs;
+
+import grid.GridGraph;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Per-query view over a preprocessed EdgeNLevelSparseVisibilityGraph.<br>
+ * <br>
+ * The start and goal vertices, the temporary edges connecting them to the graph, the hasEdgeToGoal
+ * flags and the set of marked edges are all stored here, so the underlying graph is never modified
+ * by a query and can be shared by any number of threads.<br>
+ * <br>
+ * An overlay is created by the search that owns it. The per-node flag arrays are large, so they are
+ * not allocated per overlay but borrowed from a per-thread NodeFlags cache, and reset in O(1) using
+ * ticket numbers. The cache holds no reference to any graph, so a graph dropped from the
+ * PreprocessedGraphRegistry is not kept alive by the threads that queried it.<br>
+ * As the flags are shared by the overlays of a thread, only the overlay most recently created
+ * on a thread may be used, and only by that thread.
+ */
+public final class EdgeNLevelSparseVisibilityGraphOverlay {
+    public static final int LEVEL_W = EdgeNLevelSparseVisibilityGraph.LEVEL_W;
+
+    public final EdgeNLevelSparseVisibilityGraph base;
+    private final GridGraph graph;
+    private final int sizeXPlusOne;
+    private final int originalSize;
+    private final int originalNEdges;
+    private LineOfSightScannerDouble losScanner;
+
+    private Runnable saveSnapshot;
+
+    private int startIndex = -1;
+    private int endIndex = -1;
+    private int nNodes;
+    private final int[] newNodeXPositions = new int[2];
+    private final int[] newNodeYPositions = new int[2];
+
+    // Temporary edges. Outgoing from start: [0, nStartTempEdges). Outgoing from end: [nStartTempEdges, nTempEdges)
+    // The edge index of temporary edge k is originalNEdges + k.
+    private int nTempEdges;
+    private int nStartTempEdges;
+    private int[] tempEdgeTargets = new int[11];
+    private float[] tempEdgeWeights = new float[11];
+
+    // Node flags, indexed by node index. Valid iff the ticket matches.
+    // The arrays belong to the thread's NodeFlags. The tickets are copied here and written back when they change.
+    private final NodeFlags flags;
+    private int nodeTicket;
+    private final int[] hasEdgeToGoalTicket;
+    private int neighbourTicketNumber;
+    private final int[] neighbourTicket;
+    private final int[] markedEdgeHeadTicket;
+
+    // Marked edges, stored as a linked list per node.
+    private final int[] markedEdgeHeads;
+    private final int[] markedEdgeTails;
+    private final int[] nMarkedEdgess;
+    private int nMarkedEntries;
+    private int[] markedEdgeTargets = new int[11];
+    private float[] markedEdgeWeights = new float[11];
+    private int[] markedEdgeNexts = new int[11];
+
+    private final EdgeSet markedEdges = new EdgeSet();          // key: edgeIndex
+    private final EdgeSet markedDirectedEdges = new EdgeSet();  // key: directedKey(edgeIndex, from, to)
+
+    private int[] queue = new int[11];
+    private int queueSize;
+
+    public EdgeNLevelSparseVisibilityGraphOverlay(EdgeNLevelSparseVisibilityGraph base) {
+        this.base = base;
+        this.graph = base.graph;
+        this.sizeXPlusOne = graph.sizeX+1;
+        this.originalSize = base.size();
+        this.originalNEdges = base.nEdges;
+
+        flags = NodeFlags.forCurrentThread(base.maxSize());
+        nodeTicket = flags.nodeTicket;
+        hasEdgeToGoalTicket = flags.hasEdgeToGoalTicket;
+        neighbourTicketNumber = flags.neighbourTicketNumber;
+        neighbourTicket = flags.neighbourTicket;
+        markedEdgeHeadTicket = flags.markedEdgeHeadTicket;
+        markedEdgeHeads = flags.markedEdgeHeads;
+        markedEdgeTails = flags.markedEdgeTails;
+        nMarkedEdgess = flags.nMarkedEdgess;
+    }
+
+    public final void setSaveSnapshotFunction(Runnable saveSnapshot) {
+        this.saveSnapshot = saveSnapshot;
+    }
+
+    private final void reset() {
+        ++nodeTicket;
+        if (nodeTicket == Integer.MAX_VALUE) {
+            Arrays.fill(hasEdgeToGoalTicket, 0);
+            Arrays.fill(markedEdgeHeadTicket, 0);
+            nodeTicket = 1;
+        }
+        flags.nodeTicket = nodeTicket;
+        markedEdges.clear();
+        markedDirectedEdges.clear();
+        nMarkedEntries = 0;
+        nTempEdges = 0;
+        nStartTempEdges = 0;
+        nNodes = originalSize;
+        startIndex = -1;
+        endIndex = -1;
+    }
+
+    // Assumption: No edge between start and end.
+    public final void addStartAndEnd(int sx, int sy, int ex, int ey) {
+        reset();
+        if (losScanner == null) losScanner = new LineOfSightScannerDouble(base.losExtents);
+        int[] nodeIndex = base.nodeIndex;
+
+        // START:
+        if (nodeIndex[sy*sizeXPlusOne + sx] == -1) {
+            startIndex = addNewNode(sx, sy);
+        } else {
+            startIndex = nodeIndex[sy*sizeXPlusOne + sx];
+        }
+        addTempEdgesToVisibleNeighbours(startIndex, sx, sy);
+        nStartTempEdges = nTempEdges;
+
+        // END:
+        if (nodeIndex[ey*sizeXPlusOne + ex] == -1) {
+            endIndex = addNewNode(ex, ey);
+        } else {
+            endIndex = nodeIndex[ey*sizeXPlusOne + ex];
+        }
+        addTempEdgesToVisibleNeighbours(endIndex, ex, ey);
+
+        markHasEdgeToGoal();
+
+        markEdgesFrom(startIndex);
+        markEdgesFrom(endIndex);
+    }
+
+    private final int addNewNode(int x, int y) {
+        int index = nNodes;
+        newNodeXPositions[index - originalSize] = x;
+        newNodeYPositions[index - originalSize] = y;
+        ++nNodes;
+        return index;
+    }
+
+    private final void addTempEdgesToVisibleNeighbours(int index, int x, int y) {
+        ++neighbourTicketNumber;
+        if (neighbourTicketNumber == Integer.MAX_VALUE) {
+            Arrays.fill(neighbourTicket, 0);
+            neighbourTicketNumber = 1;
+        }
+        flags.neighbourTicketNumber = neighbourTicketNumber;
+        {
+            int nOutgoingEdges = degree(index);
+            for (int i=0;i<nOutgoingEdges;++i) {
+                neighbourTicket[target(index, i)] = neighbourTicketNumber;
+            }
+        }
+
+        losScanner.computeAllVisibleTautSuccessors(x, y);
+        int nSuccessors = losScanner.nSuccessors;
+        int[] nodeIndex = base.nodeIndex;
+        for (int i=0;i<nSuccessors;++i) {
+            int toX = losScanner.successorsX[i];
+            int toY = losScanner.successorsY[i];
+            int targetIndex = nodeIndex[toY*sizeXPlusOne + toX];
+            if (neighbourTicket[targetIndex] == neighbourTicketNumber) continue;
+
+            float weight = graph.distance(x, y, toX, toY);
+            addTemporaryEdge(targetIndex, weight);
+        }
+    }
+
+    private final void addTemporaryEdge(int target, float weight) {
+        if (nTempEdges >= tempEdgeTargets.length) {
+            tempEdgeTargets = Arrays.copyOf(tempEdgeTargets, tempEdgeTargets.length*2);
+            tempEdgeWeights = Arrays.copyOf(tempEdgeWeights, tempEdgeWeights.length*2);
+        }
+        tempEdgeTargets[nTempEdges] = target;
+        tempEdgeWeights[nTempEdges] = weight;
+        ++nTempEdges;
+    }
+
+    private final void markHasEdgeToGoal() {
+        int nOutgoingEdges = degree(endIndex);
+        for (int i=0;i<nOutgoingEdges;++i) {
+            hasEdgeToGoalTicket[target(endIndex, i)] = nodeTicket;
+        }
+    }
+
+    /**
+     * Mark all edges reachable with a path of edges of increasing level from the source.
+     */
+    private final void markEdgesFrom(int source) {
+        queueSize = 0;
+        {
+            int nOutgoingEdges = degree(source);
+            for (int i=0;i<nOutgoingEdges;++i) {
+                int edgeIndex = edgeIndex(source, i);
+                int next = target(source, i);
+                if (!markedDirectedEdges.add(directedKey(edgeIndex, source, next))) continue;
+
+                if (markedEdges.add(edgeIndex)) {
+                    addToMarkedEdges(source, next, edgeWeight(edgeIndex));
+                }
+                addPairToQueue(source, i);
+            }
+        }
+
+        int[] xPositions = base.xPositions;
+        int[] yPositions = base.yPositions;
+        IntBuffer edgeLevels = base.edgeLevels;
+        FloatBuffer edgeWeights = base.edgeWeights;
+        int[] outgoingEdgeOffsets = base.outgoingEdgeOffsets;
+        IntBuffer outgoingEdges = base.outgoingEdges;
+        IntBuffer outgoingEdgeIndexes = base.outgoingEdgeIndexes;
+        int[] skipEdgeOffsets = base.skipEdgeOffsets;
+
+        int currIndex = 0;
+        while (currIndex < queueSize) {
+            int parent = queue[currIndex];
+            ++currIndex;
+            int parentOutgoingIndex = queue[currIndex];
+            ++currIndex;
+
+            int curr = target(parent, parentOutgoingIndex);
+            // Temporary edges are level 0 and never continue a marked path,
+            // so only the original edges of curr need to be considered.
+            if (curr >= originalSize) continue;
+            int currLevel = edgeLevel(edgeIndex(parent, parentOutgoingIndex));
+
+            int parX = xPosition(parent);
+            int parY = yPosition(parent);
+            int currX = xPositions[curr];
+            int currY = yPositions[curr];
+
+            int firstEdge = outgoingEdgeOffsets[curr];
+            int nOutgoingEdges = outgoingEdgeOffsets[curr+1] - firstEdge;
+
+            for (int i=0;i<nOutgoingEdges;++i) {
+                int edgeIndex = outgoingEdgeIndexes.get(firstEdge+i);
+                int nextLevel = edgeLevels.get(edgeIndex);
+                if (nextLevel != LEVEL_W && nextLevel <= currLevel) continue;
+                int next = outgoingEdges.get(firstEdge+i);
+                int key = directedKey(edgeIndex, curr, next);
+                if (markedDirectedEdges.contains(key)) continue;
+                if (!graph.isTaut(parX, parY, currX, currY, xPositions[next], yPositions[next])) continue;
+                markedDirectedEdges.add(key);
+
+                if (markedEdges.add(edgeIndex)) {
+                    float weight = edgeWeights.get(edgeIndex);
+                    addToMarkedEdges(curr, next, weight);
+                    addToMarkedEdges(next, curr, weight);
+                }
+
+                // Only continue marking forward if not a skip vertex.
+                if (nextLevel != LEVEL_W || skipEdgeOffsets[next] == skipEdgeOffsets[next+1]) {
+                    addPairToQueue(curr, i);
+                }
+            }
+        }
+    }
+
+    private static final int directedKey(int edgeIndex, int from, int to) {
+        return (edgeIndex << 1) | (from < to ? 0 : 1);
+    }
+
+    private final void addToMarkedEdges(int current, int target, float weight) {
+        if (nMarkedEntries >= markedEdgeTargets.length) {
+            int newLength = markedEdgeTargets.length*2;
+            markedEdgeTargets = Arrays.copyOf(markedEdgeTargets, newLength);
+            markedEdgeWeights = Arrays.copyOf(markedEdgeWeights, newLength);
+            markedEdgeNexts = Arrays.copyOf(markedEdgeNexts, newLength);
+        }
+        int entry = nMarkedEntries;
+        ++nMarkedEntries;
+        markedEdgeTargets[entry] = target;
+        markedEdgeWeights[entry] = weight;
+        markedEdgeNexts[entry] = -1;
+
+        if (markedEdgeHeadTicket[current] != nodeTicket) {
+            markedEdgeHeadTicket[current] = nodeTicket;
+            markedEdgeHeads[current] = entry;
+            nMarkedEdgess[current] = 1;
+        } else {
+            markedEdgeNexts[markedEdgeTails[current]] = entry;
+            ++nMarkedEdgess[current];
+        }
+        markedEdgeTails[current] = entry;
+    }
+
+    private final void addPairToQueue(int parent, int parentOutgoingIndex) {
+        if (queueSize+1 >= queue.length) {
+            queue = Arrays.copyOf(queue, queue.length*2);
+        }
+        queue[queueSize] = parent;
+        ++queueSize;
+        queue[queueSize] = parentOutgoingIndex;
+        ++queueSize;
+    }
+
+
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+    ///       QUERY-TIME ACCESS      ///
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+
+    public final int size() {
+        return nNodes;
+    }
+
+    public final int maxSize() {
+        return base.maxSize();
+    }
+
+    public final int startNode() {
+        return startIndex;
+    }
+
+    public final int endNode() {
+        return endIndex;
+    }
+
+    public final int xPosition(int index) {
+        return index < originalSize ? base.xPositions[index] : newNodeXPositions[index - originalSize];
+    }
+
+    public final int yPosition(int index) {
+        return index < originalSize ? base.yPositions[index] : newNodeYPositions[index - originalSize];
+    }
+
+    public final boolean hasEdgeToGoal(int index) {
+        return hasEdgeToGoalTicket[index] == nodeTicket;
+    }
+
+    /**
+     * Iterate through the marked edges of a node with:<br>
+     * for (int e = firstMarkedEdge(v); e != -1; e = nextMarkedEdge(e))
+     */
+    public final int firstMarkedEdge(int index) {
+        return markedEdgeHeadTicket[index] == nodeTicket ? markedEdgeHeads[index] : -1;
+    }
+
+    public final int nextMarkedEdge(int entry) {
+        return markedEdgeNexts[entry];
+    }
+
+    public final int markedEdgeTarget(int entry) {
+        return markedEdgeTargets[entry];
+    }
+
+    public final float markedEdgeWeight(int entry) {
+        return markedEdgeWeights[entry];
+    }
+
+    public final int nMarkedEdges(int index) {
+        return markedEdgeHeadTicket[index] == nodeTicket ? nMarkedEdgess[index] : 0;
+    }
+
+    /**
+     * Number of outgoing edges of a node, including the temporary edges of this query.
+     */
+    public final int degree(int index) {
+        int degree = index < originalSize ? base.nOutgoingEdges(index) : 0;
+        if (index == startIndex) degree += nStartTempEdges;
+        if (index == endIndex) degree += nTempEdges - nStartTempEdges;
+        return degree;
+    }
+
+    public final int target(int index, int i) {
+        int nOriginal = index < originalSize ? base.nOutgoingEdges(index) : 0;
+        if (i < nOriginal) return base.outgoingEdges.get(base.outgoingEdgeOffsets[index] + i);
+        return tempEdgeTargets[tempEdgeStart(index) + i - nOriginal];
+    }
+
+    public final int edgeIndex(int index, int i) {
+        int nOriginal = index < originalSize ? base.nOutgoingEdges(index) : 0;
+        if (i < nOriginal) return base.outgoingEdgeIndexes.get(base.outgoingEdgeOffsets[index] + i);
+        return originalNEdges + tempEdgeStart(index) + i - nOriginal;
+    }
+
+    private final int tempEdgeStart(int index) {
+        return index == startIndex ? 0 : nStartTempEdges;
+    }
+
+    public final int edgeLevel(int edgeIndex) {
+        return edgeIndex < originalNEdges ? base.edgeLevels.get(edgeIndex) : 0;
+    }
+
+    public final float edgeWeight(int edgeIndex) {
+        return edgeIndex < originalNEdges ? base.edgeWeights.get(edgeIndex) : tempEdgeWeights[edgeIndex - originalNEdges];
+    }
+
+    public final boolean isMarked(int edgeIndex) {
+        return markedEdges.contains(edgeIndex);
+    }
+
+    private final void maybeSaveSnapshot() {
+        if (saveSnapshot != null) saveSnapshot.run();
+    }
+
+
+    /**
+     * The per-node arrays of the overlays of one thread, with their ticket numbers.
+     * Grown when a thread queries a graph with more nodes than any it queried before.
+     */
+    private static final class NodeFlags {
+        private static final ThreadLocal<NodeFlags> perThread = ThreadLocal.withInitial(NodeFlags::new);
+
+        private int nodeTicket = 0;
+        private int neighbourTicketNumber = 0;
+        private int[] hasEdgeToGoalTicket = new int[0];
+        private int[] neighbourTicket = new int[0];
+        private int[] markedEdgeHeadTicket = new int[0];
+        private int[] markedEdgeHeads = new int[0];
+        private int[] markedEdgeTails = new int[0];
+        private int[] nMarkedEdgess = new int[0];
+
+        static final NodeFlags forCurrentThread(int maxSize) {
+            NodeFlags flags = perThread.get();
+            if (flags.hasEdgeToGoalTicket.length < maxSize) {
+                flags.hasEdgeToGoalTicket = new int[maxSize];
+                flags.neighbourTicket = new int[maxSize];
+                flags.markedEdgeHeadTicket = new int[maxSize];
+                flags.markedEdgeHeads = new int[maxSize];
+                flags.markedEdgeTails = new int[maxSize];
+                flags.nMarkedEdgess = new int[maxSize];
+                flags.nodeTicket = 0;
+                flags.neighbourTicketNumber = 0;
+            }
+            return flags;
+        }
+    }
+
+    /**
+     * Open-addressing set of non-negative ints, cleared in O(1) with a ticket number.
+     */
+    private static final class EdgeSet {
+        private int[] keys = new int[64];
+        private int[] tickets = new int[64];
+        private int ticket = 1;
+        private int size = 0;
+
+        final void clear() {
+            ++ticket;
+            if (ticket == Integer.MAX_VALUE) {
+                Arrays.fill(tickets, 0);
+                ticket = 1;
+            }
+            size = 0;
+        }
+
+        private static final int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        final boolean contains(int key) {
+            int mask = keys.length-1;
+            int slot = hash(key) & mask;
+            while (tickets[slot] == ticket) {
+                if (keys[slot] == key) return true;
+                slot = (slot+1) & mask;
+            }
+            return false;
+        }
+
+        /**
+         * @return true iff the key was not already in the set.
+         */
+        final boolean add(int key) {
+            int mask = keys.length-1;
+            int slot = hash(key) & mask;
+            while (tickets[slot] == ticket) {
+                if (keys[slot] == key) return false;
+                slot = (slot+1) & mask;
+            }
+            keys[slot] = key;
+            tickets[slot] = ticket;
+            ++size;
+            if (size*2 > keys.length) grow();
+            return true;
+        }
+
+        private final void grow() {
+            int[] oldKeys = keys;
+            int[] oldTickets = tickets;
+            int oldTicket = ticket;
+            keys = new int[oldKeys.length*2];
+            tickets = new int[oldKeys.length*2];
+            ticket = 1;
+            int mask = keys.length-1;
+            for (int i=0;i<oldKeys.length;++i) {
+                if (oldTickets[i] != oldTicket) continue;
+                int slot = hash(oldKeys[i]) & mask;
+                while (tickets[slot] == ticket) slot = (slot+1) & mask;
+                keys[slot] = oldKeys[i];
+                tickets[slot] = ticket;
+            }
+        }
+    }
+}
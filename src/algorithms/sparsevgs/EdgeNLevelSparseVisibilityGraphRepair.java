@@ -0,0 +1,794 @@
+package algorithms.sparsevgs;
+
+import grid.GridGraph;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+
+/**
+ * Repairs an EdgeNLevelSparseVisibilityGraph in place after tiles of its GridGraph have been set blocked or unblocked.
+ * Only the parts of the graph near the changed tiles are recomputed:<br>
+ * <br>
+ * Nodes: outer corners only appear or disappear at the corners of the changed tiles. Node indexes are kept. A new node
+ *  takes the slot of a removed one, or a new slot at the end, so the nodes are no longer numbered by row.<br>
+ * Edges: only the nodes whose visibility scan read a point near a changed tile are scanned again. As in a build, an edge
+ *  is found by the scan of the end that comes first by row. Edge indexes are reused in the same way as node indexes.<br>
+ * Edge levels: the level of an edge e is the unique solution of<br>
+ *   level(e) = 1 + min over both ends of e of (the highest level of the edges at that end that are taut with e),<br>
+ *  where an end with a level-W edge taut with e counts as W, and a level of levelLimit or more is W. The edges around the
+ *  changed ones are first raised to W where their level is no longer supported, then lowered in increasing order of level.
+ *  Only the edges whose level can change are visited.<br>
+ * Skip-edges: recomputed for the skip vertices at the ends of the chains of level-W edges that changed.<br>
+ * Adjacency arrays: the ranges of the changed nodes are replaced, and the ranges in between are moved in place.
+ *  The arrays are only reallocated, with some room to spare, when they have to grow.<br>
+ * <br>
+ * The result is the graph a rebuild gives, except for the numbering of the nodes and edges, the order of the edges of
+ * a node and, between parallel skip-edges of the same length, which one is kept.
+ * See EdgeNLevelSparseVisibilityGraph.findDifferenceFromRebuild().
+ */
+final class EdgeNLevelSparseVisibilityGraphRepair {
+    private static final int LEVEL_W = EdgeNLevelSparseVisibilityGraph.LEVEL_W;
+
+    private final EdgeNLevelSparseVisibilityGraph vGraph;
+    private final GridGraph graph;
+    private final int sizeXPlusOne;
+    private final int levelLimit;
+
+    private final ArrayList<Integer> newNodes = new ArrayList<>();
+    private final ArrayList<Integer> removedNodes = new ArrayList<>();
+    private final HashSet<Integer> cornerNodes = new HashSet<>(); // Nodes at the corners of the changed tiles.
+
+    // New adjacency of the nodes whose edges changed. The other nodes keep their ranges of the CSR arrays.
+    private final HashMap<Integer, int[]> changedTargets = new HashMap<>();
+    private final HashMap<Integer, int[]> changedEdgeIndexes = new HashMap<>();
+
+    // Edges whose level has changed: edgeIndex -> {end, end, edgeIndex, previous level}.
+    private final HashMap<Integer, int[]> changedLevels = new HashMap<>();
+
+    // New level-W edges (as indexes into the node's adjacency) of the nodes whose level-W edges may have changed.
+    private final HashMap<Integer, int[]> changedLevelWEdges = new HashMap<>();
+
+    // New skip-edges of the skip vertices (old or new) whose skip-edges may have changed.
+    private final HashMap<Integer, SkipEdges> changedSkipEdges = new HashMap<>();
+
+    EdgeNLevelSparseVisibilityGraphRepair(EdgeNLevelSparseVisibilityGraph vGraph) {
+        this.vGraph = vGraph;
+        this.graph = vGraph.graph;
+        this.sizeXPlusOne = graph.sizeX+1;
+        this.levelLimit = vGraph.levelLimit;
+    }
+
+    final void repair(int[] changedX, int[] changedY) {
+        vGraph.losExtents.updateRows(changedY);
+        findFreeSlots();
+
+        updateNodes(changedX, changedY);
+        ArrayList<int[]> addedEdges = new ArrayList<>();
+        HashMap<Integer, int[]> removedEdges = new HashMap<>();
+        rescanNodes(changedX, changedY, addedEdges, removedEdges);
+        updateAdjacency(addedEdges, removedEdges);
+
+        // The old level-W edges and skip-edges are still in the CSR arrays, and are read until the arrays are written.
+        updateEdgeLevels();
+        updateLevelWEdges();
+        updateSkipEdges();
+        writeAdjacency();
+
+        for (int v : removedNodes) {
+            vGraph.freeNodes = push(vGraph.freeNodes, vGraph.nFreeNodes++, v);
+        }
+    }
+
+    /**
+     * Finds the slots of the removed nodes and edges, if they are not known yet (e.g. for a graph loaded from a file).
+     */
+    private final void findFreeSlots() {
+        if (vGraph.freeNodes != null) return;
+        vGraph.freeNodes = new int[0];
+        vGraph.freeEdges = new int[0];
+        vGraph.nFreeNodes = 0;
+        vGraph.nFreeEdges = 0;
+
+        for (int v=vGraph.size()-1;v>=0;--v) {
+            if (!isNode(v)) vGraph.freeNodes = push(vGraph.freeNodes, vGraph.nFreeNodes++, v);
+        }
+        boolean[] isUsed = new boolean[vGraph.nEdges];
+        int nEntries = vGraph.outgoingEdgeOffsets[vGraph.maxSize()];
+        for (int k=0;k<nEntries;++k) {
+            isUsed[vGraph.outgoingEdgeIndexes.get(k)] = true;
+        }
+        for (int e=vGraph.nEdges-1;e>=0;--e) {
+            if (!isUsed[e]) vGraph.freeEdges = push(vGraph.freeEdges, vGraph.nFreeEdges++, e);
+        }
+    }
+
+    private static final int[] push(int[] stack, int size, int value) {
+        if (size >= stack.length) stack = Arrays.copyOf(stack, Math.max(11, stack.length*2));
+        stack[size] = value;
+        return stack;
+    }
+
+    private final int pointIndex(int v) {
+        return vGraph.yPositions[v]*sizeXPlusOne + vGraph.xPositions[v];
+    }
+
+    private final boolean isNode(int v) {
+        return vGraph.nodeIndex[pointIndex(v)] == v;
+    }
+
+
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+    ///       NODES AND EDGES       ///
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+
+    /**
+     * Adds and removes the nodes at the corners of the changed tiles.
+     */
+    private final void updateNodes(int[] changedX, int[] changedY) {
+        int[] nodeIndex = vGraph.nodeIndex;
+        ArrayList<Integer> newPoints = new ArrayList<>();
+        for (int t=0;t<changedX.length;++t) {
+            for (int y=changedY[t];y<=changedY[t]+1;++y) {
+                for (int x=changedX[t];x<=changedX[t]+1;++x) {
+                    int p = y*sizeXPlusOne + x;
+                    boolean isCorner = graph.isOuterCorner(x, y);
+                    if (isCorner && nodeIndex[p] == -1) {
+                        nodeIndex[p] = Integer.MIN_VALUE; // A slot is assigned below.
+                        newPoints.add(p);
+                    } else if (!isCorner && nodeIndex[p] >= 0) {
+                        removedNodes.add(nodeIndex[p]);
+                        nodeIndex[p] = -1;
+                    }
+                }
+            }
+        }
+
+        if (vGraph.nFreeNodes < newPoints.size()) growNodes(newPoints.size() - vGraph.nFreeNodes);
+        for (int p : newPoints) {
+            int v = vGraph.freeNodes[--vGraph.nFreeNodes];
+            vGraph.xPositions[v] = p % sizeXPlusOne;
+            vGraph.yPositions[v] = p / sizeXPlusOne;
+            nodeIndex[p] = v;
+            newNodes.add(v);
+        }
+
+        for (int t=0;t<changedX.length;++t) {
+            for (int y=changedY[t];y<=changedY[t]+1;++y) {
+                for (int x=changedX[t];x<=changedX[t]+1;++x) {
+                    int v = nodeIndex[y*sizeXPlusOne + x];
+                    if (v != -1) cornerNodes.add(v);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds at least nSlots free node slots at the end. The slots for the start and goal of a query move up.
+     */
+    private final void growNodes(int nSlots) {
+        int oldSize = vGraph.size();
+        int newSize = oldSize + Math.max(nSlots, oldSize/64);
+        vGraph.xPositions = Arrays.copyOf(vGraph.xPositions, newSize);
+        vGraph.yPositions = Arrays.copyOf(vGraph.yPositions, newSize);
+        vGraph.scanBounds = Arrays.copyOf(vGraph.scanBounds, newSize*4);
+        vGraph.outgoingEdgeOffsets = growOffsets(vGraph.outgoingEdgeOffsets, newSize+3);
+        vGraph.levelWEdgeOffsets = growOffsets(vGraph.levelWEdgeOffsets, newSize+3);
+        vGraph.skipEdgeOffsets = growOffsets(vGraph.skipEdgeOffsets, newSize+3);
+        for (int v=newSize-1;v>=oldSize;--v) {
+            vGraph.freeNodes = push(vGraph.freeNodes, vGraph.nFreeNodes++, v);
+        }
+        vGraph.setSizes(newSize, newSize+2);
+    }
+
+    private static final int[] growOffsets(int[] offsets, int length) {
+        int[] newOffsets = Arrays.copyOf(offsets, length);
+        Arrays.fill(newOffsets, offsets.length, length, offsets[offsets.length-1]);
+        return newOffsets;
+    }
+
+    /**
+     * Adds at least nSlots free edge slots at the end.
+     */
+    private final void growEdges(int nSlots) {
+        int oldSize = vGraph.nEdges;
+        int newSize = oldSize + Math.max(nSlots, oldSize/64);
+        vGraph.edgeWeights = FloatBuffer.wrap(Arrays.copyOf(vGraph.edgeWeights.array(), newSize));
+        vGraph.edgeLevels = IntBuffer.wrap(Arrays.copyOf(vGraph.edgeLevels.array(), newSize));
+        for (int e=newSize-1;e>=oldSize;--e) {
+            vGraph.freeEdges = push(vGraph.freeEdges, vGraph.nFreeEdges++, e);
+        }
+        vGraph.nEdges = newSize;
+    }
+
+    /**
+     * A scan only reads the tiles touching the points within one tile of its bounding box.
+     * @return true iff one of the tiles could change the result of the visibility scan of node v.
+     */
+    private final boolean scanReadsAnyTile(int v, int[] tilesX, int[] tilesY) {
+        int[] scanBounds = vGraph.scanBounds;
+        int minX = scanBounds[v*4] - 2;
+        int minY = scanBounds[v*4+1] - 2;
+        int maxX = scanBounds[v*4+2] + 1;
+        int maxY = scanBounds[v*4+3] + 1;
+        for (int t=0;t<tilesX.length;++t) {
+            int x = tilesX[t];
+            int y = tilesY[t];
+            if (minX <= x && x <= maxX && minY <= y && y <= maxY) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Scans the new nodes and the nodes whose scan read a point near a changed tile, and compares the edges they find to
+     * nodes later by row with the edges they had. A node that is not scanned would find the same edges.<br>
+     * All the edges of the removed nodes are removed.
+     * @param addedEdges filled with {v, w, Float.floatToIntBits(weight)}.
+     * @param removedEdges filled with edgeIndex -> {v, w}.
+     */
+    private final void rescanNodes(int[] changedX, int[] changedY, ArrayList<int[]> addedEdges, HashMap<Integer, int[]> removedEdges) {
+        int[] offsets = vGraph.outgoingEdgeOffsets;
+        int[] outgoingEdges = vGraph.outgoingEdges.array();
+        int[] outgoingEdgeIndexes = vGraph.outgoingEdgeIndexes.array();
+        for (int v : removedNodes) {
+            for (int k=offsets[v];k<offsets[v+1];++k) {
+                removedEdges.put(outgoingEdgeIndexes[k], new int[] {v, outgoingEdges[k]});
+            }
+        }
+
+        HashSet<Integer> newNodeSet = new HashSet<>(newNodes);
+        LineOfSightScannerDouble losScanner = new LineOfSightScannerDouble(vGraph.losExtents);
+        HashMap<Integer, Integer> previousEdges = new HashMap<>(); // target -> edgeIndex
+        int nRescannedNodes = 0;
+        for (int v=0;v<vGraph.size();++v) {
+            if (!isNode(v)) continue;
+            if (!newNodeSet.contains(v) && !scanReadsAnyTile(v, changedX, changedY)) continue;
+            ++nRescannedNodes;
+
+            int x = vGraph.xPositions[v];
+            int y = vGraph.yPositions[v];
+            int p = y*sizeXPlusOne + x;
+            previousEdges.clear();
+            for (int k=offsets[v];k<offsets[v+1];++k) {
+                int w = outgoingEdges[k];
+                if (pointIndex(w) > p) previousEdges.put(w, outgoingEdgeIndexes[k]);
+            }
+
+            losScanner.computeAllVisibleTwoWayTautSuccessors(x, y);
+            int[] scanBounds = vGraph.scanBounds;
+            scanBounds[v*4] = losScanner.scanMinX;
+            scanBounds[v*4+1] = losScanner.scanMinY;
+            scanBounds[v*4+2] = losScanner.scanMaxX;
+            scanBounds[v*4+3] = losScanner.scanMaxY;
+            int nSuccessors = losScanner.nSuccessors;
+            for (int succ=0;succ<nSuccessors;++succ) {
+                int toX = losScanner.successorsX[succ];
+                int toY = losScanner.successorsY[succ];
+                int toP = toY*sizeXPlusOne + toX;
+                if (toP <= p) continue;
+
+                int w = vGraph.nodeIndex[toP];
+                if (previousEdges.remove(w) != null) continue;
+                addedEdges.add(new int[] {v, w, Float.floatToIntBits(graph.distance(x, y, toX, toY))});
+            }
+            for (int w : previousEdges.keySet()) {
+                removedEdges.put(previousEdges.get(w), new int[] {v, w});
+            }
+        }
+        vGraph.nRescannedNodes = nRescannedNodes;
+    }
+
+    /**
+     * Computes the new adjacency of the ends of the added and removed edges, and gives the added edges their indexes.
+     * The edges a node keeps stay in the same order, followed by its new edges.
+     */
+    private final void updateAdjacency(ArrayList<int[]> addedEdges, HashMap<Integer, int[]> removedEdges) {
+        int[] offsets = vGraph.outgoingEdgeOffsets;
+        int[] outgoingEdges = vGraph.outgoingEdges.array();
+        int[] outgoingEdgeIndexes = vGraph.outgoingEdgeIndexes.array();
+
+        HashMap<Integer, Integer> degrees = new HashMap<>();
+        for (int[] ends : removedEdges.values()) {
+            degrees.merge(ends[0], -1, Integer::sum);
+            degrees.merge(ends[1], -1, Integer::sum);
+        }
+        for (int[] edge : addedEdges) {
+            degrees.merge(edge[0], 1, Integer::sum);
+            degrees.merge(edge[1], 1, Integer::sum);
+        }
+
+        HashMap<Integer, Integer> sizes = new HashMap<>();
+        for (int v : degrees.keySet()) {
+            int degree = offsets[v+1] - offsets[v] + degrees.get(v);
+            int[] targets = new int[degree];
+            int[] edgeIndexes = new int[degree];
+            int size = 0;
+            for (int k=offsets[v];k<offsets[v+1];++k) {
+                if (removedEdges.containsKey(outgoingEdgeIndexes[k])) continue;
+                targets[size] = outgoingEdges[k];
+                edgeIndexes[size] = outgoingEdgeIndexes[k];
+                ++size;
+            }
+            sizes.put(v, size);
+            changedTargets.put(v, targets);
+            changedEdgeIndexes.put(v, edgeIndexes);
+        }
+
+        for (int e : removedEdges.keySet()) {
+            vGraph.freeEdges = push(vGraph.freeEdges, vGraph.nFreeEdges++, e);
+        }
+        if (vGraph.nFreeEdges < addedEdges.size()) growEdges(addedEdges.size() - vGraph.nFreeEdges);
+        for (int[] edge : addedEdges) {
+            int e = vGraph.freeEdges[--vGraph.nFreeEdges];
+            vGraph.edgeWeights.put(e, Float.intBitsToFloat(edge[2]));
+            vGraph.edgeLevels.put(e, LEVEL_W);
+            for (int end=0;end<2;++end) {
+                int v = edge[end];
+                int size = sizes.get(v);
+                changedTargets.get(v)[size] = edge[1-end];
+                changedEdgeIndexes.get(v)[size] = e;
+                sizes.put(v, size+1);
+            }
+        }
+    }
+
+    // The edges of v are at [firstEdge(v), endEdge(v)) of targets(v) and edgeIndexes(v).
+
+    private final int[] targets(int v) {
+        int[] targets = changedTargets.get(v);
+        return targets != null ? targets : vGraph.outgoingEdges.array();
+    }
+
+    private final int[] edgeIndexes(int v) {
+        int[] edgeIndexes = changedEdgeIndexes.get(v);
+        return edgeIndexes != null ? edgeIndexes : vGraph.outgoingEdgeIndexes.array();
+    }
+
+    private final int firstEdge(int v) {
+        return changedTargets.containsKey(v) ? 0 : vGraph.outgoingEdgeOffsets[v];
+    }
+
+    private final int endEdge(int v) {
+        int[] targets = changedTargets.get(v);
+        return targets != null ? targets.length : vGraph.outgoingEdgeOffsets[v+1];
+    }
+
+
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+    ///         EDGE LEVELS         ///
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+
+    /**
+     * Recomputes the levels of the edges at the nodes whose edges changed, and at the corners of the changed tiles
+     * (where tautness may have changed), then of the edges whose level depends on them.<br>
+     * Phase 1 raises to W every edge whose level is lower than its edges support, and queues the edges taut with it.
+     * Afterwards no edge has a level lower than the solution, so phase 2 can lower the edges, Dijkstra-like, in
+     * increasing order of level.
+     */
+    private final void updateEdgeLevels() {
+        int[] edgeLevels = vGraph.edgeLevels.array();
+        ArrayDeque<int[]> queue = new ArrayDeque<>(); // {u, v, edgeIndex}
+        HashSet<Integer> queued = new HashSet<>();
+        HashSet<Integer> seedNodes = new HashSet<>(changedTargets.keySet());
+        seedNodes.addAll(cornerNodes);
+        for (int u : seedNodes) {
+            int[] targets = targets(u);
+            int[] edgeIndexes = edgeIndexes(u);
+            for (int k=firstEdge(u), end=endEdge(u);k<end;++k) {
+                if (queued.add(edgeIndexes[k])) queue.add(new int[] {u, targets[k], edgeIndexes[k]});
+            }
+        }
+
+        // Phase 1: raise.
+        HashSet<Integer> visited = new HashSet<>();
+        ArrayList<int[]> candidates = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            int[] edge = queue.poll();
+            int e = edge[2];
+            queued.remove(e);
+            if (visited.add(e)) candidates.add(edge);
+            if (edgeLevels[e] == LEVEL_W || computeLevel(edge[0], edge[1]) <= edgeLevels[e]) continue;
+
+            setLevel(edge, LEVEL_W);
+            for (int end=0;end<2;++end) {
+                int at = edge[end];
+                int from = edge[1-end];
+                int[] targets = targets(at);
+                int[] edgeIndexes = edgeIndexes(at);
+                for (int k=firstEdge(at), last=endEdge(at);k<last;++k) {
+                    int f = edgeIndexes[k];
+                    if (edgeLevels[f] == LEVEL_W || !isTaut(from, at, targets[k])) continue;
+                    if (queued.add(f)) queue.add(new int[] {at, targets[k], f});
+                }
+            }
+        }
+
+        // Phase 2: lower.
+        PriorityQueue<int[]> pq = new PriorityQueue<>((a, b) -> Integer.compare(a[3], b[3])); // {u, v, edgeIndex, level}
+        for (int[] edge : candidates) {
+            offerIfLower(pq, edge[0], edge[1], edge[2]);
+        }
+        while (!pq.isEmpty()) {
+            int[] entry = pq.poll();
+            if (entry[3] >= edgeLevels[entry[2]]) continue;
+
+            setLevel(entry, entry[3]);
+            for (int end=0;end<2;++end) {
+                int at = entry[end];
+                int from = entry[1-end];
+                int[] targets = targets(at);
+                int[] edgeIndexes = edgeIndexes(at);
+                for (int k=firstEdge(at), last=endEdge(at);k<last;++k) {
+                    if (!isTaut(from, at, targets[k])) continue;
+                    offerIfLower(pq, at, targets[k], edgeIndexes[k]);
+                }
+            }
+        }
+    }
+
+    private final void offerIfLower(PriorityQueue<int[]> pq, int u, int v, int e) {
+        int level = computeLevel(u, v);
+        if (level < vGraph.edgeLevels.get(e)) pq.add(new int[] {u, v, e, level});
+    }
+
+    private final void setLevel(int[] edge, int level) {
+        int e = edge[2];
+        if (!changedLevels.containsKey(e)) changedLevels.put(e, new int[] {edge[0], edge[1], e, vGraph.edgeLevels.get(e)});
+        vGraph.edgeLevels.put(e, level);
+    }
+
+    private final boolean isTaut(int from, int at, int to) {
+        int[] xPositions = vGraph.xPositions;
+        int[] yPositions = vGraph.yPositions;
+        return graph.isTaut(xPositions[from], yPositions[from], xPositions[at], yPositions[at], xPositions[to], yPositions[to]);
+    }
+
+    /**
+     * @return the level of the edge (u, v) given the current levels of the edges around it.
+     */
+    private final int computeLevel(int u, int v) {
+        int level = Math.min(sideLevel(v, u), sideLevel(u, v));
+        return level >= levelLimit ? LEVEL_W : level;
+    }
+
+    /**
+     * @return 1 + the highest level of the edges at node 'at' that are taut with (from, at), or LEVEL_W if one of them is level W.
+     */
+    private final int sideLevel(int from, int at) {
+        int[] edgeLevels = vGraph.edgeLevels.array();
+        int[] targets = targets(at);
+        int[] edgeIndexes = edgeIndexes(at);
+        int highest = 0;
+        for (int k=firstEdge(at), end=endEdge(at);k<end;++k) {
+            if (!isTaut(from, at, targets[k])) continue;
+            int level = edgeLevels[edgeIndexes[k]];
+            if (level == LEVEL_W) return LEVEL_W;
+            if (level > highest) highest = level;
+        }
+        return highest + 1;
+    }
+
+
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+    ///   LEVEL-W AND SKIP-EDGES    ///
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+
+    /**
+     * Finds the level-W edges of the nodes whose edges changed, and of the ends of edges that became or stopped being level W.
+     */
+    private final void updateLevelWEdges() {
+        int[] edgeLevels = vGraph.edgeLevels.array();
+        HashSet<Integer> nodes = new HashSet<>(changedTargets.keySet());
+        for (int[] change : changedLevels.values()) {
+            if ((change[3] == LEVEL_W) == (edgeLevels[change[2]] == LEVEL_W)) continue;
+            nodes.add(change[0]);
+            nodes.add(change[1]);
+        }
+
+        for (int v : nodes) {
+            int[] edgeIndexes = edgeIndexes(v);
+            int first = firstEdge(v);
+            int end = endEdge(v);
+            int count = 0;
+            for (int k=first;k<end;++k) {
+                if (edgeLevels[edgeIndexes[k]] == LEVEL_W) ++count;
+            }
+            int[] levelWEdges = new int[count];
+            count = 0;
+            for (int k=first;k<end;++k) {
+                if (edgeLevels[edgeIndexes[k]] == LEVEL_W) levelWEdges[count++] = k - first;
+            }
+            changedLevelWEdges.put(v, levelWEdges);
+        }
+    }
+
+    // The k-th level-W edge of v, before (previous == true) or after the repair.
+
+    private final int levelWDegree(int v, boolean previous) {
+        int[] levelWEdges = previous ? null : changedLevelWEdges.get(v);
+        if (levelWEdges != null) return levelWEdges.length;
+        return vGraph.levelWEdgeOffsets[v+1] - vGraph.levelWEdgeOffsets[v];
+    }
+
+    private final int levelWTarget(int v, int k, boolean previous) {
+        int[] levelWEdges = previous ? null : changedLevelWEdges.get(v);
+        if (levelWEdges != null) return targets(v)[firstEdge(v) + levelWEdges[k]];
+        return vGraph.outgoingEdges.get(vGraph.levelWEdgeOutgoingIndexes.get(vGraph.levelWEdgeOffsets[v] + k));
+    }
+
+    private final int levelWEdgeIndex(int v, int k) {
+        int[] levelWEdges = changedLevelWEdges.get(v);
+        if (levelWEdges != null) return edgeIndexes(v)[firstEdge(v) + levelWEdges[k]];
+        return vGraph.outgoingEdgeIndexes.get(vGraph.levelWEdgeOutgoingIndexes.get(vGraph.levelWEdgeOffsets[v] + k));
+    }
+
+    private final boolean isSkipVertex(int v, boolean previous) {
+        int degree = levelWDegree(v, previous);
+        return degree != 0 && degree != 2;
+    }
+
+    /**
+     * Adds the skip vertex v, or if v is on a chain of level-W edges, the skip vertices at the ends of the chain.
+     */
+    private final void addChainEnds(int v, boolean previous, HashSet<Integer> skipVertices) {
+        int degree = levelWDegree(v, previous);
+        if (degree == 0) return;
+        if (degree != 2) {
+            skipVertices.add(v);
+            return;
+        }
+        for (int k=0;k<2;++k) {
+            int prev = v;
+            int current = levelWTarget(v, k, previous);
+            while (current != v && levelWDegree(current, previous) == 2) {
+                int next = levelWTarget(current, 0, previous);
+                if (next == prev) next = levelWTarget(current, 1, previous);
+                prev = current;
+                current = next;
+            }
+            // If the chain is a cycle without skip vertices, it has no skip-edges.
+            if (current != v) skipVertices.add(current);
+        }
+    }
+
+    /**
+     * Recomputes the skip-edges of the skip vertices at the ends of the chains through the nodes whose level-W edges
+     * changed, before and after the repair. Every other skip-edge follows a chain that has not changed.
+     */
+    private final void updateSkipEdges() {
+        HashSet<Integer> skipVertices = new HashSet<>();
+        for (int v : changedLevelWEdges.keySet()) {
+            addChainEnds(v, true, skipVertices);
+            addChainEnds(v, false, skipVertices);
+        }
+
+        float[] edgeWeights = vGraph.edgeWeights.array();
+        for (int v : skipVertices) {
+            SkipEdges skipEdges = new SkipEdges(isSkipVertex(v, false) ? levelWDegree(v, false) : 0);
+            for (int j=0;j<skipEdges.size;++j) {
+                // Same as connectSkipEdgesAndGroupLevelWEdges().
+                int previous = v;
+                int current = levelWTarget(v, j, false);
+                int firstEdgeIndex = levelWEdgeIndex(v, j);
+                skipEdges.nextNodes[j] = current;
+                skipEdges.nextNodeEdgeIndexes[j] = firstEdgeIndex;
+                float weight = edgeWeights[firstEdgeIndex];
+                while (!isSkipVertex(current, false)) {
+                    int k = levelWTarget(current, 0, false) == previous ? 1 : 0;
+                    weight += edgeWeights[levelWEdgeIndex(current, k)];
+                    previous = current;
+                    current = levelWTarget(current, k, false);
+                }
+                skipEdges.destinations[j] = current;
+                skipEdges.weights[j] = weight;
+            }
+            skipEdges.pruneParallelSkipEdges();
+            changedSkipEdges.put(v, skipEdges);
+        }
+    }
+
+    private static final class SkipEdges {
+        int size;
+        final int[] destinations;
+        final int[] nextNodes;
+        final int[] nextNodeEdgeIndexes;
+        final float[] weights;
+
+        SkipEdges(int size) {
+            this.size = size;
+            destinations = new int[size];
+            nextNodes = new int[size];
+            nextNodeEdgeIndexes = new int[size];
+            weights = new float[size];
+        }
+
+        /**
+         * Same as EdgeNLevelSparseVisibilityGraph.pruneParallelSkipEdges(), for one vertex.
+         */
+        final void pruneParallelSkipEdges() {
+            HashMap<Integer, Integer> indexOfDestination = new HashMap<>();
+            int[] lowestCostEdgeIndex = new int[size];
+            float[] lowestCost = new float[size];
+            int nUsed = 0;
+            int degree = size;
+            for (int j=0;j<degree;++j) {
+                Integer index = indexOfDestination.get(destinations[j]);
+                float weight = weights[j];
+                if (index == null) {
+                    indexOfDestination.put(destinations[j], nUsed);
+                    lowestCostEdgeIndex[nUsed] = j;
+                    lowestCost[nUsed] = weight;
+                    ++nUsed;
+                } else if (weight < lowestCost[index]) {
+                    swap(lowestCostEdgeIndex[index], j);
+                    swap(j, degree-1);
+                    --j; --degree;
+                    lowestCost[index] = weight;
+                } else {
+                    swap(j, degree-1);
+                    --j; --degree;
+                }
+            }
+            size = degree;
+        }
+
+        private final void swap(int i1, int i2) {
+            int temp = destinations[i1]; destinations[i1] = destinations[i2]; destinations[i2] = temp;
+            temp = nextNodes[i1]; nextNodes[i1] = nextNodes[i2]; nextNodes[i2] = temp;
+            temp = nextNodeEdgeIndexes[i1]; nextNodeEdgeIndexes[i1] = nextNodeEdgeIndexes[i2]; nextNodeEdgeIndexes[i2] = temp;
+            float tempf = weights[i1]; weights[i1] = weights[i2]; weights[i2] = tempf;
+        }
+    }
+
+
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+    ///       ADJACENCY ARRAYS      ///
+    /// \\\ /// \\\ /// \\\ /// \\\ ///
+
+    /**
+     * Writes the new ranges of the changed nodes into the CSR arrays of the graph.
+     */
+    private final void writeAdjacency() {
+        // Edges.
+        int[] nodes = sortedKeys(changedTargets);
+        int[] lengths = new int[nodes.length];
+        for (int i=0;i<nodes.length;++i) lengths[i] = changedTargets.get(nodes[i]).length;
+        int[][] intArrays = {vGraph.outgoingEdges.array(), vGraph.outgoingEdgeIndexes.array()};
+        int[] edgeShifts = resizeRanges(vGraph.outgoingEdgeOffsets, nodes, lengths, intArrays, new float[0][]);
+        vGraph.outgoingEdges = IntBuffer.wrap(intArrays[0]);
+        vGraph.outgoingEdgeIndexes = IntBuffer.wrap(intArrays[1]);
+        for (int v : nodes) {
+            int offset = vGraph.outgoingEdgeOffsets[v];
+            int[] targets = changedTargets.get(v);
+            System.arraycopy(targets, 0, intArrays[0], offset, targets.length);
+            System.arraycopy(changedEdgeIndexes.get(v), 0, intArrays[1], offset, targets.length);
+        }
+
+        // Level-W edges. These are indexes into the edge arrays, so the ones of the other nodes move with their edges.
+        int[] levelWNodes = sortedKeys(changedLevelWEdges);
+        lengths = new int[levelWNodes.length];
+        for (int i=0;i<levelWNodes.length;++i) lengths[i] = changedLevelWEdges.get(levelWNodes[i]).length;
+        intArrays = new int[][] {vGraph.levelWEdgeOutgoingIndexes.array()};
+        resizeRanges(vGraph.levelWEdgeOffsets, levelWNodes, lengths, intArrays, new float[0][]);
+        int[] levelWEdgeOutgoingIndexes = intArrays[0];
+        vGraph.levelWEdgeOutgoingIndexes = IntBuffer.wrap(levelWEdgeOutgoingIndexes);
+        int[] levelWEdgeOffsets = vGraph.levelWEdgeOffsets;
+        for (int v : levelWNodes) {
+            int[] levelWEdges = changedLevelWEdges.get(v);
+            int offset = levelWEdgeOffsets[v];
+            int edgeOffset = vGraph.outgoingEdgeOffsets[v];
+            for (int k=0;k<levelWEdges.length;++k) {
+                levelWEdgeOutgoingIndexes[offset+k] = edgeOffset + levelWEdges[k];
+            }
+        }
+        if (nodes.length > 0) {
+            int shifted = 0;  // Number of changed nodes before v.
+            int rewritten = 0; // Number of levelWNodes before v.
+            for (int v=nodes[0]+1;v<vGraph.size();++v) {
+                while (shifted < nodes.length && nodes[shifted] < v) ++shifted;
+                while (rewritten < levelWNodes.length && levelWNodes[rewritten] < v) ++rewritten;
+                int shift = edgeShifts[shifted-1];
+                if (shift == 0 || (rewritten < levelWNodes.length && levelWNodes[rewritten] == v)) continue;
+                for (int k=levelWEdgeOffsets[v];k<levelWEdgeOffsets[v+1];++k) {
+                    levelWEdgeOutgoingIndexes[k] += shift;
+                }
+            }
+        }
+
+        // Skip-edges.
+        int[] skipNodes = sortedKeys(changedSkipEdges);
+        lengths = new int[skipNodes.length];
+        for (int i=0;i<skipNodes.length;++i) lengths[i] = changedSkipEdges.get(skipNodes[i]).size;
+        intArrays = new int[][] {vGraph.outgoingSkipEdges.array(), vGraph.outgoingSkipEdgeNextNodes.array(),
+                vGraph.outgoingSkipEdgeNextNodeEdgeIndexes.array()};
+        float[][] floatArrays = {vGraph.outgoingSkipEdgeWeights.array()};
+        resizeRanges(vGraph.skipEdgeOffsets, skipNodes, lengths, intArrays, floatArrays);
+        vGraph.outgoingSkipEdges = IntBuffer.wrap(intArrays[0]);
+        vGraph.outgoingSkipEdgeNextNodes = IntBuffer.wrap(intArrays[1]);
+        vGraph.outgoingSkipEdgeNextNodeEdgeIndexes = IntBuffer.wrap(intArrays[2]);
+        vGraph.outgoingSkipEdgeWeights = FloatBuffer.wrap(floatArrays[0]);
+        for (int v : skipNodes) {
+            SkipEdges skipEdges = changedSkipEdges.get(v);
+            int offset = vGraph.skipEdgeOffsets[v];
+            System.arraycopy(skipEdges.destinations, 0, intArrays[0], offset, skipEdges.size);
+            System.arraycopy(skipEdges.nextNodes, 0, intArrays[1], offset, skipEdges.size);
+            System.arraycopy(skipEdges.nextNodeEdgeIndexes, 0, intArrays[2], offset, skipEdges.size);
+            System.arraycopy(skipEdges.weights, 0, floatArrays[0], offset, skipEdges.size);
+        }
+    }
+
+    private static final int[] sortedKeys(HashMap<Integer, ?> map) {
+        int[] keys = new int[map.size()];
+        int i = 0;
+        for (int key : map.keySet()) keys[i++] = key;
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Changes the lengths of the ranges of the given nodes in CSR arrays that share the offsets, and updates the offsets.
+     * The ranges of the other nodes are moved, in place if the arrays are large enough. Otherwise the arrays are
+     * reallocated with some room to spare, and replace the old arrays in intArrays and floatArrays.<br>
+     * The contents of the resized ranges are left for the caller to write.
+     * @param nodes the resized nodes, in increasing order.
+     * @return shifts[i]: how far the ranges after nodes[i] (up to the next resized node) have moved.
+     */
+    private static final int[] resizeRanges(int[] offsets, int[] nodes, int[] lengths, int[][] intArrays, float[][] floatArrays) {
+        int[] shifts = new int[nodes.length];
+        if (nodes.length == 0) return shifts;
+        int shift = 0;
+        for (int i=0;i<nodes.length;++i) {
+            shift += lengths[i] - (offsets[nodes[i]+1] - offsets[nodes[i]]);
+            shifts[i] = shift;
+        }
+        int newTotal = offsets[offsets.length-1] + shift;
+        int capacity = newTotal + newTotal/16;
+
+        for (int i=0;i<intArrays.length;++i) {
+            int[] array = intArrays[i];
+            int[] target = array.length >= newTotal ? array : new int[capacity];
+            moveRanges(array, target, offsets, nodes, shifts);
+            intArrays[i] = target;
+        }
+        for (int i=0;i<floatArrays.length;++i) {
+            float[] array = floatArrays[i];
+            float[] target = array.length >= newTotal ? array : new float[capacity];
+            moveRanges(array, target, offsets, nodes, shifts);
+            floatArrays[i] = target;
+        }
+
+        int resized = 0;
+        for (int v=nodes[0]+1;v<offsets.length;++v) {
+            while (resized < nodes.length && nodes[resized] < v) ++resized;
+            offsets[v] += shifts[resized-1];
+        }
+        return shifts;
+    }
+
+    /**
+     * Moves the ranges between the resized nodes. In place, the ranges moving left are moved first, from left to right,
+     * then the ranges moving right, from right to left, so no range is overwritten before it is moved.
+     */
+    private static final void moveRanges(Object array, Object target, int[] offsets, int[] nodes, int[] shifts) {
+        int total = offsets[offsets.length-1];
+        if (array != target) System.arraycopy(array, 0, target, 0, offsets[nodes[0]]);
+        for (int i=0;i<nodes.length;++i) {
+            if (array != target || shifts[i] < 0) moveRange(array, target, offsets, nodes, shifts, i, total);
+        }
+        if (array != target) return;
+        for (int i=nodes.length-1;i>=0;--i) {
+            if (shifts[i] > 0) moveRange(array, target, offsets, nodes, shifts, i, total);
+        }
+    }
+
+    private static final void moveRange(Object array, Object target, int[] offsets, int[] nodes, int[] shifts, int i, int total) {
+        int start = offsets[nodes[i]+1];
+        int end = i+1 < nodes.length ? offsets[nodes[i+1]] : total;
+        System.arraycopy(array, start, target, start + shifts[i], end - start);
+    }
+}
@@ -0,0 +1,210 @@
+package algorithms.sparsevgs;
+
+import static org.junit.Assert.*;
+
+import grid.GridGraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+import algorithms.datatypes.PreprocessedGraphRegistry;
+import main.graphgeneration.DefaultGenerator;
+
+public class EdgeNLevelSparseVisibilityGraphTest {
+
+    private static EdgeNLevelSparseVisibilityGraph build(GridGraph graph, int nThreads) {
+        int oldThreads = EdgeNLevelSparseVisibilityGraph.CONSTRUCTION_THREADS;
+        try {
+            EdgeNLevelSparseVisibilityGraph.CONSTRUCTION_THREADS = nThreads;
+            PreprocessedGraphRegistry.clear();
+            return EdgeNLevelSparseVisibilityGraph.initialiseNew(graph, Integer.MAX_VALUE);
+        } finally {
+            EdgeNLevelSparseVisibilityGraph.CONSTRUCTION_THREADS = oldThreads;
+            PreprocessedGraphRegistry.clear();
+        }
+    }
+
+    private static void assertSameGraph(EdgeNLevelSparseVisibilityGraph expected, EdgeNLevelSparseVisibilityGraph actual) {
+        assertEquals(expected.maxSize(), actual.maxSize());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.nEdges, actual.nEdges);
+        assertArrayEquals(expected.nodeIndex, actual.nodeIndex);
+        assertArrayEquals(expected.xPositions, actual.xPositions);
+        assertArrayEquals(expected.yPositions, actual.yPositions);
+        assertArrayEquals(expected.outgoingEdgeOffsets, actual.outgoingEdgeOffsets);
+        assertEquals(expected.outgoingEdges, actual.outgoingEdges);
+        assertEquals(expected.outgoingEdgeIndexes, actual.outgoingEdgeIndexes);
+        assertArrayEquals(expected.levelWEdgeOffsets, actual.levelWEdgeOffsets);
+        assertEquals(expected.levelWEdgeOutgoingIndexes, actual.levelWEdgeOutgoingIndexes);
+        assertArrayEquals(expected.skipEdgeOffsets, actual.skipEdgeOffsets);
+        assertEquals(expected.outgoingSkipEdges, actual.outgoingSkipEdges);
+        assertEquals(expected.outgoingSkipEdgeNextNodes, actual.outgoingSkipEdgeNextNodes);
+        assertEquals(expected.outgoingSkipEdgeNextNodeEdgeIndexes, actual.outgoingSkipEdgeNextNodeEdgeIndexes);
+        assertEquals(expected.outgoingSkipEdgeWeights, actual.outgoingSkipEdgeWeights);
+        assertEquals(expected.edgeLevels, actual.edgeLevels);
+        assertEquals(expected.edgeWeights, actual.edgeWeights);
+    }
+
+    @Test
+    public void testParallelConstructionMatchesSequential() {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(3, 200, 150, 10);
+        assertSameGraph(build(graph, 1), build(graph, 4));
+    }
+
+    @Test
+    public void testGraphFileRoundTrip() throws IOException {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(5, 120, 90, 8);
+        EdgeNLevelSparseVisibilityGraph built = build(graph, 1);
+
+        File directory = Files.createTempDirectory("enlsvg").toFile();
+        directory.deleteOnExit();
+        File file = new File(directory, "graph.bin");
+        file.deleteOnExit();
+        EdgeNLevelSparseVisibilityGraphFile.write(built, file);
+        EdgeNLevelSparseVisibilityGraphFile.write(built, file); // Replaces the file.
+        assertArrayEquals(new String[] {"graph.bin"}, directory.list());
+        EdgeNLevelSparseVisibilityGraph loaded = EdgeNLevelSparseVisibilityGraphFile.read(graph, Integer.MAX_VALUE, file, true);
+        assertNotNull(loaded);
+        assertSameGraph(built, loaded);
+        // The edge arrays are read from the file in place, not copied to the heap.
+        assertTrue(loaded.outgoingEdges.isDirect());
+        assertTrue(loaded.edgeLevels.isDirect());
+        assertTrue(loaded.edgeWeights.isDirect());
+        assertTrue(loaded.estimatedFootprintBytes() < built.estimatedFootprintBytes()/2);
+
+        // The file is not used for another level limit or another grid.
+        assertNull(EdgeNLevelSparseVisibilityGraphFile.read(graph, 3, file, true));
+        GridGraph other = DefaultGenerator.generateSeededGraphOnly(5, 120, 90, 8);
+        other.setBlocked(0, 0, !other.isBlocked(0, 0));
+        assertNull(EdgeNLevelSparseVisibilityGraphFile.read(other, Integer.MAX_VALUE, file, true));
+
+        // A corrupted body is rejected.
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            long position = out.length() - 5;
+            out.seek(position);
+            int value = out.read();
+            out.seek(position);
+            out.write(value ^ 1);
+        }
+        try {
+            EdgeNLevelSparseVisibilityGraphFile.read(graph, Integer.MAX_VALUE, file, true);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Corrupt"));
+        }
+    }
+
+    @Test
+    public void testQueriesOnLoadedGraph() throws IOException {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(9, 100, 100, 10);
+        File directory = Files.createTempDirectory("enlsvg").toFile();
+        directory.deleteOnExit();
+
+        File oldDirectory = EdgeNLevelSparseVisibilityGraph.GRAPH_FILE_DIRECTORY;
+        try {
+            EdgeNLevelSparseVisibilityGraph.GRAPH_FILE_DIRECTORY = directory;
+            PreprocessedGraphRegistry.clear();
+            float[] builtLengths = solveQueries(graph);
+            File file = new File(directory, EdgeNLevelSparseVisibilityGraphFile.fileName(graph, Integer.MAX_VALUE));
+            assertTrue(file.isFile());
+            file.deleteOnExit();
+
+            PreprocessedGraphRegistry.clear();
+            float[] loadedLengths = solveQueries(graph);
+            assertArrayEquals(builtLengths, loadedLengths, 0f);
+        } finally {
+            EdgeNLevelSparseVisibilityGraph.GRAPH_FILE_DIRECTORY = oldDirectory;
+            PreprocessedGraphRegistry.clear();
+        }
+    }
+
+    @Test
+    public void testRepairMatchesRebuild() {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(11, 150, 120, 12);
+        EdgeNLevelSparseVisibilityGraph vGraph = build(graph, 1);
+        Random rand = new Random(3);
+
+        // Each round toggles a small block of tiles, then repairs the graph.
+        for (int round=0;round<20;++round) {
+            int width = 1 + rand.nextInt(4);
+            int height = 1 + rand.nextInt(4);
+            int left = rand.nextInt(graph.sizeX - width);
+            int bottom = rand.nextInt(graph.sizeY - height);
+            int[] changedX = new int[width*height];
+            int[] changedY = new int[width*height];
+            int nChanged = 0;
+            for (int y=bottom;y<bottom+height;++y) {
+                for (int x=left;x<left+width;++x) {
+                    graph.setBlocked(x, y, !graph.isBlocked(x, y));
+                    changedX[nChanged] = x;
+                    changedY[nChanged] = y;
+                    ++nChanged;
+                }
+            }
+
+            vGraph.repair(changedX, changedY);
+            assertNull(vGraph.findDifferenceFromRebuild());
+            assertTrue(vGraph.nRescannedNodes < vGraph.size());
+        }
+    }
+
+    @Test
+    public void testRepairLoadedGraph() throws IOException {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(7, 100, 80, 12);
+        File file = File.createTempFile("enlsvg", ".bin");
+        file.deleteOnExit();
+        EdgeNLevelSparseVisibilityGraphFile.write(build(graph, 1), file);
+        EdgeNLevelSparseVisibilityGraph vGraph = EdgeNLevelSparseVisibilityGraphFile.read(graph, Integer.MAX_VALUE, file, false);
+
+        // The mapped edge arrays are read-only. The repair works on copies, and leaves the file as it was.
+        byte[] contents = Files.readAllBytes(file.toPath());
+        graph.setBlocked(30, 30, !graph.isBlocked(30, 30));
+        graph.setBlocked(31, 30, !graph.isBlocked(31, 30));
+        vGraph.repair(new int[]{30, 31}, new int[]{30, 30});
+        assertNull(vGraph.findDifferenceFromRebuild());
+        assertFalse(vGraph.outgoingEdges.isDirect());
+        assertArrayEquals(contents, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testUpdateTilesInRegistry() {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(13, 100, 100, 10);
+        try {
+            PreprocessedGraphRegistry.clear();
+            EdgeNLevelSparseVisibilityGraph before = EdgeNLevelSparseVisibilityGraph.initialiseNew(graph, Integer.MAX_VALUE);
+
+            graph.setBlocked(40, 40, !graph.isBlocked(40, 40));
+            graph.setBlocked(41, 40, !graph.isBlocked(41, 40));
+            EdgeNLevelSparseVisibilityGraph after = EdgeNLevelSparseVisibilityGraph.updateTiles(graph, Integer.MAX_VALUE,
+                    new int[]{40, 41}, new int[]{40, 40});
+            assertSame(before, after);
+            assertSame(after, EdgeNLevelSparseVisibilityGraph.initialiseNew(graph, Integer.MAX_VALUE));
+            float[] repairedLengths = solveQueries(graph);
+
+            PreprocessedGraphRegistry.clear();
+            assertArrayEquals(solveQueries(graph), repairedLengths, 0f);
+        } finally {
+            PreprocessedGraphRegistry.clear();
+        }
+    }
+
+    private static float[] solveQueries(GridGraph graph) {
+        Random rand = new Random(1);
+        float[] lengths = new float[50];
+        for (int i=0;i<lengths.length;++i) {
+            int sx = rand.nextInt(graph.sizeX+1);
+            int sy = rand.nextInt(graph.sizeY+1);
+            int ex = rand.nextInt(graph.sizeX+1);
+            int ey = rand.nextInt(graph.sizeY+1);
+            EdgeNLevelSparseVisibilityGraphAlgorithm algo = EdgeNLevelSparseVisibilityGraphAlgorithm.graphReuse(graph, sx, sy, ex, ey);
+            algo.computePath();
+            lengths[i] = algo.getPathLength();
+        }
+        return lengths;
+    }
+}
@@ -0,0 +1,66 @@
+package algorithms.sparsevgs;
+
+import grid.GridGraph;
+
+/**
+ * Table of the blocked-tile extents of a GridGraph, used by the line of sight scanners.<br>
+ * For every grid point (x, y), leftDownExtents[y][x] and rightDownExtents[y][x] are the x-coordinates of the
+ * nearest change in blockedness of the row of tiles below, to the left and right respectively.<br>
+ * <br>
+ * Computed once per GridGraph and shared by any number of scanners, on any number of threads.
+ * After tiles of the GridGraph are modified, updateRows() recomputes the rows of the table they affect.
+ */
+public final class LineOfSightExtents {
+    public final GridGraph graph;
+    final int[][] rightDownExtents;
+    final int[][] leftDownExtents;
+
+    public LineOfSightExtents(GridGraph graph) {
+        this.graph = graph;
+        rightDownExtents = new int[graph.sizeY+2][];
+        leftDownExtents = new int[graph.sizeY+2][];
+        for (int y=0;y<graph.sizeY+2;++y) {
+            computeRow(y);
+        }
+    }
+
+    /**
+     * Recomputes the rows affected by the given tiles. Each row is replaced by a new array,
+     * so a scanner reading the table at the same time sees either the old or the new row.
+     * @param tilesY the y-coordinates of the modified tiles.
+     */
+    public final void updateRows(int[] tilesY) {
+        for (int i=0;i<tilesY.length;++i) {
+            computeRow(tilesY[i]+1);
+        }
+    }
+
+    private final void computeRow(int y) {
+        int sizeX = graph.sizeX;
+        int[] leftDown = new int[sizeX+1];
+        int[] rightDown = new int[sizeX+1];
+
+        // graph.isBlocked(x,y) is the same as graph.bottomLeftOfBlockedTile(x,y)
+        boolean lastIsBlocked = true;
+        int lastX = -1;
+        for (int x=0;x<=sizeX;++x) {
+            leftDown[x] = lastX;
+            if (graph.isBlocked(x, y-1) != lastIsBlocked) {
+                lastX = x;
+                lastIsBlocked = !lastIsBlocked;
+            }
+        }
+        lastIsBlocked = true;
+        lastX = sizeX+1;
+        for (int x=sizeX;x>=0;--x) {
+            rightDown[x] = lastX;
+            if (graph.isBlocked(x-1, y-1) != lastIsBlocked) {
+                lastX = x;
+                lastIsBlocked = !lastIsBlocked;
+            }
+        }
+
+        leftDownExtents[y] = leftDown;
+        rightDownExtents[y] = rightDown;
+    }
+}
@@ -7,72 +7,62 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import algorithms.anya.Fraction;
+import algorithms.anya.PackedFraction;
 import algorithms.datatypes.SnapshotItem;
 
 /**
- * Singleton. Do not make multiple simultaneous copies of this class or use in parallel code.
+ * Each scanner owns its interval stack and successor buffers, so a scanner must only be used by one thread at a time.
+ * The extents table is immutable and can be shared by scanners on different threads. See LineOfSightExtents.<br>
+ * The debugging snapshots (snapshotList) are still static and are not thread-safe.
  */
 public final class LineOfSightScanner {
     public static ArrayList<List<SnapshotItem>> snapshotList = new ArrayList<>();
     private static ArrayList<SnapshotItem> snapshots = new ArrayList<>();
-    private static int snapshot_sx;
-    private static int snapshot_sy;
+    private int snapshot_sx;
+    private int snapshot_sy;
     
     private final GridGraph graph;
     private final int sizeX;
     private final int sizeY;
     
-    private static int[][] rightDownExtents;
-    private static int[][] leftDownExtents;
-    private static LOSInterval[] intervalStack;
-    private static int intervalStackSize;
+    private final LineOfSightExtents extents;
+    private final int[][] rightDownExtents;
+    private final int[][] leftDownExtents;
+    // Interval stack, stored as parallel arrays. stackPop() copies the top interval into poppedInterval.
+    private int[] intervalStackY = new int[11];
+    private long[] intervalStackXL = new long[11];
+    private long[] intervalStackXR = new long[11];
+    private int[] intervalStackInclusive = new int[11];
+    private int intervalStackSize;
+    private final LOSInterval poppedInterval = new LOSInterval();
     
-    public static int[] successorsX;
-    public static int[] successorsY;
-    public static int nSuccessors;
-
-    private static void initialiseExtents(GridGraph graph) {
-        // Don't reinitialise if graph is the same size as the last time.
-        if (rightDownExtents != null && graph.sizeY+2 == rightDownExtents.length && graph.sizeX+1 == rightDownExtents[0].length) return;
-
-        rightDownExtents = new int[graph.sizeY+2][];
-        leftDownExtents = new int[graph.sizeY+2][];
-        for (int y=0;y<graph.sizeY+2;++y) {
-            rightDownExtents[y] = new int[graph.sizeX+1];
-            leftDownExtents[y] = new int[graph.sizeX+1];
-        }
-    }
-    
-    private static void initialiseStack() {
-        if (intervalStack != null) return;
-        intervalStack = new LOSInterval[11];
-        intervalStackSize = 0;
-    }
-    
-    private static void initialiseSuccessorList() {
-        if (successorsX != null) return;
-        successorsX = new int[11];
-        successorsY = new int[11];
-        nSuccessors = 0;
-    }
-    
-    private static final void clearSuccessors() {
+    public int[] successorsX = new int[11];
+    public int[] successorsY = new int[11];
+    public int nSuccessors;
+
+    private final void clearSuccessors() {
         nSuccessors = 0;
     }
     
-    private static final void stackPush(LOSInterval interval) {
-        if (intervalStackSize >= intervalStack.length) {
-            intervalStack = Arrays.copyOf(intervalStack, intervalStack.length*2);
+    private final void stackPush(int y, long xL, long xR, int inclusive) {
+        if (intervalStackSize >= intervalStackY.length) {
+            int newLength = intervalStackY.length*2;
+            intervalStackY = Arrays.copyOf(intervalStackY, newLength);
+            intervalStackXL = Arrays.copyOf(intervalStackXL, newLength);
+            intervalStackXR = Arrays.copyOf(intervalStackXR, newLength);
+            intervalStackInclusive = Arrays.copyOf(intervalStackInclusive, newLength);
         }
-        intervalStack[intervalStackSize] = interval;
+        intervalStackY[intervalStackSize] = y;
+        intervalStackXL[intervalStackSize] = xL;
+        intervalStackXR[intervalStackSize] = xR;
+        intervalStackInclusive[intervalStackSize] = inclusive;
         ++intervalStackSize;
         
-        //addToSnapshot(interval); // Uncomment for debugging.
+        //addToSnapshot(y, xL, xR); // Uncomment for debugging.
     }
     
-    private static final void addToSnapshot(LOSInterval interval) {
-        snapshots.add(SnapshotItem.generate(new Integer[]{interval.y, interval.xL.n, interval.xL.d, interval.xR.n, interval.xR.d, snapshot_sx, snapshot_sy}, Color.GREEN));
+    private final void addToSnapshot(int y, long xL, long xR) {
+        snapshots.add(SnapshotItem.generateUncached(new Integer[]{y, PackedFraction.n(xL), PackedFraction.d(xL), PackedFraction.n(xR), PackedFraction.d(xR), snapshot_sx, snapshot_sy}, Color.GREEN));
         snapshotList.add(new ArrayList<SnapshotItem>(snapshots));
     }
     
@@ -81,18 +71,24 @@ public final class LineOfSightScanner {
         snapshots.clear();
     }
     
-    private static final LOSInterval stackPop() {
-        LOSInterval temp = intervalStack[intervalStackSize-1];
+    /**
+     * The returned interval is overwritten by the next call.
+     */
+    private final LOSInterval stackPop() {
         --intervalStackSize;
-        intervalStack[intervalStackSize] = null;
+        LOSInterval temp = poppedInterval;
+        temp.y = intervalStackY[intervalStackSize];
+        temp.xL = intervalStackXL[intervalStackSize];
+        temp.xR = intervalStackXR[intervalStackSize];
+        temp.inclusive = intervalStackInclusive[intervalStackSize];
         return temp;
     }
     
-    private static final void clearStack() {
+    private final void clearStack() {
         intervalStackSize = 0;
     }
     
-    private static final void addSuccessor(int x, int y) {
+    private final void addSuccessor(int x, int y) {
         if (nSuccessors >= successorsX.length) {
             successorsX = Arrays.copyOf(successorsX, successorsX.length*2);
             successorsY = Arrays.copyOf(successorsY, successorsY.length*2);
@@ -102,41 +98,24 @@ public final class LineOfSightScanner {
         ++nSuccessors;
     }
     
+    /**
+     * Computes a new extents table for the graph. Use the LineOfSightExtents constructor to share the table instead.
+     */
     public LineOfSightScanner(GridGraph gridGraph) {
-        initialiseExtents(gridGraph);
-        initialiseSuccessorList();
-        initialiseStack();
-        
-        graph = gridGraph;
+        this(new LineOfSightExtents(gridGraph));
+    }
+    
+    public LineOfSightScanner(LineOfSightExtents extents) {
+        this.extents = extents;
+        graph = extents.graph;
         sizeX = graph.sizeX;
         sizeY = graph.sizeY;
-        computeExtents();
+        rightDownExtents = extents.rightDownExtents;
+        leftDownExtents = extents.leftDownExtents;
     }
     
-    private void computeExtents() {
-        // graph.isBlocked(x,y) is the same as graph.bottomLeftOfBlockedTile(x,y)
-        LineOfSightScanner.initialiseExtents(graph);
-        
-        for (int y=0;y<sizeY+2;++y) {
-            boolean lastIsBlocked = true;
-            int lastX = -1;
-            for (int x=0;x<=sizeX;++x) {
-                leftDownExtents[y][x] = lastX; 
-                if (graph.isBlocked(x, y-1) != lastIsBlocked) {
-                    lastX = x;
-                    lastIsBlocked = !lastIsBlocked;
-                }
-            }
-            lastIsBlocked = true;
-            lastX = sizeX+1;
-            for (int x=sizeX;x>=0;--x) {
-                rightDownExtents[y][x] = lastX; 
-                if (graph.isBlocked(x-1, y-1) != lastIsBlocked) {
-                    lastX = x;
-                    lastIsBlocked = !lastIsBlocked;
-                }
-            }
-        }
+    public final LineOfSightExtents getExtents() {
+        return extents;
     }
     
     /**
@@ -217,38 +196,38 @@ public final class LineOfSightScanner {
                 boolean tlOfBlocked = graph.topLeftOfBlockedTile(sx, sy);
                 
                 int rightBound = rightUpExtent(sx,sy);
-                Fraction leftExtent;
-                Fraction rightExtent;
+                long leftExtent;
+                long rightExtent;
                 
                 if (brOfBlocked && tlOfBlocked) {
                     //  |
                     //  |___
                     
-                    leftExtent = new Fraction(sx);
-                    rightExtent = new Fraction(rightBound);
+                    leftExtent = PackedFraction.of(sx);
+                    rightExtent = PackedFraction.of(rightBound);
                     
                     rightwardsSearch = true;
                 } else if (brOfBlocked) {
                     //  | /
                     //  |/
                     
-                    leftExtent = new Fraction(sx);
-                    rightExtent = new Fraction(sx*dy + dx, dy);
-                    if (!rightExtent.isLessThanOrEqual(rightBound)) { // rightBound < rightExtent
-                        rightExtent = new Fraction(rightBound);
+                    leftExtent = PackedFraction.of(sx);
+                    rightExtent = PackedFraction.of(sx*dy + dx, dy);
+                    if (!PackedFraction.isLessThanOrEqualInt(rightExtent, rightBound)) { // rightBound < rightExtent
+                        rightExtent = PackedFraction.of(rightBound);
                     }
                     
                 } else { // tlOfBlocked
                     //   /
                     //  /__
                     
-                    leftExtent = new Fraction(sx*dy + dx, dy);
-                    rightExtent = new Fraction(rightBound);
+                    leftExtent = PackedFraction.of(sx*dy + dx, dy);
+                    rightExtent = PackedFraction.of(rightBound);
                     
                     rightwardsSearch = true;
                 }
                 
-                if (leftExtent.isLessThanOrEqual(rightExtent)) {
+                if (PackedFraction.isLessThanOrEqual(leftExtent, rightExtent)) {
                     this.generateUpwards(leftExtent, rightExtent, sx, sy, sy, true, true);
                 }
                 
@@ -260,16 +239,16 @@ public final class LineOfSightScanner {
                 boolean blOfBlocked = graph.bottomLeftOfBlockedTile(sx, sy);
                 
                 int rightBound = rightDownExtent(sx,sy);
-                Fraction leftExtent;
-                Fraction rightExtent;
+                long leftExtent;
+                long rightExtent;
                 
                 if (trOfBlocked && blOfBlocked) {
                     //  ____
                     //  |
                     //  |
                     
-                    leftExtent = new Fraction(sx);
-                    rightExtent = new Fraction(rightBound);
+                    leftExtent = PackedFraction.of(sx);
+                    rightExtent = PackedFraction.of(rightBound);
                     
                     rightwardsSearch = true;
                 } else if (trOfBlocked) {
@@ -277,23 +256,23 @@ public final class LineOfSightScanner {
                     //  |\
                     //  | \
                     
-                    leftExtent = new Fraction(sx);
-                    rightExtent = new Fraction(sx*-dy + dx, -dy);
-                    if (!rightExtent.isLessThanOrEqual(rightBound)) { // rightBound < rightExtent
-                        rightExtent = new Fraction(rightBound);
+                    leftExtent = PackedFraction.of(sx);
+                    rightExtent = PackedFraction.of(sx*-dy + dx, -dy);
+                    if (!PackedFraction.isLessThanOrEqualInt(rightExtent, rightBound)) { // rightBound < rightExtent
+                        rightExtent = PackedFraction.of(rightBound);
                     }
                     
                 } else { // blOfBlocked
                     //  ___
                     //  \
                     //   \
-                    leftExtent = new Fraction(sx*-dy + dx, -dy);
-                    rightExtent = new Fraction(rightBound);
+                    leftExtent = PackedFraction.of(sx*-dy + dx, -dy);
+                    rightExtent = PackedFraction.of(rightBound);
                     
                     rightwardsSearch = true;
                 }
                 
-                if (leftExtent.isLessThanOrEqual(rightExtent)) {
+                if (PackedFraction.isLessThanOrEqual(leftExtent, rightExtent)) {
                     this.generateDownwards(leftExtent, rightExtent, sx, sy, sy, true, true);
                 }
                 
@@ -306,8 +285,8 @@ public final class LineOfSightScanner {
                     // |
                     // |___
 
-                    Fraction leftExtent = new Fraction(sx);
-                    Fraction rightExtent = new Fraction(rightUpExtent(sx,sy));
+                    long leftExtent = PackedFraction.of(sx);
+                    long rightExtent = PackedFraction.of(rightUpExtent(sx,sy));
                     this.generateUpwards(leftExtent, rightExtent, sx, sy, sy, true, true);
                     
                 } else if (graph.topRightOfBlockedTile(sx, sy)) { // topRightOfBlockedTile
@@ -315,8 +294,8 @@ public final class LineOfSightScanner {
                     // |
                     // |
 
-                    Fraction leftExtent = new Fraction(sx);
-                    Fraction rightExtent = new Fraction(rightDownExtent(sx,sy));
+                    long leftExtent = PackedFraction.of(sx);
+                    long rightExtent = PackedFraction.of(rightDownExtent(sx,sy));
                     this.generateDownwards(leftExtent, rightExtent, sx, sy, sy, true, true);
                 }
                 
@@ -334,38 +313,38 @@ public final class LineOfSightScanner {
                 boolean trOfBlocked = graph.topRightOfBlockedTile(sx, sy);
                 
                 int leftBound = leftUpExtent(sx,sy);
-                Fraction leftExtent;
-                Fraction rightExtent;
+                long leftExtent;
+                long rightExtent;
                 
                 if (blOfBlocked && trOfBlocked) {
                     //     |
                     //  ___|
                     
-                    leftExtent = new Fraction(leftBound);
-                    rightExtent = new Fraction(sx);
+                    leftExtent = PackedFraction.of(leftBound);
+                    rightExtent = PackedFraction.of(sx);
                     
                     leftwardsSearch = true;
                 } else if (blOfBlocked) {
                     //  \ |
                     //   \|
                     
-                    leftExtent = new Fraction(sx*dy + dx, dy);
-                    rightExtent = new Fraction(sx);
-                    if (leftExtent.isLessThan(leftBound)) { // leftExtent < leftBound
-                        leftExtent = new Fraction(leftBound);
+                    leftExtent = PackedFraction.of(sx*dy + dx, dy);
+                    rightExtent = PackedFraction.of(sx);
+                    if (PackedFraction.isLessThanInt(leftExtent, leftBound)) { // leftExtent < leftBound
+                        leftExtent = PackedFraction.of(leftBound);
                     }
                     
                 } else { // trOfBlocked
                     //   \
                     //  __\
                     
-                    leftExtent = new Fraction(leftBound);
-                    rightExtent = new Fraction(sx*dy + dx, dy);
+                    leftExtent = PackedFraction.of(leftBound);
+                    rightExtent = PackedFraction.of(sx*dy + dx, dy);
                     
                     leftwardsSearch = true;
                 }
                 
-                if (leftExtent.isLessThanOrEqual(rightExtent)) {
+                if (PackedFraction.isLessThanOrEqual(leftExtent, rightExtent)) {
                     this.generateUpwards(leftExtent, rightExtent, sx, sy, sy, true, true);
                 }
                 
@@ -377,26 +356,26 @@ public final class LineOfSightScanner {
                 boolean brOfBlocked = graph.bottomRightOfBlockedTile(sx, sy);
                 
                 int leftBound = leftDownExtent(sx,sy);
-                Fraction leftExtent;
-                Fraction rightExtent;
+                long leftExtent;
+                long rightExtent;
                 
                 if (tlOfBlocked && brOfBlocked) {
                     //  ____
                     //     |
                     //     |
                     
-                    leftExtent = new Fraction(leftBound);
-                    rightExtent = new Fraction(sx);
+                    leftExtent = PackedFraction.of(leftBound);
+                    rightExtent = PackedFraction.of(sx);
                     
                     leftwardsSearch = true;
                 } else if (tlOfBlocked) {
                     //   /|
                     //  / |
                     
-                    leftExtent = new Fraction(sx*-dy + dx, -dy);
-                    rightExtent = new Fraction(sx);
-                    if (leftExtent.isLessThan(leftBound)) { // leftExtent < leftBound
-                        leftExtent = new Fraction(leftBound);
+                    leftExtent = PackedFraction.of(sx*-dy + dx, -dy);
+                    rightExtent = PackedFraction.of(sx);
+                    if (PackedFraction.isLessThanInt(leftExtent, leftBound)) { // leftExtent < leftBound
+                        leftExtent = PackedFraction.of(leftBound);
                     }
                     
                 } else { // brOfBlocked
@@ -404,13 +383,13 @@ public final class LineOfSightScanner {
                     //    /
                     //   /
                     
-                    leftExtent = new Fraction(leftBound);
-                    rightExtent = new Fraction(sx*-dy + dx, -dy);
+                    leftExtent = PackedFraction.of(leftBound);
+                    rightExtent = PackedFraction.of(sx*-dy + dx, -dy);
                     
                     leftwardsSearch = true;
                 }
                 
-                if (leftExtent.isLessThanOrEqual(rightExtent)) {
+                if (PackedFraction.isLessThanOrEqual(leftExtent, rightExtent)) {
                     this.generateDownwards(leftExtent, rightExtent, sx, sy, sy, true, true);
                 }
                 
@@ -423,8 +402,8 @@ public final class LineOfSightScanner {
                     //    |
                     // ___|
 
-                    Fraction leftExtent = new Fraction(leftUpExtent(sx,sy));
-                    Fraction rightExtent = new Fraction(sx);
+                    long leftExtent = PackedFraction.of(leftUpExtent(sx,sy));
+                    long rightExtent = PackedFraction.of(sx);
                     this.generateUpwards(leftExtent, rightExtent, sx, sy, sy, true, true);
                     
                 } else if (graph.topLeftOfBlockedTile(sx, sy)) {
@@ -432,8 +411,8 @@ public final class LineOfSightScanner {
                     //    |
                     //    |
 
-                    Fraction leftExtent = new Fraction(leftDownExtent(sx,sy));
-                    Fraction rightExtent = new Fraction(sx);
+                    long leftExtent = PackedFraction.of(leftDownExtent(sx,sy));
+                    long rightExtent = PackedFraction.of(sx);
                     this.generateDownwards(leftExtent, rightExtent, sx, sy, sy, true, true);
                 }
                 
@@ -453,8 +432,8 @@ public final class LineOfSightScanner {
                     // |
                     // |___
 
-                    Fraction leftExtent = new Fraction(sx);
-                    Fraction rightExtent = new Fraction(rightUpExtent(sx,sy));
+                    long leftExtent = PackedFraction.of(sx);
+                    long rightExtent = PackedFraction.of(rightUpExtent(sx,sy));
                     this.generateUpwards(leftExtent, rightExtent, sx, sy, sy, true, true);
 
                     rightwardsSearch = true;
@@ -463,15 +442,15 @@ public final class LineOfSightScanner {
                     //    |
                     // ___|
 
-                    Fraction leftExtent = new Fraction(leftUpExtent(sx,sy));
-                    Fraction rightExtent = new Fraction(sx);
+                    long leftExtent = PackedFraction.of(leftUpExtent(sx,sy));
+                    long rightExtent = PackedFraction.of(sx);
                     this.generateUpwards(leftExtent, rightExtent, sx, sy, sy, true, true);
 
                     leftwardsSearch = true;
                     
                 } else {
-                    Fraction x = new Fraction(sx);
-                    stackPush(new LOSInterval(sy+1, x, x, LOSInterval.BOTH_INCLUSIVE));
+                    long x = PackedFraction.of(sx);
+                    stackPush(sy+1, x, x, LOSInterval.BOTH_INCLUSIVE);
                 }
                 
             } else { // dy < 0
@@ -486,8 +465,8 @@ public final class LineOfSightScanner {
                     // |
                     // |
 
-                    Fraction leftExtent = new Fraction(sx);
-                    Fraction rightExtent = new Fraction(rightDownExtent(sx,sy));
+                    long leftExtent = PackedFraction.of(sx);
+                    long rightExtent = PackedFraction.of(rightDownExtent(sx,sy));
                     this.generateDownwards(leftExtent, rightExtent, sx, sy, sy, true, true);
                     
                     rightwardsSearch = true;
@@ -497,15 +476,15 @@ public final class LineOfSightScanner {
                     //    |
                     //    |
 
-                    Fraction leftExtent = new Fraction(leftDownExtent(sx,sy));
-                    Fraction rightExtent = new Fraction(sx);
+                    long leftExtent = PackedFraction.of(leftDownExtent(sx,sy));
+                    long rightExtent = PackedFraction.of(sx);
                     this.generateDownwards(leftExtent, rightExtent, sx, sy, sy, true, true);
 
                     leftwardsSearch = true;
                     
                 } else {
-                    Fraction x = new Fraction(sx);
-                    stackPush(new LOSInterval(sy-1, x, x, LOSInterval.BOTH_INCLUSIVE));
+                    long x = PackedFraction.of(sx);
+                    stackPush(sy-1, x, x, LOSInterval.BOTH_INCLUSIVE);
                 }
             }
         }
@@ -543,32 +522,32 @@ public final class LineOfSightScanner {
 
         // Generate up-left direction
         if (topRightOfBlocked || bottomLeftOfBlocked) {
-            Fraction leftExtent = new Fraction(leftUpExtent(sx,sy));
-            Fraction rightExtent = new Fraction(sx);
+            long leftExtent = PackedFraction.of(leftUpExtent(sx,sy));
+            long rightExtent = PackedFraction.of(sx);
 
             this.generateUpwards(leftExtent, rightExtent, sx, sy, sy, true, true);
         }
         
         // Generate up-right direction
         if (bottomRightOfBlocked || topLeftOfBlocked) {
-            Fraction leftExtent = new Fraction(sx);
-            Fraction rightExtent = new Fraction(rightUpExtent(sx,sy));
+            long leftExtent = PackedFraction.of(sx);
+            long rightExtent = PackedFraction.of(rightUpExtent(sx,sy));
 
             this.generateUpwards(leftExtent, rightExtent, sx, sy, sy, true, true);
         }
 
         // Generate down-left direction
         if (bottomRightOfBlocked || topLeftOfBlocked) {
-            Fraction leftExtent = new Fraction(leftDownExtent(sx,sy));
-            Fraction rightExtent = new Fraction(sx);
+            long leftExtent = PackedFraction.of(leftDownExtent(sx,sy));
+            long rightExtent = PackedFraction.of(sx);
 
             this.generateDownwards(leftExtent, rightExtent, sx, sy, sy, true, true);
         }
         
         // Generate down-right direction
         if (topRightOfBlocked || bottomLeftOfBlocked) {
-            Fraction leftExtent = new Fraction(sx);
-            Fraction rightExtent = new Fraction(rightDownExtent(sx,sy));
+            long leftExtent = PackedFraction.of(sx);
+            long rightExtent = PackedFraction.of(rightDownExtent(sx,sy));
 
             this.generateDownwards(leftExtent, rightExtent, sx, sy, sy, true, true);
         }
@@ -600,20 +579,20 @@ public final class LineOfSightScanner {
         
         // Generate up
         if (!bottomLeftOfBlocked || !bottomRightOfBlocked) {
-            Fraction leftExtent, rightExtent;
+            long leftExtent, rightExtent;
             
             if (bottomLeftOfBlocked) {
                 // Explore up-left
-                leftExtent = new Fraction(leftUpExtent(sx, sy));
-                rightExtent = new Fraction(sx);
+                leftExtent = PackedFraction.of(leftUpExtent(sx, sy));
+                rightExtent = PackedFraction.of(sx);
             } else if (bottomRightOfBlocked) {
                 // Explore up-right
-                leftExtent = new Fraction(sx);
-                rightExtent = new Fraction(rightUpExtent(sx, sy));
+                leftExtent = PackedFraction.of(sx);
+                rightExtent = PackedFraction.of(rightUpExtent(sx, sy));
             } else {
                 // Explore up-left-right
-                leftExtent = new Fraction(leftUpExtent(sx, sy));
-                rightExtent = new Fraction(rightUpExtent(sx, sy));
+                leftExtent = PackedFraction.of(leftUpExtent(sx, sy));
+                rightExtent = PackedFraction.of(rightUpExtent(sx, sy));
             }
 
             this.generateUpwards(leftExtent, rightExtent, sx, sy, sy, true, true);
@@ -621,20 +600,20 @@ public final class LineOfSightScanner {
 
         // Generate down
         if (!topLeftOfBlocked || !topRightOfBlocked) {
-            Fraction leftExtent, rightExtent;
+            long leftExtent, rightExtent;
             
             if (topLeftOfBlocked) {
                 // Explore down-left
-                leftExtent = new Fraction(leftDownExtent(sx, sy));
-                rightExtent = new Fraction(sx);
+                leftExtent = PackedFraction.of(leftDownExtent(sx, sy));
+                rightExtent = PackedFraction.of(sx);
             } else if (topRightOfBlocked) {
                 // Explore down-right
-                leftExtent = new Fraction(sx);
-                rightExtent = new Fraction(rightDownExtent(sx, sy));
+                leftExtent = PackedFraction.of(sx);
+                rightExtent = PackedFraction.of(rightDownExtent(sx, sy));
             } else {
                 // Explore down-left-right
-                leftExtent = new Fraction(leftDownExtent(sx, sy));
-                rightExtent = new Fraction(rightDownExtent(sx, sy));
+                leftExtent = PackedFraction.of(leftDownExtent(sx, sy));
+                rightExtent = PackedFraction.of(rightDownExtent(sx, sy));
             }
 
             this.generateDownwards(leftExtent, rightExtent, sx, sy, sy, true, true);
@@ -666,13 +645,13 @@ public final class LineOfSightScanner {
             boolean rightInclusive = (currState.inclusive & LOSInterval.RIGHT_INCLUSIVE) != 0;
             //System.out.println("POP " + currState);
 
-            boolean zeroLengthInterval = currState.xR.isEqualTo(currState.xL);
+            boolean zeroLengthInterval = PackedFraction.isEqualTo(currState.xR, currState.xL);
             
             if (currState.y > sy) {
                 // Upwards
                 
                 // Insert endpoints if integer.
-                if (leftInclusive && currState.xL.isWholeNumber()) {
+                if (leftInclusive && PackedFraction.isWholeNumber(currState.xL)) {
                     /* The two cases   _
                      *  _             |X|
                      * |X|'.           ,'
@@ -680,7 +659,7 @@ public final class LineOfSightScanner {
                      *        B     B
                      */
                     
-                    int x = currState.xL.n;
+                    int x = PackedFraction.n(currState.xL);
                     int y = currState.y;
                     boolean topRightOfBlockedTile = graph.topRightOfBlockedTile(x, y);
                     boolean bottomRightOfBlockedTile = graph.bottomRightOfBlockedTile(x, y);
@@ -694,7 +673,7 @@ public final class LineOfSightScanner {
                         leftInclusive = false;
                     }
                 }
-                if (rightInclusive && currState.xR.isWholeNumber()) {
+                if (rightInclusive && PackedFraction.isWholeNumber(currState.xR)) {
                     /*   _   The two cases
                      *  |X|             _
                      *  '.           ,'|X|
@@ -702,7 +681,7 @@ public final class LineOfSightScanner {
                      *      B     B
                      */
                     
-                    int x = currState.xR.n;
+                    int x = PackedFraction.n(currState.xR);
                     int y = currState.y;
                     boolean bottomLeftOfBlockedTile = graph.bottomLeftOfBlockedTile(x, y);
                     boolean topLeftOfBlockedTile = graph.topLeftOfBlockedTile(x, y);
@@ -733,34 +712,34 @@ public final class LineOfSightScanner {
 
                 // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
                 int dy = currState.y - sy;
-                Fraction leftProjection = currState.xL.minus(sx).multiplyDivide(dy+1, dy).plus(sx);
+                long leftProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xL, sx), dy+1, dy), sx);
 
-                int leftBound = leftUpExtent(currState.xL.ceil(), currState.y);
-                if (currState.xL.isWholeNumber() && graph.bottomRightOfBlockedTile(currState.xL.n, currState.y)) leftBound = currState.xL.n;
+                int leftBound = leftUpExtent(PackedFraction.ceil(currState.xL), currState.y);
+                if (PackedFraction.isWholeNumber(currState.xL) && graph.bottomRightOfBlockedTile(PackedFraction.n(currState.xL), currState.y)) leftBound = PackedFraction.n(currState.xL);
                 
-                if (leftProjection.isLessThan(leftBound)) { // leftProjection < leftBound
-                    leftProjection = new Fraction(leftBound);
+                if (PackedFraction.isLessThanInt(leftProjection, leftBound)) { // leftProjection < leftBound
+                    leftProjection = PackedFraction.of(leftBound);
                     leftInclusive = true;
                 }
 
                 // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
-                Fraction rightProjection = currState.xR.minus(sx).multiplyDivide(dy+1, dy).plus(sx);
+                long rightProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xR, sx), dy+1, dy), sx);
                 
-                int rightBound = rightUpExtent(currState.xR.floor(), currState.y);
-                if (currState.xR.isWholeNumber() && graph.bottomLeftOfBlockedTile(currState.xR.n, currState.y)) rightBound = currState.xR.n;
+                int rightBound = rightUpExtent(PackedFraction.floor(currState.xR), currState.y);
+                if (PackedFraction.isWholeNumber(currState.xR) && graph.bottomLeftOfBlockedTile(PackedFraction.n(currState.xR), currState.y)) rightBound = PackedFraction.n(currState.xR);
 
-                if (!rightProjection.isLessThanOrEqual(rightBound)) { // rightBound < rightProjection
-                    rightProjection = new Fraction(rightBound);
+                if (!PackedFraction.isLessThanOrEqualInt(rightProjection, rightBound)) { // rightBound < rightProjection
+                    rightProjection = PackedFraction.of(rightBound);
                     rightInclusive = true;
                 }
 
                 // Call Generate
                 if (leftInclusive && rightInclusive) {
-                    if (leftProjection.isLessThanOrEqual(rightProjection)) {
+                    if (PackedFraction.isLessThanOrEqual(leftProjection, rightProjection)) {
                         generateUpwards(leftProjection, rightProjection, sx, sy, currState.y, true, true);
                     }
                 }
-                else if (leftProjection.isLessThan(rightProjection)) {
+                else if (PackedFraction.isLessThan(leftProjection, rightProjection)) {
                     generateUpwards(leftProjection, rightProjection, sx, sy, currState.y, leftInclusive, rightInclusive);
                 }
             }
@@ -768,7 +747,7 @@ public final class LineOfSightScanner {
                 // Upwards
                 
                 // Insert endpoints if integer.
-                if (leftInclusive && currState.xL.isWholeNumber()) {
+                if (leftInclusive && PackedFraction.isWholeNumber(currState.xL)) {
                     /* The two cases
                      *        B     B
                      *  _   ,'       '.
@@ -776,7 +755,7 @@ public final class LineOfSightScanner {
                      *                |X|
                      */
                     
-                    int x = currState.xL.n;
+                    int x = PackedFraction.n(currState.xL);
                     int y = currState.y;
                     boolean bottomRightOfBlockedTile = graph.bottomRightOfBlockedTile(x, y);
                     boolean topRightOfBlockedTile = graph.topRightOfBlockedTile(x, y);
@@ -790,7 +769,7 @@ public final class LineOfSightScanner {
                         leftInclusive = false;
                     }
                 }
-                if (rightInclusive && currState.xR.isWholeNumber()) {
+                if (rightInclusive && PackedFraction.isWholeNumber(currState.xR)) {
                     /*       The two cases
                      *      B     B
                      *    .'       '.   _
@@ -798,7 +777,7 @@ public final class LineOfSightScanner {
                      *  |X|
                      */
                     
-                    int x = currState.xR.n;
+                    int x = PackedFraction.n(currState.xR);
                     int y = currState.y;
                     boolean topLeftOfBlockedTile = graph.topLeftOfBlockedTile(x, y);
                     boolean bottomLeftOfBlockedTile = graph.bottomLeftOfBlockedTile(x, y);
@@ -829,34 +808,34 @@ public final class LineOfSightScanner {
 
                 // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
                 int dy = sy - currState.y; 
-                Fraction leftProjection = currState.xL.minus(sx).multiplyDivide(dy+1, dy).plus(sx);
+                long leftProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xL, sx), dy+1, dy), sx);
                 
-                int leftBound = leftDownExtent(currState.xL.ceil(), currState.y);
-                if (currState.xL.isWholeNumber() && graph.topRightOfBlockedTile(currState.xL.n, currState.y)) leftBound = currState.xL.n;
+                int leftBound = leftDownExtent(PackedFraction.ceil(currState.xL), currState.y);
+                if (PackedFraction.isWholeNumber(currState.xL) && graph.topRightOfBlockedTile(PackedFraction.n(currState.xL), currState.y)) leftBound = PackedFraction.n(currState.xL);
                 
-                if (leftProjection.isLessThan(leftBound)) { // leftProjection < leftBound
-                    leftProjection = new Fraction(leftBound);
+                if (PackedFraction.isLessThanInt(leftProjection, leftBound)) { // leftProjection < leftBound
+                    leftProjection = PackedFraction.of(leftBound);
                     leftInclusive = true;
                 }
 
                 // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
-                Fraction rightProjection = currState.xR.minus(sx).multiplyDivide(dy+1, dy).plus(sx);
+                long rightProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xR, sx), dy+1, dy), sx);
 
-                int rightBound = rightDownExtent(currState.xR.floor(), currState.y);
-                if (currState.xR.isWholeNumber() && graph.topLeftOfBlockedTile(currState.xR.n, currState.y)) rightBound = currState.xR.n;
+                int rightBound = rightDownExtent(PackedFraction.floor(currState.xR), currState.y);
+                if (PackedFraction.isWholeNumber(currState.xR) && graph.topLeftOfBlockedTile(PackedFraction.n(currState.xR), currState.y)) rightBound = PackedFraction.n(currState.xR);
                 
-                if (!rightProjection.isLessThanOrEqual(rightBound)) { // rightBound < rightProjection
-                    rightProjection = new Fraction(rightBound);
+                if (!PackedFraction.isLessThanOrEqualInt(rightProjection, rightBound)) { // rightBound < rightProjection
+                    rightProjection = PackedFraction.of(rightBound);
                     rightInclusive = true;
                 }
 
                 // Call Generate
                 if (leftInclusive && rightInclusive) {
-                    if (leftProjection.isLessThanOrEqual(rightProjection)) {
+                    if (PackedFraction.isLessThanOrEqual(leftProjection, rightProjection)) {
                         generateDownwards(leftProjection, rightProjection, sx, sy, currState.y, true, true);
                     }
                 }
-                else if (leftProjection.isLessThan(rightProjection)) {
+                else if (PackedFraction.isLessThan(leftProjection, rightProjection)) {
                     generateDownwards(leftProjection, rightProjection, sx, sy, currState.y, leftInclusive, rightInclusive);
                 }
             }
@@ -872,13 +851,13 @@ public final class LineOfSightScanner {
             boolean rightInclusive = (currState.inclusive & LOSInterval.RIGHT_INCLUSIVE) != 0;
             //System.out.println("POP " + currState);
 
-            boolean zeroLengthInterval = currState.xR.isEqualTo(currState.xL);
+            boolean zeroLengthInterval = PackedFraction.isEqualTo(currState.xR, currState.xL);
             
             if (currState.y > sy) {
                 // Upwards
                 
                 // Insert endpoints if integer.
-                if (leftInclusive && currState.xL.isWholeNumber()) {
+                if (leftInclusive && PackedFraction.isWholeNumber(currState.xL)) {
                     /* The two cases   _
                      *  _             |X|
                      * |X|'.           ,'
@@ -886,7 +865,7 @@ public final class LineOfSightScanner {
                      *        B     B
                      */
                     
-                    int x = currState.xL.n;
+                    int x = PackedFraction.n(currState.xL);
                     int y = currState.y;
                     
                     if (graph.isOuterCorner(x, y)) {
@@ -894,7 +873,7 @@ public final class LineOfSightScanner {
                         leftInclusive = false;
                     }
                 }
-                if (rightInclusive && currState.xR.isWholeNumber()) {
+                if (rightInclusive && PackedFraction.isWholeNumber(currState.xR)) {
                     /*   _   The two cases
                      *  |X|             _
                      *  '.           ,'|X|
@@ -902,7 +881,7 @@ public final class LineOfSightScanner {
                      *      B     B
                      */
                     
-                    int x = currState.xR.n;
+                    int x = PackedFraction.n(currState.xR);
                     int y = currState.y;
                     
                     if (graph.isOuterCorner(x, y)) {
@@ -923,34 +902,34 @@ public final class LineOfSightScanner {
 
                 // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
                 int dy = currState.y - sy;
-                Fraction leftProjection = currState.xL.minus(sx).multiplyDivide(dy+1, dy).plus(sx);
+                long leftProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xL, sx), dy+1, dy), sx);
 
-                int leftBound = leftUpExtent(currState.xL.ceil(), currState.y);
-                if (currState.xL.isWholeNumber() && graph.bottomRightOfBlockedTile(currState.xL.n, currState.y)) leftBound = currState.xL.n;
+                int leftBound = leftUpExtent(PackedFraction.ceil(currState.xL), currState.y);
+                if (PackedFraction.isWholeNumber(currState.xL) && graph.bottomRightOfBlockedTile(PackedFraction.n(currState.xL), currState.y)) leftBound = PackedFraction.n(currState.xL);
                 
-                if (leftProjection.isLessThan(leftBound)) { // leftProjection < leftBound
-                    leftProjection = new Fraction(leftBound);
+                if (PackedFraction.isLessThanInt(leftProjection, leftBound)) { // leftProjection < leftBound
+                    leftProjection = PackedFraction.of(leftBound);
                     leftInclusive = true;
                 }
 
                 // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
-                Fraction rightProjection = currState.xR.minus(sx).multiplyDivide(dy+1, dy).plus(sx);
+                long rightProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xR, sx), dy+1, dy), sx);
                 
-                int rightBound = rightUpExtent(currState.xR.floor(), currState.y);
-                if (currState.xR.isWholeNumber() && graph.bottomLeftOfBlockedTile(currState.xR.n, currState.y)) rightBound = currState.xR.n;
+                int rightBound = rightUpExtent(PackedFraction.floor(currState.xR), currState.y);
+                if (PackedFraction.isWholeNumber(currState.xR) && graph.bottomLeftOfBlockedTile(PackedFraction.n(currState.xR), currState.y)) rightBound = PackedFraction.n(currState.xR);
 
-                if (!rightProjection.isLessThanOrEqual(rightBound)) { // rightBound < rightProjection
-                    rightProjection = new Fraction(rightBound);
+                if (!PackedFraction.isLessThanOrEqualInt(rightProjection, rightBound)) { // rightBound < rightProjection
+                    rightProjection = PackedFraction.of(rightBound);
                     rightInclusive = true;
                 }
 
                 // Call Generate
                 if (leftInclusive && rightInclusive) {
-                    if (leftProjection.isLessThanOrEqual(rightProjection)) {
+                    if (PackedFraction.isLessThanOrEqual(leftProjection, rightProjection)) {
                         generateUpwards(leftProjection, rightProjection, sx, sy, currState.y, true, true);
                     }
                 }
-                else if (leftProjection.isLessThan(rightProjection)) {
+                else if (PackedFraction.isLessThan(leftProjection, rightProjection)) {
                     generateUpwards(leftProjection, rightProjection, sx, sy, currState.y, leftInclusive, rightInclusive);
                 }
             }
@@ -958,7 +937,7 @@ public final class LineOfSightScanner {
                 // Upwards
                 
                 // Insert endpoints if integer.
-                if (leftInclusive && currState.xL.isWholeNumber()) {
+                if (leftInclusive && PackedFraction.isWholeNumber(currState.xL)) {
                     /* The two cases
                      *        B     B
                      *  _   ,'       '.
@@ -966,7 +945,7 @@ public final class LineOfSightScanner {
                      *                |X|
                      */
                     
-                    int x = currState.xL.n;
+                    int x = PackedFraction.n(currState.xL);
                     int y = currState.y;
                     
                     if (graph.isOuterCorner(x, y)) {
@@ -974,7 +953,7 @@ public final class LineOfSightScanner {
                         leftInclusive = false;
                     }
                 }
-                if (rightInclusive && currState.xR.isWholeNumber()) {
+                if (rightInclusive && PackedFraction.isWholeNumber(currState.xR)) {
                     /*       The two cases
                      *      B     B
                      *    .'       '.   _
@@ -982,7 +961,7 @@ public final class LineOfSightScanner {
                      *  |X|
                      */
                     
-                    int x = currState.xR.n;
+                    int x = PackedFraction.n(currState.xR);
                     int y = currState.y;
                     if (graph.isOuterCorner(x, y)) {
                         addSuccessor(x, y);
@@ -1002,34 +981,34 @@ public final class LineOfSightScanner {
 
                 // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
                 int dy = sy - currState.y; 
-                Fraction leftProjection = currState.xL.minus(sx).multiplyDivide(dy+1, dy).plus(sx);
+                long leftProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xL, sx), dy+1, dy), sx);
                 
-                int leftBound = leftDownExtent(currState.xL.ceil(), currState.y);
-                if (currState.xL.isWholeNumber() && graph.topRightOfBlockedTile(currState.xL.n, currState.y)) leftBound = currState.xL.n;
+                int leftBound = leftDownExtent(PackedFraction.ceil(currState.xL), currState.y);
+                if (PackedFraction.isWholeNumber(currState.xL) && graph.topRightOfBlockedTile(PackedFraction.n(currState.xL), currState.y)) leftBound = PackedFraction.n(currState.xL);
                 
-                if (leftProjection.isLessThan(leftBound)) { // leftProjection < leftBound
-                    leftProjection = new Fraction(leftBound);
+                if (PackedFraction.isLessThanInt(leftProjection, leftBound)) { // leftProjection < leftBound
+                    leftProjection = PackedFraction.of(leftBound);
                     leftInclusive = true;
                 }
 
                 // (Px-Bx)*(Py-By+1)/(Py-By) + Bx
-                Fraction rightProjection = currState.xR.minus(sx).multiplyDivide(dy+1, dy).plus(sx);
+                long rightProjection = PackedFraction.plusInt(PackedFraction.multiplyDivide(PackedFraction.minusInt(currState.xR, sx), dy+1, dy), sx);
 
-                int rightBound = rightDownExtent(currState.xR.floor(), currState.y);
-                if (currState.xR.isWholeNumber() && graph.topLeftOfBlockedTile(currState.xR.n, currState.y)) rightBound = currState.xR.n;
+                int rightBound = rightDownExtent(PackedFraction.floor(currState.xR), currState.y);
+                if (PackedFraction.isWholeNumber(currState.xR) && graph.topLeftOfBlockedTile(PackedFraction.n(currState.xR), currState.y)) rightBound = PackedFraction.n(currState.xR);
                 
-                if (!rightProjection.isLessThanOrEqual(rightBound)) { // rightBound < rightProjection
-                    rightProjection = new Fraction(rightBound);
+                if (!PackedFraction.isLessThanOrEqualInt(rightProjection, rightBound)) { // rightBound < rightProjection
+                    rightProjection = PackedFraction.of(rightBound);
                     rightInclusive = true;
                 }
 
                 // Call Generate
                 if (leftInclusive && rightInclusive) {
-                    if (leftProjection.isLessThanOrEqual(rightProjection)) {
+                    if (PackedFraction.isLessThanOrEqual(leftProjection, rightProjection)) {
                         generateDownwards(leftProjection, rightProjection, sx, sy, currState.y, true, true);
                     }
                 }
-                else if (leftProjection.isLessThan(rightProjection)) {
+                else if (PackedFraction.isLessThan(leftProjection, rightProjection)) {
                     generateDownwards(leftProjection, rightProjection, sx, sy, currState.y, leftInclusive, rightInclusive);
                 }
             }
@@ -1064,7 +1043,7 @@ public final class LineOfSightScanner {
         return Math.min(rightDownExtents[y][xR], rightDownExtents[y+1][xR]);
     }
 
-    private final void generateUpwards(Fraction leftBound, Fraction rightBound, int sx, int sy, int currY, boolean leftInclusive, boolean rightInclusive) {
+    private final void generateUpwards(long leftBound, long rightBound, int sx, int sy, int currY, boolean leftInclusive, boolean rightInclusive) {
         generateAndSplitIntervals(
                 currY + 2, currY + 1,
                 sx, sy,
@@ -1072,7 +1051,7 @@ public final class LineOfSightScanner {
                 leftInclusive, rightInclusive);
     }
 
-    private final void generateDownwards(Fraction leftBound, Fraction rightBound, int sx, int sy, int currY, boolean leftInclusive, boolean rightInclusive) {
+    private final void generateDownwards(long leftBound, long rightBound, int sx, int sy, int currY, boolean leftInclusive, boolean rightInclusive) {
         generateAndSplitIntervals(
                 currY - 1, currY - 1,
                 sx, sy,
@@ -1084,27 +1063,27 @@ public final class LineOfSightScanner {
      * Called by generateUpwards / Downwards.
      * Note: Unlike Anya, 0-length intervals are possible.
      */
-    private final void generateAndSplitIntervals(int checkY, int newY, int sx, int sy, Fraction leftBound, Fraction rightBound, boolean leftInclusive, boolean rightInclusive) {
-        Fraction left = leftBound;
-        int leftFloor = left.floor();
+    private final void generateAndSplitIntervals(int checkY, int newY, int sx, int sy, long leftBound, long rightBound, boolean leftInclusive, boolean rightInclusive) {
+        long left = leftBound;
+        int leftFloor = PackedFraction.floor(left);
 
         // Up: !bottomRightOfBlockedTile && bottomLeftOfBlockedTile
-        if (leftInclusive && left.isWholeNumber() && !graph.isBlocked(leftFloor-1, checkY-1) && graph.isBlocked(leftFloor, checkY-1)) {
-            stackPush(new LOSInterval(newY, left, left, LOSInterval.BOTH_INCLUSIVE));
+        if (leftInclusive && PackedFraction.isWholeNumber(left) && !graph.isBlocked(leftFloor-1, checkY-1) && graph.isBlocked(leftFloor, checkY-1)) {
+            stackPush(newY, left, left, LOSInterval.BOTH_INCLUSIVE);
         }
 
         // Divide up the intervals.
         while(true) {
             int right = rightDownExtents[checkY][leftFloor]; // it's actually rightDownExtents for exploreDownwards. (thus we use checkY = currY - 2)
-            if (rightBound.isLessThanOrEqual(right)) break; // right < rightBound            
+            if (PackedFraction.isLessThanOrEqualInt(rightBound, right)) break; // right < rightBound            
             
             // Only push unblocked ( bottomRightOfBlockedTile )
             if (!graph.isBlocked(right-1, checkY-1)) {
-                stackPush(new LOSInterval(newY, left, new Fraction(right), leftInclusive ? LOSInterval.BOTH_INCLUSIVE : LOSInterval.RIGHT_INCLUSIVE));
+                stackPush(newY, left, PackedFraction.of(right), leftInclusive ? LOSInterval.BOTH_INCLUSIVE : LOSInterval.RIGHT_INCLUSIVE);
             }
             
             leftFloor = right;
-            left = new Fraction(leftFloor);
+            left = PackedFraction.of(leftFloor);
             leftInclusive = true;
         }
 
@@ -1112,11 +1091,11 @@ public final class LineOfSightScanner {
         // if !bottomLeftOfBlockedTile(leftFloor, checkY)
         if (!graph.isBlocked(leftFloor, checkY-1)) {
             int inclusive = (leftInclusive ? LOSInterval.LEFT_INCLUSIVE : 0) | (rightInclusive ? LOSInterval.RIGHT_INCLUSIVE : 0); 
-            stackPush(new LOSInterval(newY, left, rightBound, inclusive));
+            stackPush(newY, left, rightBound, inclusive);
         } else {
             // The possibility of there being one degenerate interval at the end. ( !bottomLeftOfBlockedTile(xR, checkY) )
-            if (rightInclusive && rightBound.isWholeNumber() && !graph.isBlocked(rightBound.n, checkY-1)) {
-                stackPush(new LOSInterval(newY, rightBound, rightBound, LOSInterval.BOTH_INCLUSIVE));
+            if (rightInclusive && PackedFraction.isWholeNumber(rightBound) && !graph.isBlocked(PackedFraction.n(rightBound), checkY-1)) {
+                stackPush(newY, rightBound, rightBound, LOSInterval.BOTH_INCLUSIVE);
             }
         }
     }
@@ -1124,11 +1103,6 @@ public final class LineOfSightScanner {
     public static void clearMemory() {
         snapshotList.clear();
         snapshots.clear();
-        rightDownExtents = null;
-        leftDownExtents = null;
-        intervalStack = null;
-        successorsX = null;
-        successorsY = null;
         System.gc();
     }
     
@@ -1143,20 +1117,14 @@ final class LOSInterval {
     public static final int BOTH_INCLUSIVE = 0x3; // LEFT_INCLUSIVE | RIGHT_INCLUSIVE
     
     
-    final int y;
-    final Fraction xL;
-    final Fraction xR;
-    final int inclusive;
-    
-    public LOSInterval(int y, Fraction xL, Fraction xR, int inclusive) {
-        this.y = y;
-        this.xL = xL;
-        this.xR = xR;
-        this.inclusive = inclusive;
-    }
+    // Mutable: the scanner copies each popped interval into one reused instance.
+    int y;
+    long xL;
+    long xR;
+    int inclusive;
     
     @Override
     public final String toString() {
-        return ((inclusive & LEFT_INCLUSIVE) == 0 ? "(" : "[") + xL + ", " + xR + ((inclusive & RIGHT_INCLUSIVE) == 0 ? ")" : "]") + "|" + y;
+        return ((inclusive & LEFT_INCLUSIVE) == 0 ? "(" : "[") + PackedFraction.toString(xL) + ", " + PackedFraction.toString(xR) + ((inclusive & RIGHT_INCLUSIVE) == 0 ? ")" : "]") + "|" + y;
     }
 }
\ No newline at end of file
@@ -10,28 +10,38 @@ import java.util.List;
 import algorithms.datatypes.SnapshotItem;
 
 /**
- * Singleton. Do not make multiple simultaneous copies of this class or use in parallel code.
+ * Each scanner owns its interval stack and successor buffers, so a scanner must only be used by one thread at a time.
+ * The extents table is immutable and can be shared by scanners on different threads. See LineOfSightExtents.<br>
+ * The debugging snapshots (snapshotList) are still static and are not thread-safe.
  */
 public final class LineOfSightScannerDouble {
-    private static double EPSILON = 0.0000001;
+    private static final double EPSILON = 0.0000001;
 
     public static ArrayList<List<SnapshotItem>> snapshotList = new ArrayList<>();
     private static ArrayList<SnapshotItem> snapshots = new ArrayList<>();
-    private static int snapshot_sx;
-    private static int snapshot_sy;
+    private int snapshot_sx;
+    private int snapshot_sy;
     
     private final GridGraph graph;
     private final int sizeX;
     private final int sizeY;
     
-    private static int[][] rightDownExtents;
-    private static int[][] leftDownExtents;
-    private static LOSIntervalDouble[] intervalStack;
-    private static int intervalStackSize;
+    private final LineOfSightExtents extents;
+    private final int[][] rightDownExtents;
+    private final int[][] leftDownExtents;
+    private LOSIntervalDouble[] intervalStack = new LOSIntervalDouble[11];
+    private int intervalStackSize;
     
-    public static int[] successorsX;
-    public static int[] successorsY;
-    public static int nSuccessors;
+    public int[] successorsX = new int[11];
+    public int[] successorsY = new int[11];
+    public int nSuccessors;
+
+    // Bounding box of the grid points the last scan looked at (interval endpoints, extents and successors).
+    //  The result of the scan only depends on the tiles within one tile of this box.
+    public int scanMinX;
+    public int scanMinY;
+    public int scanMaxX;
+    public int scanMaxY;
 
     // Double API    
     private final double toDouble(int n) {return (double)n;}
@@ -58,51 +68,40 @@ public final class LineOfSightScannerDouble {
         return (int)(n + 0.5);
     }
 
-    private static void initialiseExtents(GridGraph graph) {
-        // Don't reinitialise if graph is the same size as the last time.
-        if (rightDownExtents != null && graph.sizeY+2 == rightDownExtents.length && graph.sizeX+1 == rightDownExtents[0].length) return;
-
-        rightDownExtents = new int[graph.sizeY+2][];
-        leftDownExtents = new int[graph.sizeY+2][];
-        for (int y=0;y<graph.sizeY+2;++y) {
-            rightDownExtents[y] = new int[graph.sizeX+1];
-            leftDownExtents[y] = new int[graph.sizeX+1];
-        }
-    }
-    
-    private static void initialiseStack() {
-        if (intervalStack != null) return;
-        intervalStack = new LOSIntervalDouble[11];
-        intervalStackSize = 0;
-    }
-    
-    private static void initialiseSuccessorList() {
-        if (successorsX != null) return;
-        successorsX = new int[11];
-        successorsY = new int[11];
+    private final void clearSuccessors() {
         nSuccessors = 0;
     }
-    
-    private static final void clearSuccessors() {
-        nSuccessors = 0;
+
+    private final void resetScanBounds(int sx, int sy) {
+        scanMinX = scanMaxX = sx;
+        scanMinY = scanMaxY = sy;
+    }
+
+    private final void extendScanBounds(int x, int y) {
+        if (x < scanMinX) scanMinX = x;
+        if (x > scanMaxX) scanMaxX = x;
+        if (y < scanMinY) scanMinY = y;
+        if (y > scanMaxY) scanMaxY = y;
     }
     
-    private static final void stackPush(LOSIntervalDouble interval) {
+    private final void stackPush(LOSIntervalDouble interval) {
         if (intervalStackSize >= intervalStack.length) {
             intervalStack = Arrays.copyOf(intervalStack, intervalStack.length*2);
         }
         intervalStack[intervalStackSize] = interval;
         ++intervalStackSize;
+        extendScanBounds(floor(interval.xL), interval.y);
+        extendScanBounds(ceil(interval.xR), interval.y);
         
         //addToSnapshot(interval); // Uncomment for debugging.
     }
     
-    private static final void addToSnapshot(LOSIntervalDouble interval) {
+    private final void addToSnapshot(LOSIntervalDouble interval) {
         final int RES = 100000;
         int xLn = (int)(interval.xL*RES);
         int xRn = (int)(interval.xR*RES);
 
-        snapshots.add(SnapshotItem.generate(new Integer[]{interval.y, xLn, RES, xRn, RES, snapshot_sx, snapshot_sy}, Color.GREEN));
+        snapshots.add(SnapshotItem.generateUncached(new Integer[]{interval.y, xLn, RES, xRn, RES, snapshot_sx, snapshot_sy}, Color.GREEN));
         snapshotList.add(new ArrayList<SnapshotItem>(snapshots));
     }
     
@@ -111,18 +110,18 @@ public final class LineOfSightScannerDouble {
         snapshots.clear();
     }
     
-    private static final LOSIntervalDouble stackPop() {
+    private final LOSIntervalDouble stackPop() {
         LOSIntervalDouble temp = intervalStack[intervalStackSize-1];
         --intervalStackSize;
         intervalStack[intervalStackSize] = null;
         return temp;
     }
     
-    private static final void clearStack() {
+    private final void clearStack() {
         intervalStackSize = 0;
     }
     
-    private static final void addSuccessor(int x, int y) {
+    private final void addSuccessor(int x, int y) {
         if (nSuccessors >= successorsX.length) {
             successorsX = Arrays.copyOf(successorsX, successorsX.length*2);
             successorsY = Arrays.copyOf(successorsY, successorsY.length*2);
@@ -130,43 +129,27 @@ public final class LineOfSightScannerDouble {
         successorsX[nSuccessors] = x;
         successorsY[nSuccessors] = y;
         ++nSuccessors;
+        extendScanBounds(x, y);
     }
     
+    /**
+     * Computes a new extents table for the graph. Use the LineOfSightExtents constructor to share the table instead.
+     */
     public LineOfSightScannerDouble(GridGraph gridGraph) {
-        initialiseExtents(gridGraph);
-        initialiseSuccessorList();
-        initialiseStack();
-        
-        graph = gridGraph;
+        this(new LineOfSightExtents(gridGraph));
+    }
+    
+    public LineOfSightScannerDouble(LineOfSightExtents extents) {
+        this.extents = extents;
+        graph = extents.graph;
         sizeX = graph.sizeX;
         sizeY = graph.sizeY;
-        computeExtents();
+        rightDownExtents = extents.rightDownExtents;
+        leftDownExtents = extents.leftDownExtents;
     }
     
-    private void computeExtents() {
-        // graph.isBlocked(x,y) is the same as graph.bottomLeftOfBlockedTile(x,y)
-        LineOfSightScannerDouble.initialiseExtents(graph);
-        
-        for (int y=0;y<sizeY+2;++y) {
-            boolean lastIsBlocked = true;
-            int lastX = -1;
-            for (int x=0;x<=sizeX;++x) {
-                leftDownExtents[y][x] = lastX; 
-                if (graph.isBlocked(x, y-1) != lastIsBlocked) {
-                    lastX = x;
-                    lastIsBlocked = !lastIsBlocked;
-                }
-            }
-            lastIsBlocked = true;
-            lastX = sizeX+1;
-            for (int x=sizeX;x>=0;--x) {
-                rightDownExtents[y][x] = lastX; 
-                if (graph.isBlocked(x-1, y-1) != lastIsBlocked) {
-                    lastX = x;
-                    lastIsBlocked = !lastIsBlocked;
-                }
-            }
-        }
+    public final LineOfSightExtents getExtents() {
+        return extents;
     }
     
     /**
@@ -176,6 +159,7 @@ public final class LineOfSightScannerDouble {
         snapshot_sx=sx;snapshot_sy=sy;
         clearSuccessors();
         clearStack();
+        resetScanBounds(sx, sy);
 
         generateStartingStates(sx, sy);
         exploreStatesNonTaut(sx, sy);
@@ -188,6 +172,7 @@ public final class LineOfSightScannerDouble {
         snapshot_sx=sx;snapshot_sy=sy;
         clearSuccessors();
         clearStack();
+        resetScanBounds(sx, sy);
 
         generateStartingStates(sx, sy);
         exploreStates(sx, sy);
@@ -200,6 +185,7 @@ public final class LineOfSightScannerDouble {
         snapshot_sx=sx;snapshot_sy=sy;
         clearSuccessors();
         clearStack();
+        resetScanBounds(sx, sy);
 
         generateTwoWayTautStartingStates(sx, sy);
         exploreStates(sx, sy);
@@ -213,6 +199,7 @@ public final class LineOfSightScannerDouble {
         snapshot_sx=sx;snapshot_sy=sy;
         clearSuccessors();
         clearStack();
+        resetScanBounds(sx, sy);
 
         generateIncrementalTautStartingStates(sx, sy, dx, dy);
         exploreStates(sx, sy);
@@ -1071,27 +1058,39 @@ public final class LineOfSightScannerDouble {
     
 
     private final int leftUpExtent(int xL, int y) {
-        return xL > sizeX ? sizeX : leftDownExtents[y+1][xL];
+        int extent = xL > sizeX ? sizeX : leftDownExtents[y+1][xL];
+        extendScanBounds(extent, y+1);
+        return extent;
     }
 
     private final int leftDownExtent(int xL, int y) {
-        return xL > sizeX ? sizeX : leftDownExtents[y][xL];
+        int extent = xL > sizeX ? sizeX : leftDownExtents[y][xL];
+        extendScanBounds(extent, y);
+        return extent;
     }
     
     private final int leftAnyExtent(int xL, int y) {
-        return Math.max(leftDownExtents[y][xL], leftDownExtents[y+1][xL]);
+        int extent = Math.max(leftDownExtents[y][xL], leftDownExtents[y+1][xL]);
+        extendScanBounds(extent, y+1);
+        return extent;
     }
 
     private final int rightUpExtent(int xR, int y) {
-        return xR < 0 ? 0 : rightDownExtents[y+1][xR];
+        int extent = xR < 0 ? 0 : rightDownExtents[y+1][xR];
+        extendScanBounds(extent, y+1);
+        return extent;
     }
 
     private final int rightDownExtent(int xR, int y) {
-        return xR < 0 ? 0 : rightDownExtents[y][xR];
+        int extent = xR < 0 ? 0 : rightDownExtents[y][xR];
+        extendScanBounds(extent, y);
+        return extent;
     }
 
     private final int rightAnyExtent(int xR, int y) {
-        return Math.min(rightDownExtents[y][xR], rightDownExtents[y+1][xR]);
+        int extent = Math.min(rightDownExtents[y][xR], rightDownExtents[y+1][xR]);
+        extendScanBounds(extent, y+1);
+        return extent;
     }
 
     private final void generateUpwards(double leftBound, double rightBound, int sx, int sy, int currY, boolean leftInclusive, boolean rightInclusive) {
@@ -1126,6 +1125,8 @@ public final class LineOfSightScannerDouble {
         // Divide up the intervals.
         while(true) {
             int right = rightDownExtents[checkY][leftFloor]; // it's actually rightDownExtents for exploreDownwards. (thus we use checkY = currY - 2)
+            extendScanBounds(leftFloor, checkY);
+            extendScanBounds(right, checkY);
             if (isLessThanOrEqual(rightBound, right)) break; // right < rightBound            
             
             // Only push unblocked ( bottomRightOfBlockedTile )
@@ -1154,11 +1155,6 @@ public final class LineOfSightScannerDouble {
     public static void clearMemory() {
         snapshotList.clear();
         snapshots.clear();
-        rightDownExtents = null;
-        leftDownExtents = null;
-        intervalStack = null;
-        successorsX = null;
-        successorsY = null;
         System.gc();
     }
     
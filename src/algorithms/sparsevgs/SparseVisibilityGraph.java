@@ -4,10 +4,11 @@ import grid.GridGraph;
 
 import java.util.Arrays;
 
+import algorithms.datatypes.PreprocessedGraphRegistry;
+
 public class SparseVisibilityGraph {
 
-    private static SparseVisibilityGraph storedVisibilityGraph;
-    private static GridGraph storedGridGraph;
+    private static final String REGISTRY_KIND = "SVG";
     
     private final GridGraph graph;
     private LineOfSightScannerDouble losScanner;
@@ -44,29 +45,31 @@ public class SparseVisibilityGraph {
 
     public final void initialise(int sx, int sy, int ex, int ey) {
         // Check if graph already initialised
-        if (nodes == null) {
-            long _st = System.nanoTime();
-            losScanner = new LineOfSightScannerDouble(graph);
-            
-            nodes = new SVGNode[11];
-            nNodes = 0;
-            
-            addNodes();
-            
-            originalSize = nNodes;
-            maxSize = nNodes + 2;
-            nodes = Arrays.copyOf(nodes, maxSize);
-            
-            addAllEdges();
-            
-            long _ed = System.nanoTime();
-            System.out.println("Construction Time: " + (_ed-_st)/1000000.);
-        }
+        if (nodes == null) constructGraph();
 
         restoreOriginalGraph();
         addStartAndEnd(sx,sy,ex,ey);
     }
 
+    private final void constructGraph() {
+        long _st = System.nanoTime();
+        losScanner = new LineOfSightScannerDouble(graph);
+        
+        nodes = new SVGNode[11];
+        nNodes = 0;
+        
+        addNodes();
+        
+        originalSize = nNodes;
+        maxSize = nNodes + 2;
+        nodes = Arrays.copyOf(nodes, maxSize);
+        
+        addAllEdges();
+        
+        long _ed = System.nanoTime();
+        System.out.println("Construction Time: " + (_ed-_st)/1000000.);
+    }
+
     private final void addNodes() {
         nodeIndex = new int[sizeYPlusOne*sizeXPlusOne];
         for (int y=0; y<sizeYPlusOne; y++) {
@@ -279,21 +282,40 @@ public class SparseVisibilityGraph {
         return newGraph;
     }
     
+    /**
+     * The stored graph is kept in the PreprocessedGraphRegistry. Each call returns a new copy sharing its nodes.
+     */
     public static final SparseVisibilityGraph getStoredGraph(GridGraph graph) {
-        SparseVisibilityGraph visibilityGraph = null;
-        if (storedGridGraph != graph || storedVisibilityGraph == null) {
-            //("Get new graph");
-            visibilityGraph = new SparseVisibilityGraph(graph);
-            storedVisibilityGraph = visibilityGraph;
-            storedGridGraph = graph;
-        } else {
-            //("Reuse graph");
-            visibilityGraph = repurpose(storedVisibilityGraph);
-            storedVisibilityGraph = visibilityGraph;
-        }
+        SparseVisibilityGraph storedVisibilityGraph = PreprocessedGraphRegistry.get(REGISTRY_KIND, graph,
+                SparseVisibilityGraph::build, SparseVisibilityGraph::estimatedFootprintBytes);
+        SparseVisibilityGraph visibilityGraph = repurpose(storedVisibilityGraph);
+        PreprocessedGraphRegistry.replace(REGISTRY_KIND, graph, visibilityGraph);
         return visibilityGraph;
     }
 
+    private static final SparseVisibilityGraph build(GridGraph graph) {
+        SparseVisibilityGraph visibilityGraph = new SparseVisibilityGraph(graph);
+        visibilityGraph.constructGraph();
+        return visibilityGraph;
+    }
+
+    /**
+     * Estimated size in bytes of the graph, including its line of sight scanner.
+     */
+    public final long estimatedFootprintBytes() {
+        long size = PreprocessedGraphRegistry.OBJECT_HEADER;
+        size += PreprocessedGraphRegistry.sizeOf(nodeIndex);
+        size += PreprocessedGraphRegistry.ARRAY_HEADER + PreprocessedGraphRegistry.REFERENCE*nodes.length;
+        for (int i=0;i<nNodes;++i) {
+            size += nodes[i].estimatedFootprintBytes();
+        }
+        if (losScanner != null) {
+            size += PreprocessedGraphRegistry.sizeOf(losScanner.getExtents().leftDownExtents);
+            size += PreprocessedGraphRegistry.sizeOf(losScanner.getExtents().rightDownExtents);
+        }
+        return size;
+    }
+
     private final void printAllEdges() {
         for (int i=0;i<nNodes;++i) {
             SVGNode node = nodes[i];
@@ -305,8 +327,7 @@ public class SparseVisibilityGraph {
     }
 
     public static void clearMemory() {
-        storedVisibilityGraph = null;
-        storedGridGraph = null;
+        PreprocessedGraphRegistry.remove(REGISTRY_KIND);
         System.gc();
     }
     
@@ -342,6 +363,12 @@ final class SVGNode {
         edgeWeights = new float[11];
     }
 
+    final long estimatedFootprintBytes() {
+        // Fields: x, y, nEdges, hasEdgeToGoal and two array references.
+        return PreprocessedGraphRegistry.OBJECT_HEADER + 32 +
+                PreprocessedGraphRegistry.sizeOf(outgoingEdges) + PreprocessedGraphRegistry.sizeOf(edgeWeights);
+    }
+
     public final void addEdge(int toIndex, float weight) {
         if (nEdges >= outgoingEdges.length) {
             outgoingEdges = Arrays.copyOf(outgoingEdges, outgoingEdges.length*2);
@@ -8,7 +8,6 @@ import java.util.List;
 
 import algorithms.AStarStaticMemory;
 import algorithms.datatypes.SnapshotItem;
-import algorithms.priorityqueue.ReusableIndirectHeap;
 
 
 public class SparseVisibilityGraphAlgorithm extends AStarStaticMemory {
@@ -35,7 +34,7 @@ public class SparseVisibilityGraphAlgorithm extends AStarStaticMemory {
 
         int size = visibilityGraph.size();
         int memorySize = visibilityGraph.maxSize();
-        pq = new ReusableIndirectHeap(size, memorySize);
+        pq = priorityQueueType.forCurrentThread(memorySize);
         this.initialiseMemory(memorySize, Float.POSITIVE_INFINITY, -1, false);
         
         initialise(visibilityGraph.startNode());
@@ -207,7 +206,7 @@ public class SparseVisibilityGraphAlgorithm extends AStarStaticMemory {
                     path[2] = visibilityGraph.xCoordinateOf(dest);
                     path[3] = visibilityGraph.yCoordinateOf(dest);
                     
-                    SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.GREEN);
+                    SnapshotItem snapshotItem = snapshotItem(path, Color.GREEN);
                     snapshotItemList.add(snapshotItem);
                 }
             }
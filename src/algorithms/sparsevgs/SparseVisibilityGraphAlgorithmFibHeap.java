@@ -7,7 +7,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import algorithms.PathFindingAlgorithm;
-import algorithms.datatypes.Memory;
 import algorithms.datatypes.SnapshotItem;
 
 import algorithms.jgrapht.FibonacciHeap;
@@ -242,7 +241,7 @@ public class SparseVisibilityGraphAlgorithmFibHeap extends PathFindingAlgorithm
                     path[2] = visibilityGraph.xCoordinateOf(dest);
                     path[3] = visibilityGraph.yCoordinateOf(dest);
                     
-                    SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.GREEN);
+                    SnapshotItem snapshotItem = snapshotItem(path, Color.GREEN);
                     snapshotItemList.add(snapshotItem);
                 }
             }
@@ -259,27 +258,27 @@ public class SparseVisibilityGraphAlgorithmFibHeap extends PathFindingAlgorithm
 
 
     private final int parent(int index) {
-        return Memory.parent(index);
+        return memory.parent(index);
     }
     
     private final void setParent(int index, int value) {
-        Memory.setParent(index, value);
+        memory.setParent(index, value);
     }
     
     private final float distance(int index) {
-        return Memory.distance(index);
+        return memory.distance(index);
     }
     
     private final void setDistance(int index, float value) {
-        Memory.setDistance(index, value);
+        memory.setDistance(index, value);
     }
     
     private final boolean visited(int index) {
-        return Memory.visited(index);
+        return memory.visited(index);
     }
     
     private final void setVisited(int index, boolean value) {
-        Memory.setVisited(index, value);
+        memory.setVisited(index, value);
     }
 
     public static void clearMemory() {
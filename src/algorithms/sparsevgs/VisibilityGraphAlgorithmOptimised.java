@@ -9,7 +9,6 @@ import java.util.List;
 import main.utility.TimeCounter;
 import algorithms.AStarStaticMemory;
 import algorithms.datatypes.SnapshotItem;
-import algorithms.priorityqueue.ReusableIndirectHeap;
 
 
 public class VisibilityGraphAlgorithmOptimised extends AStarStaticMemory {
@@ -36,7 +35,7 @@ public class VisibilityGraphAlgorithmOptimised extends AStarStaticMemory {
 
         int size = visibilityGraph.size();
         int memorySize = visibilityGraph.maxSize();
-        pq = new ReusableIndirectHeap(size, memorySize);
+        pq = priorityQueueType.forCurrentThread(memorySize);
         this.initialiseMemory(memorySize, Float.POSITIVE_INFINITY, -1, false);
         
         initialise(visibilityGraph.startNode());
@@ -208,7 +207,7 @@ TimeCounter.counterA++;
                     path[2] = visibilityGraph.xCoordinateOf(dest);
                     path[3] = visibilityGraph.yCoordinateOf(dest);
                     
-                    SnapshotItem snapshotItem = SnapshotItem.generate(path, Color.GREEN);
+                    SnapshotItem snapshotItem = snapshotItem(path, Color.GREEN);
                     snapshotItemList.add(snapshotItem);
                 }
             }
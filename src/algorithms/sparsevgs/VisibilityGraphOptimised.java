@@ -4,10 +4,11 @@ import grid.GridGraph;
 
 import java.util.Arrays;
 
+import algorithms.datatypes.PreprocessedGraphRegistry;
+
 public class VisibilityGraphOptimised {
 
-    private static VisibilityGraphOptimised storedVisibilityGraph;
-    private static GridGraph storedGridGraph;
+    private static final String REGISTRY_KIND = "VGOptimised";
     
     private final GridGraph graph;
     private LineOfSightScanner losScanner;
@@ -39,29 +40,31 @@ public class VisibilityGraphOptimised {
 
     public final void initialise(int sx, int sy, int ex, int ey) {
         // Check if graph already initialised
-        if (nodes == null) {
-            long _st = System.nanoTime();
-            losScanner = new LineOfSightScanner(graph);
-            
-            nodes = new VGNode[11];
-            nNodes = 0;
-            
-            addNodes();
-            
-            originalSize = nNodes;
-            maxSize = nNodes + 2;
-            nodes = Arrays.copyOf(nodes, maxSize);
-            
-            addAllEdges();
-            
-            long _ed = System.nanoTime();
-            System.out.println("Construction Time: " + (_ed-_st)/1000000.);
-        }
+        if (nodes == null) constructGraph();
 
         restoreOriginalGraph();
         addStartAndEnd(sx,sy,ex,ey);
     }
 
+    private final void constructGraph() {
+        long _st = System.nanoTime();
+        losScanner = new LineOfSightScanner(graph);
+        
+        nodes = new VGNode[11];
+        nNodes = 0;
+        
+        addNodes();
+        
+        originalSize = nNodes;
+        maxSize = nNodes + 2;
+        nodes = Arrays.copyOf(nodes, maxSize);
+        
+        addAllEdges();
+        
+        long _ed = System.nanoTime();
+        System.out.println("Construction Time: " + (_ed-_st)/1000000.);
+    }
+
     private final void addNodes() {
         nodeIndex = new int[graph.sizeY+1][];
         for (int y=0;y<nodeIndex.length;y++) {
@@ -275,21 +278,40 @@ public class VisibilityGraphOptimised {
         return newGraph;
     }
     
+    /**
+     * The stored graph is kept in the PreprocessedGraphRegistry. Each call returns a new copy sharing its nodes.
+     */
     public static final VisibilityGraphOptimised getStoredGraph(GridGraph graph) {
-        VisibilityGraphOptimised visibilityGraph = null;
-        if (storedGridGraph != graph || storedVisibilityGraph == null) {
-            //("Get new graph");
-            visibilityGraph = new VisibilityGraphOptimised(graph);
-            storedVisibilityGraph = visibilityGraph;
-            storedGridGraph = graph;
-        } else {
-            //("Reuse graph");
-            visibilityGraph = repurpose(storedVisibilityGraph);
-            storedVisibilityGraph = visibilityGraph;
-        }
+        VisibilityGraphOptimised storedVisibilityGraph = PreprocessedGraphRegistry.get(REGISTRY_KIND, graph,
+                VisibilityGraphOptimised::build, VisibilityGraphOptimised::estimatedFootprintBytes);
+        VisibilityGraphOptimised visibilityGraph = repurpose(storedVisibilityGraph);
+        PreprocessedGraphRegistry.replace(REGISTRY_KIND, graph, visibilityGraph);
         return visibilityGraph;
     }
 
+    private static final VisibilityGraphOptimised build(GridGraph graph) {
+        VisibilityGraphOptimised visibilityGraph = new VisibilityGraphOptimised(graph);
+        visibilityGraph.constructGraph();
+        return visibilityGraph;
+    }
+
+    /**
+     * Estimated size in bytes of the graph, including its line of sight scanner.
+     */
+    public final long estimatedFootprintBytes() {
+        long size = PreprocessedGraphRegistry.OBJECT_HEADER;
+        size += PreprocessedGraphRegistry.sizeOf(nodeIndex);
+        size += PreprocessedGraphRegistry.ARRAY_HEADER + PreprocessedGraphRegistry.REFERENCE*nodes.length;
+        for (int i=0;i<nNodes;++i) {
+            size += nodes[i].estimatedFootprintBytes();
+        }
+        if (losScanner != null) {
+            size += PreprocessedGraphRegistry.sizeOf(losScanner.getExtents().leftDownExtents);
+            size += PreprocessedGraphRegistry.sizeOf(losScanner.getExtents().rightDownExtents);
+        }
+        return size;
+    }
+
     private final void printAllEdges() {
         for (int i=0;i<nNodes;++i) {
             VGNode node = nodes[i];
@@ -301,8 +323,7 @@ public class VisibilityGraphOptimised {
     }
 
     public static void clearMemory() {
-        storedVisibilityGraph = null;
-        storedGridGraph = null;
+        PreprocessedGraphRegistry.remove(REGISTRY_KIND);
         System.gc();
     }
     
@@ -338,6 +359,12 @@ final class VGNode {
         edgeWeights = new float[11];
     }
 
+    final long estimatedFootprintBytes() {
+        // Fields: x, y, nEdges, hasEdgeToGoal and two array references.
+        return PreprocessedGraphRegistry.OBJECT_HEADER + 32 +
+                PreprocessedGraphRegistry.sizeOf(outgoingEdges) + PreprocessedGraphRegistry.sizeOf(edgeWeights);
+    }
+
     public final void addEdge(int toIndex, float weight) {
         if (nEdges >= outgoingEdges.length) {
             outgoingEdges = Arrays.copyOf(outgoingEdges, outgoingEdges.length*2);
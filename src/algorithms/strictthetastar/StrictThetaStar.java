@@ -2,7 +2,6 @@ package algorithms.strictthetastar;
 
 import grid.GridGraph;
 import algorithms.BasicThetaStar;
-import algorithms.priorityqueue.ReusableIndirectHeap;
 
 /**
  * An modification of Theta* that I am experimenting with. -Oh
@@ -48,7 +47,7 @@ public class StrictThetaStar extends BasicThetaStar {
         int start = toOneDimIndex(sx, sy);
         finish = toOneDimIndex(ex, ey);
 
-        pq = new ReusableIndirectHeap(totalSize);
+        pq = priorityQueueType.forCurrentThread(totalSize);
         this.initialiseMemory(totalSize, Float.POSITIVE_INFINITY, -1, false);
         
         initialise(start);
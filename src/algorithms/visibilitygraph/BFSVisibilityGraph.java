@@ -2,12 +2,12 @@ package algorithms.visibilitygraph;
 
 import grid.GridGraph;
 
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.LinkedList;
-import java.util.Queue;
 
 import algorithms.VisibilityGraphAlgorithm;
 import algorithms.datatypes.Point;
+import algorithms.datatypes.SearchBuffers;
 
 public class BFSVisibilityGraph extends VisibilityGraphAlgorithm {
 
@@ -29,30 +29,34 @@ public class BFSVisibilityGraph extends VisibilityGraphAlgorithm {
         
         int start = visibilityGraph.startNode();
         int finish = visibilityGraph.endNode();
-        Queue<Integer> queue = new LinkedList<>();
-        parent = new int[visibilityGraph.size()];
-        visited = new boolean[visibilityGraph.size()];
-        for (int i=0; i<parent.length; i++) {
-            parent[i] = -1;
-        }
+        int size = visibilityGraph.size();
+        SearchBuffers buffers = SearchBuffers.forCurrentThread();
+        parent = buffers.parent(size);
+        visited = buffers.visited(size);
+        Arrays.fill(parent, -1);
+        Arrays.fill(visited, false);
         
-        queue.offer(start);
+        // Every node is enqueued at most once.
+        int[] queue = buffers.indexList(size);
+        int queueHead = 0;
+        int queueTail = 0;
+        queue[queueTail++] = start;
         visited[start] = true;
         
-        while (queue != null && !queue.isEmpty()) {
-            int current = queue.poll();
+        while (queue != null && queueHead < queueTail) {
+            int current = queue[queueHead++];
             
-            Iterator<Edge> itr = visibilityGraph.edgeIterator(current);
-            while (itr.hasNext()) {
-                Edge edge = itr.next();
-                if (!visited[edge.dest]) {
-                    visited[edge.dest] = true;
-                    parent[edge.dest] = current;
-                    if (edge.dest == finish) {
+            int nEdges = visibilityGraph.nOutgoingEdges(current);
+            for (int k=0; k<nEdges; k++) {
+                int dest = visibilityGraph.outgoingEdge(current, k);
+                if (!visited[dest]) {
+                    visited[dest] = true;
+                    parent[dest] = current;
+                    if (dest == finish) {
                         queue = null;
                         break;
                     }
-                    queue.offer(edge.dest);
+                    queue[queueTail++] = dest;
                 }
             }
             maybeSaveSearchSnapshot();
@@ -2,17 +2,19 @@ package algorithms.visibilitygraph;
 
 import grid.GridGraph;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 
 import algorithms.datatypes.Point;
+import algorithms.datatypes.PreprocessedGraphRegistry;
 
 public class VisibilityGraph {
-    private static VisibilityGraph storedVisibilityGraph;
-    private static GridGraph storedGridGraph;
+    private static final String REGISTRY_KIND = "VisibilityGraph";
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final float NO_EDGE = Float.POSITIVE_INFINITY;
     
     protected final GridGraph graph;
-    protected int[][] nodeIndex;
+    private final int sizeXPlusOne;
+    protected int[] nodeIndex; // Flattened 2D Array
     protected int startIndex;
     protected boolean startIsNewNode;
     protected int endIndex;
@@ -21,11 +23,34 @@ public class VisibilityGraph {
     
     private Runnable saveSnapshot;
     
-    ArrayList<Point> nodeList;
-    ArrayList<ArrayList<Edge>> outgoingEdgeList;
+    // Nodes: Indexed by node Index. The corners come first, followed by the start and end if they are not corners.
+    private int nNodes;
+    private int[] xPositions;
+    private int[] yPositions;
+
+    // Edges between corners, in compressed sparse row form.
+    // The outgoing edges of corner u are at [outgoingEdgeOffsets[u], outgoingEdgeOffsets[u+1]).
+    private int nCorners;
+    private int[] outgoingEdgeOffsets;
+    private int[] outgoingEdges;          // value: nodeIndex of destination
+    private float[] outgoingEdgeWeights;  // value: weight of edge to destination
+
+    // Construction only: the pairs (i,j), i<j, of corners with line of sight, in the order they are found.
+    private int[] edgePairs;
+    private int nEdgePairs;
+
+    // Start and end nodes which are not corners. Temporary node t has node index nCorners+t.
+    // Its outgoing edges are kept in a short list. An edge from corner u to temporary node t
+    // is kept as the weight edgeWeightsToTemporaryNode[t][u] (NO_EDGE if there is none).
+    // These arrays are shared by all graphs repurposed from the same stored graph.
+    private int[][] temporaryOutgoingEdges;
+    private float[][] temporaryOutgoingEdgeWeights;
+    private int[] nTemporaryOutgoingEdges;
+    private float[][] edgeWeightsToTemporaryNode;
 
     public VisibilityGraph(GridGraph graph, int sx, int sy, int ex, int ey) {
         this.graph = graph;
+        this.sizeXPlusOne = graph.sizeX+1;
         this.sx = sx;
         this.sy = sy;
         this.ex = ex;
@@ -37,13 +62,13 @@ public class VisibilityGraph {
     }
 
     public void initialise() {
-        if (nodeList != null) {
+        if (xPositions != null) {
             //("already initialised.");
             return;
         }
         
-        nodeList = new ArrayList<>();
-        outgoingEdgeList = new ArrayList<>();
+        xPositions = new int[INITIAL_CAPACITY];
+        yPositions = new int[INITIAL_CAPACITY];
         
         addNodes();
         addAllEdges();
@@ -51,72 +76,84 @@ public class VisibilityGraph {
     }
 
     protected void addNodes() {
-        nodeIndex = new int[graph.sizeY+1][];
-        for (int y=0;y<nodeIndex.length;y++) {
-            nodeIndex[y] = new int[graph.sizeX+1];
-            for (int x=0; x<nodeIndex[y].length; x++) {
+        nodeIndex = new int[(graph.sizeY+1)*sizeXPlusOne];
+        for (int y=0;y<=graph.sizeY;y++) {
+            for (int x=0; x<sizeXPlusOne; x++) {
                 if (isCorner(x, y)) {
-                    nodeIndex[y][x] = assignNode(x, y);
+                    nodeIndex[y*sizeXPlusOne + x] = assignNode(x, y);
                 } else {
-                    nodeIndex[y][x] = -1;
+                    nodeIndex[y*sizeXPlusOne + x] = -1;
                 }
             }
         }
     }
 
     protected final int assignNode(int x, int y) {
-        int index = nodeList.size();
-        nodeList.add(new Point(x,y));
-        outgoingEdgeList.add(new ArrayList<Edge>());
+        int index = nNodes++;
+        if (index == xPositions.length) {
+            xPositions = Arrays.copyOf(xPositions, xPositions.length*2);
+            yPositions = Arrays.copyOf(yPositions, yPositions.length*2);
+        }
+        xPositions[index] = x;
+        yPositions[index] = y;
         return index;
     }
 
     protected int assignNodeAndConnect(int x, int y) {
-        int index = nodeList.size();
-        nodeList.add(new Point(x,y));
-        outgoingEdgeList.add(new ArrayList<Edge>());
+        int index = assignNode(x, y);
+        int t = index - nCorners;
+        nTemporaryOutgoingEdges[t] = 0;
 
-        for (int i=0; i<nodeList.size()-1; i++) {
-            Point toPoint = coordinateOf(i);
-            if (graph.lineOfSight(x, y, toPoint.x, toPoint.y)) {
-                float weight = computeWeight(x, y, toPoint.x, toPoint.y);
-                addEdge(i, index, weight);
-                addEdge(index, i, weight);
+        for (int i=0; i<index; i++) {
+            int toX = xPositions[i];
+            int toY = yPositions[i];
+            if (graph.lineOfSight(x, y, toX, toY)) {
+                float weight = computeWeight(x, y, toX, toY);
+                if (i < nCorners) {
+                    edgeWeightsToTemporaryNode[t][i] = weight;
+                } else {
+                    addTemporaryEdge(i - nCorners, index, weight);
+                }
+                addTemporaryEdge(t, i, weight);
             }
         }
         
         return index;
     }
     
+    private final void addTemporaryEdge(int t, int toI, float weight) {
+        int n = nTemporaryOutgoingEdges[t]++;
+        if (n == temporaryOutgoingEdges[t].length) {
+            temporaryOutgoingEdges[t] = Arrays.copyOf(temporaryOutgoingEdges[t], n*2);
+            temporaryOutgoingEdgeWeights[t] = Arrays.copyOf(temporaryOutgoingEdgeWeights[t], n*2);
+        }
+        temporaryOutgoingEdges[t][n] = toI;
+        temporaryOutgoingEdgeWeights[t][n] = weight;
+    }
+    
     /**
-     * Assumption: start and end are the last two nodes, if they exist.
+     * Assumption: start and end are the only nodes that are not corners, if they exist.
      */
     protected void removeStartAndEnd() {
         if (startIsNewNode) {
-            int index = nodeList.size()-1;
-            nodeIndex[sy][sx] = -1;
-            nodeList.remove(index);
-            outgoingEdgeList.remove(index);
-            removeInstancesOf(index);
-
+            nodeIndex[sy*sizeXPlusOne + sx] = -1;
             startIsNewNode = false;
         }
         if (endIsNewNode) {
-            int index = nodeList.size()-1;
-            nodeIndex[ey][ex] = -1;
-            nodeList.remove(index);
-            outgoingEdgeList.remove(index);
-            removeInstancesOf(index);
-
+            nodeIndex[ey*sizeXPlusOne + ex] = -1;
             endIsNewNode = false;
         }
-    }
-    
-    protected final void removeInstancesOf(int index) {
-        for (ArrayList<Edge> edgeList : outgoingEdgeList) {
-            Edge edge = new Edge(0, index, 0);
-            edgeList.remove(edge);
+        
+        for (int t=0; t<nNodes-nCorners; ++t) {
+            int[] edges = temporaryOutgoingEdges[t];
+            for (int k=0; k<nTemporaryOutgoingEdges[t]; ++k) {
+                if (edges[k] < nCorners) {
+                    edgeWeightsToTemporaryNode[t][edges[k]] = NO_EDGE;
+                }
+            }
+            nTemporaryOutgoingEdges[t] = 0;
         }
+        nNodes = nCorners;
     }
     
     protected void addStartAndEnd(int sx, int sy, int ex, int ey) {
@@ -124,7 +161,7 @@ public class VisibilityGraph {
             startIndex = indexOf(sx, sy);
             startIsNewNode = false;
         } else {
-            startIndex = nodeIndex[sy][sx] = assignNodeAndConnect(sx, sy);
+            startIndex = nodeIndex[sy*sizeXPlusOne + sx] = assignNodeAndConnect(sx, sy);
             startIsNewNode = true;
         }
 
@@ -132,29 +169,83 @@ public class VisibilityGraph {
             endIndex = indexOf(ex, ey);
             endIsNewNode = false;
         } else {
-            endIndex = nodeIndex[ey][ex] = assignNodeAndConnect(ex, ey);
+            endIndex = nodeIndex[ey*sizeXPlusOne + ex] = assignNodeAndConnect(ex, ey);
             endIsNewNode = true;
         }
     }
     
     protected void addAllEdges() {
-        int saveFactor = nodeList.size()/10;
+        nCorners = nNodes;
+        edgePairs = new int[INITIAL_CAPACITY];
+        nEdgePairs = 0;
+        
+        int saveFactor = nCorners/10;
         if (saveFactor == 0) saveFactor = 1;
         
-        for (int i=0; i<nodeList.size(); i++) {
-            Point fromPoint = coordinateOf(i);
-            for (int j=i+1; j<nodeList.size(); j++) {
-                Point toPoint = coordinateOf(j);
-                if (graph.lineOfSight(fromPoint.x, fromPoint.y, toPoint.x, toPoint.y)) {
-                    float weight = computeWeight(fromPoint.x, fromPoint.y, toPoint.x, toPoint.y);
-                    addEdge(i, j, weight);
-                    addEdge(j, i, weight);
+        for (int i=0; i<nCorners; i++) {
+            int fromX = xPositions[i];
+            int fromY = yPositions[i];
+            for (int j=i+1; j<nCorners; j++) {
+                if (graph.lineOfSight(fromX, fromY, xPositions[j], yPositions[j])) {
+                    addEdgePair(i, j);
                 }
             }
             
             if (i%saveFactor == 0)
                 maybeSaveSnapshot();
         }
+        
+        compressEdges();
+        edgePairs = null;
+        
+        // Room for the start and end.
+        xPositions = Arrays.copyOf(xPositions, nCorners+2);
+        yPositions = Arrays.copyOf(yPositions, nCorners+2);
+        temporaryOutgoingEdges = new int[2][INITIAL_CAPACITY];
+        temporaryOutgoingEdgeWeights = new float[2][INITIAL_CAPACITY];
+        nTemporaryOutgoingEdges = new int[2];
+        edgeWeightsToTemporaryNode = new float[2][nCorners];
+        Arrays.fill(edgeWeightsToTemporaryNode[0], NO_EDGE);
+        Arrays.fill(edgeWeightsToTemporaryNode[1], NO_EDGE);
+    }
+    
+    private final void addEdgePair(int i, int j) {
+        if (nEdgePairs*2 == edgePairs.length) {
+            edgePairs = Arrays.copyOf(edgePairs, edgePairs.length*2);
+        }
+        edgePairs[nEdgePairs*2] = i;
+        edgePairs[nEdgePairs*2+1] = j;
+        nEdgePairs++;
+    }
+    
+    /**
+     * Builds the CSR arrays from the edge pairs found so far. Each pair gives an edge in both directions.
+     * The outgoing edges of each node keep the order in which the pairs were found.
+     */
+    private final void compressEdges() {
+        outgoingEdgeOffsets = new int[nCorners+1];
+        for (int p=0; p<nEdgePairs; ++p) {
+            outgoingEdgeOffsets[edgePairs[p*2]+1]++;
+            outgoingEdgeOffsets[edgePairs[p*2+1]+1]++;
+        }
+        for (int i=0; i<nCorners; ++i) {
+            outgoingEdgeOffsets[i+1] += outgoingEdgeOffsets[i];
+        }
+        
+        outgoingEdges = new int[nEdgePairs*2];
+        outgoingEdgeWeights = new float[nEdgePairs*2];
+        int[] nextEdge = Arrays.copyOf(outgoingEdgeOffsets, nCorners);
+        for (int p=0; p<nEdgePairs; ++p) {
+            int i = edgePairs[p*2];
+            int j = edgePairs[p*2+1];
+            float weight = computeWeight(xPositions[i], yPositions[i], xPositions[j], yPositions[j]);
+            int e = nextEdge[i]++;
+            outgoingEdges[e] = j;
+            outgoingEdgeWeights[e] = weight;
+            e = nextEdge[j]++;
+            outgoingEdges[e] = i;
+            outgoingEdgeWeights[e] = weight;
+        }
     }
     
     protected final float computeWeight(int x1, int y1, int x2, int y2) {
@@ -164,18 +255,12 @@ public class VisibilityGraph {
     }
     
     
-    protected final void addEdge(int fromI, int toI, float weight) {
-        ArrayList<Edge> edgeList = outgoingEdgeList.get(fromI);
-        edgeList.add(new Edge(fromI, toI, weight));
-    }
-    
-    
     protected int indexOf(int x, int y) {
-        return nodeIndex[y][x];
+        return nodeIndex[y*sizeXPlusOne + x];
     }
     
     protected boolean isNode(int x, int y) {
-        return nodeIndex[y][x] != -1;
+        return nodeIndex[y*sizeXPlusOne + x] != -1;
     }
     
 
@@ -206,31 +291,89 @@ public class VisibilityGraph {
 
     
     public Point coordinateOf(int index) {
-        return nodeList.get(index);
+        return new Point(xPositions[index], yPositions[index]);
+    }
+    
+    public final int xCoordinateOf(int index) {
+        return xPositions[index];
+    }
+    
+    public final int yCoordinateOf(int index) {
+        return yPositions[index];
     }
     
     public int size() {
-        return nodeList.size();
+        return nNodes;
     }
     
     public int computeSumDegrees() {
         int sum = 0;
-        for (ArrayList<Edge> list : outgoingEdgeList) {
-            sum += list.size();
+        for (int i=0; i<nNodes; i++) {
+            sum += nOutgoingEdges(i);
         }
         return sum;
     }
     
-    public Iterator<Edge> edgeIterator(int source) {
-        return outgoingEdgeList.get(source).iterator();
+    /**
+     * Outgoing edges are numbered 0 to nOutgoingEdges(source)-1. The edges of a corner to other corners come first,
+     * followed by its edges to the start and end.
+     */
+    public final int nOutgoingEdges(int source) {
+        if (source >= nCorners) {
+            return nTemporaryOutgoingEdges[source - nCorners];
+        }
+        int n = outgoingEdgeOffsets[source+1] - outgoingEdgeOffsets[source];
+        for (int t=0; t<nNodes-nCorners; ++t) {
+            if (edgeWeightsToTemporaryNode[t][source] != NO_EDGE) n++;
+        }
+        return n;
+    }
+    
+    /**
+     * @return the node index of the destination of the k-th outgoing edge of source.
+     */
+    public final int outgoingEdge(int source, int k) {
+        if (source >= nCorners) {
+            return temporaryOutgoingEdges[source - nCorners][k];
+        }
+        int e = outgoingEdgeOffsets[source] + k;
+        if (e < outgoingEdgeOffsets[source+1]) {
+            return outgoingEdges[e];
+        }
+        return nCorners + temporaryNodeOfEdge(source, e - outgoingEdgeOffsets[source+1]);
+    }
+    
+    /**
+     * @return the weight of the k-th outgoing edge of source.
+     */
+    public final float outgoingEdgeWeight(int source, int k) {
+        if (source >= nCorners) {
+            return temporaryOutgoingEdgeWeights[source - nCorners][k];
+        }
+        int e = outgoingEdgeOffsets[source] + k;
+        if (e < outgoingEdgeOffsets[source+1]) {
+            return outgoingEdgeWeights[e];
+        }
+        return edgeWeightsToTemporaryNode[temporaryNodeOfEdge(source, e - outgoingEdgeOffsets[source+1])][source];
+    }
+    
+    /**
+     * @return t such that the edge from corner source to temporary node t is its k-th edge to a temporary node.
+     */
+    private final int temporaryNodeOfEdge(int source, int k) {
+        for (int t=0;;++t) {
+            if (edgeWeightsToTemporaryNode[t][source] != NO_EDGE) {
+                if (k == 0) return t;
+                k--;
+            }
+        }
     }
 
     public Edge getEdge(int source, int dest) {
-        
-        ArrayList<Edge> edges = outgoingEdgeList.get(source);
-        for (Edge edge : edges) {
-            if (edge.dest == dest) {
-                return edge;
+        int nEdges = nOutgoingEdges(source);
+        for (int k=0; k<nEdges; k++) {
+            if (outgoingEdge(source, k) == dest) {
+                return new Edge(source, dest, outgoingEdgeWeight(source, k));
             }
         }
         return new Edge(source, dest, Float.POSITIVE_INFINITY);
@@ -245,8 +388,10 @@ public class VisibilityGraph {
     }
     
     private void maybeSaveSnapshot() {
-        if (saveSnapshot != null)
+        if (saveSnapshot != null) {
+            compressEdges();
             saveSnapshot.run();
+        }
     }
     
 
@@ -259,32 +404,61 @@ public class VisibilityGraph {
         newGraph.startIsNewNode = oldGraph.startIsNewNode;
         newGraph.endIndex = oldGraph.endIndex;
         newGraph.endIsNewNode = oldGraph.endIsNewNode;
-        newGraph.nodeList = oldGraph.nodeList;
-        newGraph.outgoingEdgeList = oldGraph.outgoingEdgeList;
+        newGraph.nNodes = oldGraph.nNodes;
+        newGraph.xPositions = oldGraph.xPositions;
+        newGraph.yPositions = oldGraph.yPositions;
+        newGraph.nCorners = oldGraph.nCorners;
+        newGraph.outgoingEdgeOffsets = oldGraph.outgoingEdgeOffsets;
+        newGraph.outgoingEdges = oldGraph.outgoingEdges;
+        newGraph.outgoingEdgeWeights = oldGraph.outgoingEdgeWeights;
+        newGraph.temporaryOutgoingEdges = oldGraph.temporaryOutgoingEdges;
+        newGraph.temporaryOutgoingEdgeWeights = oldGraph.temporaryOutgoingEdgeWeights;
+        newGraph.nTemporaryOutgoingEdges = oldGraph.nTemporaryOutgoingEdges;
+        newGraph.edgeWeightsToTemporaryNode = oldGraph.edgeWeightsToTemporaryNode;
         
         newGraph.addStartAndEnd(sx, sy, ex, ey);
         
         return newGraph;
     }
     
+    /**
+     * The stored graph is kept in the PreprocessedGraphRegistry. It is built with the start and end of the first query.
+     * Each call returns a new copy sharing its nodes, with the new start and end added.
+     */
     public static VisibilityGraph getStoredGraph(GridGraph graph, int sx, int sy, int ex, int ey) {
-        VisibilityGraph visibilityGraph = null;
-        if (storedGridGraph != graph || storedVisibilityGraph == null) {
-            //("Get new graph");
-            visibilityGraph = new VisibilityGraph(graph, sx, sy ,ex, ey);
-            storedVisibilityGraph = visibilityGraph;
-            storedGridGraph = graph;
-        } else {
-            //("Reuse graph");
-            visibilityGraph = repurpose(storedVisibilityGraph, sx, sy, ex, ey);
-            storedVisibilityGraph = visibilityGraph;
-        }
+        VisibilityGraph storedVisibilityGraph = PreprocessedGraphRegistry.get(REGISTRY_KIND, graph,
+                g -> build(g, sx, sy, ex, ey), VisibilityGraph::estimatedFootprintBytes);
+        VisibilityGraph visibilityGraph = repurpose(storedVisibilityGraph, sx, sy, ex, ey);
+        PreprocessedGraphRegistry.replace(REGISTRY_KIND, graph, visibilityGraph);
+        return visibilityGraph;
+    }
+
+    private static VisibilityGraph build(GridGraph graph, int sx, int sy, int ex, int ey) {
+        VisibilityGraph visibilityGraph = new VisibilityGraph(graph, sx, sy, ex, ey);
+        visibilityGraph.initialise();
         return visibilityGraph;
     }
 
+    /**
+     * Estimated size in bytes of the graph.
+     */
+    public long estimatedFootprintBytes() {
+        long size = PreprocessedGraphRegistry.OBJECT_HEADER;
+        size += PreprocessedGraphRegistry.sizeOf(nodeIndex);
+        size += PreprocessedGraphRegistry.sizeOf(xPositions);
+        size += PreprocessedGraphRegistry.sizeOf(yPositions);
+        size += PreprocessedGraphRegistry.sizeOf(outgoingEdgeOffsets);
+        size += PreprocessedGraphRegistry.sizeOf(outgoingEdges);
+        size += PreprocessedGraphRegistry.sizeOf(outgoingEdgeWeights);
+        size += PreprocessedGraphRegistry.sizeOf(temporaryOutgoingEdges);
+        size += PreprocessedGraphRegistry.sizeOf(temporaryOutgoingEdgeWeights);
+        size += PreprocessedGraphRegistry.sizeOf(nTemporaryOutgoingEdges);
+        size += PreprocessedGraphRegistry.sizeOf(edgeWeightsToTemporaryNode);
+        return size;
+    }
+
     public static void clearMemory() {
-        storedVisibilityGraph = null;
-        storedGridGraph = null;
+        PreprocessedGraphRegistry.remove(REGISTRY_KIND);
         System.gc();
     }
     
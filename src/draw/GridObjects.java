@@ -5,6 +5,7 @@ import java.util.List;
 
 import algorithms.anya.Fraction;
 import algorithms.datatypes.SnapshotItem;
+import algorithms.datatypes.SnapshotTraceReader;
 
 public class GridObjects {
     private static final Color POINT_COLOR = new Color(0,64,255);
@@ -39,35 +40,62 @@ public class GridObjects {
         GridLineSet gridLineSet = new GridLineSet();
         GridPointSet gridPointSet = new GridPointSet();
         
+        int[] path = new int[7];
         for (SnapshotItem item : snapshot) {
-            Integer[] path = item.path;
-            Color color = item.color;
-            if (path.length == 4) {
-                gridLineSet.addLine(path[0], path[1], path[2], path[3], or(LINE_COLOR,color));
-            } else if (path.length == 2) {
-                gridPointSet.addPoint(path[0], path[1], or(POINT_COLOR,color));
-            } else if (path.length == 7) {
-                // y, xLn, xLd, xRn, xRd, px, py
-                Fraction y = new Fraction (path[0]);
-                Fraction xL = new Fraction(path[1], path[2]);
-                Fraction xR = new Fraction(path[3], path[4]);
-                Fraction xMid = xR.minus(xL).multiplyDivide(1, 2).plus(xL);
-                Fraction px = new Fraction (path[5]);
-                Fraction py = new Fraction (path[6]);
-                gridLineSet.addLine(px, py, xL, y, or(Color.CYAN,color));
-                //gridLineSet.addLine(px, py, xMid, y, or(Color.CYAN,color));
-                gridLineSet.addLine(px, py, xR, y, or(Color.CYAN,color));
-                gridLineSet.addLine(xL, y, xR, y, or(LINE_COLOR,color));
-                gridPointSet.addPoint(path[5], path[6], or(Color.BLUE,color));
-            } else if (path.length == 5) {
-                Fraction y = new Fraction (path[0]);
-                Fraction xL = new Fraction(path[1], path[2]);
-                Fraction xR = new Fraction(path[3], path[4]);
-                gridLineSet.addLine(xL, y, xR, y, or(Color.GREEN,color));
+            if (item.path.length > path.length) continue;
+            for (int i=0; i<item.path.length; ++i) {
+                path[i] = item.path[i];
             }
+            addItem(gridLineSet, gridPointSet, path, item.path.length, item.color);
         }
         return new GridObjects(gridLineSet,gridPointSet);
     }
+    
+    /**
+     * Convert the snapshot the trace reader is currently at into a GridObjects instance.
+     */
+    public static GridObjects create(SnapshotTraceReader trace) {
+        GridLineSet gridLineSet = new GridLineSet();
+        GridPointSet gridPointSet = new GridPointSet();
+        
+        int[] path = new int[7];
+        int nItems = trace.itemCount();
+        for (int i=0; i<nItems; ++i) {
+            int length = trace.itemLength(i);
+            if (length > path.length) continue;
+            for (int j=0; j<length; ++j) {
+                path[j] = trace.itemValue(i, j);
+            }
+            addItem(gridLineSet, gridPointSet, path, length, trace.itemColor(i));
+        }
+        return new GridObjects(gridLineSet,gridPointSet);
+    }
+    
+    private static void addItem(GridLineSet gridLineSet, GridPointSet gridPointSet, int[] path, int length, Color color) {
+        if (length == 4) {
+            gridLineSet.addLine(path[0], path[1], path[2], path[3], or(LINE_COLOR,color));
+        } else if (length == 2) {
+            gridPointSet.addPoint(path[0], path[1], or(POINT_COLOR,color));
+        } else if (length == 7) {
+            // y, xLn, xLd, xRn, xRd, px, py
+            Fraction y = new Fraction (path[0]);
+            Fraction xL = new Fraction(path[1], path[2]);
+            Fraction xR = new Fraction(path[3], path[4]);
+            Fraction xMid = xR.minus(xL).multiplyDivide(1, 2).plus(xL);
+            Fraction px = new Fraction (path[5]);
+            Fraction py = new Fraction (path[6]);
+            gridLineSet.addLine(px, py, xL, y, or(Color.CYAN,color));
+            //gridLineSet.addLine(px, py, xMid, y, or(Color.CYAN,color));
+            gridLineSet.addLine(px, py, xR, y, or(Color.CYAN,color));
+            gridLineSet.addLine(xL, y, xR, y, or(LINE_COLOR,color));
+            gridPointSet.addPoint(path[5], path[6], or(Color.BLUE,color));
+        } else if (length == 5) {
+            Fraction y = new Fraction (path[0]);
+            Fraction xL = new Fraction(path[1], path[2]);
+            Fraction xR = new Fraction(path[3], path[4]);
+            gridLineSet.addLine(xL, y, xR, y, or(Color.GREEN,color));
+        }
+    }
 
     private static Color or(Color color, Color original) {
         return (original==null?color:original);
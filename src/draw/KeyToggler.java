@@ -4,22 +4,28 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.List;
 
 import javax.imageio.ImageIO;
 import javax.swing.JPanel;
 
 public class KeyToggler implements KeyListener {
-    private final ArrayDeque<GridObjects> gridObjectsList;
+    private final List<GridObjects> gridObjectsList;
     private final DrawCanvas drawCanvas;
     private static int imgCount = 0;
     
-    public KeyToggler(DrawCanvas drawCanvas, ArrayList<GridObjects> gridArrayList) {
+    /**
+     * Index of the displayed item in gridObjectsList. Index gridObjectsList.size() is an empty item
+     * shown between the last item and the first.<br>
+     * The list is only read by index, so it can produce its items lazily (e.g. TraceGridObjectsList).
+     */
+    private int current;
+    
+    public KeyToggler(DrawCanvas drawCanvas, List<GridObjects> gridObjectsList) {
         this.drawCanvas = drawCanvas;
-        gridObjectsList = new ArrayDeque<GridObjects>(gridArrayList);
-        gridObjectsList.addLast(GridObjects.nullObject());
-        System.out.println(gridObjectsList.size());
+        this.gridObjectsList = gridObjectsList;
+        current = gridObjectsList.size();
+        System.out.println(gridObjectsList.size() + 1);
         goRight(1, false);
     }
     
@@ -54,21 +60,18 @@ public class KeyToggler implements KeyListener {
      }
 
     private void rotateLeft(boolean stopAtEnd) {
-        if (peekSecondLast(gridObjectsList).isNull()) {
+        int previous = (current + gridObjectsList.size()) % (gridObjectsList.size() + 1);
+        if (isNull(previous)) {
             if (!stopAtEnd) {
-                gridObjectsList.addFirst(gridObjectsList.removeLast());
-                gridObjectsList.addFirst(gridObjectsList.removeLast());
+                current = (previous + gridObjectsList.size()) % (gridObjectsList.size() + 1);
             }
         } else {
-            gridObjectsList.addFirst(gridObjectsList.removeLast());
+            current = previous;
         }
     }
     
-    private GridObjects peekSecondLast(ArrayDeque<GridObjects> list) {
-        GridObjects top = list.removeLast();
-        GridObjects peek = list.peekLast();
-        list.addLast(top);
-        return peek;
+    private boolean isNull(int index) {
+        return index == gridObjectsList.size() || gridObjectsList.get(index).isNull();
     }
     
     private boolean goRight(int amount, boolean stopAtEnd) {
@@ -81,21 +84,21 @@ public class KeyToggler implements KeyListener {
     }
 
     private boolean rotateRight(boolean stopAtEnd) {
-        if (gridObjectsList.getFirst().isNull()) {
+        int next = (current + 1) % (gridObjectsList.size() + 1);
+        if (isNull(next)) {
             if (!stopAtEnd) {
-                gridObjectsList.addLast(gridObjectsList.removeFirst());
-                gridObjectsList.addLast(gridObjectsList.removeFirst());
+                current = (next + 1) % (gridObjectsList.size() + 1);
                 return true;
             }
             return false;
         } else {
-            gridObjectsList.addLast(gridObjectsList.removeFirst());
+            current = next;
             return true;
         }
     }
     
     private void displayLast() {
-        GridObjects gridObjects = gridObjectsList.getLast();
+        GridObjects gridObjects = current == gridObjectsList.size() ? GridObjects.nullObject() : gridObjectsList.get(current);
         GridLineSet gridLineSet = gridObjects.gridLineSet;
         GridPointSet gridPointSet = gridObjects.gridPointSet;
         drawCanvas.changeSet(gridLineSet, gridPointSet);
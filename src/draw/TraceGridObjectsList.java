@@ -0,0 +1,48 @@
+package draw;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import algorithms.datatypes.SnapshotTraceReader;
+
+/**
+ * The snapshots of a trace file as a list of GridObjects, for KeyToggler.<br>
+ * A snapshot is only replayed when it is displayed. The last one converted is cached,
+ * so only the displayed snapshot is held in memory.
+ */
+public class TraceGridObjectsList extends AbstractList<GridObjects> {
+    private final SnapshotTraceReader trace;
+    private final List<GridObjects> appended = new ArrayList<>();
+
+    private int cachedIndex = -1;
+    private GridObjects cached;
+
+    public TraceGridObjectsList(SnapshotTraceReader trace) {
+        this.trace = trace;
+    }
+
+    @Override
+    public GridObjects get(int index) {
+        if (index >= trace.size()) return appended.get(index - trace.size());
+        if (index != cachedIndex) {
+            trace.seek(index);
+            cached = GridObjects.create(trace);
+            cachedIndex = index;
+        }
+        return cached;
+    }
+
+    /**
+     * Adds an item shown after the snapshots of the trace, e.g. the final path.
+     */
+    @Override
+    public boolean add(GridObjects gridObjects) {
+        return appended.add(gridObjects);
+    }
+
+    @Override
+    public int size() {
+        return trace.size() + appended.size();
+    }
+}
@@ -5,6 +5,8 @@ import static org.junit.Assert.assertTrue;
 import grid.GridGraph;
 import main.graphgeneration.DefaultGenerator;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 public class GridGraphTest {
@@ -82,4 +84,174 @@ public class GridGraphTest {
         System.out.println((d2-d1) + " _ " + (d3-d2));
     }
 
+    private static GridGraph randomGrid(Random rand, int sizeX, int sizeY, float blockedRatio) {
+        GridGraph graph = new GridGraph(sizeX, sizeY);
+        for (int y=0;y<sizeY;++y) {
+            for (int x=0;x<sizeX;++x) {
+                graph.setBlocked(x, y, rand.nextFloat() < blockedRatio);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * The tile-by-tile line of sight check that GridGraph.lineOfSight replaced.
+     */
+    private static boolean referenceLineOfSight(GridGraph graph, int x1, int y1, int x2, int y2) {
+        int dy = y2 - y1;
+        int dx = x2 - x1;
+
+        int f = 0;
+
+        int signY = 1;
+        int signX = 1;
+        int offsetX = 0;
+        int offsetY = 0;
+
+        if (dy < 0) {
+            dy *= -1;
+            signY = -1;
+            offsetY = -1;
+        }
+        if (dx < 0) {
+            dx *= -1;
+            signX = -1;
+            offsetX = -1;
+        }
+
+        if (dx >= dy) {
+            while (x1 != x2) {
+                f += dy;
+                if (f >= dx) {
+                    if (graph.isBlocked(x1 + offsetX, y1 + offsetY))
+                        return false;
+                    y1 += signY;
+                    f -= dx;
+                }
+                if (f != 0 && graph.isBlocked(x1 + offsetX, y1 + offsetY))
+                    return false;
+                if (dy == 0 && graph.isBlocked(x1 + offsetX, y1) && graph.isBlocked(x1 + offsetX, y1 - 1))
+                    return false;
+
+                x1 += signX;
+            }
+        }
+        else {
+            while (y1 != y2) {
+                f += dx;
+                if (f >= dy) {
+                    if (graph.isBlocked(x1 + offsetX, y1 + offsetY))
+                        return false;
+                    x1 += signX;
+                    f -= dy;
+                }
+                if (f != 0 && graph.isBlocked(x1 + offsetX, y1 + offsetY))
+                    return false;
+                if (dx == 0 && graph.isBlocked(x1, y1 + offsetY) && graph.isBlocked(x1 - 1, y1 + offsetY))
+                    return false;
+
+                y1 += signY;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void testLineOfSightMatchesReference() {
+        Random rand = new Random(17);
+        float[] blockedRatios = new float[]{0f, 0.02f, 0.1f, 0.3f, 0.6f};
+        int nChecked = 0;
+        int nVisible = 0;
+        for (int t=0;t<60;++t) {
+            int sizeX = 1 + rand.nextInt(t < 30 ? 40 : 200);
+            int sizeY = 1 + rand.nextInt(t < 30 ? 40 : 200);
+            GridGraph graph = randomGrid(rand, sizeX, sizeY, blockedRatios[t%blockedRatios.length]);
+
+            for (int i=0;i<3000;++i) {
+                int x1 = rand.nextInt(sizeX+3) - 1;
+                int y1 = rand.nextInt(sizeY+3) - 1;
+                int x2, y2;
+                switch (i%4) {
+                    case 0: // horizontal
+                        x2 = rand.nextInt(sizeX+3) - 1; y2 = y1; break;
+                    case 1: // vertical
+                        x2 = x1; y2 = rand.nextInt(sizeY+3) - 1; break;
+                    case 2: // diagonal
+                        int d = rand.nextInt(Math.min(sizeX, sizeY)+1) * (rand.nextBoolean() ? 1 : -1);
+                        x2 = Math.max(-1, Math.min(sizeX+1, x1 + d));
+                        y2 = y1 + (x2-x1)*(rand.nextBoolean() ? 1 : -1);
+                        if (y2 < -1 || y2 > sizeY+1) y2 = y1;
+                        break;
+                    default:
+                        x2 = rand.nextInt(sizeX+3) - 1; y2 = rand.nextInt(sizeY+3) - 1; break;
+                }
+                boolean expected = referenceLineOfSight(graph, x1, y1, x2, y2);
+                assertEquals(expected, graph.lineOfSight(x1, y1, x2, y2));
+                nChecked++;
+                if (expected) nVisible++;
+            }
+        }
+        // Make sure both outcomes are well represented.
+        assertTrue(nVisible > nChecked/10);
+        assertTrue(nVisible < nChecked - nChecked/10);
+    }
+
+    @Test
+    public void testLineOfSightAfterSetBlocked() {
+        Random rand = new Random(23);
+        for (int t=0;t<20;++t) {
+            int sizeX = 1 + rand.nextInt(150);
+            int sizeY = 1 + rand.nextInt(150);
+            GridGraph graph = randomGrid(rand, sizeX, sizeY, 0.1f);
+
+            for (int round=0;round<10;++round) {
+                // The first round runs before any vertical line of sight, the later ones edit the built columns.
+                for (int i=0;i<30;++i) {
+                    int x = rand.nextInt(sizeX);
+                    int y = rand.nextInt(sizeY);
+                    graph.setBlocked(x, y, !graph.isBlocked(x, y));
+                }
+                for (int i=0;i<300;++i) {
+                    int x1 = rand.nextInt(sizeX+3) - 1;
+                    int y1 = rand.nextInt(sizeY+3) - 1;
+                    int x2 = i%2 == 0 ? x1 : rand.nextInt(sizeX+3) - 1;
+                    int y2 = rand.nextInt(sizeY+3) - 1;
+                    assertEquals(referenceLineOfSight(graph, x1, y1, x2, y2), graph.lineOfSight(x1, y1, x2, y2));
+
+                    long columnBits = graph.getBlockedBitsInColumn(x1, y1);
+                    for (int k=0;k<64;++k) {
+                        assertEquals(graph.isBlocked(x1, y1+k), ((columnBits >>> k) & 1L) != 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBlockedBitsMatchIsBlocked() {
+        Random rand = new Random(5);
+        for (int t=0;t<20;++t) {
+            int sizeX = 1 + rand.nextInt(150);
+            int sizeY = 1 + rand.nextInt(150);
+            GridGraph graph = randomGrid(rand, sizeX, sizeY, 0.3f);
+            for (int i=0;i<500;++i) {
+                int x = rand.nextInt(sizeX+140) - 70;
+                int y = rand.nextInt(sizeY+140) - 70;
+                long rowBits = graph.getBlockedBits(x, y);
+                long columnBits = graph.getBlockedBitsInColumn(x, y);
+                for (int k=0;k<64;++k) {
+                    assertEquals(graph.isBlocked(x+k, y), ((rowBits >>> k) & 1L) != 0);
+                    assertEquals(graph.isBlocked(x, y+k), ((columnBits >>> k) & 1L) != 0);
+                }
+            }
+
+            int nBlocked = 0;
+            for (int y=0;y<sizeY;++y) {
+                for (int x=0;x<sizeX;++x) {
+                    if (graph.isBlocked(x, y)) nBlocked++;
+                }
+            }
+            assertEquals(nBlocked, graph.getNumBlocked());
+        }
+    }
 }
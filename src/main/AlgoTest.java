@@ -11,11 +11,13 @@ import algorithms.anya16.Anya16;
 import algorithms.BasicThetaStar;
 import algorithms.BreadthFirstSearch;
 import algorithms.JumpPointSearch;
+import algorithms.JumpPointSearchPlus;
 import algorithms.LazyThetaStar;
 import algorithms.PathFindingAlgorithm;
 import algorithms.RecursiveThetaStar;
 import algorithms.VisibilityGraphAlgorithm;
 import algorithms.datatypes.Point;
+import algorithms.priorityqueue.PriorityQueueType;
 import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithm;
 import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap;
 import algorithms.sparsevgs.SparseVisibilityGraphAlgorithm;
@@ -99,7 +101,16 @@ public class AlgoTest {
         testSequence(algo, algoName, mapSetName, testType);
     }
 
+    /**
+     * An algorithm name may end with "@" and a PriorityQueueType label to select its open list,
+     * e.g. "JumpPointSearch@PairingHeap" or "EdgeNLevelSparseVisibilityGraphs@RadixHeap".
+     */
     public static AlgoFunction getAlgo(String algoName) {
+        int separator = algoName.lastIndexOf('@');
+        if (separator != -1) {
+            PriorityQueueType priorityQueueType = PriorityQueueType.fromLabel(algoName.substring(separator+1));
+            return withPriorityQueue(getAlgo(algoName.substring(0, separator)), priorityQueueType);
+        }
 
         switch (algoName) {
             case "AStar": return AStar::new;
@@ -110,10 +121,15 @@ public class AlgoTest {
             case "BreadthFirstSearch": return BreadthFirstSearch::new;
             case "JumpPointSearch": return JumpPointSearch::new;
             case "JPS PostSmooth": return JumpPointSearch::postSmooth;
+            case "JPS RepeatedPostSmooth": return JumpPointSearch::repeatedPostSmooth;
+            case "JumpPointSearchPlus": return JumpPointSearchPlus::new;
+            case "JPS+ PostSmooth": return JumpPointSearchPlus::postSmooth;
+            case "JPS+ RepeatedPostSmooth": return JumpPointSearchPlus::repeatedPostSmooth;
             case "LazyThetaStar": return LazyThetaStar::new;
             case "BasicThetaStar": return BasicThetaStar::new;
             case "BasicThetaStar_PS": return BasicThetaStar::postSmooth;
             case "Dijkstra": return AStar::dijkstra;
+            case "DijkstraSLD": return AStarStaticMemory::dijkstra; // Dijkstra that can take an open list. See withPriorityQueue.
             case "AcceleratedAStar": return AcceleratedAStar::new;
             case "Anya": return Anya::new;
             case "Anya16": return Anya16::new;
@@ -143,6 +159,36 @@ public class AlgoTest {
         throw new UnsupportedOperationException("Invalid Algorithm! " + algoName);
     }
 
+    /**
+     * The open list can be selected for the searches built on AStarStaticMemory (AStarSLD, DijkstraSLD, AStar Octile,
+     * the JPS and JPS+ variants, the Theta* variants and the visibility graph searches) and for SG16A. Any of them
+     * can use BUCKET_QUEUE, which pops keys in exact order. Its bucket width is meant for the searches that expand
+     * 8-connected grid neighbours (AStarSLD, DijkstraSLD, AStar Octile and the Theta* variants).<br>
+     * AStar, AStarPS and Dijkstra (AStar::dijkstra) keep their FloatIndirectHeap, which is heapified over all the
+     * distances, and cannot take another open list. DijkstraSLD is the same search on AStarStaticMemory.<br>
+     * RADIX_HEAP is rejected for the Theta* variants and SG16A. They relax a successor through the parent of the
+     * node expanded, so a successor's key can be below the key of the node expanded, which a radix heap cannot pop
+     * in order.
+     */
+    public static AlgoFunction withPriorityQueue(AlgoFunction algoFunction, PriorityQueueType priorityQueueType) {
+        return (gridGraph, sx, sy, ex, ey) -> {
+            PathFindingAlgorithm algo = algoFunction.getAlgo(gridGraph, sx, sy, ex, ey);
+            if (priorityQueueType == PriorityQueueType.RADIX_HEAP &&
+                    (algo instanceof BasicThetaStar || algo instanceof SG16Algorithm)) {
+                throw new UnsupportedOperationException("Keys of " + algo.getClass().getSimpleName() +
+                        " are not monotone, which " + priorityQueueType.label + " needs");
+            }
+            if (algo instanceof AStarStaticMemory) {
+                ((AStarStaticMemory)algo).setPriorityQueueType(priorityQueueType);
+            } else if (algo instanceof SG16Algorithm) {
+                ((SG16Algorithm)algo).setPriorityQueueType(priorityQueueType);
+            } else {
+                throw new UnsupportedOperationException("Open list cannot be selected for " + algo.getClass().getSimpleName());
+            }
+            return algo;
+        };
+    }
+
 
     public static void testSequence(AlgoFunction algo, String name, String mapSetName, String testType) {
         String path = outputdir + name.replace(" ", "_") + ".txt";
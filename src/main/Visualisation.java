@@ -5,6 +5,8 @@ import grid.GridGraph;
 import grid.StartGoalPoints;
 
 import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -17,13 +19,22 @@ import main.utility.Utility;
 import uiandio.CloseOnExitWindowListener;
 import algorithms.PathFindingAlgorithm;
 import algorithms.datatypes.SnapshotItem;
+import algorithms.datatypes.SnapshotTraceReader;
+import algorithms.datatypes.SnapshotTraceWriter;
 import draw.DrawCanvas;
 import draw.GridLineSet;
 import draw.GridObjects;
 import draw.KeyToggler;
+import draw.TraceGridObjectsList;
 
 public class Visualisation {
     
+    /**
+     * Set to a file path to stream the trace to that file and replay it from disk, e.g. "traces/trace.aapt".
+     * Use for traces of large maps, which do not fit in memory. Leave null to record the trace in memory.
+     */
+    private static final String TRACE_FILE = null;
+    
     public static void run() {
         traceAlgorithm();
     }
@@ -75,7 +86,12 @@ public class Visualisation {
             e.printStackTrace();
         }
         
-        ArrayList<GridObjects> lineSetList = recordAlgorithmOperation(algo, gridGraph, p.sx, p.sy, p.ex, p.ey);
+        List<GridObjects> lineSetList;
+        if (TRACE_FILE == null) {
+            lineSetList = recordAlgorithmOperation(algo, gridGraph, p.sx, p.sy, p.ex, p.ey);
+        } else {
+            lineSetList = streamAlgorithmOperation(algo, gridGraph, p.sx, p.sy, p.ex, p.ey, new File(TRACE_FILE));
+        }
         lineSetList.add(new GridObjects(gridLineSet, null));
         DrawCanvas drawCanvas = new DrawCanvas(gridGraph, gridLineSet);
         drawCanvas.setStartAndEnd(p.sx, p.sy, p.ex, p.ey);
@@ -106,10 +122,44 @@ public class Visualisation {
         return gridObjectsList;
     }
 
+    /**
+     * Records a trace of the current algorithm into a trace file, and returns a list that replays it lazily.
+     */
+    private static List<GridObjects> streamAlgorithmOperation(AlgoFunction algoFunction, 
+            GridGraph gridGraph, int sx, int sy, int ex, int ey, File traceFile) {
+        PathFindingAlgorithm algo = algoFunction.getAlgo(gridGraph, sx, sy, ex, ey);
+        File directory = traceFile.getAbsoluteFile().getParentFile();
+        if (directory != null) directory.mkdirs();
+        
+        try (SnapshotTraceWriter traceWriter = new SnapshotTraceWriter(traceFile)) {
+            algo.startRecording(traceWriter);
+            try {
+                algo.computePath();
+            } catch (Exception e) {
+                System.out.println("Exception occurred during algorithm operation!");
+                e.printStackTrace();
+            }
+            algo.stopRecording();
+            algo.printStatistics();
+            System.out.println("Trace: " + traceWriter.size() + " snapshots written to " + traceFile);
+        } catch (IOException e) {
+            System.out.println("Unable to write trace: " + e.getMessage());
+            return new ArrayList<>();
+        }
+        
+        try {
+            // The reader stays open while the window replays the trace.
+            return new TraceGridObjectsList(new SnapshotTraceReader(traceFile));
+        } catch (IOException e) {
+            System.out.println("Unable to read trace: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
     /**
      * Spawns the visualisation window for the algorithm.
      */
-    protected static void setupMainFrame(DrawCanvas drawCanvas, ArrayList<GridObjects> gridObjectsList) {
+    protected static void setupMainFrame(DrawCanvas drawCanvas, List<GridObjects> gridObjectsList) {
         KeyToggler keyToggler = new KeyToggler(drawCanvas, gridObjectsList);
         
         JFrame mainFrame = new JFrame();
@@ -0,0 +1,137 @@
+package main.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import algorithms.PathFindingAlgorithm;
+import grid.GridGraph;
+import main.AlgoFunction;
+import main.analysis.TwoPoint;
+import main.testgen.StartEndPointData;
+
+/**
+ * Solves a batch of queries on one GridGraph with a pool of worker threads.<br>
+ * <br>
+ * Each worker uses its own thread-confined search memory and open list. The first query is solved on the
+ * calling thread before the workers start, so a preprocessed graph (e.g. the ENLSVG) is built once and
+ * then shared by all workers.<br>
+ * <br>
+ * With nThreads > 1, the AlgoFunction must be safe to run on several threads at once. The grid searches
+ * (AStar and its variants), EdgeNLevelSparseVisibilityGraphAlgorithm and Anya16 are. Many others are not,
+ * e.g. SparseVisibilityGraphAlgorithm (its stored graph shares one line of sight scanner) and
+ * EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap (static node references). The overloads without nThreads
+ * solve the queries on the calling thread.<br>
+ * If a query throws, the workers stop taking queries, and its exception is rethrown as it is.
+ */
+public class BatchPathfinder {
+
+    public static class Result {
+        public final int[][][] paths;
+        public final double[] pathLengths;
+        public final long[] runningTimesNanos;
+        public long totalTimeNanos;
+
+        private Result(int nQueries) {
+            paths = new int[nQueries][][];
+            pathLengths = new double[nQueries];
+            runningTimesNanos = new long[nQueries];
+        }
+
+        public final int size() {
+            return paths.length;
+        }
+    }
+
+    public static Result solveAll(GridGraph gridGraph, List<TwoPoint> problems, AlgoFunction algoFunction) {
+        return solveAll(gridGraph, problems, algoFunction, 1);
+    }
+
+    public static Result solveAllData(GridGraph gridGraph, List<StartEndPointData> problems, AlgoFunction algoFunction) {
+        return solveAllData(gridGraph, problems, algoFunction, 1);
+    }
+
+    public static Result solveAllData(GridGraph gridGraph, List<StartEndPointData> problems, AlgoFunction algoFunction, int nThreads) {
+        ArrayList<TwoPoint> twoPoints = new ArrayList<>(problems.size());
+        for (StartEndPointData problem : problems) {
+            twoPoints.add(problem.toTwoPoint());
+        }
+        return solveAll(gridGraph, twoPoints, algoFunction, nThreads);
+    }
+
+    public static Result solveAll(GridGraph gridGraph, List<TwoPoint> problems, AlgoFunction algoFunction, int nThreads) {
+        int nQueries = problems.size();
+        Result result = new Result(nQueries);
+        if (nQueries == 0) return result;
+        long start = System.nanoTime();
+
+        // The first query is solved on this thread, which also builds any preprocessed graph.
+        solve(gridGraph, problems, algoFunction, result, 0);
+
+        AtomicInteger nextQuery = new AtomicInteger(1);
+        nThreads = Math.max(1, Math.min(nThreads, nQueries-1));
+        if (nThreads == 1) {
+            for (int i=1;i<nQueries;++i) {
+                solve(gridGraph, problems, algoFunction, result, i);
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(nThreads);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            try {
+                List<ForkJoinTask<?>> workers = new ArrayList<>(nThreads);
+                for (int t=0;t<nThreads;++t) {
+                    workers.add(pool.submit(() -> {
+                        try {
+                            int i;
+                            while ((i = nextQuery.getAndIncrement()) < nQueries) {
+                                solve(gridGraph, problems, algoFunction, result, i);
+                            }
+                        } catch (RuntimeException | Error e) {
+                            // Kept here, as ForkJoinTask.get() can rethrow a copy of it.
+                            failure.compareAndSet(null, e);
+                            nextQuery.set(nQueries); // The other workers stop after their current query.
+                        }
+                    }));
+                }
+                for (ForkJoinTask<?> worker : workers) {
+                    worker.get();
+                }
+            } catch (InterruptedException e) {
+                nextQuery.set(nQueries);
+                Thread.currentThread().interrupt();
+                throw new UnsupportedOperationException(e);
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+            if (failure.get() != null) throw rethrow(failure.get());
+        }
+
+        result.totalTimeNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof Error) throw (Error)e;
+        if (e instanceof RuntimeException) return (RuntimeException)e;
+        return new UnsupportedOperationException(e);
+    }
+
+    private static void solve(GridGraph gridGraph, List<TwoPoint> problems, AlgoFunction algoFunction, Result result, int index) {
+        TwoPoint tp = problems.get(index);
+        long start = System.nanoTime();
+        PathFindingAlgorithm algo = algoFunction.getAlgo(gridGraph, tp.p1.x, tp.p1.y, tp.p2.x, tp.p2.y);
+        algo.computePath();
+        int[][] path = algo.getPath();
+        long end = System.nanoTime();
+
+        result.paths[index] = path;
+        result.pathLengths[index] = Utility.computePathLength(gridGraph, path);
+        result.runningTimesNanos[index] = end - start;
+    }
+}
@@ -0,0 +1,88 @@
+package main.utility;
+
+import static org.junit.Assert.*;
+
+import grid.GridGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import main.AlgoFunction;
+import main.analysis.TwoPoint;
+import main.graphgeneration.DefaultGenerator;
+
+import org.junit.Test;
+
+import algorithms.AStar;
+import algorithms.anya16.Anya16;
+import algorithms.datatypes.PreprocessedGraphRegistry;
+import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithm;
+
+public class BatchPathfinderTest {
+
+    private static List<TwoPoint> makeProblems(GridGraph graph, int nProblems) {
+        Random rand = new Random(2);
+        List<TwoPoint> problems = new ArrayList<>();
+        while (problems.size() < nProblems) {
+            int sx = rand.nextInt(graph.sizeX+1);
+            int sy = rand.nextInt(graph.sizeY+1);
+            int ex = rand.nextInt(graph.sizeX+1);
+            int ey = rand.nextInt(graph.sizeY+1);
+            if (graph.isUnblockedCoordinate(sx, sy) && graph.isUnblockedCoordinate(ex, ey)) {
+                problems.add(new TwoPoint(sx, sy, ex, ey));
+            }
+        }
+        return problems;
+    }
+
+    private static void assertSameAsSequential(AlgoFunction algoFunction) {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(4, 80, 60, 15);
+        List<TwoPoint> problems = makeProblems(graph, 200);
+        try {
+            PreprocessedGraphRegistry.clear();
+            BatchPathfinder.Result sequential = BatchPathfinder.solveAll(graph, problems, algoFunction);
+            BatchPathfinder.Result parallel = BatchPathfinder.solveAll(graph, problems, algoFunction, 4);
+
+            assertEquals(sequential.size(), parallel.size());
+            for (int i=0;i<sequential.size();++i) {
+                assertArrayEquals(sequential.paths[i], parallel.paths[i]);
+                assertEquals(sequential.pathLengths[i], parallel.pathLengths[i], 0);
+            }
+        } finally {
+            PreprocessedGraphRegistry.clear();
+        }
+    }
+
+    @Test
+    public void testAStarMatchesSequential() {
+        assertSameAsSequential(AStar::new);
+    }
+
+    @Test
+    public void testEdgeNLevelSparseVisibilityGraphMatchesSequential() {
+        assertSameAsSequential(EdgeNLevelSparseVisibilityGraphAlgorithm::graphReuse);
+    }
+
+    @Test
+    public void testAnya16MatchesSequential() {
+        assertSameAsSequential(Anya16::new);
+    }
+
+    @Test
+    public void testExceptionIsRethrownUnchanged() {
+        GridGraph graph = DefaultGenerator.generateSeededGraphOnly(4, 80, 60, 15);
+        List<TwoPoint> problems = makeProblems(graph, 50);
+        IllegalStateException thrown = new IllegalStateException();
+        AlgoFunction failing = (gridGraph, sx, sy, ex, ey) -> {
+            if (sx == problems.get(20).p1.x && sy == problems.get(20).p1.y) throw thrown;
+            return new AStar(gridGraph, sx, sy, ex, ey);
+        };
+        try {
+            BatchPathfinder.solveAll(graph, problems, failing, 4);
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(thrown, e);
+        }
+    }
+}
@@ -4,12 +4,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 
 import algorithms.Anya;
+import algorithms.JumpDistanceTable;
 import algorithms.anya16.Anya16;
 import algorithms.PathFindingAlgorithm;
-import algorithms.datatypes.Memory;
+import algorithms.datatypes.SearchContext;
 import algorithms.datatypes.Point;
 import algorithms.datatypes.SnapshotItem;
-import algorithms.priorityqueue.ReusableIndirectHeap;
+import algorithms.priorityqueue.PriorityQueueType;
 import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraph;
 import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithm;
 import algorithms.sparsevgs.EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap;
@@ -153,12 +154,13 @@ public class Utility {
         VisibilityGraph.clearMemory();
         SparseVisibilityGraph.clearMemory();
         SparseVisibilityGraphAlgorithmFibHeap.clearMemory();
-        Memory.clearMemory();
-        ReusableIndirectHeap.clearMemory();
+        SearchContext.clearMemory();
+        PriorityQueueType.clearMemory();
         LineOfSightScanner.clearMemory();
         EdgeNLevelSparseVisibilityGraph.clearMemory();
         EdgeNLevelSparseVisibilityGraphAlgorithmFibHeap.clearMemory();
         VisibilityGraphOptimised.clearMemory();
+        JumpDistanceTable.clearMemory();
         SnapshotItem.clearCached();
         //IVGAlgorithm.clearCached();
         